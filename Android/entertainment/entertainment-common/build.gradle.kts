@@ -14,6 +14,9 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -24,7 +27,6 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.6.4")
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:1.6.4")
     implementation("com.squareup.retrofit2:retrofit:2.9.0")
-    implementation("com.squareup.okhttp3:logging-interceptor:4.7.2")
     implementation("com.squareup.okhttp3:okhttp:4.9.3")
     api("com.netease.yunxin.kit.common:common-network:1.1.8")
     implementation("com.google.code.gson:gson:2.9.0")
@@ -36,4 +38,7 @@ dependencies {
     implementation("com.netease.yunxin.kit.common:common-image:1.1.7")
     implementation(project(":voiceroomkit"))
     implementation("com.netease.yunxin.kit.core:corekit:1.4.2")
+
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("androidx.arch.core:core-testing:2.1.0")
 }
@@ -11,26 +11,30 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.netease.yunxin.kit.common.ui.utils.ToastUtils;
 import com.netease.yunxin.kit.common.utils.SizeUtils;
+import com.netease.yunxin.kit.entertainment.common.R;
 import com.netease.yunxin.kit.entertainment.common.RoomConstants;
 import com.netease.yunxin.kit.entertainment.common.adapter.RoomListAdapter;
+import com.netease.yunxin.kit.entertainment.common.adapter.RoomListPager;
 import com.netease.yunxin.kit.entertainment.common.databinding.ActivityRoomListBinding;
+import com.netease.yunxin.kit.entertainment.common.model.RoomModel;
 import com.netease.yunxin.kit.entertainment.common.smartrefresh.api.RefreshLayout;
 import com.netease.yunxin.kit.entertainment.common.smartrefresh.listener.OnLoadMoreListener;
 import com.netease.yunxin.kit.entertainment.common.smartrefresh.listener.OnRefreshListener;
 import com.netease.yunxin.kit.entertainment.common.widget.FooterView;
 import com.netease.yunxin.kit.entertainment.common.widget.HeaderView;
+import java.util.List;
 
 public abstract class RoomListActivity extends BaseActivity
     implements OnRefreshListener, OnLoadMoreListener {
 
   public static final int ROOM_MAX_AUDIENCE_COUNT = 1;
   protected ActivityRoomListBinding binding;
-  protected int pageNum = 1;
   public static final int PAGE_SIZE = 20;
   public static final int SPAN_COUNT = 2;
-  protected int tempPageNum = 1;
   protected RoomListAdapter adapter;
+  protected RoomListPager pager;
   private GridLayoutManager layoutManager;
   protected boolean isOversea = false;
   protected int configId;
@@ -73,10 +77,24 @@ public abstract class RoomListActivity extends BaseActivity
     binding.rvRoomList.setAdapter(adapter);
     binding.rvRoomList.addItemDecoration(new MyItemDecoration());
     binding.rvRoomList.setLayoutManager(layoutManager);
+    binding.rvRoomList.addOnScrollListener(
+        new RecyclerView.OnScrollListener() {
+          @Override
+          public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (dy > 0) {
+              pager.onLastVisiblePositionChanged(layoutManager.findLastVisibleItemPosition());
+            }
+          }
+        });
+    pager = new RoomListPager(PAGE_SIZE, this::loadRoomPage, new PagerListener());
   }
 
   protected abstract RoomListAdapter getRoomListAdapter();
 
+  /** 加载第 pageNum 页，callback 需在主线程回调 */
+  protected abstract void loadRoomPage(
+      int pageNum, int pageSize, @NonNull RoomListPager.PageCallback callback);
+
   @Override
   protected void onResume() {
     super.onResume();
@@ -84,11 +102,14 @@ public abstract class RoomListActivity extends BaseActivity
   }
 
   protected void refresh() {
-    tempPageNum = 1;
+    pager.refresh();
   }
 
   protected void loadMore() {
-    tempPageNum++;
+    if (!pager.loadMore()) {
+      // 正在预取或没有更多，直接收起底部加载
+      binding.refreshLayout.finishLoadMore(true);
+    }
   }
 
   @Override
@@ -101,6 +122,34 @@ public abstract class RoomListActivity extends BaseActivity
     refresh();
   }
 
+  private class PagerListener implements RoomListPager.Listener {
+
+    @Override
+    public void onRoomListChanged(@NonNull List<RoomModel> rooms) {
+      if (rooms.isEmpty()) {
+        binding.emptyView.setVisibility(View.VISIBLE);
+        binding.rvRoomList.setVisibility(View.GONE);
+      } else {
+        binding.emptyView.setVisibility(View.GONE);
+        binding.rvRoomList.setVisibility(View.VISIBLE);
+      }
+      adapter.submitList(rooms);
+    }
+
+    @Override
+    public void onLoadFinished(boolean refresh, boolean success) {
+      if (refresh) {
+        binding.refreshLayout.finishRefresh(success);
+        if (!success) {
+          ToastUtils.INSTANCE.showShortToast(
+              RoomListActivity.this, getString(R.string.network_error));
+        }
+      } else {
+        binding.refreshLayout.finishLoadMore(success);
+      }
+    }
+  }
+
   static class MyItemDecoration extends RecyclerView.ItemDecoration {
 
     @Override
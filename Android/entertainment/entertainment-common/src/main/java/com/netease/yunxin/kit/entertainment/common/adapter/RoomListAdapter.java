@@ -5,9 +5,12 @@
 package com.netease.yunxin.kit.entertainment.common.adapter;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.netease.yunxin.kit.common.image.ImageLoader;
 import com.netease.yunxin.kit.common.utils.SizeUtils;
@@ -21,27 +24,21 @@ import java.util.List;
 public class RoomListAdapter extends RecyclerView.Adapter<RoomListAdapter.RoomViewHolder> {
 
   protected final Context context;
-  private final List<RoomModel> roomInfoList;
+  private final AsyncListDiffer<RoomModel> differ =
+      new AsyncListDiffer<>(this, new RoomDiffCallback());
   private static OnItemClickListener itemOnClickListener;
 
   public RoomListAdapter(Context context) {
     this.context = context;
-    roomInfoList = new ArrayList<>();
   }
 
-  public void refreshList(List<RoomModel> dataList) {
-    roomInfoList.clear();
-    roomInfoList.addAll(dataList);
-    notifyDataSetChanged();
-  }
-
-  public void loadMore(List<RoomModel> dataList) {
-    roomInfoList.addAll(dataList);
-    notifyDataSetChanged();
+  /** 在后台计算差异，只刷新变化的条目 */
+  public void submitList(List<RoomModel> dataList) {
+    differ.submitList(dataList == null ? null : new ArrayList<>(dataList));
   }
 
   public boolean isEmptyPosition(int position) {
-    return position == 0 && roomInfoList.isEmpty();
+    return position == 0 && differ.getCurrentList().isEmpty();
   }
 
   @NonNull
@@ -54,13 +51,13 @@ public class RoomListAdapter extends RecyclerView.Adapter<RoomListAdapter.RoomVi
 
   @Override
   public void onBindViewHolder(@NonNull RoomViewHolder holder, int position) {
-    RoomModel roomInfo = roomInfoList.get(position);
+    RoomModel roomInfo = differ.getCurrentList().get(position);
     holder.setData(roomInfo);
   }
 
   @Override
   public int getItemCount() {
-    return roomInfoList.size();
+    return differ.getCurrentList().size();
   }
 
   public static class RoomViewHolder extends RecyclerView.ViewHolder {
@@ -104,6 +101,22 @@ public class RoomListAdapter extends RecyclerView.Adapter<RoomListAdapter.RoomVi
     }
   }
 
+  private static class RoomDiffCallback extends DiffUtil.ItemCallback<RoomModel> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull RoomModel oldItem, @NonNull RoomModel newItem) {
+      return oldItem.getLiveRecordId() == newItem.getLiveRecordId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull RoomModel oldItem, @NonNull RoomModel newItem) {
+      return oldItem.getAudienceCount() == newItem.getAudienceCount()
+          && TextUtils.equals(oldItem.getRoomName(), newItem.getRoomName())
+          && TextUtils.equals(oldItem.getCover(), newItem.getCover())
+          && TextUtils.equals(oldItem.getAnchorNick(), newItem.getAnchorNick());
+    }
+  }
+
   public void setItemOnClickListener(OnItemClickListener itemOnClickListener) {
     this.itemOnClickListener = itemOnClickListener;
   }
@@ -0,0 +1,196 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.adapter;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import com.netease.yunxin.kit.entertainment.common.model.RoomModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 房间列表分页
+ *
+ * <ul>
+ *   <li>滑到距末尾 {@link #PREFETCH_DISTANCE} 个以内时自动加载下一页，不必等上拉
+ *   <li>翻页期间有新房间插入时，后一页会带回前一页已有的房间，按 liveRecordId 去重
+ *   <li>最多保留 {@link #MAX_PAGES} 页，超过后不再加载
+ *   <li>刷新后从第一页重新开始，之前发出的翻页请求结果直接丢弃
+ *   <li>同一次刷新第一页可能先回调缓存再回调最新结果，最新结果晚于后续页返回时只更新已有房间，不清空列表
+ * </ul>
+ */
+@MainThread
+public class RoomListPager {
+  public static final int PREFETCH_DISTANCE = 6;
+  public static final int MAX_PAGES = 10;
+  private static final int IDLE = 0;
+
+  public interface PageLoader {
+    void loadPage(int pageNum, int pageSize, @NonNull PageCallback callback);
+  }
+
+  public interface PageCallback {
+    void onPageLoaded(List<RoomModel> rooms, boolean hasNextPage);
+
+    void onPageFailed(int code, String msg);
+  }
+
+  public interface Listener {
+    void onRoomListChanged(@NonNull List<RoomModel> rooms);
+
+    /** @param refresh true 为刷新，false 为翻页 */
+    void onLoadFinished(boolean refresh, boolean success);
+  }
+
+  private final PageLoader loader;
+  private final Listener listener;
+  private final int pageSize;
+  private final LinkedHashMap<Long, RoomModel> rooms = new LinkedHashMap<>();
+  private int loadedPage = 0;
+  private boolean hasNextPage = false;
+  // 正在加载的页码，IDLE 表示没有请求
+  private int loadingPage = IDLE;
+  // 每次刷新加一，用于丢弃过期的翻页结果
+  private int generation = 0;
+
+  public RoomListPager(int pageSize, @NonNull PageLoader loader, @NonNull Listener listener) {
+    this.pageSize = pageSize;
+    this.loader = loader;
+    this.listener = listener;
+  }
+
+  public void refresh() {
+    int requestGeneration = ++generation;
+    loadedPage = 0;
+    hasNextPage = false;
+    loadingPage = 1;
+    loader.loadPage(
+        1,
+        pageSize,
+        new PageCallback() {
+          @Override
+          public void onPageLoaded(List<RoomModel> list, boolean hasNext) {
+            if (requestGeneration != generation) {
+              return;
+            }
+            if (loadedPage > 1) {
+              // 本次刷新的第二次回调，缓存回调后已经翻过页，清空会丢掉后面的页
+              update(list);
+            } else {
+              rooms.clear();
+              loadedPage = 1;
+              append(list, hasNext);
+            }
+            finishLoading(1);
+            listener.onLoadFinished(true, true);
+          }
+
+          @Override
+          public void onPageFailed(int code, String msg) {
+            if (requestGeneration != generation) {
+              return;
+            }
+            finishLoading(1);
+            listener.onLoadFinished(true, false);
+          }
+        });
+  }
+
+  /** @return false 表示没有发起请求 */
+  public boolean loadMore() {
+    if (loadingPage != IDLE || !hasMore()) {
+      return false;
+    }
+    int requestGeneration = generation;
+    int pageNum = loadedPage + 1;
+    loadingPage = pageNum;
+    loader.loadPage(
+        pageNum,
+        pageSize,
+        new PageCallback() {
+          @Override
+          public void onPageLoaded(List<RoomModel> list, boolean hasNext) {
+            if (requestGeneration != generation) {
+              return;
+            }
+            finishLoading(pageNum);
+            if (loadedPage >= pageNum) {
+              return;
+            }
+            loadedPage = pageNum;
+            append(list, hasNext);
+            listener.onLoadFinished(false, true);
+          }
+
+          @Override
+          public void onPageFailed(int code, String msg) {
+            if (requestGeneration != generation) {
+              return;
+            }
+            finishLoading(pageNum);
+            listener.onLoadFinished(false, false);
+          }
+        });
+    return true;
+  }
+
+  /** 列表滚动时调用，接近末尾时预取下一页 */
+  public void onLastVisiblePositionChanged(int lastVisiblePosition) {
+    if (lastVisiblePosition >= 0 && rooms.size() - 1 - lastVisiblePosition < PREFETCH_DISTANCE) {
+      loadMore();
+    }
+  }
+
+  public boolean hasMore() {
+    return hasNextPage && loadedPage < MAX_PAGES;
+  }
+
+  public int size() {
+    return rooms.size();
+  }
+
+  public boolean isLoading() {
+    return loadingPage != IDLE;
+  }
+
+  private void finishLoading(int pageNum) {
+    if (loadingPage == pageNum) {
+      loadingPage = IDLE;
+    }
+  }
+
+  private void update(List<RoomModel> list) {
+    if (list == null) {
+      return;
+    }
+    boolean changed = false;
+    for (RoomModel room : list) {
+      if (rooms.containsKey(room.getLiveRecordId())) {
+        rooms.put(room.getLiveRecordId(), room);
+        changed = true;
+      }
+    }
+    if (changed) {
+      notifyChanged();
+    }
+  }
+
+  private void append(List<RoomModel> list, boolean hasNext) {
+    hasNextPage = hasNext;
+    if (list != null) {
+      for (RoomModel room : list) {
+        // 已有的房间保持原位置，只更新内容
+        rooms.put(room.getLiveRecordId(), room);
+      }
+    }
+    notifyChanged();
+  }
+
+  private void notifyChanged() {
+    listener.onRoomListChanged(Collections.unmodifiableList(new ArrayList<>(rooms.values())));
+  }
+}
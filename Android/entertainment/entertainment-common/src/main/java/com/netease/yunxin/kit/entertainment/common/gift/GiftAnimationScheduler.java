@@ -0,0 +1,159 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.gift;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 礼物动画排队策略，只管排队不管播放：
+ *
+ * <ul>
+ *   <li>连续收到同一种礼物时合并成一个 ×N 动画
+ *   <li>出队时价值（{@link GiftInfo#getCoinCount()}）高的优先，同价值先到先播
+ *   <li>积压超过 {@link #DEFAULT_BACKLOG_SIZE} 时直接丢弃低价值礼物，队列满时丢弃队中价值最低的
+ * </ul>
+ */
+@MainThread
+public class GiftAnimationScheduler {
+  /** 队列最大长度 */
+  public static final int DEFAULT_MAX_QUEUE_SIZE = 20;
+  /** 积压阈值 */
+  public static final int DEFAULT_BACKLOG_SIZE = 10;
+  /** 积压时低于该价值的礼物不再排队 */
+  public static final long DEFAULT_LOW_VALUE_COIN = 100;
+
+  public static final class GiftAnimation {
+    private final GiftInfo gift;
+    private int count;
+    private final long sequence;
+
+    GiftAnimation(GiftInfo gift, int count, long sequence) {
+      this.gift = gift;
+      this.count = count;
+      this.sequence = sequence;
+    }
+
+    public GiftInfo getGift() {
+      return gift;
+    }
+
+    /** 合并后的礼物个数 */
+    public int getCount() {
+      return count;
+    }
+  }
+
+  private final int maxQueueSize;
+  private final int backlogSize;
+  private final long lowValueCoin;
+  private final List<GiftAnimation> queue;
+  private GiftAnimation lastOffered;
+  private long sequence;
+
+  private long mergedCount;
+  private long droppedCount;
+
+  public GiftAnimationScheduler() {
+    this(DEFAULT_MAX_QUEUE_SIZE, DEFAULT_BACKLOG_SIZE, DEFAULT_LOW_VALUE_COIN);
+  }
+
+  public GiftAnimationScheduler(int maxQueueSize, int backlogSize, long lowValueCoin) {
+    if (maxQueueSize <= 0 || backlogSize <= 0 || backlogSize > maxQueueSize) {
+      throw new IllegalArgumentException("invalid queue size");
+    }
+    this.maxQueueSize = maxQueueSize;
+    this.backlogSize = backlogSize;
+    this.lowValueCoin = lowValueCoin;
+    this.queue = new ArrayList<>(maxQueueSize + 1);
+  }
+
+  /**
+   * 礼物入队
+   *
+   * @return false 表示礼物被丢弃
+   */
+  public boolean offer(GiftInfo gift, int count) {
+    if (gift == null || count <= 0) {
+      return false;
+    }
+    // 和上一个还没播放的同种礼物合并
+    if (lastOffered != null
+        && lastOffered.gift.getGiftId() == gift.getGiftId()
+        && queue.contains(lastOffered)) {
+      lastOffered.count += count;
+      mergedCount += count;
+      return true;
+    }
+    if (queue.size() >= backlogSize && gift.getCoinCount() < lowValueCoin) {
+      droppedCount += count;
+      return false;
+    }
+    GiftAnimation animation = new GiftAnimation(gift, count, sequence++);
+    queue.add(animation);
+    lastOffered = animation;
+    if (queue.size() > maxQueueSize) {
+      GiftAnimation lowest = findLowest();
+      queue.remove(lowest);
+      droppedCount += lowest.count;
+      return lowest != animation;
+    }
+    return true;
+  }
+
+  /** 取出下一个要播放的动画，队列为空返回 null */
+  @Nullable
+  public GiftAnimation poll() {
+    if (queue.isEmpty()) {
+      return null;
+    }
+    GiftAnimation next = queue.get(0);
+    for (GiftAnimation animation : queue) {
+      if (animation.gift.getCoinCount() > next.gift.getCoinCount()) {
+        next = animation;
+      }
+    }
+    queue.remove(next);
+    return next;
+  }
+
+  public int size() {
+    return queue.size();
+  }
+
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  public void clear() {
+    queue.clear();
+    lastOffered = null;
+  }
+
+  /** 被合并掉的礼物个数 */
+  public long getMergedCount() {
+    return mergedCount;
+  }
+
+  /** 被丢弃的礼物个数 */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  // 价值最低的；同价值时丢后到的，先到的已经等了更久
+  private GiftAnimation findLowest() {
+    GiftAnimation lowest = queue.get(0);
+    for (GiftAnimation animation : queue) {
+      long coin = animation.gift.getCoinCount();
+      if (coin < lowest.gift.getCoinCount()
+          || (coin == lowest.gift.getCoinCount() && animation.sequence > lowest.sequence)) {
+        lowest = animation;
+      }
+    }
+    return lowest;
+  }
+}
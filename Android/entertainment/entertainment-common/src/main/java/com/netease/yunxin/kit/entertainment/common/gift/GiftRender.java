@@ -5,79 +5,203 @@
 package com.netease.yunxin.kit.entertainment.common.gift;
 
 import android.animation.Animator;
+import android.content.Context;
 import android.view.View;
+import android.widget.TextView;
+import androidx.annotation.Nullable;
 import com.airbnb.lottie.LottieAnimationView;
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
 import com.netease.yunxin.kit.alog.ALog;
-import java.util.LinkedList;
-import java.util.Queue;
+import com.netease.yunxin.kit.entertainment.common.BuildConfig;
+import com.netease.yunxin.kit.entertainment.common.R;
 
 public class GiftRender {
   private static final String TAG = "GiftRender";
-  private final Queue<Integer> giftQueue = new LinkedList<>();
+  private final GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
   private LottieAnimationView animationView = null;
+  private TextView countView = null;
+  // GifAnimationView 的 isAnimating 恒为 false，播放状态自己记录
   private boolean isAnimating = false;
+  private int playingResId = 0;
+  private long playedCount;
+
+  /**
+   * 在后台线程解析所有礼物动画，结果由 Lottie 按资源缓存，播放时直接使用
+   *
+   * <p>重复调用只会解析一次
+   */
+  public static void preload(Context context) {
+    Context appContext = context.getApplicationContext();
+    for (GiftInfo gift : GiftCache.getGiftList()) {
+      int resId = gift.getDynamicIconResId();
+      if (resId == 0) {
+        continue;
+      }
+      LottieCompositionFactory.fromRawRes(appContext, resId)
+          .addFailureListener(e -> ALog.e(TAG, "preload failed,resId:" + resId + "," + e));
+    }
+  }
 
   public void init(LottieAnimationView animationView) {
+    init(animationView, null);
+  }
+
+  /** @param countView 合并播放时展示 ×N，可为空 */
+  public void init(LottieAnimationView animationView, @Nullable TextView countView) {
     this.animationView = animationView;
+    this.countView = countView;
+    preload(animationView.getContext());
     this.animationView.addAnimatorListener(
         new Animator.AnimatorListener() {
 
           @Override
           public void onAnimationStart(Animator animation) {
-            ALog.d(TAG, "onAnimationStart");
+            if (BuildConfig.DEBUG) {
+              ALog.d(TAG, "onAnimationStart");
+            }
           }
 
           @Override
           public void onAnimationEnd(Animator animation) {
-            ALog.d(TAG, "onAnimationEnd");
-            animationView.setVisibility(View.GONE);
-            if (!giftQueue.isEmpty()) {
-              playAnim(giftQueue.poll());
-            } else {
-              isAnimating = false;
+            if (BuildConfig.DEBUG) {
+              ALog.d(TAG, "onAnimationEnd");
             }
+            animationView.setVisibility(View.GONE);
+            setCountVisible(false);
+            playNext();
           }
 
           @Override
           public void onAnimationCancel(Animator animation) {
-            ALog.d(TAG, "onAnimationCancel");
-            isAnimating = !giftQueue.isEmpty();
+            if (BuildConfig.DEBUG) {
+              ALog.d(TAG, "onAnimationCancel");
+            }
+            isAnimating = !scheduler.isEmpty();
           }
 
           @Override
           public void onAnimationRepeat(Animator animation) {
-            ALog.d(TAG, "onAnimationRepeat");
+            if (BuildConfig.DEBUG) {
+              ALog.d(TAG, "onAnimationRepeat");
+            }
           }
         });
   }
 
   public void addGift(int gitResId) {
-    ALog.d(TAG, "addGift,gitResId:" + gitResId);
-    giftQueue.add(gitResId);
+    if (BuildConfig.DEBUG) {
+      ALog.d(TAG, "addGift,gitResId:" + gitResId);
+    }
+    for (GiftInfo gift : GiftCache.getGiftList()) {
+      if (gift.getDynamicIconResId() == gitResId) {
+        addGift(gift, 1);
+        return;
+      }
+    }
+  }
+
+  /** 连续的同种礼物会合并播放，积压时低价值礼物会被丢弃 */
+  public void addGift(GiftInfo gift, int count) {
+    if (gift == null) {
+      return;
+    }
+    if (BuildConfig.DEBUG) {
+      ALog.d(TAG, "addGift,giftId:" + gift.getGiftId() + ",count:" + count);
+    }
+    if (!scheduler.offer(gift, count)) {
+      ALog.d(TAG, "gift dropped,giftId:" + gift.getGiftId() + ",count:" + count);
+    }
     if (!isAnimating) {
-      isAnimating = true;
-      playAnim(giftQueue.poll());
+      playNext();
     }
   }
 
   public void release() {
-    ALog.d(TAG, "release");
-    giftQueue.clear();
+    ALog.d(
+        TAG,
+        "release,played:"
+            + playedCount
+            + ",merged:"
+            + scheduler.getMergedCount()
+            + ",dropped:"
+            + scheduler.getDroppedCount());
+    scheduler.clear();
+    playingResId = 0;
+    isAnimating = false;
     if (animationView != null) {
       animationView.cancelAnimation();
       animationView.setVisibility(View.GONE);
     }
+    setCountVisible(false);
+  }
+
+  /** 已播放的动画数 */
+  public long getPlayedCount() {
+    return playedCount;
+  }
+
+  /** 被合并的礼物数 */
+  public long getMergedCount() {
+    return scheduler.getMergedCount();
   }
 
-  private void playAnim(int gitResId) {
-    if (gitResId == 0) {
+  /** 被丢弃的礼物数 */
+  public long getDroppedCount() {
+    return scheduler.getDroppedCount();
+  }
+
+  private void playNext() {
+    GiftAnimationScheduler.GiftAnimation next = scheduler.poll();
+    if (next == null) {
+      isAnimating = false;
       return;
     }
-    if (animationView != null) {
-      animationView.setVisibility(View.VISIBLE);
-      animationView.setAnimation(gitResId);
-      ALog.d(TAG, "playAnim,gitResId:" + gitResId);
-      animationView.playAnimation();
+    isAnimating = true;
+    playAnim(next.getGift().getDynamicIconResId(), next.getCount());
+  }
+
+  private void playAnim(int gitResId, int count) {
+    if (gitResId == 0 || animationView == null) {
+      playNext();
+      return;
+    }
+    playingResId = gitResId;
+    // 已预加载时直接取 Lottie 的缓存，还没解析完时复用进行中的任务
+    LottieCompositionFactory.fromRawRes(animationView.getContext(), gitResId)
+        .addListener(
+            result -> {
+              if (playingResId == gitResId && isAnimating) {
+                startAnim(result, count);
+              }
+            })
+        .addFailureListener(
+            e -> {
+              ALog.e(TAG, "load failed,gitResId:" + gitResId + "," + e);
+              if (playingResId == gitResId) {
+                playNext();
+              }
+            });
+  }
+
+  private void startAnim(LottieComposition composition, int count) {
+    playedCount++;
+    animationView.setVisibility(View.VISIBLE);
+    animationView.setComposition(composition);
+    if (countView != null && count > 1) {
+      countView.setText(countView.getContext().getString(R.string.gift_combo_count, count));
+      setCountVisible(true);
+    }
+    ALog.d(TAG, "playAnim,gitResId:" + playingResId + ",count:" + count);
+    animationView.playAnimation();
+  }
+
+  private void setCountVisible(boolean visible) {
+    if (countView != null) {
+      countView.setVisibility(visible ? View.VISIBLE : View.GONE);
+      if (visible) {
+        countView.bringToFront();
+      }
     }
   }
 }
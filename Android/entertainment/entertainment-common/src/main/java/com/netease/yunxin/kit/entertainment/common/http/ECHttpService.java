@@ -5,16 +5,16 @@
 package com.netease.yunxin.kit.entertainment.common.http;
 
 import android.content.Context;
-import com.netease.yunxin.kit.common.network.ServiceCreator;
 import com.netease.yunxin.kit.entertainment.common.BuildConfig;
 import com.netease.yunxin.kit.entertainment.common.model.ECModelResponse;
 import com.netease.yunxin.kit.entertainment.common.model.NemoAccount;
+import com.netease.yunxin.kit.voiceroomkit.api.http.HttpCore;
 import java.util.HashMap;
 import java.util.Map;
 import retrofit2.Callback;
 
 public class ECHttpService {
-  private final ServiceCreator serviceCreator = new ServiceCreator();
+  private final HttpCore.HeaderInterceptor headers = new HttpCore.HeaderInterceptor();
   private ECServerApi serverApi;
 
   private static volatile ECHttpService mInstance;
@@ -33,16 +33,12 @@ public class ECHttpService {
   }
 
   public void initialize(Context context, String serverUrl) {
-    serviceCreator.init(
-        context,
-        serverUrl,
-        BuildConfig.DEBUG ? ServiceCreator.LOG_LEVEL_BODY : ServiceCreator.LOG_LEVEL_BASIC,
-        null);
-    serverApi = serviceCreator.create(ECServerApi.class);
+    serverApi =
+        HttpCore.createRetrofit(serverUrl, headers, BuildConfig.DEBUG).create(ECServerApi.class);
   }
 
   public void addHeader(String key, String value) {
-    serviceCreator.addHeader(key, value);
+    headers.addHeader(key, value);
   }
 
   public void createAccount(Callback<ECModelResponse<NemoAccount>> callback) {
@@ -0,0 +1,232 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.livedata;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A LiveData that batches items: producers on any thread {@link #post} single items into a
+ * lock-free queue, which is drained once per {@link Choreographer} frame and delivered to
+ * observers as one batch.
+ *
+ * <p>Unlike {@link androidx.lifecycle.MutableLiveData#postValue}, which keeps only the latest
+ * value per main-loop turn, every posted item is delivered exactly once. While there is no active
+ * observer the items stay queued and are flushed as soon as one becomes active.
+ *
+ * <p>Nothing is ever dropped. A frame normally delivers at most {@code maxBatchSize} items so a
+ * burst is spread over several frames; once more than {@code capacity} items are waiting, the next
+ * frame flushes the whole backlog at once instead, so the queue drains as fast as the observer can
+ * take it. Producers are never blocked: they are roomkit callback threads and the main thread.
+ *
+ * <p>Like {@link SingleLiveEvent}, a batch is delivered only once: an observer attached later
+ * (e.g. after rotation) does not receive the last batch again.
+ */
+public class FrameBatchLiveData<T> extends LiveData<List<T>> {
+
+  /** 单帧最多派发的条数，超出部分顺延到下一帧，避免突发消息卡住一帧 */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+  /** 积压超过该条数时下一帧一次派发全部积压，不再按 {@link #DEFAULT_MAX_BATCH_SIZE} 分帧 */
+  public static final int DEFAULT_CAPACITY = 2048;
+
+  private static final String TAG = "FrameBatchLiveData";
+
+  private final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+  private final AtomicBoolean mPending = new AtomicBoolean(false);
+  private final FrameScheduler frameScheduler;
+  private final Runnable drainTask = this::drain;
+  private final int maxBatchSize;
+  private final int capacity;
+  @Nullable private volatile String metricName;
+
+  // 统计信息，仅在主线程写
+  private volatile int lastBatchSize;
+  private volatile int maxDeliveredBatchSize;
+  private volatile long deliveredCount;
+  private volatile long frameCount;
+  private volatile long flushCount;
+
+  /** 在主线程的下一帧执行派发，单元测试中替换 */
+  interface FrameScheduler {
+    @AnyThread
+    void schedule(Runnable frame);
+  }
+
+  public FrameBatchLiveData() {
+    this(DEFAULT_MAX_BATCH_SIZE, DEFAULT_CAPACITY);
+  }
+
+  public FrameBatchLiveData(int maxBatchSize, int capacity) {
+    this(maxBatchSize, capacity, new ChoreographerScheduler());
+  }
+
+  FrameBatchLiveData(int maxBatchSize, int capacity, FrameScheduler frameScheduler) {
+    if (maxBatchSize <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("maxBatchSize and capacity must be positive");
+    }
+    this.maxBatchSize = maxBatchSize;
+    this.capacity = capacity;
+    this.frameScheduler = frameScheduler;
+  }
+
+  @MainThread
+  @Override
+  public void observe(@NonNull LifecycleOwner owner, @NonNull Observer<? super List<T>> observer) {
+    if (hasActiveObservers()) {
+      Log.w(TAG, "Multiple observers registered but only one will be notified of changes.");
+    }
+    super.observe(
+        owner,
+        batch -> {
+          if (mPending.compareAndSet(true, false)) {
+            observer.onChanged(batch);
+          }
+        });
+  }
+
+  /** Enqueue one item; safe to call from any thread. Null items are ignored. */
+  @AnyThread
+  public void post(T item) {
+    if (item == null) {
+      return;
+    }
+    pending.offer(item);
+    pendingCount.incrementAndGet();
+    scheduleFrame();
+  }
+
+  @Override
+  protected void onActive() {
+    super.onActive();
+    if (pendingCount.get() > 0) {
+      scheduleFrame();
+    }
+  }
+
+  /** Drop every queued item that has not been delivered yet. */
+  @AnyThread
+  public void clearPending() {
+    while (pending.poll() != null) {
+      pendingCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * 设置后每帧派发给观察者的主线程耗时记入 {@link NEVoiceRoomMetrics}，指标名为 {@link
+   * NEVoiceRoomMetrics#MAIN_OBSERVER_PREFIX} + name
+   */
+  public void setMetricName(@Nullable String name) {
+    metricName = name != null ? NEVoiceRoomMetrics.MAIN_OBSERVER_PREFIX + name : null;
+  }
+
+  public int getPendingCount() {
+    return pendingCount.get();
+  }
+
+  /** 最近一帧派发的条数 */
+  public int getLastBatchSize() {
+    return lastBatchSize;
+  }
+
+  /** 单帧派发条数的峰值 */
+  public int getMaxBatchSize() {
+    return maxDeliveredBatchSize;
+  }
+
+  /** 积压超过上限、一帧派发全部积压的次数 */
+  public long getFlushCount() {
+    return flushCount;
+  }
+
+  public long getDeliveredCount() {
+    return deliveredCount;
+  }
+
+  /** 平均每帧派发的条数 */
+  public float getAverageBatchSize() {
+    long frames = frameCount;
+    return frames == 0 ? 0f : (float) deliveredCount / frames;
+  }
+
+  private void scheduleFrame() {
+    if (frameScheduled.compareAndSet(false, true)) {
+      frameScheduler.schedule(drainTask);
+    }
+  }
+
+  @MainThread
+  private void drain() {
+    frameScheduled.set(false);
+    if (!hasActiveObservers()) {
+      // onActive() reschedules once an observer shows up
+      return;
+    }
+    int backlog = pendingCount.get();
+    if (backlog <= 0) {
+      return;
+    }
+    int size = backlog;
+    if (backlog > capacity) {
+      flushCount++;
+    } else {
+      size = Math.min(backlog, maxBatchSize);
+    }
+    List<T> batch = new ArrayList<>(size);
+    T item;
+    while (batch.size() < size && (item = pending.poll()) != null) {
+      batch.add(item);
+    }
+    pendingCount.addAndGet(-batch.size());
+    lastBatchSize = batch.size();
+    if (batch.size() > maxDeliveredBatchSize) {
+      maxDeliveredBatchSize = batch.size();
+    }
+    deliveredCount += batch.size();
+    frameCount++;
+    String name = metricName;
+    long start = name != null ? NEVoiceRoomMetrics.startTimer() : 0L;
+    mPending.set(true);
+    setValue(batch);
+    if (name != null) {
+      NEVoiceRoomMetrics.stopTimer(name, start);
+    }
+    if (pendingCount.get() > 0) {
+      scheduleFrame();
+    }
+  }
+
+  private static final class ChoreographerScheduler implements FrameScheduler {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void schedule(Runnable frame) {
+      Runnable postFrame =
+          () -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> frame.run());
+      if (Looper.myLooper() == Looper.getMainLooper()) {
+        postFrame.run();
+      } else {
+        mainHandler.post(postFrame);
+      }
+    }
+  }
+}
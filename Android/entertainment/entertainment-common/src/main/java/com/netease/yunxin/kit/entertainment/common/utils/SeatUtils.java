@@ -4,6 +4,9 @@
 
 package com.netease.yunxin.kit.entertainment.common.utils;
 
+import android.text.TextUtils;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomKit;
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
@@ -13,6 +16,7 @@ import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItemStatus;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class SeatUtils {
 
@@ -33,47 +37,111 @@ public class SeatUtils {
 
   public static List<RoomSeat> transNESeatItem2VoiceRoomSeat(
       List<NEVoiceRoomSeatItem> neSeatItemList) {
+    return transNESeatItem2VoiceRoomSeat(neSeatItemList, false);
+  }
+
+  /** 房间快照里的麦位，成员还没加入时用麦位上记录的昵称和头像展示 */
+  public static List<RoomSeat> transSnapshotSeatItem2VoiceRoomSeat(
+      List<NEVoiceRoomSeatItem> neSeatItemList) {
+    return transNESeatItem2VoiceRoomSeat(neSeatItemList, true);
+  }
+
+  private static List<RoomSeat> transNESeatItem2VoiceRoomSeat(
+      List<NEVoiceRoomSeatItem> neSeatItemList, boolean fromSnapshot) {
     if (neSeatItemList == null) neSeatItemList = Collections.emptyList();
-    List<RoomSeat> onSeatList = new ArrayList<>();
+    List<RoomSeat> onSeatList = new ArrayList<>(neSeatItemList.size());
     for (NEVoiceRoomSeatItem item : neSeatItemList) {
       NEVoiceRoomMember user = getMember(item.getUser());
-      int status;
-      switch (item.getStatus()) {
-        case NEVoiceRoomSeatItemStatus.WAITING:
-          status = RoomSeat.Status.APPLY;
-          break;
-        case NEVoiceRoomSeatItemStatus.CLOSED:
-          status = RoomSeat.Status.CLOSED;
-          break;
-        case NEVoiceRoomSeatItemStatus.TAKEN:
-          status = RoomSeat.Status.ON;
-          break;
-        default:
-          status = RoomSeat.Status.INIT;
-          break;
-      }
-      final int reason;
-      if (item.getOnSeatType() == NEVoiceRoomOnSeatType.REQUEST) {
-        reason = RoomSeat.Reason.ANCHOR_APPROVE_APPLY;
-      } else if (item.getOnSeatType() == NEVoiceRoomOnSeatType.INVITATION) {
-        reason = RoomSeat.Reason.ANCHOR_INVITE;
-      } else {
-        reason = RoomSeat.Reason.NONE;
+      if (user == null && fromSnapshot && !TextUtils.isEmpty(item.getUser())) {
+        user = new SnapshotMember(item.getUser(), item.getUserName(), item.getIcon());
       }
-      onSeatList.add(new RoomSeat(item.getIndex(), status, reason, user));
+      onSeatList.add(
+          new RoomSeat(
+              item.getIndex(),
+              transSeatStatus(item.getStatus()),
+              transSeatReason(item.getOnSeatType()),
+              user));
     }
     return onSeatList;
   }
 
+  /** {@link NEVoiceRoomSeatItemStatus} 转 {@link RoomSeat.Status} */
+  public static int transSeatStatus(int seatItemStatus) {
+    switch (seatItemStatus) {
+      case NEVoiceRoomSeatItemStatus.WAITING:
+        return RoomSeat.Status.APPLY;
+      case NEVoiceRoomSeatItemStatus.CLOSED:
+        return RoomSeat.Status.CLOSED;
+      case NEVoiceRoomSeatItemStatus.TAKEN:
+        return RoomSeat.Status.ON;
+      default:
+        return RoomSeat.Status.INIT;
+    }
+  }
+
+  /** {@link NEVoiceRoomOnSeatType} 转 {@link RoomSeat.Reason} */
+  public static int transSeatReason(int onSeatType) {
+    if (onSeatType == NEVoiceRoomOnSeatType.REQUEST) {
+      return RoomSeat.Reason.ANCHOR_APPROVE_APPLY;
+    } else if (onSeatType == NEVoiceRoomOnSeatType.INVITATION) {
+      return RoomSeat.Reason.ANCHOR_INVITE;
+    }
+    return RoomSeat.Reason.NONE;
+  }
+
   public static NEVoiceRoomMember getMember(String account) {
-    List<NEVoiceRoomMember> allMemberList = NEVoiceRoomKit.getInstance().getAllMemberList();
-    if (!allMemberList.isEmpty()) {
-      for (NEVoiceRoomMember neVoiceRoomMember : allMemberList) {
-        if (neVoiceRoomMember.getAccount().equals(account)) {
-          return neVoiceRoomMember;
-        }
-      }
+    return VoiceRoomUtils.getMember(account);
+  }
+
+  private static class SnapshotMember implements NEVoiceRoomMember {
+    private final String account;
+    private final String name;
+    private final String avatar;
+
+    SnapshotMember(String account, String name, String avatar) {
+      this.account = account;
+      this.name = name != null ? name : "";
+      this.avatar = avatar;
+    }
+
+    @NonNull
+    @Override
+    public String getAccount() {
+      return account;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @NonNull
+    @Override
+    public String getRole() {
+      return "";
+    }
+
+    @Override
+    public boolean isAudioOn() {
+      return true;
+    }
+
+    @Override
+    public boolean isAudioBanned() {
+      return false;
+    }
+
+    @Nullable
+    @Override
+    public String getAvatar() {
+      return avatar;
+    }
+
+    @Nullable
+    @Override
+    public Map<String, String> getInitialProperties() {
+      return null;
     }
-    return null;
   }
 }
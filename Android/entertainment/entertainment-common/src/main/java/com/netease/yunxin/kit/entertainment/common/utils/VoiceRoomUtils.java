@@ -41,25 +41,14 @@ public class VoiceRoomUtils {
   }
 
   public static NEVoiceRoomMember getMember(String uuid) {
-    List<NEVoiceRoomMember> allMemberList = NEVoiceRoomKit.getInstance().getAllMemberList();
-    for (int i = 0; i < allMemberList.size(); i++) {
-      NEVoiceRoomMember member = allMemberList.get(i);
-      if (TextUtils.equals(member.getAccount(), uuid)) {
-        return member;
-      }
+    if (uuid == null) {
+      return null;
     }
-    return null;
+    return NEVoiceRoomKit.getInstance().getMember(uuid);
   }
 
   public static NEVoiceRoomMember getHost() {
-    List<NEVoiceRoomMember> allMemberList = NEVoiceRoomKit.getInstance().getAllMemberList();
-    for (int i = 0; i < allMemberList.size(); i++) {
-      NEVoiceRoomMember member = allMemberList.get(i);
-      if (TextUtils.equals(member.getRole(), RoomConstants.ROLE_HOST)) {
-        return member;
-      }
-    }
-    return null;
+    return NEVoiceRoomKit.getInstance().getHostMember();
   }
 
   public static boolean isMute(String uuid) {
@@ -109,10 +98,11 @@ public class VoiceRoomUtils {
   }
 
   public static int getAnchorReward(NEVoiceRoomInfo roomInfo) {
-    if (getHost() == null) {
+    NEVoiceRoomMember host = getHost();
+    if (host == null) {
       return 0;
     }
-    return getRewardFromRoomInfo(getHost().getAccount(), roomInfo);
+    return getRewardFromRoomInfo(host.getAccount(), roomInfo);
   }
 
   public static boolean isShowFloatView() {
@@ -0,0 +1,259 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import com.netease.yunxin.kit.entertainment.common.model.RoomModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RoomListPagerTest {
+  private static final int PAGE_SIZE = 4;
+
+  /** 模拟服务端：房间按创建时间倒序，请求先挂起，respond 时按当时的数据切页 */
+  private static class FakePageLoader implements RoomListPager.PageLoader {
+    final List<RoomModel> server = new ArrayList<>();
+    final List<Integer> requestedPages = new ArrayList<>();
+    final List<Integer> pageSizes = new ArrayList<>();
+    final List<RoomListPager.PageCallback> callbacks = new ArrayList<>();
+    long nextId = 1;
+
+    void addRooms(int count) {
+      for (int i = 0; i < count; i++) {
+        server.add(0, room(nextId++, "room"));
+      }
+    }
+
+    @Override
+    public void loadPage(
+        int pageNum, int pageSize, @NonNull RoomListPager.PageCallback callback) {
+      requestedPages.add(pageNum);
+      pageSizes.add(pageSize);
+      callbacks.add(callback);
+    }
+
+    int lastPage() {
+      return requestedPages.get(requestedPages.size() - 1);
+    }
+
+    void respond(int index) {
+      int pageNum = requestedPages.get(index);
+      int pageSize = pageSizes.get(index);
+      int from = Math.min((pageNum - 1) * pageSize, server.size());
+      int to = Math.min(from + pageSize, server.size());
+      List<RoomModel> page = new ArrayList<>();
+      for (RoomModel room : server.subList(from, to)) {
+        page.add(room(room.getLiveRecordId(), room.getRoomName()));
+      }
+      callbacks.get(index).onPageLoaded(page, to < server.size());
+    }
+
+    void respondLast() {
+      respond(callbacks.size() - 1);
+    }
+
+    void failLast() {
+      callbacks.get(callbacks.size() - 1).onPageFailed(-1, "error");
+    }
+  }
+
+  private static class RecordingListener implements RoomListPager.Listener {
+    List<RoomModel> rooms = Collections.emptyList();
+    final List<String> finished = new ArrayList<>();
+
+    @Override
+    public void onRoomListChanged(@NonNull List<RoomModel> rooms) {
+      this.rooms = rooms;
+    }
+
+    @Override
+    public void onLoadFinished(boolean refresh, boolean success) {
+      finished.add((refresh ? "refresh" : "more") + ":" + success);
+    }
+
+    List<Long> ids() {
+      List<Long> ids = new ArrayList<>();
+      for (RoomModel room : rooms) {
+        ids.add(room.getLiveRecordId());
+      }
+      return ids;
+    }
+  }
+
+  private static RoomModel room(long id, String name) {
+    RoomModel room = new RoomModel();
+    room.setLiveRecordId(id);
+    room.setRoomName(name);
+    return room;
+  }
+
+  private final FakePageLoader loader = new FakePageLoader();
+  private final RecordingListener listener = new RecordingListener();
+  private RoomListPager pager;
+
+  @Before
+  public void setUp() {
+    loader.addRooms(PAGE_SIZE * 3);
+    pager = new RoomListPager(PAGE_SIZE, loader, listener);
+  }
+
+  private void loadPages(int pages) {
+    pager.refresh();
+    loader.respondLast();
+    for (int i = 1; i < pages; i++) {
+      assertTrue(pager.loadMore());
+      loader.respondLast();
+    }
+  }
+
+  @Test
+  public void refreshAfterPagingStartsFromFirstPage() {
+    loadPages(3);
+    assertEquals(PAGE_SIZE * 3, pager.size());
+
+    // 回到页面时 onResume 再次刷新
+    loader.addRooms(1);
+    pager.refresh();
+    assertTrue(pager.isLoading());
+    loader.respondLast();
+
+    assertFalse(pager.isLoading());
+    assertEquals("refresh:true", listener.finished.get(listener.finished.size() - 1));
+    assertEquals(Arrays.asList(13L, 12L, 11L, 10L), listener.ids());
+    assertTrue(pager.loadMore());
+    assertEquals(2, loader.lastPage());
+  }
+
+  @Test
+  public void roomsInsertedBetweenFetchesAreDeduplicated() {
+    pager.refresh();
+    loader.respondLast();
+    assertEquals(Arrays.asList(12L, 11L, 10L, 9L), listener.ids());
+
+    // 翻页前新建了两个房间，第二页会带回第一页末尾的两个房间
+    loader.addRooms(2);
+    pager.loadMore();
+    loader.respondLast();
+
+    assertEquals(Arrays.asList(12L, 11L, 10L, 9L, 8L, 7L), listener.ids());
+    assertEquals(pager.size(), new HashSet<>(listener.ids()).size());
+  }
+
+  @Test
+  public void lateFreshFirstPageOnlyUpdatesLoadedRooms() {
+    pager.refresh();
+    // 先回调缓存
+    loader.respond(0);
+    pager.loadMore();
+    loader.respondLast();
+    assertEquals(PAGE_SIZE * 2, pager.size());
+
+    // 最新结果在第二页之后才返回，且期间新建了一个房间
+    loader.server.get(0).setRoomName("renamed");
+    loader.addRooms(1);
+    loader.respond(0);
+
+    assertEquals(PAGE_SIZE * 2, pager.size());
+    assertEquals("renamed", listener.rooms.get(0).getRoomName());
+    assertFalse(pager.isLoading());
+    assertEquals("refresh:true", listener.finished.get(listener.finished.size() - 1));
+    assertTrue(pager.loadMore());
+    assertEquals(3, loader.lastPage());
+  }
+
+  @Test
+  public void secondFirstPageCallbackReplacesSinglePage() {
+    pager.refresh();
+    loader.respond(0);
+    loader.addRooms(1);
+    loader.respond(0);
+
+    assertEquals(Arrays.asList(13L, 12L, 11L, 10L), listener.ids());
+  }
+
+  @Test
+  public void pageFromPreviousGenerationIsDropped() {
+    loadPages(1);
+    assertTrue(pager.loadMore());
+    int stale = loader.callbacks.size() - 1;
+
+    pager.refresh();
+    loader.respond(stale);
+    assertEquals(PAGE_SIZE, pager.size());
+    assertTrue(pager.isLoading());
+
+    loader.respondLast();
+    assertFalse(pager.isLoading());
+    assertEquals(PAGE_SIZE, pager.size());
+  }
+
+  @Test
+  public void failedRefreshDoesNotLoadMoreFromOldPages() {
+    loadPages(2);
+
+    pager.refresh();
+    loader.failLast();
+
+    assertFalse(pager.isLoading());
+    assertEquals("refresh:false", listener.finished.get(listener.finished.size() - 1));
+    assertFalse(pager.loadMore());
+  }
+
+  @Test
+  public void failedPageCanBeRetried() {
+    loadPages(1);
+    assertTrue(pager.loadMore());
+    loader.failLast();
+
+    assertEquals("more:false", listener.finished.get(listener.finished.size() - 1));
+    assertTrue(pager.loadMore());
+    assertEquals(2, loader.lastPage());
+  }
+
+  @Test
+  public void stopsAtMaxPages() {
+    loader.addRooms(PAGE_SIZE * RoomListPager.MAX_PAGES);
+    loadPages(RoomListPager.MAX_PAGES);
+
+    assertEquals(PAGE_SIZE * RoomListPager.MAX_PAGES, pager.size());
+    assertFalse(pager.hasMore());
+    assertFalse(pager.loadMore());
+  }
+
+  @Test
+  public void stopsWhenServerHasNoNextPage() {
+    loadPages(3);
+
+    assertFalse(pager.hasMore());
+    assertFalse(pager.loadMore());
+  }
+
+  @Test
+  public void prefetchesNearEndOfList() {
+    loader.addRooms(PAGE_SIZE * 2);
+    pager = new RoomListPager(PAGE_SIZE * 2, loader, listener);
+    pager.refresh();
+    loader.respondLast();
+    int requests = loader.requestedPages.size();
+
+    pager.onLastVisiblePositionChanged(0);
+    assertEquals(requests, loader.requestedPages.size());
+
+    pager.onLastVisiblePositionChanged(PAGE_SIZE * 2 - RoomListPager.PREFETCH_DISTANCE);
+    assertEquals(requests + 1, loader.requestedPages.size());
+    // 加载中继续滚动不会重复请求
+    pager.onLastVisiblePositionChanged(PAGE_SIZE * 2 - 1);
+    assertEquals(requests + 1, loader.requestedPages.size());
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.gift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GiftAnimationSchedulerTest {
+
+  private static GiftInfo gift(int id, long coin) {
+    return new GiftInfo(id, "gift" + id, coin, 0, 0);
+  }
+
+  private final GiftInfo rose = gift(1, 10);
+  private final GiftInfo car = gift(2, 1000);
+  private final GiftInfo rocket = gift(3, 5000);
+
+  @Test
+  public void consecutiveSameGiftsAreMerged() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+    assertTrue(scheduler.offer(rose, 1));
+    assertTrue(scheduler.offer(rose, 2));
+    assertTrue(scheduler.offer(rose, 1));
+
+    assertEquals(1, scheduler.size());
+    assertEquals(3, scheduler.getMergedCount());
+    GiftAnimationScheduler.GiftAnimation animation = scheduler.poll();
+    assertSame(rose, animation.getGift());
+    assertEquals(4, animation.getCount());
+  }
+
+  @Test
+  public void onlyTheLastOfferedGiftIsMerged() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+    scheduler.offer(rose, 1);
+    scheduler.offer(car, 1);
+    scheduler.offer(rose, 1);
+
+    assertEquals(3, scheduler.size());
+    assertEquals(0, scheduler.getMergedCount());
+  }
+
+  @Test
+  public void playingGiftIsNotMergedInto() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+    scheduler.offer(rose, 1);
+    GiftAnimationScheduler.GiftAnimation playing = scheduler.poll();
+
+    scheduler.offer(rose, 1);
+
+    assertEquals(1, playing.getCount());
+    assertEquals(1, scheduler.size());
+    assertEquals(0, scheduler.getMergedCount());
+  }
+
+  @Test
+  public void higherValuePlaysFirstAndEqualValueKeepsArrivalOrder() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+    GiftInfo firstCheap = gift(10, 10);
+    GiftInfo secondCheap = gift(11, 10);
+    scheduler.offer(firstCheap, 1);
+    scheduler.offer(car, 1);
+    scheduler.offer(secondCheap, 1);
+    scheduler.offer(rocket, 1);
+
+    assertSame(rocket, scheduler.poll().getGift());
+    assertSame(car, scheduler.poll().getGift());
+    assertSame(firstCheap, scheduler.poll().getGift());
+    assertSame(secondCheap, scheduler.poll().getGift());
+    assertNull(scheduler.poll());
+  }
+
+  @Test
+  public void lowValueGiftsAreDroppedWhenBackedUp() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler(5, 3, 100);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(scheduler.offer(gift(100 + i, 10), 1));
+    }
+
+    assertFalse(scheduler.offer(gift(200, 10), 2));
+    assertTrue(scheduler.offer(car, 1));
+
+    assertEquals(4, scheduler.size());
+    assertEquals(2, scheduler.getDroppedCount());
+  }
+
+  @Test
+  public void fullQueueDropsLowestValue() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler(3, 3, 0);
+    scheduler.offer(gift(1, 50), 1);
+    scheduler.offer(gift(2, 10), 2);
+    scheduler.offer(gift(3, 30), 1);
+
+    // 新礼物价值更高，挤掉队中价值最低的
+    assertTrue(scheduler.offer(gift(4, 20), 1));
+    assertEquals(3, scheduler.size());
+    assertEquals(2, scheduler.getDroppedCount());
+
+    // 新礼物本身价值最低，被丢弃
+    assertFalse(scheduler.offer(gift(5, 5), 1));
+    assertEquals(3, scheduler.getDroppedCount());
+
+    assertEquals(1, scheduler.poll().getGift().getGiftId());
+    assertEquals(3, scheduler.poll().getGift().getGiftId());
+    assertEquals(4, scheduler.poll().getGift().getGiftId());
+  }
+
+  @Test
+  public void fullQueueDropsLaterArrivalOnTie() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler(2, 2, 0);
+    GiftInfo first = gift(1, 10);
+    scheduler.offer(first, 1);
+    scheduler.offer(gift(2, 10), 1);
+
+    assertFalse(scheduler.offer(gift(3, 10), 1));
+
+    assertSame(first, scheduler.poll().getGift());
+    assertEquals(2, scheduler.poll().getGift().getGiftId());
+  }
+
+  @Test
+  public void clearStopsMerging() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+    scheduler.offer(rose, 1);
+    scheduler.clear();
+
+    scheduler.offer(rose, 1);
+
+    assertEquals(1, scheduler.size());
+    assertEquals(1, scheduler.poll().getCount());
+  }
+
+  @Test
+  public void invalidOffersAreRejected() {
+    GiftAnimationScheduler scheduler = new GiftAnimationScheduler();
+
+    assertFalse(scheduler.offer(null, 1));
+    assertFalse(scheduler.offer(rose, 0));
+    assertTrue(scheduler.isEmpty());
+    assertEquals(0, scheduler.getDroppedCount());
+  }
+}
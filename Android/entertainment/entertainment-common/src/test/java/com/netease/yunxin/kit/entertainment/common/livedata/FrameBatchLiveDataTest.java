@@ -0,0 +1,168 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.entertainment.common.livedata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.Observer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+
+// 测试线程充当主线程：帧回调先放进队列，由测试逐帧执行
+public class FrameBatchLiveDataTest {
+
+  private static final int PRODUCERS = 8;
+  private static final int EVENTS = 10_000;
+
+  @Rule public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+  private final ConcurrentLinkedQueue<Runnable> frames = new ConcurrentLinkedQueue<>();
+  private final List<Integer> batchSizes = new ArrayList<>();
+  private final List<Long> received = new ArrayList<>();
+  private final Observer<List<Long>> observer =
+      batch -> {
+        batchSizes.add(batch.size());
+        received.addAll(batch);
+      };
+
+  private FrameBatchLiveData<Long> create(int maxBatchSize, int capacity) {
+    return new FrameBatchLiveData<>(maxBatchSize, capacity, frames::offer);
+  }
+
+  private boolean runFrame() {
+    Runnable frame = frames.poll();
+    if (frame == null) {
+      return false;
+    }
+    frame.run();
+    return true;
+  }
+
+  @Test
+  public void multipleProducersLoseNothing() throws InterruptedException {
+    FrameBatchLiveData<Long> liveData =
+        create(FrameBatchLiveData.DEFAULT_MAX_BATCH_SIZE, FrameBatchLiveData.DEFAULT_CAPACITY);
+    liveData.observeForever(observer);
+
+    int perProducer = EVENTS / PRODUCERS;
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(PRODUCERS);
+    for (int p = 0; p < PRODUCERS; p++) {
+      long producer = p;
+      new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+                }
+                for (long seq = 0; seq < perProducer; seq++) {
+                  liveData.post(producer * EVENTS + seq);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+    start.countDown();
+    while (done.getCount() > 0) {
+      runFrame();
+    }
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    while (runFrame()) {
+      // 排空剩余的帧
+    }
+
+    assertEquals(EVENTS, received.size());
+    assertEquals(EVENTS, liveData.getDeliveredCount());
+    assertEquals(0, liveData.getPendingCount());
+    long[] next = new long[PRODUCERS];
+    for (long value : received) {
+      int producer = (int) (value / EVENTS);
+      assertEquals("producer " + producer + " out of order", next[producer], value % EVENTS);
+      next[producer]++;
+    }
+    for (int p = 0; p < PRODUCERS; p++) {
+      assertEquals(perProducer, next[p]);
+    }
+
+    int total = 0;
+    int max = 0;
+    for (int size : batchSizes) {
+      total += size;
+      max = Math.max(max, size);
+    }
+    assertEquals(EVENTS, total);
+    assertEquals(max, liveData.getMaxBatchSize());
+    assertEquals((float) EVENTS / batchSizes.size(), liveData.getAverageBatchSize(), 0.001f);
+    System.out.println(
+        "frames="
+            + batchSizes.size()
+            + " maxPerFrame="
+            + max
+            + " avgPerFrame="
+            + liveData.getAverageBatchSize()
+            + " flushes="
+            + liveData.getFlushCount());
+  }
+
+  @Test
+  public void burstIsSplitAcrossFrames() {
+    FrameBatchLiveData<Long> liveData = create(256, 2048);
+    liveData.observeForever(observer);
+    for (long i = 0; i < 600; i++) {
+      liveData.post(i);
+    }
+    while (runFrame()) {
+      // 排空
+    }
+
+    assertEquals(Arrays.asList(256, 256, 88), batchSizes);
+    assertEquals(0, liveData.getFlushCount());
+    assertEquals(88, liveData.getLastBatchSize());
+  }
+
+  @Test
+  public void backlogOverCapacityIsFlushedInOneFrame() {
+    FrameBatchLiveData<Long> liveData = create(256, 2048);
+    for (long i = 0; i < 5_000; i++) {
+      liveData.post(i);
+    }
+    // 没有观察者时只积压，不丢弃
+    while (runFrame()) {
+      // 排空
+    }
+    assertEquals(5_000, liveData.getPendingCount());
+
+    liveData.observeForever(observer);
+    while (runFrame()) {
+      // 排空
+    }
+
+    assertEquals(Arrays.asList(5_000), batchSizes);
+    assertEquals(1, liveData.getFlushCount());
+    for (int i = 0; i < received.size(); i++) {
+      assertEquals(i, received.get(i).longValue());
+    }
+  }
+
+  @Test
+  public void nullItemsAreIgnored() {
+    FrameBatchLiveData<Long> liveData = create(256, 2048);
+    liveData.observeForever(observer);
+    liveData.post(null);
+
+    assertEquals(0, liveData.getPendingCount());
+    assertTrue(frames.isEmpty());
+  }
+}
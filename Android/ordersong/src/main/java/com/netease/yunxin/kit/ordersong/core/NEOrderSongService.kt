@@ -20,25 +20,20 @@ import com.netease.yunxin.kit.ordersong.core.model.OrderSong
 import com.netease.yunxin.kit.ordersong.core.model.OrderSongEvent
 import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel
 import com.netease.yunxin.kit.ordersong.core.model.SongPlayEvent
-import com.netease.yunxin.kit.ordersong.core.util.GsonUtils
-import com.netease.yunxin.kit.ordersong.core.util.NERoomListenerWrapper
 import com.netease.yunxin.kit.ordersong.core.util.TimerTaskUtil
-import com.netease.yunxin.kit.roomkit.api.NERoomChatMessage
-import com.netease.yunxin.kit.roomkit.api.NERoomKit
-import com.netease.yunxin.kit.roomkit.api.service.NERoomService
-import com.netease.yunxin.kit.roomkit.impl.model.RoomCustomMessages
+import com.netease.yunxin.kit.voiceroomkit.api.NECustomMessageDecoder
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomErrorCode
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics
 import kotlin.math.pow
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.launch
-import org.json.JSONObject
 
 /**
  * 点歌台服务
  */
 object NEOrderSongService {
-    private var hasAddRoomListen = false
     private var roomUuid: String? = null
     private var liveRecordId: Long? = null
     const val TAG = "NEOrderSongService"
@@ -53,89 +48,90 @@ object NEOrderSongService {
     private const val refreshTokenRetryTimes = 3
     private const val aheadTimeRefreshToken = 180
     var appKey = ""
-    private val roomListener = object : NERoomListenerWrapper() {
-        override fun onReceiveChatroomMessages(messages: List<NERoomChatMessage>) {
-            messages.forEach {
-                if (it is RoomCustomMessages) {
-                    val jsonObject = JSONObject(it.attachStr)
-                    val data = jsonObject.opt("data")
-                    val type = jsonObject.optInt("type")
-                    if (type == OrderSongCmd.ORDERED_SONG_LIST_CHANGED_CMD) {
-                        ALog.i(TAG, "onOrderedSongListChanged")
-                        listeners.forEach { listener ->
-                            listener.onOrderedSongListChanged()
+
+    /**
+     * 已下载歌曲的磁盘占用；SDK 不保证重新下载被删的歌，暂不淘汰
+     */
+    val songCache = SongCacheManager()
+
+    /**
+     * 已点歌曲预下载，由负责播放的一端（主播）在进入房间后开始、离开时停止
+     */
+    val preloadScheduler = SongPreloadScheduler(::getOrderedSongs, songCache)
+
+    private val orderSongEventHandler =
+        NECustomMessageDecoder.MessageHandler<OrderSongEvent> { event ->
+            val data = event?.data ?: return@MessageHandler
+            NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.MESSAGE_SONG)
+            when (event.type) {
+                OrderSongCmd.ORDER_SONG_CMD -> {
+                    ALog.i(TAG, "onSongOrdered,event:$event")
+                    preloadScheduler.refreshLater()
+                    listeners.forEach { listener ->
+                        listener.onSongOrdered(data.orderSongResultDto.orderSong)
+                    }
+                }
+                OrderSongCmd.CANCEL_ORDER_SONG_CMD -> {
+                    ALog.i(TAG, "onSongDeleted,event:$event")
+                    preloadScheduler.onSongDeleted(data.orderSongResultDto.orderSong)
+                    listeners.forEach { listener ->
+                        val song = data.orderSongResultDto.orderSong
+                        if (data.nextOrderSong != null) {
+                            song.nextOrderSong = data.nextOrderSong.orderSong
                         }
+                        listener.onSongDeleted(song)
                     }
-                    if (data != null) {
-                        when (type) {
-                            OrderSongCmd.ORDER_SONG_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, OrderSongEvent::class.java)
-                                ALog.i(TAG, "onSongOrdered,event:$event")
-                                listeners.forEach { listener ->
-                                    listener.onSongOrdered(event.data.orderSongResultDto.orderSong)
-                                }
-                            }
-                            OrderSongCmd.CANCEL_ORDER_SONG_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, OrderSongEvent::class.java)
-                                ALog.i(TAG, "onSongDeleted,event:$event")
-                                listeners.forEach { listener ->
-                                    val song = event.data.orderSongResultDto.orderSong
-                                    if (event.data.nextOrderSong != null) {
-                                        song.nextOrderSong = event.data.nextOrderSong.orderSong
-                                    }
-                                    listener.onSongDeleted(song)
-                                }
-                            }
-                            OrderSongCmd.SWITCH_SONG_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, OrderSongEvent::class.java)
-                                ALog.i(TAG, "onSongSwitched,event:$event")
-                                listeners.forEach { listener ->
-                                    val song = event.data.orderSongResultDto.orderSong
-                                    song.operator = event.data.operatorUser
-                                    song.nextOrderSong = event.data.nextOrderSong.orderSong
-                                    song.attachment = event.data.attachment
-                                    listener.onSongSwitched(song)
-                                }
-                            }
+                }
+                OrderSongCmd.SWITCH_SONG_CMD -> {
+                    ALog.i(TAG, "onSongSwitched,event:$event")
+                    preloadScheduler.onSongSwitched(data.nextOrderSong?.orderSong)
+                    listeners.forEach { listener ->
+                        val song = data.orderSongResultDto.orderSong
+                        song.operator = data.operatorUser
+                        song.nextOrderSong = data.nextOrderSong.orderSong
+                        song.attachment = data.attachment
+                        listener.onSongSwitched(song)
+                    }
+                }
+            }
+        }
 
-                            OrderSongCmd.START_PLAY_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, SongPlayEvent::class.java)
-                                val song = event.data.playMusicInfo
-                                song.operator = event.data.operatorInfo
-                                ALog.i(TAG, "onSongStarted")
-                                listeners.forEach { listener ->
-                                    listener.onSongStarted(song)
-                                }
-                            }
-                            OrderSongCmd.PAUSE_PLAY_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, SongPlayEvent::class.java)
-                                val song = event.data.playMusicInfo
-                                song.operator = event.data.operatorInfo
-                                ALog.i(TAG, "onSongPaused")
-                                listeners.forEach { listener ->
-                                    listener.onSongPaused(song)
-                                }
-                            }
-                            OrderSongCmd.RESUME_PLAY_CMD -> {
-                                val event =
-                                    GsonUtils.fromJson(it.attachStr, SongPlayEvent::class.java)
-                                val song = event.data.playMusicInfo
-                                song.operator = event.data.operatorInfo
-                                ALog.i(TAG, "onSongResumed")
-                                listeners.forEach { listener ->
-                                    listener.onSongResumed(song)
-                                }
-                            }
-                        }
+    private val songPlayEventHandler =
+        NECustomMessageDecoder.MessageHandler<SongPlayEvent> { event ->
+            val data = event?.data ?: return@MessageHandler
+            NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.MESSAGE_SONG)
+            val song = data.playMusicInfo
+            song.operator = data.operatorInfo
+            when (event.type) {
+                OrderSongCmd.START_PLAY_CMD -> {
+                    ALog.i(TAG, "onSongStarted")
+                    song.songId?.let { songCache.onSongPlayed(it, song.channel) }
+                    listeners.forEach { listener ->
+                        listener.onSongStarted(song)
+                    }
+                }
+                OrderSongCmd.PAUSE_PLAY_CMD -> {
+                    ALog.i(TAG, "onSongPaused")
+                    listeners.forEach { listener ->
+                        listener.onSongPaused(song)
+                    }
+                }
+                OrderSongCmd.RESUME_PLAY_CMD -> {
+                    ALog.i(TAG, "onSongResumed")
+                    listeners.forEach { listener ->
+                        listener.onSongResumed(song)
                     }
                 }
             }
         }
+
+    private val songListChangedHandler = NECustomMessageDecoder.MessageHandler<Any> {
+        ALog.i(TAG, "onOrderedSongListChanged")
+        preloadScheduler.refreshLater()
+        NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.MESSAGE_SONG)
+        listeners.forEach { listener ->
+            listener.onOrderedSongListChanged()
+        }
     }
 
     init {
@@ -151,6 +147,7 @@ object NEOrderSongService {
     ) {
         NEOrderSongService.appKey = appKey
         TimerTaskUtil.init()
+        songCache.init(context)
         orderSongRepository.initialize(context, orderSongServerUrl)
         orderSongRepository.addHeader("appKey", appKey)
         getSongDynamicTokenUntilSuccess(object :
@@ -373,10 +370,18 @@ object NEOrderSongService {
     fun queryPlayingSongInfo(
         callback: NetRequestCallback<OrderSong>
     ) {
-        coroutineScope?.launch {
+        val scope = coroutineScope
+        val recordId = liveRecordId
+        // 调用方可能在等这次回调，发不出请求时也要回调失败
+        if (scope == null || recordId == null) {
+            ALog.e(TAG, "queryPlayingSongInfo not ready,liveRecordId:$recordId")
+            callback.error(NEVoiceRoomErrorCode.FAILURE, "not ready")
+            return
+        }
+        scope.launch {
             Request.request(
                 {
-                    liveRecordId?.let { orderSongRepository.queryPlayingSongInfo(liveRecordId!!) }
+                    orderSongRepository.queryPlayingSongInfo(recordId)
                 },
                 success = {
                     callback.success(it)
@@ -437,33 +442,60 @@ object NEOrderSongService {
     }
 
     fun addListener(listener: NEOrderSongListener) {
-        listeners.add(listener)
-        roomUuid?.let {
-            val roomContext =
-                NERoomKit.instance.getService(NERoomService::class.java).getRoomContext(roomUuid!!)
-            if (roomContext != null) {
-                roomContext.addRoomListener(roomListener)
-                hasAddRoomListen = true
-            } else {
-                ALog.e(TAG, "addListener roomContext==null")
-            }
+        if (listeners.isEmpty()) {
+            registerMessageHandlers()
         }
+        listeners.add(listener)
     }
 
     fun removeListener(listener: NEOrderSongListener) {
         listeners.remove(listener)
-        if (listeners.isEmpty() && hasAddRoomListen) {
-            roomUuid?.let {
-                val roomContext =
-                    NERoomKit.instance.getService(NERoomService::class.java)
-                        .getRoomContext(roomUuid!!)
-                if (roomContext != null) {
-                    roomContext.removeRoomListener(roomListener)
-                    hasAddRoomListen = false
-                } else {
-                    ALog.e(TAG, "removeListener roomContext==null")
-                }
-            }
+        if (listeners.isEmpty()) {
+            unregisterMessageHandlers()
+        }
+    }
+
+    private fun registerMessageHandlers() {
+        intArrayOf(
+            OrderSongCmd.ORDER_SONG_CMD,
+            OrderSongCmd.CANCEL_ORDER_SONG_CMD,
+            OrderSongCmd.SWITCH_SONG_CMD
+        ).forEach {
+            NECustomMessageDecoder.register(it, OrderSongEvent::class.java, orderSongEventHandler)
+        }
+        intArrayOf(
+            OrderSongCmd.START_PLAY_CMD,
+            OrderSongCmd.PAUSE_PLAY_CMD,
+            OrderSongCmd.RESUME_PLAY_CMD
+        ).forEach {
+            NECustomMessageDecoder.register(it, SongPlayEvent::class.java, songPlayEventHandler)
+        }
+        // 列表变化只关心 type，不解析消息体
+        NECustomMessageDecoder.register(
+            OrderSongCmd.ORDERED_SONG_LIST_CHANGED_CMD,
+            null,
+            songListChangedHandler
+        )
+    }
+
+    private fun unregisterMessageHandlers() {
+        intArrayOf(
+            OrderSongCmd.ORDER_SONG_CMD,
+            OrderSongCmd.CANCEL_ORDER_SONG_CMD,
+            OrderSongCmd.SWITCH_SONG_CMD
+        ).forEach {
+            NECustomMessageDecoder.unregister(it, orderSongEventHandler)
+        }
+        intArrayOf(
+            OrderSongCmd.START_PLAY_CMD,
+            OrderSongCmd.PAUSE_PLAY_CMD,
+            OrderSongCmd.RESUME_PLAY_CMD
+        ).forEach {
+            NECustomMessageDecoder.unregister(it, songPlayEventHandler)
         }
+        NECustomMessageDecoder.unregister(
+            OrderSongCmd.ORDERED_SONG_LIST_CHANGED_CMD,
+            songListChangedHandler
+        )
     }
 }
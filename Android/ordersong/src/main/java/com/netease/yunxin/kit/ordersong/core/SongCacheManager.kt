@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.ordersong.core
+
+import android.content.Context
+import android.text.TextUtils
+import com.netease.yunxin.kit.alog.ALog
+import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia
+import com.netease.yunxin.kit.copyrightedmedia.api.SongResType
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 已下载歌曲的磁盘占用管理
+ * - 记录每首歌的伴奏、原唱文件、大小和最近使用时间，索引为二进制文件，变化后合并写入
+ * - 总大小超过 [budgetBytes] 时按最近使用时间淘汰，排队下载中和正在播放的歌不淘汰
+ * - 只淘汰 [canRedownload] 的歌；版权 SDK 对已有下载记录的歌可能直接回调成功而不重新下载，
+ *   默认不淘汰，只记录占用
+ * - 只管理经过这里记录的歌，之前下载的文件不在索引中，不会被删除
+ * - 淘汰只删文件，SDK 的下载记录仍在，取歌曲文件统一用 [getSongUri]，文件不存在时按未下载处理
+ * - 文件操作都在单独的线程，索引状态只在该线程读写
+ */
+class SongCacheManager internal constructor(
+    private val resolver: (songId: String, channel: Int) -> List<String> = ::songFiles,
+    private val canRedownload: (songId: String, channel: Int) -> Boolean = { _, _ -> false }
+) {
+
+    private class Entry(
+        val songId: String,
+        val channel: Int,
+        val files: List<String>,
+        val size: Long,
+        var lastUsed: Long
+    )
+
+    private val executor = Executors.newSingleThreadScheduledExecutor {
+        Thread(it, THREAD_NAME).apply { isDaemon = true }
+    }
+
+    // 按最近使用排序，最久未用的在前
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var totalBytes = 0L
+    private var indexFile: File? = null
+    private var saveTask: ScheduledFuture<*>? = null
+
+    @Volatile
+    private var protectedKeys: Set<String> = emptySet()
+
+    @Volatile
+    private var playingKey: String? = null
+
+    /** 磁盘预算，默认 [DEFAULT_BUDGET_BYTES] */
+    @Volatile
+    var budgetBytes = DEFAULT_BUDGET_BYTES
+        set(value) {
+            field = value
+            executor.execute { trim() }
+        }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    fun init(context: Context) {
+        init(File(context.applicationContext.filesDir, INDEX_FILE_NAME))
+    }
+
+    internal fun init(file: File) {
+        executor.execute {
+            indexFile = file
+            load(file)
+        }
+    }
+
+    /**
+     * 等待之前的操作完成，并立即写入索引
+     */
+    internal fun flush() {
+        executor.submit {
+            saveTask?.cancel(false)
+            save()
+        }.get()
+    }
+
+    /**
+     * 需要一首歌时记录是否已在本地
+     */
+    fun recordLookup(hit: Boolean) {
+        if (hit) hits.incrementAndGet() else misses.incrementAndGet()
+    }
+
+    /** 命中率，没有记录时为 0 */
+    fun getHitRatio(): Float {
+        val hit = hits.get()
+        val total = hit + misses.get()
+        return if (total == 0L) 0f else hit.toFloat() / total
+    }
+
+    /**
+     * 排队下载中的歌，不淘汰
+     */
+    fun setProtectedSongs(keys: Set<String>) {
+        protectedKeys = keys
+    }
+
+    /**
+     * 下载完成，记录文件和大小
+     */
+    fun onSongPreloaded(songId: String, channel: Int) {
+        val now = System.currentTimeMillis()
+        executor.execute {
+            val files = resolver(songId, channel)
+            if (files.isEmpty()) {
+                return@execute
+            }
+            val key = key(songId, channel)
+            entries.remove(key)?.let { totalBytes -= it.size }
+            val entry = Entry(songId, channel, files, files.sumOf { sizeOf(File(it)) }, now)
+            entries[key] = entry
+            totalBytes += entry.size
+            trim()
+            saveLater()
+        }
+    }
+
+    /**
+     * 开始播放，更新最近使用时间，播放期间不淘汰
+     */
+    fun onSongPlayed(songId: String, channel: Int) {
+        val key = key(songId, channel)
+        playingKey = key
+        val now = System.currentTimeMillis()
+        executor.execute {
+            entries[key]?.let {
+                it.lastUsed = now
+                saveLater()
+            }
+        }
+    }
+
+    /**
+     * 用过一次，更新最近使用时间
+     */
+    fun touch(songId: String, channel: Int) {
+        val now = System.currentTimeMillis()
+        executor.execute {
+            entries[key(songId, channel)]?.let {
+                it.lastUsed = now
+                saveLater()
+            }
+        }
+    }
+
+    private fun trim() {
+        if (totalBytes <= budgetBytes) {
+            return
+        }
+        val keep = protectedKeys
+        val playing = playingKey
+        val iterator = entries.entries.iterator()
+        while (totalBytes > budgetBytes && iterator.hasNext()) {
+            val (key, entry) = iterator.next()
+            if (key in keep || key == playing || !canRedownload(entry.songId, entry.channel)) {
+                continue
+            }
+            entry.files.forEach { delete(File(it)) }
+            iterator.remove()
+            totalBytes -= entry.size
+            ALog.i(TAG, "evict $key size:${entry.size},total:$totalBytes")
+        }
+        if (totalBytes > budgetBytes) {
+            ALog.i(TAG, "over budget total:$totalBytes,budget:$budgetBytes")
+        }
+        saveLater()
+    }
+
+    private fun saveLater() {
+        if (saveTask?.isDone == false) {
+            return
+        }
+        saveTask = executor.schedule({ save() }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS)
+    }
+
+    private fun save() {
+        val target = indexFile ?: return
+        val temp = File(target.path + TEMP_SUFFIX)
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { out ->
+                out.writeInt(MAGIC)
+                out.writeInt(VERSION)
+                out.writeInt(entries.size)
+                entries.values.forEach {
+                    out.writeUTF(it.songId)
+                    out.writeInt(it.channel)
+                    out.writeLong(it.size)
+                    out.writeLong(it.lastUsed)
+                    out.writeInt(it.files.size)
+                    it.files.forEach { path -> out.writeUTF(path) }
+                }
+            }
+            if (!temp.renameTo(target)) {
+                throw IOException("rename failed")
+            }
+        } catch (e: Exception) {
+            ALog.e(TAG, "save index error:${e.message}")
+            temp.delete()
+        }
+    }
+
+    private fun load(file: File) {
+        if (!file.exists()) {
+            return
+        }
+        try {
+            val loaded = ArrayList<Entry>()
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw IOException("unknown index format")
+                }
+                repeat(input.readInt()) {
+                    val songId = input.readUTF()
+                    val channel = input.readInt()
+                    val size = input.readLong()
+                    val lastUsed = input.readLong()
+                    val files = List(input.readInt()) { input.readUTF() }
+                    loaded.add(Entry(songId, channel, files, size, lastUsed))
+                }
+            }
+            // 文件已被删除的不再记录
+            loaded.filter { entry -> entry.files.all { File(it).exists() } }
+                .sortedBy { it.lastUsed }
+                .forEach {
+                    entries[key(it.songId, it.channel)] = it
+                    totalBytes += it.size
+                }
+            ALog.i(TAG, "load index songs:${entries.size},total:$totalBytes")
+            trim()
+        } catch (e: Exception) {
+            ALog.e(TAG, "load index error:${e.message}")
+            file.delete()
+        }
+    }
+
+    companion object {
+        private const val TAG = "SongCacheManager"
+        private const val THREAD_NAME = "SongCache"
+        private const val INDEX_FILE_NAME = "ordersong_cache.idx"
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val MAGIC = 0x53434931 // "SCI1"
+        private const val VERSION = 1
+        private const val SAVE_DELAY_MS = 2_000L
+        const val DEFAULT_BUDGET_BYTES = 500L * 1024 * 1024
+
+        internal fun key(songId: String, channel: Int) = "$songId:$channel"
+
+        /**
+         * 歌曲的伴奏、原唱文件，没有下载的不包含在内
+         */
+        private fun songFiles(songId: String, channel: Int): List<String> {
+            return listOf(SongResType.TYPE_ACCOMP, SongResType.TYPE_ORIGIN)
+                .mapNotNull { getSongUri(songId, channel, it) }
+                .distinct()
+        }
+
+        /**
+         * 歌曲文件路径，代替 NECopyrightedMedia.getSongURI；没有下载或已被淘汰时返回 null
+         * @param type [SongResType]
+         */
+        @JvmStatic
+        fun getSongUri(songId: String, channel: Int, type: Int): String? {
+            val uri = NECopyrightedMedia.getInstance().getSongURI(songId, channel, type)
+            return if (!TextUtils.isEmpty(uri) && File(uri).exists()) uri else null
+        }
+
+        /**
+         * 文件都还在，淘汰后 SDK 可能仍认为已下载，以此为准
+         */
+        @JvmStatic
+        fun filesExist(songId: String, channel: Int): Boolean {
+            return songFiles(songId, channel).isNotEmpty()
+        }
+
+        private fun sizeOf(file: File): Long {
+            return if (file.isDirectory) {
+                file.listFiles()?.sumOf { sizeOf(it) } ?: 0L
+            } else {
+                file.length()
+            }
+        }
+
+        private fun delete(file: File) {
+            if (file.isDirectory) {
+                file.listFiles()?.forEach { delete(it) }
+            }
+            if (!file.delete() && file.exists()) {
+                ALog.e(TAG, "delete failed:${file.path}")
+            }
+        }
+    }
+}
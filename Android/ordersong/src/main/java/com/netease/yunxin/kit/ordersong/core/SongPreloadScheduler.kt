@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.ordersong.core
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.os.Handler
+import android.os.Looper
+import com.netease.yunxin.kit.alog.ALog
+import com.netease.yunxin.kit.common.network.NetRequestCallback
+import com.netease.yunxin.kit.common.utils.NetworkUtils
+import com.netease.yunxin.kit.common.utils.XKitUtils
+import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia
+import com.netease.yunxin.kit.copyrightedmedia.api.NEErrorCode
+import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback
+import com.netease.yunxin.kit.ordersong.core.SongCacheManager.Companion.key
+import com.netease.yunxin.kit.ordersong.core.model.NEOrderSong
+import com.netease.yunxin.kit.ordersong.core.model.Song
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * 按已点列表提前下载接下来要唱的歌，切歌时下一首通常已经在本地，可以直接上报准备好
+ * - 列表变化（点歌、删歌、切歌、列表变化消息）后去抖拉取一次已点列表，按顺序取前若干首
+ * - Wi-Fi 下最多提前 [WIFI_PRELOAD_COUNT] 首、同时下载 [WIFI_MAX_RUNNING] 首；移动网络分别为
+ *   [CELLULAR_PRELOAD_COUNT]、1；没有网络时不下载
+ * - 按歌曲时长估算占用，提前下载的总量不超过当前网络的预算，第一首不受预算限制
+ * - 歌曲被删或排到窗口外时，还没开始的直接移除；已经开始的 SDK 不支持中断，完成后不再计入
+ * - [preloadNow] 用于马上要播的歌，不受数量和预算限制，与进行中的同一首歌共用一次下载
+ * - 下载完成后交给 [cache] 记录；已点列表中和正在下载的歌不会被 [cache] 淘汰
+ * - SDK 回调完成但文件不存在（记录还在、文件已被 [cache] 淘汰）时重新下载一次，仍然没有文件按失败回调
+ * - 下载进度合并后回到主线程，主线程处理上一次进度前新到的进度只保留最新一个
+ * - 所有状态只在主线程读写
+ */
+class SongPreloadScheduler internal constructor(
+    private val fetchOrderedSongs: (NetRequestCallback<List<NEOrderSong>>) -> Unit,
+    private val cache: SongCacheManager,
+    private val source: SongSource = CopyrightedSongSource,
+    private val mainThread: MainThread = HandlerMainThread(),
+    private val network: Network = XKitNetwork
+) {
+
+    /**
+     * 歌曲下载来源
+     */
+    interface SongSource {
+        fun isPreloaded(songId: String, channel: Int): Boolean
+
+        fun preload(songId: String, channel: Int, callback: NESongPreloadCallback)
+    }
+
+    private object CopyrightedSongSource : SongSource {
+        override fun isPreloaded(songId: String, channel: Int): Boolean {
+            // 被淘汰的歌 SDK 仍可能认为已下载，以文件为准
+            return NECopyrightedMedia.getInstance().isSongPreloaded(songId, channel) &&
+                SongCacheManager.filesExist(songId, channel)
+        }
+
+        override fun preload(songId: String, channel: Int, callback: NESongPreloadCallback) {
+            NECopyrightedMedia.getInstance().preloadSong(songId, channel, callback)
+        }
+    }
+
+    /**
+     * 主线程任务，测试中手动执行
+     */
+    internal interface MainThread {
+        fun post(task: Runnable)
+
+        fun postDelayed(task: Runnable, delayMs: Long)
+
+        fun remove(task: Runnable)
+    }
+
+    private class HandlerMainThread : MainThread {
+        private val handler = Handler(Looper.getMainLooper())
+
+        override fun post(task: Runnable) {
+            handler.post(task)
+        }
+
+        override fun postDelayed(task: Runnable, delayMs: Long) {
+            handler.postDelayed(task, delayMs)
+        }
+
+        override fun remove(task: Runnable) {
+            handler.removeCallbacks(task)
+        }
+    }
+
+    /**
+     * 当前网络和网络变化
+     */
+    internal interface Network {
+        fun isConnected(): Boolean
+
+        fun isWifi(): Boolean
+
+        fun register(listener: NetworkUtils.NetworkStateListener)
+
+        fun unregister(listener: NetworkUtils.NetworkStateListener)
+    }
+
+    private object XKitNetwork : Network {
+        override fun isConnected(): Boolean = NetworkUtils.isConnected()
+
+        override fun isWifi(): Boolean {
+            val manager = XKitUtils.getApplicationContext()
+                ?.getSystemService(Context.CONNECTIVITY_SERVICE) as? ConnectivityManager
+                ?: return false
+            @Suppress("DEPRECATION")
+            val info = manager.activeNetworkInfo ?: return false
+            @Suppress("DEPRECATION")
+            return info.isConnected && info.type == ConnectivityManager.TYPE_WIFI
+        }
+
+        override fun register(listener: NetworkUtils.NetworkStateListener) {
+            NetworkUtils.registerNetworkStatusChangedListener(listener)
+        }
+
+        override fun unregister(listener: NetworkUtils.NetworkStateListener) {
+            NetworkUtils.unregisterNetworkStatusChangedListener(listener)
+        }
+    }
+
+    private class Task(val songId: String, val channel: Int) {
+        val key = key(songId, channel)
+        val waiters = ArrayList<NESongPreloadCallback>()
+        var running = false
+
+        // 不在预加载窗口内了，完成后只通知等待方
+        var cancelled = false
+
+        // 完成后文件不存在，已经重新下载过一次
+        var retried = false
+
+        // SDK 线程写入的最新进度，已经投递到主线程、还没处理时不再投递
+        @Volatile
+        var progress = 0f
+        val progressPosted = AtomicBoolean()
+    }
+
+    private val refreshTask = Runnable { refresh() }
+    private val tasks = LinkedHashMap<String, Task>()
+    private var orderedKeys: Set<String> = emptySet()
+    private var started = false
+    private var wifi = false
+    private var connected = true
+    private var generation = 0
+
+    private val networkStateListener = object : NetworkUtils.NetworkStateListener {
+        override fun onConnected(networkType: NetworkUtils.NetworkType?) {
+            mainThread.post {
+                connected = true
+                wifi = networkType == NetworkUtils.NetworkType.NETWORK_WIFI
+                refreshLater()
+            }
+        }
+
+        override fun onDisconnected() {
+            mainThread.post { connected = false }
+        }
+    }
+
+    /**
+     * 进入房间后开始
+     */
+    fun start() {
+        if (started) {
+            return
+        }
+        started = true
+        connected = network.isConnected()
+        wifi = network.isWifi()
+        network.register(networkStateListener)
+        refreshLater()
+    }
+
+    /**
+     * 离开房间，未开始的任务全部移除
+     */
+    fun stop() {
+        if (!started) {
+            return
+        }
+        started = false
+        generation++
+        network.unregister(networkStateListener)
+        mainThread.remove(refreshTask)
+        cancelWhere { it.waiters.isEmpty() }
+    }
+
+    /**
+     * 已点列表可能有变化，去抖后重新拉取
+     */
+    fun refreshLater() {
+        if (!started) {
+            return
+        }
+        mainThread.remove(refreshTask)
+        mainThread.postDelayed(refreshTask, REFRESH_DELAY)
+    }
+
+    /**
+     * 歌被删了，不等拉列表先取消
+     */
+    fun onSongDeleted(song: Song) {
+        val task = tasks[key(song.songId, song.channel)]
+        if (task != null && task.waiters.isEmpty()) {
+            cancel(task)
+        }
+        refreshLater()
+    }
+
+    /**
+     * 切歌后下一首马上要唱，立即下载
+     */
+    fun onSongSwitched(nextSong: Song?) {
+        if (nextSong != null) {
+            preloadNow(nextSong.songId, nextSong.channel, null)
+        }
+        refreshLater()
+    }
+
+    /**
+     * 立即下载一首歌，已在本地时直接回调完成；同一首歌正在下载时等待同一结果
+     */
+    fun preloadNow(songId: String, channel: Int, callback: NESongPreloadCallback?) {
+        val hit = source.isPreloaded(songId, channel)
+        cache.recordLookup(hit)
+        if (hit) {
+            cache.touch(songId, channel)
+            callback?.onPreloadComplete(songId, channel, NEErrorCode.OK, "")
+            return
+        }
+        val task = tasks.getOrPut(key(songId, channel)) { Task(songId, channel) }
+        task.cancelled = false
+        callback?.let { task.waiters.add(it) }
+        if (!task.running) {
+            run(task)
+        }
+        updateProtected()
+    }
+
+    private fun refresh() {
+        if (!started) {
+            return
+        }
+        val current = generation
+        fetchOrderedSongs(object : NetRequestCallback<List<NEOrderSong>> {
+            override fun success(info: List<NEOrderSong>?) {
+                mainThread.post {
+                    if (started && current == generation) {
+                        schedule(info?.map { it.orderSong } ?: emptyList())
+                    }
+                }
+            }
+
+            override fun error(code: Int, msg: String?) {
+                ALog.e(TAG, "fetch ordered songs error code:$code,msg:$msg")
+            }
+        })
+    }
+
+    private fun schedule(songs: List<Song>) {
+        orderedKeys = songs.mapNotNullTo(HashSet()) { song ->
+            song.songId?.let { key(it, song.channel) }
+        }
+        val wanted = LinkedHashMap<String, Task>()
+        if (connected) {
+            val maxCount = if (wifi) WIFI_PRELOAD_COUNT else CELLULAR_PRELOAD_COUNT
+            val budget = if (wifi) WIFI_BUDGET_BYTES else CELLULAR_BUDGET_BYTES
+            var bytes = 0L
+            for (song in songs) {
+                if (wanted.size >= maxCount) {
+                    break
+                }
+                val songId = song.songId ?: continue
+                if (source.isPreloaded(songId, song.channel)) {
+                    continue
+                }
+                val estimated = estimateBytes(song.songTime)
+                if (wanted.isNotEmpty() && bytes + estimated > budget) {
+                    break
+                }
+                bytes += estimated
+                val key = key(songId, song.channel)
+                wanted[key] = tasks[key] ?: Task(songId, song.channel)
+            }
+        }
+        // 不在窗口内的：没有人等的移除，正在下载的标记取消
+        cancelWhere { !wanted.containsKey(it.key) && it.waiters.isEmpty() }
+        // 按列表顺序排在前面，先下载靠前的
+        val others = tasks.values.filter { !wanted.containsKey(it.key) }
+        tasks.clear()
+        wanted.values.forEach {
+            it.cancelled = false
+            tasks[it.key] = it
+        }
+        others.forEach { tasks[it.key] = it }
+        updateProtected()
+        ALog.i(TAG, "schedule wifi:$wifi,songs:${songs.size},wanted:${wanted.keys}")
+        runPending()
+    }
+
+    private fun runPending() {
+        val maxRunning = if (wifi) WIFI_MAX_RUNNING else CELLULAR_MAX_RUNNING
+        // 取消的下载还在占用带宽，同样计数
+        var running = tasks.values.count { it.running }
+        for (task in tasks.values.toList()) {
+            if (running >= maxRunning) {
+                return
+            }
+            if (!task.running && !task.cancelled) {
+                run(task)
+                running++
+            }
+        }
+    }
+
+    private fun run(task: Task) {
+        task.running = true
+        source.preload(
+            task.songId,
+            task.channel,
+            object : NESongPreloadCallback {
+                override fun onPreloadStart(songId: String, channel: Int) {
+                    mainThread.post {
+                        task.waiters.forEach { it.onPreloadStart(songId, channel) }
+                    }
+                }
+
+                override fun onPreloadProgress(songId: String, channel: Int, progress: Float) {
+                    task.progress = progress
+                    if (!task.progressPosted.compareAndSet(false, true)) {
+                        return
+                    }
+                    mainThread.post {
+                        task.progressPosted.set(false)
+                        val latest = task.progress
+                        task.waiters.forEach { it.onPreloadProgress(songId, channel, latest) }
+                    }
+                }
+
+                override fun onPreloadComplete(
+                    songId: String,
+                    channel: Int,
+                    errorCode: Int,
+                    msg: String?
+                ) {
+                    mainThread.post { onComplete(task, errorCode, msg) }
+                }
+            }
+        )
+    }
+
+    private fun onComplete(task: Task, completeCode: Int, completeMsg: String?) {
+        var errorCode = completeCode
+        var msg = completeMsg
+        if (errorCode == NEErrorCode.OK && !source.isPreloaded(task.songId, task.channel)) {
+            if (!task.retried) {
+                ALog.i(TAG, "preload ${task.key} complete but files missing, retry")
+                task.retried = true
+                run(task)
+                return
+            }
+            errorCode = ERROR_FILES_MISSING
+            msg = "song files missing"
+        }
+        if (tasks[task.key] === task) {
+            tasks.remove(task.key)
+        }
+        if (errorCode == NEErrorCode.OK) {
+            cache.onSongPreloaded(task.songId, task.channel)
+        } else {
+            ALog.e(TAG, "preload ${task.key} error code:$errorCode,msg:$msg")
+        }
+        updateProtected()
+        task.waiters.forEach {
+            it.onPreloadComplete(task.songId, task.channel, errorCode, msg)
+        }
+        task.waiters.clear()
+        if (started) {
+            runPending()
+        }
+    }
+
+    private fun updateProtected() {
+        cache.setProtectedSongs(orderedKeys + tasks.keys)
+    }
+
+    private fun cancel(task: Task) {
+        if (task.running) {
+            task.cancelled = true
+        } else {
+            tasks.remove(task.key)
+        }
+    }
+
+    private fun cancelWhere(predicate: (Task) -> Boolean) {
+        tasks.values.filter(predicate).forEach { cancel(it) }
+    }
+
+    companion object {
+        private const val TAG = "SongPreloadScheduler"
+        internal const val REFRESH_DELAY = 300L
+
+        /** 下载完成但文件不存在 */
+        const val ERROR_FILES_MISSING = -1
+        const val WIFI_PRELOAD_COUNT = 3
+        const val CELLULAR_PRELOAD_COUNT = 1
+        internal const val WIFI_MAX_RUNNING = 2
+        internal const val CELLULAR_MAX_RUNNING = 1
+        internal const val WIFI_BUDGET_BYTES = 100L * 1024 * 1024
+        internal const val CELLULAR_BUDGET_BYTES = 30L * 1024 * 1024
+
+        // 伴奏、原唱两轨，按 320kbps 估算
+        private const val BYTES_PER_SECOND = 2 * 40L * 1024
+        private const val DEFAULT_SONG_BYTES = 20L * 1024 * 1024
+
+        private fun estimateBytes(songTimeMs: Long): Long {
+            return if (songTimeMs > 0) songTimeMs / 1000 * BYTES_PER_SECOND else DEFAULT_SONG_BYTES
+        }
+    }
+}
@@ -12,7 +12,9 @@ import com.netease.yunxin.kit.common.network.ServiceCreator
 import com.netease.yunxin.kit.ordersong.core.model.NEOrderSong
 import com.netease.yunxin.kit.ordersong.core.model.NEOrderSongDynamicToken
 import com.netease.yunxin.kit.ordersong.core.model.OrderSong
+import com.netease.yunxin.kit.ordersong.ui.BuildConfig
 import com.netease.yunxin.kit.roomkit.api.NERoomKit
+import com.netease.yunxin.kit.voiceroomkit.api.http.HttpCore
 import java.util.Locale
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -23,26 +25,19 @@ class OrderSongRepository {
         const val PAUSE = 2
     }
 
-    private val serviceCreator: ServiceCreator = ServiceCreator()
-    private val playSongServiceCreator: ServiceCreator = ServiceCreator()
+    private val headers = HttpCore.HeaderInterceptor()
 
     private lateinit var orderSongApi: OrderSongApi
 
     fun initialize(context: Context, orderSongServerUrl: String) {
-        serviceCreator.init(
-            context,
-            orderSongServerUrl,
-//            if (BuildConfig.DEBUG) ServiceCreator.LOG_LEVEL_BODY else ServiceCreator.LOG_LEVEL_BASIC,
-            ServiceCreator.LOG_LEVEL_BODY, // todo 目前测试包打的都是release包，新临时改下网络日志等级，方便排查问题
-            NERoomKit.getInstance().deviceId
-        )
-        serviceCreator.addHeader(ServiceCreator.ACCEPT_LANGUAGE_KEY, Locale.getDefault().language)
-        orderSongApi = serviceCreator.create(OrderSongApi::class.java)
+        headers.addDeviceHeaders(NERoomKit.getInstance().deviceId)
+        headers.addHeader(ServiceCreator.ACCEPT_LANGUAGE_KEY, Locale.getDefault().language)
+        orderSongApi = HttpCore.createRetrofit(orderSongServerUrl, headers, BuildConfig.DEBUG)
+            .create(OrderSongApi::class.java)
     }
 
     fun addHeader(key: String, value: String) {
-        serviceCreator.addHeader(key, value)
-        playSongServiceCreator.addHeader(key, value)
+        headers.addHeader(key, value)
     }
 
     suspend fun getSongToken(): Response<NEOrderSongDynamicToken> = withContext(
@@ -49,6 +49,26 @@ public class OrderSongModel {
 
   public OrderSongModel() {}
 
+  /** 拷贝，歌手列表共用 */
+  public OrderSongModel(OrderSongModel other) {
+    this.songId = other.songId;
+    this.songName = other.songName;
+    this.songCover = other.songCover;
+    this.singers = other.singers;
+    this.albumName = other.albumName;
+    this.albumCover = other.albumCover;
+    this.originType = other.originType;
+    this.channel = other.channel;
+    this.hasAccompany = other.hasAccompany;
+    this.hasOrigin = other.hasOrigin;
+    this.status = other.status;
+    this.downloadProgress = other.downloadProgress;
+    this.userUuid = other.userUuid;
+    this.orderId = other.orderId;
+    this.position = other.position;
+    this.songTime = other.songTime;
+  }
+
   @NonNull
   public String getSongId() {
     return songId;
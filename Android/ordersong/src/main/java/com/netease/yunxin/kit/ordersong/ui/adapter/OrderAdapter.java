@@ -26,10 +26,11 @@ import com.netease.yunxin.kit.copyrightedmedia.api.NEErrorCode;
 import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback;
 import com.netease.yunxin.kit.copyrightedmedia.api.SongResType;
 import com.netease.yunxin.kit.entertainment.common.utils.Utils;
+import com.netease.yunxin.kit.ordersong.core.SongCacheManager;
 import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel;
 import com.netease.yunxin.kit.ordersong.ui.R;
 import com.netease.yunxin.kit.ordersong.ui.databinding.OrderItemLayoutBinding;
-import com.netease.yunxin.kit.ordersong.ui.util.MediaUtils;
+import com.netease.yunxin.kit.ordersong.ui.util.SongMetadataCache;
 import com.netease.yunxin.kit.ordersong.ui.viewmodel.OrderSongViewModel;
 import java.util.List;
 
@@ -38,6 +39,10 @@ public class OrderAdapter extends CommonMoreAdapter<OrderSongModel, OrderItemLay
   private static final String TAG = "OrderAdapter";
   private OrderSongViewModel orderSongViewModel;
 
+  // 下载进度每帧最多刷新一次对应列表项，只走局部刷新
+  private final PreloadProgressAggregator progressAggregator =
+      new PreloadProgressAggregator(song -> refreshDataAndNotify(song, true));
+
   /** 歌曲已点 */
   private static final int ERR_SONG_ALREADY_ORDERED = 1011;
 
@@ -179,27 +184,32 @@ public class OrderAdapter extends CommonMoreAdapter<OrderSongModel, OrderItemLay
 
           @Override
           public void onPreloadProgress(String songId, int channel, float progress) {
-            copyrightSong.setDownloadProgress((int) (progress * 100));
-            refreshDataAndNotify(copyrightSong, true);
+            progressAggregator.onProgress(copyrightSong, progress);
           }
 
           @Override
           public void onPreloadComplete(String songId, int channel, int errorCode, String msg) {
+            progressAggregator.onComplete(copyrightSong);
             copyrightSong.setStatus(OrderSongModel.STATE_DOWNLOADED);
             copyrightSong.setDownloadProgress(100);
-            String filePath =
-                NECopyrightedMedia.getInstance()
-                    .getSongURI(songId, channel, SongResType.TYPE_ACCOMP);
-            if (TextUtils.isEmpty(filePath)) {
-              filePath =
-                  NECopyrightedMedia.getInstance()
-                      .getSongURI(songId, channel, SongResType.TYPE_ORIGIN);
-            }
-            if (filePath != null) {
-              copyrightSong.setSongTime(MediaUtils.getDuration(filePath));
-            }
             if (errorCode == NEErrorCode.OK) {
-              orderSong(copyrightSong);
+              String filePath =
+                  SongCacheManager.getSongUri(songId, channel, SongResType.TYPE_ACCOMP);
+              if (TextUtils.isEmpty(filePath)) {
+                filePath = SongCacheManager.getSongUri(songId, channel, SongResType.TYPE_ORIGIN);
+              }
+              // 点歌要带上时长，在后台解析后再点
+              SongMetadataCache.getInstance()
+                  .get(
+                      songId,
+                      channel,
+                      filePath,
+                      metadata -> {
+                        if (metadata != null) {
+                          copyrightSong.setSongTime(metadata.duration);
+                        }
+                        orderSong(copyrightSong);
+                      });
             } else {
               ToastUtils.INSTANCE.showShortToast(
                   context, context.getString(R.string.preloading_failure, errorCode, msg));
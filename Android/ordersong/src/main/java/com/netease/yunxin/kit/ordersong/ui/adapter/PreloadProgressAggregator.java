@@ -0,0 +1,106 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.adapter;
+
+import android.view.Choreographer;
+import androidx.annotation.MainThread;
+import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并歌曲下载进度回调：每首歌只在整数百分比变化时记录，每帧最多通知一次。
+ *
+ * <p>SDK 一次下载会回调上百次进度，逐次刷新列表项会让列表滚动卡顿。多首歌同时下载时按 songId 和 channel
+ * 分开记录，互不影响。只在主线程调用。
+ */
+@MainThread
+class PreloadProgressAggregator {
+
+  interface Listener {
+    /** 进度已写入 {@link OrderSongModel#setDownloadProgress}，需要刷新对应列表项 */
+    void onProgressChanged(OrderSongModel song);
+  }
+
+  /** 在下一帧执行，测试中手动执行 */
+  interface FrameScheduler {
+    void postFrame(Runnable task);
+  }
+
+  private static final class Entry {
+    final OrderSongModel song;
+    int dispatchedPercent = -1;
+    int pendingPercent = -1;
+
+    Entry(OrderSongModel song) {
+      this.song = song;
+    }
+  }
+
+  private final Listener listener;
+  private final FrameScheduler frameScheduler;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final List<Entry> dirty = new ArrayList<>();
+  private boolean frameScheduled;
+
+  private final Runnable dispatchTask = this::dispatch;
+
+  PreloadProgressAggregator(Listener listener) {
+    this(
+        listener,
+        task -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> task.run()));
+  }
+
+  PreloadProgressAggregator(Listener listener, FrameScheduler frameScheduler) {
+    this.listener = listener;
+    this.frameScheduler = frameScheduler;
+  }
+
+  void onProgress(OrderSongModel song, float progress) {
+    int percent = Math.max(0, Math.min(100, (int) (progress * 100)));
+    String key = key(song);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(song);
+      entries.put(key, entry);
+    }
+    if (percent <= entry.pendingPercent) {
+      return;
+    }
+    if (entry.pendingPercent == entry.dispatchedPercent) {
+      dirty.add(entry);
+    }
+    entry.pendingPercent = percent;
+    if (!frameScheduled) {
+      frameScheduled = true;
+      frameScheduler.postFrame(dispatchTask);
+    }
+  }
+
+  /** 下载结束，丢弃还没通知的进度，由调用方自行刷新最终状态 */
+  void onComplete(OrderSongModel song) {
+    Entry entry = entries.remove(key(song));
+    if (entry != null) {
+      dirty.remove(entry);
+    }
+  }
+
+  private void dispatch() {
+    frameScheduled = false;
+    List<Entry> batch = new ArrayList<>(dirty);
+    dirty.clear();
+    for (Entry entry : batch) {
+      entry.dispatchedPercent = entry.pendingPercent;
+      entry.song.setDownloadProgress(entry.dispatchedPercent);
+      listener.onProgressChanged(entry.song);
+    }
+  }
+
+  private static String key(OrderSongModel song) {
+    return song.getSongId() + ":" + song.getChannel();
+  }
+}
@@ -5,7 +5,9 @@
 package com.netease.yunxin.kit.ordersong.ui.fragment;
 
 import android.os.Bundle;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -24,6 +26,7 @@ import com.netease.yunxin.kit.ordersong.ui.adapter.OrderAdapter;
 import com.netease.yunxin.kit.ordersong.ui.adapter.OrderLoadMoreDecorator;
 import com.netease.yunxin.kit.ordersong.ui.databinding.OrderListLayoutBinding;
 import com.netease.yunxin.kit.ordersong.ui.viewmodel.OrderSongViewModel;
+import com.netease.yunxin.kit.ordersong.ui.viewmodel.SongSearchPipeline;
 import java.util.List;
 
 /** chat message read state page */
@@ -46,6 +49,7 @@ public class OrderListFragment extends BaseFragment {
     pageNum = 0;
     orderSongViewModel = new ViewModelProvider(requireActivity()).get(OrderSongViewModel.class);
     binding = OrderListLayoutBinding.inflate(inflater, container, false);
+    orderSongViewModel.getSearchPipeline().setListener(searchListener);
     initView();
     initData();
     return binding.getRoot();
@@ -64,10 +68,28 @@ public class OrderListFragment extends BaseFragment {
           }
           return false;
         });
+    binding.etSearch.addTextChangedListener(
+        new TextWatcher() {
+          @Override
+          public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+          @Override
+          public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+          @Override
+          public void afterTextChanged(Editable s) {
+            if (!isSearching) {
+              return;
+            }
+            binding.ivClear.setVisibility(TextUtils.isEmpty(s) ? View.GONE : View.VISIBLE);
+            orderSongViewModel.getSearchPipeline().onKeywordChanged(String.valueOf(s));
+          }
+        });
 
     binding.ivClear.setOnClickListener(
         view -> {
           isSearching = false;
+          orderSongViewModel.getSearchPipeline().cancel();
           pageNum = 0;
           adapter.clear();
           initData();
@@ -90,15 +112,17 @@ public class OrderListFragment extends BaseFragment {
   }
 
   private void onSearchSong() {
-    pageNum = 0;
-    adapter.clear();
-
-    if (!(String.valueOf(binding.etSearch.getText())).isEmpty()) {
+    String keyword = String.valueOf(binding.etSearch.getText());
+    if (!keyword.isEmpty()) {
       binding.ivClear.setVisibility(View.VISIBLE);
       isSearching = true;
-      searchMoreSong();
+      orderSongViewModel.getSearchPipeline().searchNow(keyword);
     } else {
       binding.ivClear.setVisibility(View.GONE);
+      isSearching = false;
+      orderSongViewModel.getSearchPipeline().cancel();
+      pageNum = 0;
+      adapter.clear();
       loadMoreSong();
     }
   }
@@ -129,28 +153,38 @@ public class OrderListFragment extends BaseFragment {
   }
 
   private void searchMoreSong() {
-    orderSongViewModel.searchSong(
-        String.valueOf(binding.etSearch.getText()),
-        pageNum,
-        20,
-        new NECopyrightedMedia.Callback<List<OrderSongModel>>() {
-          @Override
-          public void success(@Nullable List<OrderSongModel> info) {
-            if (info == null) {
-              return;
-            } else if (info.size() == 0) {
+    orderSongViewModel.getSearchPipeline().loadMore();
+  }
+
+  @Override
+  public void onDestroyView() {
+    orderSongViewModel.getSearchPipeline().setListener(null);
+    orderSongViewModel.getSearchPipeline().cancel();
+    super.onDestroyView();
+  }
+
+  private final SongSearchPipeline.Listener searchListener =
+      new SongSearchPipeline.Listener() {
+        @Override
+        public void onResult(
+            String keyword, int pageNum, List<OrderSongModel> songs, boolean reset) {
+          if (!isSearching) {
+            return;
+          }
+          if (reset) {
+            adapter.clear();
+            if (songs.isEmpty()) {
               ToastX.showShortToast(R.string.did_not_find_right_result);
             }
-            adapter.append(info);
-            pageNum++;
           }
+          adapter.append(songs);
+        }
 
-          @Override
-          public void error(int code, @Nullable String msg) {
-            ALog.e("searchSong fail:" + code + " " + msg);
-          }
-        });
-  }
+        @Override
+        public void onError(String keyword, int code, @Nullable String msg) {
+          ALog.e("searchSong fail:" + code + " " + msg);
+        }
+      };
 
   private View.OnFocusChangeListener onFocusChangeListener =
       new View.OnFocusChangeListener() {
@@ -159,6 +193,7 @@ public class OrderListFragment extends BaseFragment {
           if (b && TextUtils.isEmpty(String.valueOf(binding.etSearch.getText()))) {
             pageNum = 0;
             isSearching = true;
+            orderSongViewModel.getSearchPipeline().cancel();
             adapter.clear();
           }
         }
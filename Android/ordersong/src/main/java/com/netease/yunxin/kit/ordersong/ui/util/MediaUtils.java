@@ -8,10 +8,14 @@ import android.media.MediaMetadataRetriever;
 import android.os.Build;
 
 import androidx.annotation.RequiresApi;
+import androidx.annotation.WorkerThread;
+
+import com.netease.yunxin.kit.alog.ALog;
 
 import java.io.IOException;
 
 public class MediaUtils {
+  private static final String TAG = "MediaUtils";
 
   @RequiresApi(api = Build.VERSION_CODES.GINGERBREAD_MR1)
   public static long getDuration(String path) {
@@ -28,4 +32,23 @@ public class MediaUtils {
     }
     return duration;
   }
+
+  /** 读取时长、标题和歌手，耗时较长，不要在主线程调用 */
+  @WorkerThread
+  public static SongMetadataCache.Metadata probe(String path) {
+    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+    try {
+      mmr.setDataSource(path);
+      String time = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+      return new SongMetadataCache.Metadata(
+          time != null ? Long.parseLong(time) : 0,
+          mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE),
+          mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST));
+    } catch (Exception ex) {
+      ALog.e(TAG, "probe error:" + ex.getMessage());
+      return null;
+    } finally {
+      mmr.release();
+    }
+  }
 }
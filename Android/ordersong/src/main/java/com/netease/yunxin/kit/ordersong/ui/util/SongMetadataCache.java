@@ -0,0 +1,268 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.netease.yunxin.kit.alog.ALog;
+import com.netease.yunxin.kit.entertainment.common.utils.Utils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已下载歌曲的时长、标题、歌手缓存
+ *
+ * <p>解析音频文件要打开、解析再释放 MediaMetadataRetriever，长歌曲要几十毫秒，放到单独的线程完成，结果在主线程回调。
+ * 按 songId、channel 和文件修改时间缓存，文件被替换后重新解析；结果写入 filesDir 下的索引文件，下次进入不用再解析。
+ */
+public class SongMetadataCache {
+  private static final String TAG = "SongMetadataCache";
+  private static final String INDEX_FILE_NAME = "ordersong_metadata.idx";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x534d4331; // "SMC1"
+  private static final int VERSION = 1;
+  private static final int MAX_ENTRIES = 500;
+  private static final long SAVE_DELAY_MS = 2000;
+
+  /** 歌曲信息，解析不到的字段为空 */
+  public static final class Metadata {
+    public final long duration;
+    @Nullable public final String title;
+    @Nullable public final String artist;
+
+    public Metadata(long duration, @Nullable String title, @Nullable String artist) {
+      this.duration = duration;
+      this.title = title;
+      this.artist = artist;
+    }
+  }
+
+  /** 解析音频文件，失败时返回 null */
+  public interface Probe {
+    @WorkerThread
+    @Nullable
+    Metadata probe(@NonNull String path);
+  }
+
+  public interface Callback {
+    /** 解析失败时为 null */
+    @MainThread
+    void onResult(@Nullable Metadata metadata);
+  }
+
+  private static final class Entry {
+    final long modified;
+    final Metadata metadata;
+
+    Entry(long modified, Metadata metadata) {
+      this.modified = modified;
+      this.metadata = metadata;
+    }
+  }
+
+  private static volatile SongMetadataCache instance;
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final Executor mainExecutor;
+  private final Probe probe;
+  @Nullable private final File indexFile;
+
+  // 只在 executor 线程读写，按最近使用排序
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+  private ScheduledFuture<?> saveTask;
+
+  // 统计信息
+  private volatile long hitCount;
+  private volatile long probeCount;
+
+  public static SongMetadataCache getInstance() {
+    if (instance == null) {
+      synchronized (SongMetadataCache.class) {
+        if (instance == null) {
+          instance =
+              new SongMetadataCache(
+                  MediaUtils::probe, new File(Utils.getApp().getFilesDir(), INDEX_FILE_NAME));
+        }
+      }
+    }
+    return instance;
+  }
+
+  SongMetadataCache(Probe probe, @Nullable File indexFile) {
+    this(probe, indexFile, new Handler(Looper.getMainLooper())::post);
+  }
+
+  SongMetadataCache(Probe probe, @Nullable File indexFile, Executor mainExecutor) {
+    this.probe = probe;
+    this.indexFile = indexFile;
+    this.mainExecutor = mainExecutor;
+    executor.execute(this::load);
+  }
+
+  /** 查询一首歌的信息，命中缓存时不解析文件，结果在主线程回调 */
+  public void get(String songId, int channel, String path, Callback callback) {
+    if (TextUtils.isEmpty(path)) {
+      callback.onResult(null);
+      return;
+    }
+    executor.execute(
+        () -> {
+          Metadata metadata = getSync(songId, channel, path);
+          mainExecutor.execute(() -> callback.onResult(metadata));
+        });
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getProbeCount() {
+    return probeCount;
+  }
+
+  /** 等待之前的查询完成，并立即写入索引 */
+  void flush() {
+    try {
+      executor
+          .submit(
+              () -> {
+                if (saveTask != null) {
+                  saveTask.cancel(false);
+                }
+                if (indexFile != null) {
+                  save();
+                }
+              })
+          .get();
+    } catch (InterruptedException | ExecutionException e) {
+      ALog.e(TAG, "flush error:" + e.getMessage());
+    }
+  }
+
+  @WorkerThread
+  private Metadata getSync(String songId, int channel, String path) {
+    File file = new File(path);
+    if (!file.exists()) {
+      return null;
+    }
+    String key = songId + ":" + channel;
+    long modified = file.lastModified();
+    Entry entry = entries.get(key);
+    if (entry != null && entry.modified == modified) {
+      hitCount++;
+      return entry.metadata;
+    }
+    probeCount++;
+    Metadata metadata = probe.probe(path);
+    if (metadata != null) {
+      entries.put(key, new Entry(modified, metadata));
+      saveLater();
+    }
+    return metadata;
+  }
+
+  private void saveLater() {
+    if (indexFile == null || (saveTask != null && !saveTask.isDone())) {
+      return;
+    }
+    saveTask = executor.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private void save() {
+    File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> item : entries.entrySet()) {
+        Entry entry = item.getValue();
+        out.writeUTF(item.getKey());
+        out.writeLong(entry.modified);
+        out.writeLong(entry.metadata.duration);
+        writeNullable(out, entry.metadata.title);
+        writeNullable(out, entry.metadata.artist);
+      }
+    } catch (IOException e) {
+      ALog.e(TAG, "save error:" + e.getMessage());
+      temp.delete();
+      return;
+    }
+    if (!temp.renameTo(indexFile)) {
+      ALog.e(TAG, "rename failed");
+      temp.delete();
+    }
+  }
+
+  private void load() {
+    if (indexFile == null || !indexFile.exists()) {
+      return;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("unknown index format");
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String key = in.readUTF();
+        long modified = in.readLong();
+        long duration = in.readLong();
+        String title = readNullable(in);
+        String artist = readNullable(in);
+        entries.put(key, new Entry(modified, new Metadata(duration, title, artist)));
+      }
+      ALog.i(TAG, "load entries:" + entries.size());
+    } catch (IOException e) {
+      ALog.e(TAG, "load error:" + e.getMessage());
+      entries.clear();
+      indexFile.delete();
+    }
+  }
+
+  private static void writeNullable(DataOutputStream out, @Nullable String value)
+      throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -10,7 +10,6 @@ import androidx.lifecycle.ViewModel;
 import com.netease.yunxin.kit.alog.ALog;
 import com.netease.yunxin.kit.common.network.NetRequestCallback;
 import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia;
-import com.netease.yunxin.kit.copyrightedmedia.api.NEErrorCode;
 import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback;
 import com.netease.yunxin.kit.copyrightedmedia.api.model.NECopyrightedSong;
 import com.netease.yunxin.kit.copyrightedmedia.impl.NECopyrightedEventHandler;
@@ -43,6 +42,7 @@ public class OrderSongViewModel extends ViewModel {
   private final MutableLiveData<Boolean> orderedSongOptionRefreshEvent = new MutableLiveData<>();
 
   private final MutableLiveData<NEOrderSong> switchSongEvent = new MutableLiveData<>();
+  private final SongSearchPipeline searchPipeline = new SongSearchPipeline(this::searchSong);
   private final NECopyrightedEventHandler handler =
       () -> orderSongService.getSongDynamicTokenUntilSuccess(null);
 
@@ -115,6 +115,11 @@ public class OrderSongViewModel extends ViewModel {
         });
   }
 
+  /** 点歌页的搜索，页面重建后仍保留缓存 */
+  public SongSearchPipeline getSearchPipeline() {
+    return searchPipeline;
+  }
+
   public void searchSong(
       String keyword,
       int pageNum,
@@ -148,41 +153,45 @@ public class OrderSongViewModel extends ViewModel {
   }
 
   public void preloadSong(String songId, int channel, NESongPreloadCallback callback) {
-    if (NECopyrightedMedia.getInstance().isSongPreloaded(songId, channel)) {
-      callback.onPreloadComplete(songId, channel, NEErrorCode.OK, "");
-    } else {
-      NECopyrightedMedia.getInstance()
-          .preloadSong(
-              songId,
-              channel,
-              new NESongPreloadCallback() {
-
-                @Override
-                public void onPreloadStart(String songId, int channel) {
-                  ALog.i("onPreloadStart songId = " + songId);
-                  callback.onPreloadStart(songId, channel);
-                }
+    // 经由预下载调度，与正在下载的同一首歌共用一次下载，完成后计入磁盘缓存
+    orderSongService
+        .getPreloadScheduler()
+        .preloadNow(
+            songId,
+            channel,
+            new NESongPreloadCallback() {
+              private int loggedStep = -1;
+
+              @Override
+              public void onPreloadStart(String songId, int channel) {
+                ALog.i("onPreloadStart songId = " + songId);
+                callback.onPreloadStart(songId, channel);
+              }
 
-                @Override
-                public void onPreloadProgress(String songId, int channel, float progress) {
+              @Override
+              public void onPreloadProgress(String songId, int channel, float progress) {
+                // 每 10% 记一次，避免每次回调都写日志
+                int step = (int) (progress * 10);
+                if (step > loggedStep) {
+                  loggedStep = step;
                   ALog.i("onPreloadProgress songId = " + songId + ", progress = " + progress);
-                  callback.onPreloadProgress(songId, channel, progress);
                 }
+                callback.onPreloadProgress(songId, channel, progress);
+              }
 
-                @Override
-                public void onPreloadComplete(
-                    String songId, int channel, int errorCode, String msg) {
-                  ALog.i(
-                      "onPreloadComplete songId = "
-                          + songId
-                          + ", errorCode = "
-                          + errorCode
-                          + ", msg = "
-                          + msg);
-                  callback.onPreloadComplete(songId, channel, errorCode, msg);
-                }
-              });
-    }
+              @Override
+              public void onPreloadComplete(
+                  String songId, int channel, int errorCode, String msg) {
+                ALog.i(
+                    "onPreloadComplete songId = "
+                        + songId
+                        + ", errorCode = "
+                        + errorCode
+                        + ", msg = "
+                        + msg);
+                callback.onPreloadComplete(songId, channel, errorCode, msg);
+              }
+            });
   }
 
   public void orderSong(
@@ -277,6 +286,8 @@ public class OrderSongViewModel extends ViewModel {
   @Override
   protected void onCleared() {
     NEOrderSongService.INSTANCE.removeListener(orderSongListener);
+    searchPipeline.setListener(null);
+    searchPipeline.cancel();
     super.onCleared();
   }
 }
@@ -0,0 +1,233 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.viewmodel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import com.netease.yunxin.kit.alog.ALog;
+import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia;
+import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 边输入边搜索
+ *
+ * <ul>
+ *   <li>输入停止 {@link #DEBOUNCE_MS} 后才搜索，回车立即搜索
+ *   <li>关键字变化后，之前的请求结果只写入缓存，不再回调，晚到的旧结果不会覆盖新结果
+ *   <li>按关键字和页码缓存最近 {@link #MAX_CACHED_PAGES} 页，返回一页后预取下一页
+ *   <li>同一关键字的各页按 songId、channel 去重
+ *   <li>缓存里的歌曲不直接交给列表，每次回调都是拷贝，列表修改下载状态、时长不影响缓存
+ * </ul>
+ *
+ * SDK 的搜索接口不支持取消，已发出的请求只能忽略其结果。只在主线程调用。
+ */
+@MainThread
+public class SongSearchPipeline {
+  private static final String TAG = "SongSearchPipeline";
+  static final long DEBOUNCE_MS = 300;
+  static final int MAX_CACHED_PAGES = 32;
+  public static final int PAGE_SIZE = 20;
+
+  /** 搜索接口 */
+  public interface Backend {
+    void search(
+        String keyword,
+        int pageNum,
+        int pageSize,
+        NECopyrightedMedia.Callback<List<OrderSongModel>> callback);
+  }
+
+  public interface Listener {
+    /**
+     * 当前关键字的一页结果
+     *
+     * @param songs 去掉之前页已有歌曲后的结果
+     * @param reset 是否为新关键字的第一页，需要先清空列表
+     */
+    void onResult(String keyword, int pageNum, List<OrderSongModel> songs, boolean reset);
+
+    void onError(String keyword, int code, @Nullable String msg);
+  }
+
+  private final Backend backend;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // 搜索结果切回主线程
+  private final Executor mainExecutor;
+  private final Runnable debounceTask = this::startSearch;
+  private final Set<String> inflight = new HashSet<>();
+  private final Set<String> seenSongs = new HashSet<>();
+  private final LinkedHashMap<String, List<OrderSongModel>> cache =
+      new LinkedHashMap<String, List<OrderSongModel>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<OrderSongModel>> eldest) {
+          return size() > MAX_CACHED_PAGES;
+        }
+      };
+
+  @Nullable private Listener listener;
+  @Nullable private String pendingKeyword;
+  @Nullable private String keyword;
+  private int nextPage;
+  // 等待返回后需要回调的页，-1 表示没有
+  private int waitingPage = -1;
+  private boolean reachedEnd;
+
+  public SongSearchPipeline(Backend backend) {
+    this.backend = backend;
+    this.mainExecutor = mainHandler::post;
+  }
+
+  SongSearchPipeline(Backend backend, Executor mainExecutor) {
+    this.backend = backend;
+    this.mainExecutor = mainExecutor;
+  }
+
+  public void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  /** 输入变化，去抖后搜索 */
+  public void onKeywordChanged(String keyword) {
+    mainHandler.removeCallbacks(debounceTask);
+    if (TextUtils.isEmpty(keyword)) {
+      cancel();
+      return;
+    }
+    pendingKeyword = keyword;
+    mainHandler.postDelayed(debounceTask, DEBOUNCE_MS);
+  }
+
+  /** 立即搜索，关键字未变且已有结果时不重复搜索 */
+  public void searchNow(String keyword) {
+    mainHandler.removeCallbacks(debounceTask);
+    pendingKeyword = keyword;
+    startSearch();
+  }
+
+  /** 加载当前关键字的下一页 */
+  public void loadMore() {
+    if (keyword == null || reachedEnd || waitingPage >= 0) {
+      return;
+    }
+    request(nextPage, true);
+  }
+
+  /** 丢弃等待中的搜索，之后返回的结果不再回调 */
+  public void cancel() {
+    mainHandler.removeCallbacks(debounceTask);
+    pendingKeyword = null;
+    keyword = null;
+    waitingPage = -1;
+    seenSongs.clear();
+  }
+
+  private void startSearch() {
+    String target = pendingKeyword;
+    pendingKeyword = null;
+    if (TextUtils.isEmpty(target) || (target.equals(keyword) && nextPage > 0)) {
+      return;
+    }
+    keyword = target;
+    nextPage = 0;
+    waitingPage = -1;
+    reachedEnd = false;
+    seenSongs.clear();
+    request(0, true);
+  }
+
+  private void request(int pageNum, boolean deliver) {
+    String target = keyword;
+    String key = cacheKey(target, pageNum);
+    List<OrderSongModel> cached = cache.get(key);
+    if (cached != null) {
+      if (deliver) {
+        deliver(target, pageNum, cached);
+      }
+      return;
+    }
+    if (deliver) {
+      waitingPage = pageNum;
+    }
+    if (!inflight.add(key)) {
+      // 预取中的同一页，返回后再回调
+      return;
+    }
+    backend.search(
+        target,
+        pageNum,
+        PAGE_SIZE,
+        new NECopyrightedMedia.Callback<List<OrderSongModel>>() {
+          @Override
+          public void success(@Nullable List<OrderSongModel> info) {
+            mainExecutor.execute(() -> onResponse(target, pageNum, info));
+          }
+
+          @Override
+          public void error(int code, @Nullable String msg) {
+            mainExecutor.execute(() -> onFailure(target, pageNum, code, msg));
+          }
+        });
+  }
+
+  private void onResponse(String target, int pageNum, @Nullable List<OrderSongModel> info) {
+    String key = cacheKey(target, pageNum);
+    inflight.remove(key);
+    List<OrderSongModel> songs = info != null ? info : Collections.emptyList();
+    cache.put(key, songs);
+    if (isWaiting(target, pageNum)) {
+      deliver(target, pageNum, songs);
+    }
+  }
+
+  private void onFailure(String target, int pageNum, int code, @Nullable String msg) {
+    inflight.remove(cacheKey(target, pageNum));
+    if (isWaiting(target, pageNum)) {
+      waitingPage = -1;
+      if (listener != null) {
+        listener.onError(target, code, msg);
+      }
+    } else {
+      ALog.i(TAG, "ignore failed search page:" + pageNum + ", code:" + code);
+    }
+  }
+
+  // 按关键字和页码判断，旧请求（包括预取）恰好是现在等待的页时同样可用
+  private boolean isWaiting(String target, int pageNum) {
+    return target.equals(keyword) && pageNum == waitingPage;
+  }
+
+  private void deliver(String target, int pageNum, List<OrderSongModel> songs) {
+    waitingPage = -1;
+    nextPage = pageNum + 1;
+    reachedEnd = songs.size() < PAGE_SIZE;
+    List<OrderSongModel> fresh = new ArrayList<>(songs.size());
+    for (OrderSongModel song : songs) {
+      if (seenSongs.add(song.getSongId() + ":" + song.getChannel())) {
+        fresh.add(new OrderSongModel(song));
+      }
+    }
+    if (listener != null) {
+      listener.onResult(target, pageNum, fresh, pageNum == 0);
+    }
+    if (!reachedEnd) {
+      request(nextPage, false);
+    }
+  }
+
+  private static String cacheKey(String keyword, int pageNum) {
+    return pageNum + "\n" + keyword;
+  }
+}
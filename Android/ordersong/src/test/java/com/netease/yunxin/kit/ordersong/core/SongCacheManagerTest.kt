@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.ordersong.core
+
+import com.netease.yunxin.kit.ordersong.core.SongCacheManager.Companion.key
+import java.io.File
+import java.nio.file.Files
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class SongCacheManagerTest {
+
+    private lateinit var dir: File
+    private lateinit var indexFile: File
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("songcache").toFile()
+        indexFile = File(dir, "ordersong_cache.idx")
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    // 每首歌一个伴奏、一个原唱文件，各 SONG_BYTES / 2
+    private fun files(songId: String, channel: Int): List<String> {
+        return listOf("accomp", "origin")
+            .map { File(dir, "${songId}_${channel}_$it") }
+            .filter { it.exists() }
+            .map { it.path }
+    }
+
+    private fun newManager(canRedownload: Boolean = true) =
+        SongCacheManager(this::files) { _, _ -> canRedownload }.apply {
+            budgetBytes = BUDGET_BYTES
+            init(indexFile)
+        }
+
+    private fun download(songId: String) {
+        listOf("accomp", "origin").forEach {
+            File(dir, "${songId}_${CHANNEL}_$it").writeBytes(ByteArray(SONG_BYTES / 2))
+        }
+    }
+
+    private fun SongCacheManager.preloaded(vararg songIds: String) {
+        songIds.forEach {
+            download(it)
+            onSongPreloaded(it, CHANNEL)
+        }
+        flush()
+    }
+
+    private fun cached(songId: String) = files(songId, CHANNEL).size == 2
+
+    @Test
+    fun evictsLeastRecentlyUsedOverBudget() {
+        val manager = newManager()
+        manager.preloaded("a", "b", "c")
+        assertTrue(cached("a") && cached("b") && cached("c"))
+
+        manager.touch("a", CHANNEL)
+        manager.preloaded("d")
+
+        assertFalse(cached("b"))
+        assertTrue(cached("a") && cached("c") && cached("d"))
+
+        manager.preloaded("e")
+        assertFalse(cached("c"))
+        assertTrue(cached("a") && cached("d") && cached("e"))
+    }
+
+    @Test
+    fun queuedAndPlayingSongsAreNotEvicted() {
+        val manager = newManager()
+        manager.preloaded("a", "b", "c")
+        manager.setProtectedSongs(setOf(key("a", CHANNEL)))
+        manager.onSongPlayed("b", CHANNEL)
+        manager.touch("c", CHANNEL)
+
+        manager.preloaded("d")
+
+        // a、b 最久未用但不能淘汰，只能淘汰 c
+        assertTrue(cached("a") && cached("b") && cached("d"))
+        assertFalse(cached("c"))
+
+        // 所有歌都不能淘汰时允许超出预算
+        manager.setProtectedSongs(setOf(key("a", CHANNEL), key("d", CHANNEL), key("e", CHANNEL)))
+        manager.preloaded("e")
+        assertTrue(cached("e"))
+        manager.preloaded("f")
+        assertTrue(cached("a") && cached("b") && cached("d") && cached("e"))
+        assertFalse(cached("f"))
+    }
+
+    @Test
+    fun songsThatCannotBeRedownloadedAreKept() {
+        val manager = newManager(canRedownload = false)
+        manager.preloaded("a", "b", "c", "d", "e")
+
+        assertTrue(listOf("a", "b", "c", "d", "e").all { cached(it) })
+    }
+
+    @Test
+    fun loweringBudgetTrims() {
+        val manager = newManager()
+        manager.preloaded("a", "b", "c")
+        manager.budgetBytes = SONG_BYTES.toLong()
+        manager.flush()
+
+        assertFalse(cached("a"))
+        assertFalse(cached("b"))
+        assertTrue(cached("c"))
+    }
+
+    @Test
+    fun hitRatio() {
+        val manager = newManager()
+        assertEquals(0f, manager.getHitRatio(), 0f)
+
+        repeat(3) { manager.recordLookup(true) }
+        manager.recordLookup(false)
+
+        assertEquals(0.75f, manager.getHitRatio(), 0f)
+    }
+
+    @Test
+    fun indexSurvivesRestart() {
+        newManager().apply {
+            preloaded("a", "b", "c")
+            touch("a", CHANNEL)
+            flush()
+        }
+
+        // 冷启动后按之前的使用顺序淘汰
+        val manager = newManager()
+        manager.preloaded("d")
+
+        assertFalse(cached("b"))
+        assertTrue(cached("a") && cached("c") && cached("d"))
+    }
+
+    @Test
+    fun deletedFilesAreDroppedFromIndex() {
+        newManager().preloaded("a", "b", "c")
+        files("a", CHANNEL).forEach { File(it).delete() }
+
+        // a 已不在索引中，只需要淘汰 b
+        val manager = newManager()
+        manager.preloaded("d", "e")
+
+        assertFalse(cached("b"))
+        assertTrue(cached("c") && cached("d") && cached("e"))
+    }
+
+    @Test
+    fun corruptIndexIsDeleted() {
+        indexFile.writeBytes(ByteArray(64) { (it * 31).toByte() })
+        download("a")
+
+        val manager = newManager()
+        manager.flush()
+
+        // 索引重新写入，之前的文件不受管理，不会被删
+        assertTrue(indexFile.length() < 64)
+        manager.preloaded("b", "c", "d", "e")
+        assertFalse(cached("b"))
+        assertTrue(cached("a"))
+    }
+
+    private companion object {
+        const val CHANNEL = 1
+        const val SONG_BYTES = 1024
+        const val BUDGET_BYTES = 3L * SONG_BYTES
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.ordersong.core
+
+import com.netease.yunxin.kit.common.network.NetRequestCallback
+import com.netease.yunxin.kit.common.utils.NetworkUtils
+import com.netease.yunxin.kit.copyrightedmedia.api.NEErrorCode
+import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback
+import com.netease.yunxin.kit.ordersong.core.SongCacheManager.Companion.key
+import com.netease.yunxin.kit.ordersong.core.model.NEOperator
+import com.netease.yunxin.kit.ordersong.core.model.NEOrderSong
+import com.netease.yunxin.kit.ordersong.core.model.Song
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class SongPreloadSchedulerTest {
+
+    // 虚拟时间的主线程，advance 时按到期顺序执行
+    private class FakeMainThread : SongPreloadScheduler.MainThread {
+        private class Task(val runnable: Runnable, val at: Long)
+
+        var now = 0L
+        private val tasks = ArrayList<Task>()
+
+        override fun post(task: Runnable) {
+            postDelayed(task, 0L)
+        }
+
+        override fun postDelayed(task: Runnable, delayMs: Long) {
+            tasks.add(Task(task, now + delayMs))
+        }
+
+        override fun remove(task: Runnable) {
+            tasks.removeAll { it.runnable === task }
+        }
+
+        fun advance(ms: Long = 0L) {
+            val end = now + ms
+            while (true) {
+                val next = tasks.filter { it.at <= end }.minByOrNull { it.at } ?: break
+                tasks.remove(next)
+                now = next.at
+                next.runnable.run()
+            }
+            now = end
+        }
+    }
+
+    private class FakeNetwork(
+        var connected: Boolean = true,
+        var wifi: Boolean = true
+    ) : SongPreloadScheduler.Network {
+        var listener: NetworkUtils.NetworkStateListener? = null
+
+        override fun isConnected() = connected
+
+        override fun isWifi() = wifi
+
+        override fun register(listener: NetworkUtils.NetworkStateListener) {
+            this.listener = listener
+        }
+
+        override fun unregister(listener: NetworkUtils.NetworkStateListener) {
+            this.listener = null
+        }
+    }
+
+    // 下载请求先挂起，complete 时回调；下载成功时记为已在本地
+    private class FakeSongSource : SongPreloadScheduler.SongSource {
+        val preloaded = HashSet<String>()
+        val started = ArrayList<String>()
+        private val callbacks = HashMap<String, NESongPreloadCallback>()
+
+        override fun isPreloaded(songId: String, channel: Int) = key(songId, channel) in preloaded
+
+        override fun preload(songId: String, channel: Int, callback: NESongPreloadCallback) {
+            val key = key(songId, channel)
+            started.add(key)
+            callbacks[key] = callback
+        }
+
+        fun running(): Set<String> = callbacks.keys
+
+        fun complete(songId: String, errorCode: Int = NEErrorCode.OK, saveFiles: Boolean = true) {
+            val key = key(songId, CHANNEL)
+            val callback = callbacks.remove(key)!!
+            if (errorCode == NEErrorCode.OK && saveFiles) {
+                preloaded.add(key)
+            }
+            callback.onPreloadComplete(songId, CHANNEL, errorCode, null)
+        }
+    }
+
+    private class RecordingCallback : NESongPreloadCallback {
+        val completed = ArrayList<Int>()
+
+        override fun onPreloadStart(songId: String, channel: Int) {}
+
+        override fun onPreloadProgress(songId: String, channel: Int, progress: Float) {}
+
+        override fun onPreloadComplete(songId: String, channel: Int, errorCode: Int, msg: String?) {
+            completed.add(errorCode)
+        }
+    }
+
+    private val mainThread = FakeMainThread()
+    private val network = FakeNetwork()
+    private val source = FakeSongSource()
+    private val fetches = ArrayList<NetRequestCallback<List<NEOrderSong>>>()
+    private val scheduler = SongPreloadScheduler(
+        fetchOrderedSongs = { fetches.add(it) },
+        cache = SongCacheManager { _, _ -> emptyList() },
+        source = source,
+        mainThread = mainThread,
+        network = network
+    )
+
+    @Before
+    fun setUp() {
+        network.connected = true
+        network.wifi = true
+    }
+
+    @After
+    fun tearDown() {
+        scheduler.stop()
+    }
+
+    private fun song(songId: String, songTimeMs: Long = SONG_TIME_MS) = Song().apply {
+        this.songId = songId
+        channel = CHANNEL
+        songTime = songTimeMs
+    }
+
+    private fun key(songId: String) = key(songId, CHANNEL)
+
+    // 去抖后拉取已点列表并返回 songs
+    private fun refresh(vararg songs: Song) {
+        mainThread.advance(SongPreloadScheduler.REFRESH_DELAY)
+        fetches.last().success(songs.map { NEOrderSong(it, NEOperator("user", "user", null)) })
+        mainThread.advance()
+    }
+
+    private fun start(vararg songs: Song) {
+        scheduler.start()
+        refresh(*songs)
+    }
+
+    private fun complete(songId: String, errorCode: Int = NEErrorCode.OK) {
+        source.complete(songId, errorCode)
+        mainThread.advance()
+    }
+
+    @Test
+    fun wifiPreloadsThreeSongsTwoAtATime() {
+        start(song("s1"), song("s2"), song("s3"), song("s4"), song("s5"))
+        assertEquals(SongPreloadScheduler.WIFI_MAX_RUNNING, source.running().size)
+        assertEquals(listOf(key("s1"), key("s2")), source.started)
+
+        complete("s1")
+        complete("s2")
+        complete("s3")
+
+        assertEquals(SongPreloadScheduler.WIFI_PRELOAD_COUNT, source.started.size)
+        assertEquals(listOf(key("s1"), key("s2"), key("s3")), source.started)
+    }
+
+    @Test
+    fun cellularPreloadsOneSong() {
+        network.wifi = false
+        start(song("s1"), song("s2"), song("s3"))
+        assertEquals(listOf(key("s1")), source.started)
+
+        complete("s1")
+        assertEquals(SongPreloadScheduler.CELLULAR_PRELOAD_COUNT, source.started.size)
+
+        // 列表再次变化时窗口后移
+        scheduler.refreshLater()
+        refresh(song("s1"), song("s2"), song("s3"))
+        assertEquals(listOf(key("s1"), key("s2")), source.started)
+    }
+
+    @Test
+    fun switchingToWifiWidensWindow() {
+        network.wifi = false
+        start(song("s1"), song("s2"), song("s3"))
+        assertEquals(1, source.started.size)
+
+        network.listener!!.onConnected(NetworkUtils.NetworkType.NETWORK_WIFI)
+        refresh(song("s1"), song("s2"), song("s3"))
+
+        // s1 仍在下载，同时只再开始一首
+        assertEquals(listOf(key("s1"), key("s2")), source.started)
+        complete("s1")
+        assertEquals(listOf(key("s1"), key("s2"), key("s3")), source.started)
+    }
+
+    @Test
+    fun noNetworkNoPreload() {
+        network.connected = false
+        start(song("s1"), song("s2"))
+        assertTrue(source.started.isEmpty())
+    }
+
+    @Test
+    fun deletedSongIsCancelledBeforeItStarts() {
+        start(song("s1"), song("s2"), song("s3"))
+        scheduler.onSongDeleted(song("s3"))
+
+        complete("s1")
+        complete("s2")
+        assertEquals(listOf(key("s1"), key("s2")), source.started)
+    }
+
+    @Test
+    fun songOutsideWindowIsCancelledAfterRefresh() {
+        start(song("s1"), song("s2"), song("s3"))
+        // s3 被删、s4 点在最后
+        scheduler.refreshLater()
+        refresh(song("s1"), song("s2"), song("s4"))
+
+        complete("s1")
+        assertEquals(listOf(key("s1"), key("s2"), key("s4")), source.started)
+    }
+
+    @Test
+    fun stopDropsPendingSongs() {
+        start(song("s1"), song("s2"), song("s3"))
+        scheduler.stop()
+
+        complete("s1")
+        complete("s2")
+        assertEquals(2, source.started.size)
+    }
+
+    @Test
+    fun preloadNowSharesRunningDownload() {
+        start(song("s1"))
+        val first = RecordingCallback()
+        val second = RecordingCallback()
+        scheduler.preloadNow("s1", CHANNEL, first)
+        scheduler.preloadNow("s1", CHANNEL, second)
+        assertEquals(listOf(key("s1")), source.started)
+
+        complete("s1")
+        assertEquals(listOf(NEErrorCode.OK), first.completed)
+        assertEquals(listOf(NEErrorCode.OK), second.completed)
+
+        // 已在本地时直接完成，不再下载
+        val third = RecordingCallback()
+        scheduler.preloadNow("s1", CHANNEL, third)
+        assertEquals(listOf(NEErrorCode.OK), third.completed)
+        assertEquals(1, source.started.size)
+    }
+
+    @Test
+    fun preloadNowIgnoresWindowAndKeepsDeletedWaiter() {
+        network.wifi = false
+        start(song("s1"), song("s2"))
+        val callback = RecordingCallback()
+        scheduler.preloadNow("s9", CHANNEL, callback)
+        assertEquals(listOf(key("s1"), key("s9")), source.started)
+
+        // 有人等的歌被删也不取消
+        scheduler.onSongDeleted(song("s9"))
+        complete("s9")
+        assertEquals(listOf(NEErrorCode.OK), callback.completed)
+    }
+
+    @Test
+    fun preloadFollowsListOrder() {
+        start(song("s3"), song("s1"), song("s2"))
+        assertEquals(listOf(key("s3"), key("s1")), source.started)
+
+        // 调整顺序后 s2 排在最前，空出位置时先下载
+        scheduler.refreshLater()
+        refresh(song("s2"), song("s3"), song("s1"))
+        assertEquals(2, source.started.size)
+        complete("s1")
+        assertEquals(listOf(key("s3"), key("s1"), key("s2")), source.started)
+    }
+
+    @Test
+    fun preloadedSongsAreSkipped() {
+        source.preloaded.add(key("s1"))
+        start(song("s1"), song("s2"), song("s3"), song("s4"))
+        assertEquals(listOf(key("s2"), key("s3")), source.started)
+    }
+
+    @Test
+    fun budgetLimitsWindow() {
+        // 每首约 60MB，第二首会超出 Wi-Fi 预算
+        val big = SongPreloadScheduler.WIFI_BUDGET_BYTES * 6 / 10 / BYTES_PER_SECOND * 1000
+        start(song("s1", big), song("s2", big), song("s3"))
+        complete("s1")
+        assertEquals(listOf(key("s1")), source.started)
+    }
+
+    @Test
+    fun firstSongIgnoresBudget() {
+        network.wifi = false
+        val huge = SongPreloadScheduler.CELLULAR_BUDGET_BYTES * 2 / BYTES_PER_SECOND * 1000
+        start(song("s1", huge))
+        assertEquals(listOf(key("s1")), source.started)
+    }
+
+    @Test
+    fun smallSongsFillWindowWithinBudget() {
+        // 4 分钟约 19MB，三首在 Wi-Fi 预算内
+        start(song("s1"), song("s2"), song("s3"))
+        complete("s1")
+        assertEquals(SongPreloadScheduler.WIFI_PRELOAD_COUNT, source.started.size)
+    }
+
+    @Test
+    fun failedPreloadIsReportedOnce() {
+        start(song("s1"))
+        val callback = RecordingCallback()
+        scheduler.preloadNow("s1", CHANNEL, callback)
+        complete("s1", errorCode = 1001)
+
+        assertEquals(listOf(1001), callback.completed)
+        assertEquals(1, source.started.size)
+    }
+
+    @Test
+    fun completeWithoutFilesRetriesOnceThenFails() {
+        val callback = RecordingCallback()
+        scheduler.preloadNow("s1", CHANNEL, callback)
+
+        // SDK 仍有下载记录，直接回调成功但没有重新下载
+        source.complete("s1", saveFiles = false)
+        mainThread.advance()
+        assertEquals(2, source.started.size)
+        assertTrue(callback.completed.isEmpty())
+
+        source.complete("s1", saveFiles = false)
+        mainThread.advance()
+        assertEquals(listOf(SongPreloadScheduler.ERROR_FILES_MISSING), callback.completed)
+        assertEquals(2, source.started.size)
+    }
+
+    @Test
+    fun retryThatRedownloadsSucceeds() {
+        val callback = RecordingCallback()
+        scheduler.preloadNow("s1", CHANNEL, callback)
+
+        source.complete("s1", saveFiles = false)
+        mainThread.advance()
+        complete("s1")
+
+        assertEquals(listOf(NEErrorCode.OK), callback.completed)
+        assertEquals(listOf(key("s1"), key("s1")), source.started)
+    }
+
+    private companion object {
+        const val CHANNEL = 1
+        const val SONG_TIME_MS = 240_000L
+        const val BYTES_PER_SECOND = 2 * 40L * 1024
+    }
+}
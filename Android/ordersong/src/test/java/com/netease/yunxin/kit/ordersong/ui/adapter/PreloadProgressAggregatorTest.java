@@ -0,0 +1,124 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreloadProgressAggregatorTest {
+
+  // 等待下一帧的任务，frame 时执行
+  private final List<Runnable> frames = new ArrayList<>();
+  private final List<OrderSongModel> changed = new ArrayList<>();
+  private final List<Integer> percents = new ArrayList<>();
+  private PreloadProgressAggregator aggregator;
+
+  @Before
+  public void setUp() {
+    aggregator =
+        new PreloadProgressAggregator(
+            song -> {
+              changed.add(song);
+              percents.add(song.getDownloadProgress());
+            },
+            frames::add);
+  }
+
+  private static OrderSongModel song(String songId) {
+    OrderSongModel song = new OrderSongModel();
+    song.setSongId(songId);
+    song.setChannel(1);
+    return song;
+  }
+
+  private void frame() {
+    List<Runnable> batch = new ArrayList<>(frames);
+    frames.clear();
+    for (Runnable task : batch) {
+      task.run();
+    }
+  }
+
+  @Test
+  public void progressCallbacksCollapseIntoOnePendingFrame() {
+    OrderSongModel song = song("s1");
+    for (int i = 1; i <= 1000; i++) {
+      aggregator.onProgress(song, i / 1000f);
+      assertTrue(frames.size() <= 1);
+    }
+    assertEquals(1, frames.size());
+    assertTrue(changed.isEmpty());
+
+    frame();
+    assertEquals(1, changed.size());
+    assertEquals(100, song.getDownloadProgress());
+  }
+
+  @Test
+  public void onlyLatestPercentIsDispatched() {
+    OrderSongModel song = song("s1");
+    aggregator.onProgress(song, 0.125f);
+    aggregator.onProgress(song, 0.375f);
+    frame();
+    aggregator.onProgress(song, 0.5f);
+    aggregator.onProgress(song, 0.75f);
+    frame();
+
+    assertEquals(Arrays.asList(37, 75), percents);
+  }
+
+  @Test
+  public void samePercentDoesNotPostFrame() {
+    OrderSongModel song = song("s1");
+    aggregator.onProgress(song, 0.5f);
+    frame();
+
+    aggregator.onProgress(song, 0.505f);
+    aggregator.onProgress(song, 0.4f);
+    assertTrue(frames.isEmpty());
+  }
+
+  @Test
+  public void songsShareOneFrame() {
+    OrderSongModel first = song("s1");
+    OrderSongModel second = song("s2");
+    for (int i = 1; i <= 100; i++) {
+      aggregator.onProgress(first, i / 100f);
+      aggregator.onProgress(second, i / 200f);
+    }
+    assertEquals(1, frames.size());
+
+    frame();
+    assertEquals(2, changed.size());
+    assertSame(first, changed.get(0));
+    assertEquals(100, first.getDownloadProgress());
+    assertSame(second, changed.get(1));
+    assertEquals(50, second.getDownloadProgress());
+  }
+
+  @Test
+  public void completeDropsPendingProgress() {
+    OrderSongModel song = song("s1");
+    aggregator.onProgress(song, 0.5f);
+    aggregator.onComplete(song);
+    frame();
+
+    assertTrue(changed.isEmpty());
+
+    // 重新下载时从头记录
+    aggregator.onProgress(song, 0.125f);
+    frame();
+    assertEquals(Collections.singletonList(12), percents);
+  }
+}
@@ -0,0 +1,204 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SongMetadataCacheTest {
+
+  /** 按路径返回预设结果，没有预设的按解析失败处理 */
+  private static final class FakeProbe implements SongMetadataCache.Probe {
+    final Map<String, SongMetadataCache.Metadata> results = new HashMap<>();
+    final List<String> probed = new ArrayList<>();
+
+    @Nullable
+    @Override
+    public synchronized SongMetadataCache.Metadata probe(@NonNull String path) {
+      probed.add(path);
+      return results.get(path);
+    }
+
+    synchronized int count() {
+      return probed.size();
+    }
+  }
+
+  private final FakeProbe probe = new FakeProbe();
+  private File dir;
+  private File indexFile;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("metadata").toFile();
+    indexFile = new File(dir, "ordersong_metadata.idx");
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  // 回调直接在解析线程执行，测试中不需要主线程
+  private SongMetadataCache newCache() {
+    return new SongMetadataCache(probe, indexFile, Runnable::run);
+  }
+
+  private String song(String name, @Nullable SongMetadataCache.Metadata metadata)
+      throws IOException {
+    File file = new File(dir, name);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[16]);
+    }
+    if (metadata != null) {
+      probe.results.put(file.getPath(), metadata);
+    }
+    return file.getPath();
+  }
+
+  @Nullable
+  private static SongMetadataCache.Metadata getBlocking(
+      SongMetadataCache cache, String songId, String path) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    SongMetadataCache.Metadata[] result = new SongMetadataCache.Metadata[1];
+    cache.get(
+        songId,
+        1,
+        path,
+        metadata -> {
+          result[0] = metadata;
+          done.countDown();
+        });
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    return result[0];
+  }
+
+  @Test
+  public void hitSkipsProbe() throws Exception {
+    SongMetadataCache cache = newCache();
+    String path = song("a.mp3", new SongMetadataCache.Metadata(180_000L, "title", "artist"));
+
+    SongMetadataCache.Metadata first = getBlocking(cache, "a", path);
+    SongMetadataCache.Metadata second = getBlocking(cache, "a", path);
+
+    assertNotNull(first);
+    assertSame(first, second);
+    assertEquals(1, probe.count());
+    assertEquals(1, cache.getProbeCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void missingFileIsNotProbed() throws Exception {
+    SongMetadataCache cache = newCache();
+
+    assertNull(getBlocking(cache, "a", new File(dir, "missing.mp3").getPath()));
+    assertEquals(0, probe.count());
+    assertEquals(0, cache.getProbeCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void replacedFileIsProbedAgain() throws Exception {
+    SongMetadataCache cache = newCache();
+    String path = song("a.mp3", new SongMetadataCache.Metadata(180_000L, "title", "artist"));
+    getBlocking(cache, "a", path);
+
+    File file = new File(path);
+    assertTrue(file.setLastModified(file.lastModified() + 10_000L));
+    probe.results.put(path, new SongMetadataCache.Metadata(200_000L, "new", null));
+    SongMetadataCache.Metadata metadata = getBlocking(cache, "a", path);
+
+    assertNotNull(metadata);
+    assertEquals(200_000L, metadata.duration);
+    assertEquals(2, cache.getProbeCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void probeFailureIsNotCached() throws Exception {
+    SongMetadataCache cache = newCache();
+    String path = song("broken.mp3", null);
+
+    assertNull(getBlocking(cache, "a", path));
+    assertNull(getBlocking(cache, "a", path));
+
+    assertEquals(2, probe.count());
+    assertEquals(2, cache.getProbeCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void persistedRoundTrip() throws Exception {
+    String withTags = song("a.mp3", new SongMetadataCache.Metadata(180_000L, "标题", "歌手"));
+    String noTags = song("b.mp3", new SongMetadataCache.Metadata(90_000L, null, null));
+    SongMetadataCache cache = newCache();
+    getBlocking(cache, "a", withTags);
+    getBlocking(cache, "b", noTags);
+    cache.flush();
+
+    // 新实例模拟冷启动，不再解析文件
+    SongMetadataCache restored = newCache();
+    SongMetadataCache.Metadata a = getBlocking(restored, "a", withTags);
+    SongMetadataCache.Metadata b = getBlocking(restored, "b", noTags);
+
+    assertEquals(2, probe.count());
+    assertEquals(0, restored.getProbeCount());
+    assertEquals(2, restored.getHitCount());
+    assertNotNull(a);
+    assertEquals(180_000L, a.duration);
+    assertEquals("标题", a.title);
+    assertEquals("歌手", a.artist);
+    assertNotNull(b);
+    assertEquals(90_000L, b.duration);
+    assertNull(b.title);
+    assertNull(b.artist);
+  }
+
+  @Test
+  public void corruptIndexIsReplaced() throws Exception {
+    try (FileOutputStream out = new FileOutputStream(indexFile)) {
+      for (int i = 0; i < 64; i++) {
+        out.write(i * 31);
+      }
+    }
+    String path = song("a.mp3", new SongMetadataCache.Metadata(180_000L, "title", "artist"));
+
+    SongMetadataCache cache = newCache();
+    assertNotNull(getBlocking(cache, "a", path));
+    assertEquals(1, cache.getProbeCount());
+    cache.flush();
+
+    // 重新写入的索引可以正常读取
+    SongMetadataCache restored = newCache();
+    assertNotNull(getBlocking(restored, "a", path));
+    assertEquals(1, restored.getHitCount());
+  }
+}
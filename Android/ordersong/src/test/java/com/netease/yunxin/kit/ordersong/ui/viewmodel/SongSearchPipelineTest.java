@@ -0,0 +1,171 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.ordersong.ui.viewmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia;
+import com.netease.yunxin.kit.ordersong.core.model.OrderSongModel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+// 单元测试中 Handler 不会执行任务，结果在调用线程同步回到流水线；去抖不生效，用 searchNow 发起搜索
+public class SongSearchPipelineTest {
+
+  private static final class Request {
+    final String keyword;
+    final int pageNum;
+    final NECopyrightedMedia.Callback<List<OrderSongModel>> callback;
+
+    Request(
+        String keyword, int pageNum, NECopyrightedMedia.Callback<List<OrderSongModel>> callback) {
+      this.keyword = keyword;
+      this.pageNum = pageNum;
+      this.callback = callback;
+    }
+  }
+
+  private static final class Result {
+    final String keyword;
+    final int pageNum;
+    final List<OrderSongModel> songs;
+    final boolean reset;
+
+    Result(String keyword, int pageNum, List<OrderSongModel> songs, boolean reset) {
+      this.keyword = keyword;
+      this.pageNum = pageNum;
+      this.songs = songs;
+      this.reset = reset;
+    }
+  }
+
+  private final List<Request> requests = new ArrayList<>();
+  private final List<Result> results = new ArrayList<>();
+  private SongSearchPipeline pipeline;
+
+  @Before
+  public void setUp() {
+    pipeline =
+        new SongSearchPipeline(
+            (keyword, pageNum, pageSize, callback) ->
+                requests.add(new Request(keyword, pageNum, callback)),
+            Runnable::run);
+    pipeline.setListener(
+        new SongSearchPipeline.Listener() {
+          @Override
+          public void onResult(
+              String keyword, int pageNum, List<OrderSongModel> songs, boolean reset) {
+            results.add(new Result(keyword, pageNum, songs, reset));
+          }
+
+          @Override
+          public void onError(String keyword, int code, @Nullable String msg) {
+            throw new AssertionError("unexpected error " + code);
+          }
+        });
+  }
+
+  @Test
+  public void lateResponseForOldKeywordIsNotDelivered() {
+    pipeline.searchNow("a");
+    pipeline.searchNow("b");
+    assertEquals(2, requests.size());
+
+    requests.get(1).callback.success(songs("b", 0, 3));
+    requests.get(0).callback.success(songs("a", 0, 3));
+
+    assertEquals(1, results.size());
+    Result result = results.get(0);
+    assertEquals("b", result.keyword);
+    assertEquals(0, result.pageNum);
+    assertTrue(result.reset);
+    assertEquals("b0", result.songs.get(0).getSongId());
+  }
+
+  @Test
+  public void lateResponseIsCachedForItsKeyword() {
+    pipeline.searchNow("a");
+    pipeline.searchNow("b");
+    requests.get(0).callback.success(songs("a", 0, 3));
+    requests.get(1).callback.success(songs("b", 0, 3));
+    results.clear();
+
+    pipeline.searchNow("a");
+
+    assertEquals(2, requests.size());
+    assertEquals(1, results.size());
+    assertEquals("a", results.get(0).keyword);
+    assertEquals(3, results.get(0).songs.size());
+  }
+
+  @Test
+  public void oldPrefetchDoesNotAnswerNewKeyword() {
+    pipeline.searchNow("a");
+    requests.get(0).callback.success(songs("a", 0, SongSearchPipeline.PAGE_SIZE));
+    // 满页，预取第二页
+    assertEquals(2, requests.size());
+    assertEquals(1, requests.get(1).pageNum);
+
+    pipeline.searchNow("b");
+    requests.get(1).callback.success(songs("a", 1, 3));
+    requests.get(2).callback.success(songs("b", 0, 3));
+
+    assertEquals(2, results.size());
+    assertEquals("b", results.get(1).keyword);
+    assertTrue(results.get(1).reset);
+  }
+
+  @Test
+  public void prefetchedPageAnswersLoadMore() {
+    pipeline.searchNow("a");
+    requests.get(0).callback.success(songs("a", 0, SongSearchPipeline.PAGE_SIZE));
+    pipeline.loadMore();
+    // 预取还没返回，不重复请求
+    assertEquals(2, requests.size());
+
+    requests.get(1).callback.success(songs("a", 1, 3));
+
+    assertEquals(2, results.size());
+    assertEquals(1, results.get(1).pageNum);
+    assertEquals(3, results.get(1).songs.size());
+  }
+
+  @Test
+  public void cachedSongsAreNotShared() {
+    pipeline.searchNow("a");
+    requests.get(0).callback.success(songs("a", 0, 3));
+    OrderSongModel delivered = results.get(0).songs.get(0);
+    delivered.setStatus(OrderSongModel.STATE_DOWNLOADED);
+    delivered.setDownloadProgress(100);
+    delivered.setSongTime(1000L);
+
+    pipeline.searchNow("b");
+    requests.get(1).callback.success(songs("b", 0, 3));
+    pipeline.searchNow("a");
+
+    OrderSongModel cached = results.get(2).songs.get(0);
+    assertNotSame(delivered, cached);
+    assertEquals(OrderSongModel.STATE_WAIT, cached.getStatus());
+    assertEquals(0, cached.getDownloadProgress());
+    assertNull(cached.getSongTime());
+  }
+
+  private static List<OrderSongModel> songs(String keyword, int pageNum, int count) {
+    List<OrderSongModel> songs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      OrderSongModel song = new OrderSongModel();
+      song.setSongId(keyword + (pageNum * SongSearchPipeline.PAGE_SIZE + i));
+      song.setSongName(keyword);
+      songs.add(song);
+    }
+    return songs;
+  }
+}
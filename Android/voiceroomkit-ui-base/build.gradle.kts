@@ -14,6 +14,9 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -37,4 +40,5 @@ dependencies {
     api(project(":ordersong"))
     api(project(":entertainment:entertainment-common"))
 
+    testImplementation("junit:junit:4.13.2")
 }
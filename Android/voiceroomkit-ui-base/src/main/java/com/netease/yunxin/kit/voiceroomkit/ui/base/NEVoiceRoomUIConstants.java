@@ -8,4 +8,5 @@ public class NEVoiceRoomUIConstants {
   public static final String NEED_JOIN_ROOM__KEY = "needJoinRoom";
   public static final int NET_AVAILABLE = 0; // 网络 可用
   public static final int NET_LOST = 1; // 网络不可用
+  public static final int CHAT_MSG_MAX_COUNT = 500; // 聊天列表最多保留的消息条数
 }
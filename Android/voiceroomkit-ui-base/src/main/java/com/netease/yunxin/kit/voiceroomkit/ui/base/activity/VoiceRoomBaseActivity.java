@@ -12,6 +12,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Typeface;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
@@ -19,6 +21,7 @@ import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 import android.text.TextUtils;
+import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
@@ -73,10 +76,10 @@ import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomKit;
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomBatchRewardTarget;
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomInfo;
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
-import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMemberVolumeInfo;
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.ScreenUtil;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.NEVoiceRoomUIConstants;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.R;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.adapter.SeatGridAdapter;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.chatroom.ChatRoomMsgCreator;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.databinding.ActivityVoiceroomBaseBinding;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.dialog.CancelApplySeatDialog;
@@ -91,6 +94,7 @@ import com.netease.yunxin.kit.voiceroomkit.ui.base.dialog.SeatApplyDialog;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.dialog.TopTipsDialog;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.helper.EffectPlayHelper;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.helper.SeatHelper;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.helper.SpeakingStateTracker;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomSeatEvent;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomUser;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.service.KeepAliveService;
@@ -98,15 +102,13 @@ import com.netease.yunxin.kit.voiceroomkit.ui.base.service.SongPlayManager;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.view.NESeatGridView;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel.VoiceRoomViewModel;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.widget.BackgroundMusicPanel;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.widget.ChatMsgRingBuffer;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.widget.ChatRoomMsgRecyclerView;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.widget.OnItemClickListener;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.widget.VolumeSetup;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import kotlin.Unit;
 
 /** 主播与观众基础页，包含所有的通用UI元素 */
@@ -115,7 +117,8 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
 
   public static final String TAG = "VoiceRoomBaseActivity";
   protected ActivityVoiceroomBaseBinding binding;
-  public static List<CharSequence> charSequenceList = new ArrayList<>();
+  public static final ChatMsgRingBuffer chatMsgHistory =
+      new ChatMsgRingBuffer(NEVoiceRoomUIConstants.CHAT_MSG_MAX_COUNT);
 
   protected static final int MORE_ITEM_MICRO_PHONE = 0; // 更多菜单麦克风
 
@@ -183,6 +186,20 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
 
   protected ConstraintLayout baseAudioView;
   protected NESeatGridView seatGridView;
+  private final SpeakingStateTracker speakingStateTracker =
+      new SpeakingStateTracker(
+          VoiceRoomViewModel.VOLUME_INDICATION_INTERVAL,
+          new SpeakingStateTracker.Listener() {
+            @Override
+            public void onSeatSpeakingChanged(int position, boolean speaking) {
+              seatGridView.refreshItem(position, SeatGridAdapter.PAYLOAD_SPEAKING);
+            }
+
+            @Override
+            public void onAnchorSpeakingChanged(boolean speaking) {
+              seatGridView.showAvatarAnimal(speaking);
+            }
+          });
   private SimpleServiceConnection mServiceConnection;
 
   protected boolean isOverSeaEnv = false;
@@ -411,6 +428,10 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
     ivLocalAudioSwitch = baseAudioView.findViewById(R.id.iv_local_audio_switch);
     ivLocalAudioSwitch.setSelected(true);
     rcyChatMsgList = baseAudioView.findViewById(R.id.rcy_chat_message_list);
+    if (needJoinRoom) {
+      chatMsgHistory.clear();
+    }
+    rcyChatMsgList.setMsgBuffer(chatMsgHistory);
     tvInput = baseAudioView.findViewById(R.id.tv_input_text);
     edtInput = baseAudioView.findViewById(R.id.edt_input_text);
     announcement = baseAudioView.findViewById(R.id.tv_chat_room_announcement);
@@ -578,6 +599,7 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
     name = TextUtils.isEmpty(name) ? voiceRoomInfo.getRoomUuid() : name;
     tvRoomName.setText(name);
     seatGridView.setItemClickListener(this::onSeatItemClick);
+    speakingStateTracker.bindSeats(roomViewModel.onSeatListData.getValue());
     seatGridView.refresh(roomViewModel.onSeatListData.getValue());
   }
 
@@ -726,7 +748,7 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
     tvBackgroundMusic.setRoomUuid(roomUuid);
     if (!needJoinRoom) {
       joinRoomSuccess = true;
-      rcyChatMsgList.appendItems(charSequenceList);
+      rcyChatMsgList.toLatestMsg();
       roomViewModel.initDataOnJoinRoom();
     } else {
       roomViewModel.joinRoom(
@@ -780,14 +802,14 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
     roomViewModel.onSeatListData.observe(
         this,
         seatList -> {
+          speakingStateTracker.bindSeats(seatList);
           seatGridView.refresh(seatList);
         });
 
     roomViewModel.chatRoomMsgData.observe(
         this,
-        charSequence -> {
-          charSequenceList.add(charSequence);
-          rcyChatMsgList.appendItem(charSequence);
+        charSequences -> {
+          rcyChatMsgList.appendItems(charSequences);
         });
 
     roomViewModel.roomRtcErrorData.observe(
@@ -808,57 +830,10 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
         });
 
     roomViewModel.rtcLocalAudioVolumeIndicationData.observe(
-        this,
-        volume -> {
-          if (VoiceRoomUtils.isLocalAnchor()) {
-            seatGridView.showAvatarAnimal(
-                volume > 0 && VoiceRoomUtils.getLocalMember().isAudioOn());
-          } else {
-            for (RoomSeat roomSeat : seatGridView.getItems()) {
-              if (VoiceRoomUtils.isLocal(roomSeat.getAccount())) {
-                if (roomSeat.isSpeaking() && volume == 0) {
-                  roomSeat.setSpeaking(false);
-                  seatGridView.refreshItem(seatGridView.getItems().indexOf(roomSeat));
-                } else if (!roomSeat.isSpeaking() && volume > 0) {
-                  roomSeat.setSpeaking(true);
-                  seatGridView.refreshItem(seatGridView.getItems().indexOf(roomSeat));
-                }
-              }
-            }
-          }
-        });
+        this, volume -> speakingStateTracker.onLocalVolume(volume));
 
     roomViewModel.rtcRemoteAudioVolumeIndicationData.observe(
-        this,
-        volumes -> {
-          Map<String, NEVoiceRoomMemberVolumeInfo> memberVolumeInfoMap = new HashMap<>();
-          for (NEVoiceRoomMemberVolumeInfo memberVolumeInfo : volumes) {
-            memberVolumeInfoMap.put(memberVolumeInfo.getUserUuid(), memberVolumeInfo);
-            if (VoiceRoomUtils.isHost(memberVolumeInfo.getUserUuid())) {
-              seatGridView.showAvatarAnimal(
-                  memberVolumeInfo.getVolume() > 0
-                      && VoiceRoomUtils.getMember(memberVolumeInfo.getUserUuid()).isAudioOn());
-            }
-          }
-          for (RoomSeat roomSeat : seatGridView.getItems()) {
-            if (!VoiceRoomUtils.isLocal(roomSeat.getAccount())) {
-              if (memberVolumeInfoMap.containsKey(roomSeat.getAccount())
-                  && (Objects.requireNonNull(memberVolumeInfoMap.get(roomSeat.getAccount())))
-                          .getVolume()
-                      > 0) {
-                if (!roomSeat.isSpeaking()) {
-                  roomSeat.setSpeaking(true);
-                  seatGridView.refreshItem(seatGridView.getItems().indexOf(roomSeat));
-                }
-              } else {
-                if (roomSeat.isSpeaking()) {
-                  roomSeat.setSpeaking(false);
-                  seatGridView.refreshItem(seatGridView.getItems().indexOf(roomSeat));
-                }
-              }
-            }
-          }
-        });
+        this, volumes -> speakingStateTracker.onRemoteVolumes(volumes));
 
     roomViewModel.memberAudioBannedData.observe(
         this,
@@ -913,15 +888,15 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
                     GiftCache.getGift(batchReward.getGiftId()).getName(),
                     batchReward.getGiftCount(),
                     GiftCache.getGift(batchReward.getGiftId()).getStaticIconResId());
-            rcyChatMsgList.appendItem(batchGiftReward);
-            charSequenceList.add(batchGiftReward);
+            roomViewModel.chatRoomMsgData.post(batchGiftReward);
             ALog.i(TAG, "target:" + target);
           }
           if (!VoiceRoomUtils.isLocalAnchor()) {
             if (gifAnimationView != null) {
               gifAnimationView.bringToFront();
             }
-            giftRender.addGift(GiftCache.getGift(batchReward.getGiftId()).getDynamicIconResId());
+            giftRender.addGift(
+                GiftCache.getGift(batchReward.getGiftId()), batchReward.getGiftCount());
           }
         });
 
@@ -1087,8 +1062,7 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
                         VoiceRoomUtils.isLocalAnchor(),
                         VoiceRoomUtils.getLocalName(),
                         content);
-                rcyChatMsgList.appendItem(charSequence);
-                charSequenceList.add(charSequence);
+                roomViewModel.chatRoomMsgData.post(charSequence);
               }
 
               @Override
@@ -1121,9 +1095,23 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
     layoutParams.topToTop = ConstraintLayout.LayoutParams.PARENT_ID;
     layoutParams.bottomToBottom = ConstraintLayout.LayoutParams.PARENT_ID;
     ViewGroup root = (ViewGroup) baseAudioView.findViewById(R.id.rl_base_audio_ui);
+    gifAnimationView.setId(View.generateViewId());
     root.addView(gifAnimationView, layoutParams);
+    // 合并播放时的礼物个数
+    TextView giftCountView = new TextView(this);
+    giftCountView.setTextColor(Color.WHITE);
+    giftCountView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 32);
+    giftCountView.setTypeface(Typeface.DEFAULT_BOLD);
+    giftCountView.setVisibility(View.GONE);
+    ConstraintLayout.LayoutParams countParams =
+        new ConstraintLayout.LayoutParams(
+            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    countParams.bottomToBottom = gifAnimationView.getId();
+    countParams.startToStart = ConstraintLayout.LayoutParams.PARENT_ID;
+    countParams.endToEnd = ConstraintLayout.LayoutParams.PARENT_ID;
+    root.addView(giftCountView, countParams);
     giftRender = new GiftRender();
-    giftRender.init(gifAnimationView);
+    giftRender.init(gifAnimationView, giftCountView);
   }
 
   private void bindForegroundService() {
@@ -1640,7 +1628,7 @@ public abstract class VoiceRoomBaseActivity extends BaseActivity
   @Override
   public void finish() {
     if (!prepareFloatPlay) {
-      charSequenceList.clear();
+      chatMsgHistory.clear();
     }
     super.finish();
   }
@@ -6,11 +6,17 @@ package com.netease.yunxin.kit.voiceroomkit.ui.base.adapter;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.text.TextUtils;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 import com.airbnb.lottie.LottieAnimationView;
 import com.airbnb.lottie.LottieDrawable;
@@ -19,19 +25,83 @@ import com.netease.yunxin.kit.entertainment.common.utils.StringUtils;
 import com.netease.yunxin.kit.entertainment.common.widget.HeadImageView;
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.R;
+import java.util.ArrayList;
 import java.util.List;
 
 public class SeatGridAdapter extends BaseAdapter<RoomSeat> {
+  /** 局部刷新：说话状态 */
+  public static final int PAYLOAD_SPEAKING = 1;
+  /** 局部刷新：麦克风开关/禁言 */
+  public static final int PAYLOAD_AUDIO = 1 << 1;
+  /** 局部刷新：打赏 */
+  public static final int PAYLOAD_REWARD = 1 << 2;
+
+  private final AsyncListDiffer<SeatState> differ =
+      new AsyncListDiffer<>(
+          new SyncedUpdateCallback(), new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
+  private List<SeatState> syncedStates;
 
   public SeatGridAdapter(List<RoomSeat> seats, Context context) {
     super(seats, context);
   }
 
+  /** 后台线程计算差异，只刷新有变化的麦位 */
+  public void submitSeats(List<RoomSeat> seats) {
+    List<SeatState> states = new ArrayList<>(seats.size());
+    for (RoomSeat seat : seats) {
+      states.add(new SeatState(seat));
+    }
+    differ.submitList(states, this::syncDataList);
+  }
+
+  // 差异结果派发前先把数据换成新列表，保证绑定时拿到的是新麦位
+  private void syncDataList() {
+    List<SeatState> current = differ.getCurrentList();
+    if (current == syncedStates) {
+      return;
+    }
+    syncedStates = current;
+    List<RoomSeat> dataList = getDataList();
+    dataList.clear();
+    for (SeatState state : current) {
+      dataList.add(state.seat);
+    }
+  }
+
   @Override
   protected RecyclerView.ViewHolder onCreateBaseViewHolder(ViewGroup parent, int viewType) {
     return new SeatViewHolder(layoutInflater.inflate(R.layout.view_grid_item_seat, parent, false));
   }
 
+  @Override
+  public void onBindViewHolder(
+      @NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+    int flags = 0;
+    for (Object payload : payloads) {
+      if (!(payload instanceof Integer)) {
+        flags = 0;
+        break;
+      }
+      flags |= (Integer) payload;
+    }
+    RoomSeat seat = getItem(position);
+    if (flags == 0 || seat == null) {
+      super.onBindViewHolder(holder, position, payloads);
+      return;
+    }
+    SeatViewHolder viewHolder = (SeatViewHolder) holder;
+    if ((flags & PAYLOAD_AUDIO) != 0) {
+      bindAudioStatus(viewHolder, seat);
+    }
+    if ((flags & PAYLOAD_SPEAKING) != 0) {
+      bindSpeaking(viewHolder, seat);
+    }
+    if ((flags & PAYLOAD_REWARD) != 0) {
+      bindReward(viewHolder, seat);
+    }
+    holder.itemView.setTag(R.id.base_adapter_model_tag, seat);
+  }
+
   @SuppressLint("UseCompatLoadingForDrawables")
   @Override
   protected void onBindBaseViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
@@ -44,26 +114,10 @@ public class SeatGridAdapter extends BaseAdapter<RoomSeat> {
     NEVoiceRoomMember member = seat.getMember();
 
     // 用户音频状态显示
-    final ImageView ivStatusHint = viewHolder.ivStatusHint;
-    if (member == null || status == RoomSeat.Status.APPLY) {
-      ivStatusHint.setVisibility(View.GONE);
-    } else {
-      ivStatusHint.setVisibility(View.VISIBLE);
-      if (member.isAudioOn()) {
-        ivStatusHint.setImageResource(R.drawable.icon_seat_open_micro);
-      } else {
-        ivStatusHint.setImageResource(
-            member.isAudioBanned()
-                ? R.drawable.icon_audio_banned
-                : R.drawable.icon_seat_close_micro);
-      }
-    }
+    bindAudioStatus(viewHolder, seat);
 
     // 波纹动画
-    showLottieAnimal(viewHolder.lavAvatar, false);
-    if (member != null) {
-      showLottieAnimal(viewHolder.lavAvatar, seat.isSpeaking());
-    }
+    bindSpeaking(viewHolder, seat);
 
     // 申请中动画
     showLottieAnimal(viewHolder.applying, status == RoomSeat.Status.APPLY);
@@ -100,6 +154,33 @@ public class SeatGridAdapter extends BaseAdapter<RoomSeat> {
     viewHolder.circle.setVisibility(
         status == RoomSeat.Status.ON && member != null ? View.VISIBLE : View.INVISIBLE);
 
+    bindReward(viewHolder, seat);
+  }
+
+  private void bindAudioStatus(SeatViewHolder viewHolder, RoomSeat seat) {
+    NEVoiceRoomMember member = seat.getMember();
+    final ImageView ivStatusHint = viewHolder.ivStatusHint;
+    if (member == null || seat.getStatus() == RoomSeat.Status.APPLY) {
+      ivStatusHint.setVisibility(View.GONE);
+    } else {
+      ivStatusHint.setVisibility(View.VISIBLE);
+      if (member.isAudioOn()) {
+        ivStatusHint.setImageResource(R.drawable.icon_seat_open_micro);
+      } else {
+        ivStatusHint.setImageResource(
+            member.isAudioBanned()
+                ? R.drawable.icon_audio_banned
+                : R.drawable.icon_seat_close_micro);
+      }
+    }
+  }
+
+  // 正在播放时不重启动画
+  private void bindSpeaking(SeatViewHolder viewHolder, RoomSeat seat) {
+    showLottieAnimal(viewHolder.lavAvatar, seat.getMember() != null && seat.isSpeaking());
+  }
+
+  private void bindReward(SeatViewHolder viewHolder, RoomSeat seat) {
     if (seat.getRewardTotal() > 0) {
       viewHolder.tvUserReward.setVisibility(View.VISIBLE);
       viewHolder.tvUserReward.setText(StringUtils.formatCoinCount(seat.getRewardTotal()));
@@ -148,4 +229,102 @@ public class SeatGridAdapter extends BaseAdapter<RoomSeat> {
       tvUserReward = itemView.findViewById(R.id.tv_user_reward);
     }
   }
+
+  /** 提交时的麦位快照，RoomSeat 和成员信息会被原地修改，不能直接拿来比较 */
+  private static final class SeatState {
+    final RoomSeat seat;
+    final int index;
+    final int status;
+    final String account;
+    final String name;
+    final String avatar;
+    final boolean audioOn;
+    final boolean audioBanned;
+    final boolean speaking;
+    final int reward;
+
+    SeatState(RoomSeat seat) {
+      NEVoiceRoomMember member = seat.getMember();
+      this.seat = seat;
+      this.index = seat.getSeatIndex();
+      this.status = seat.getStatus();
+      this.account = member != null ? member.getAccount() : null;
+      this.name = member != null ? member.getName() : null;
+      this.avatar = member != null ? member.getAvatar() : null;
+      this.audioOn = member != null && member.isAudioOn();
+      this.audioBanned = member != null && member.isAudioBanned();
+      this.speaking = seat.isSpeaking();
+      this.reward = seat.getRewardTotal();
+    }
+
+    boolean isSameMember(SeatState other) {
+      return status == other.status
+          && TextUtils.equals(account, other.account)
+          && TextUtils.equals(name, other.name)
+          && TextUtils.equals(avatar, other.avatar);
+    }
+  }
+
+  private static final DiffUtil.ItemCallback<SeatState> DIFF_CALLBACK =
+      new DiffUtil.ItemCallback<SeatState>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SeatState oldItem, @NonNull SeatState newItem) {
+          return oldItem.index == newItem.index;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SeatState oldItem, @NonNull SeatState newItem) {
+          return oldItem.isSameMember(newItem) && getPayloadFlags(oldItem, newItem) == 0;
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull SeatState oldItem, @NonNull SeatState newItem) {
+          if (!oldItem.isSameMember(newItem)) {
+            // 换人或麦位状态变化，整项重绑
+            return null;
+          }
+          return getPayloadFlags(oldItem, newItem);
+        }
+
+        private int getPayloadFlags(SeatState oldItem, SeatState newItem) {
+          int flags = 0;
+          if (oldItem.speaking != newItem.speaking) {
+            flags |= PAYLOAD_SPEAKING;
+          }
+          if (oldItem.audioOn != newItem.audioOn || oldItem.audioBanned != newItem.audioBanned) {
+            flags |= PAYLOAD_AUDIO;
+          }
+          if (oldItem.reward != newItem.reward) {
+            flags |= PAYLOAD_REWARD;
+          }
+          return flags;
+        }
+      };
+
+  private class SyncedUpdateCallback implements ListUpdateCallback {
+    @Override
+    public void onInserted(int position, int count) {
+      syncDataList();
+      notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+      syncDataList();
+      notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+      syncDataList();
+      notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, @Nullable Object payload) {
+      syncDataList();
+      notifyItemRangeChanged(position, count, payload);
+    }
+  }
 }
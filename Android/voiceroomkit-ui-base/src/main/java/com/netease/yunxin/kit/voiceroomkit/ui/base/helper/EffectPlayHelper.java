@@ -7,7 +7,6 @@ package com.netease.yunxin.kit.voiceroomkit.ui.base.helper;
 import static com.netease.yunxin.kit.voiceroomkit.ui.base.helper.EffectPlayHelper.AudioMixingPlayState.STATE_STOPPED;
 
 import android.content.Context;
-import android.media.MediaMetadataRetriever;
 import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import com.netease.yunxin.kit.alog.ALog;
@@ -83,20 +82,6 @@ public class EffectPlayHelper extends NEVoiceRoomListenerAdapter {
         .start();
   }
 
-  /**
-   * 获取音乐文件信息
-   *
-   * @param mediaUri 文件路径
-   */
-  private MusicItem getMusicInfo(String order, String mediaUri) {
-    MediaMetadataRetriever mediaMetadataRetriever = new MediaMetadataRetriever();
-    mediaMetadataRetriever.setDataSource(mediaUri);
-    String name = mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
-    String author =
-        mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
-    return new MusicItem(order, name, author);
-  }
-
   public void setCallBack(IPlayCallback callBack) {
     this.callBack = callBack;
   }
@@ -0,0 +1,202 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.helper;
+
+import android.text.TextUtils;
+import androidx.annotation.MainThread;
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import com.netease.yunxin.kit.entertainment.common.utils.VoiceRoomUtils;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMemberVolumeInfo;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel.VoiceRoomViewModel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 麦位说话状态
+ *
+ * <p>麦位变化时建好 account -> 麦位 的表，音量回调里只查表和计数，不分配对象。音量达到 {@link
+ * #START_VOLUME} 才算开始说话，之后连续静音 {@link #HOLD_MS} 才算停止，避免指示灯闪烁。只回调状态翻转的麦位。
+ */
+@MainThread
+public class SpeakingStateTracker {
+  /** 开始说话的音量阈值 */
+  public static final int START_VOLUME = 3;
+  /** 保持说话的音量阈值 */
+  public static final int KEEP_VOLUME = 1;
+  /** 停止说话前的静音保持时长 */
+  public static final int HOLD_MS = 600;
+
+  private static final int ANCHOR_SLOT = -1;
+
+  public interface Listener {
+    /** @param position 麦位列表（不含主播）中的位置 */
+    void onSeatSpeakingChanged(int position, boolean speaking);
+
+    void onAnchorSpeakingChanged(boolean speaking);
+  }
+
+  private final Listener listener;
+  private final int holdTicks;
+
+  // 下标为麦位列表中的位置，容量固定
+  private final Map<String, Integer> slotOfAccount = new HashMap<>(RoomSeat.SEAT_COUNT * 2);
+  private final RoomSeat[] seats = new RoomSeat[RoomSeat.SEAT_COUNT];
+  private final int[] volumes = new int[RoomSeat.SEAT_COUNT];
+  private final boolean[] speaking = new boolean[RoomSeat.SEAT_COUNT];
+  private final int[] silentTicks = new int[RoomSeat.SEAT_COUNT];
+  private int slotCount;
+
+  private NEVoiceRoomMember anchor;
+  private boolean anchorSpeaking;
+  private int anchorSilentTicks;
+
+  private String localAccount;
+
+  public SpeakingStateTracker(int intervalMs, Listener listener) {
+    this.listener = listener;
+    this.holdTicks = Math.max(1, (HOLD_MS + intervalMs - 1) / intervalMs);
+  }
+
+  /** 麦位列表变化时调用，已在说话的成员保留状态 */
+  public void bindSeats(List<RoomSeat> seatList) {
+    Map<String, Integer> oldSlots = new HashMap<>(slotOfAccount);
+    boolean[] oldSpeaking = speaking.clone();
+    int[] oldSilentTicks = silentTicks.clone();
+    NEVoiceRoomMember oldAnchor = anchor;
+
+    slotOfAccount.clear();
+    anchor = null;
+    slotCount = 0;
+    localAccount = VoiceRoomUtils.getLocalAccount();
+    if (seatList != null) {
+      for (RoomSeat seat : seatList) {
+        if (seat == null) {
+          continue;
+        }
+        NEVoiceRoomMember member = seat.getMember();
+        if (seat.getSeatIndex() == VoiceRoomViewModel.ANCHOR_SEAT_INDEX) {
+          if (member != null && VoiceRoomUtils.isHost(member.getAccount())) {
+            anchor = member;
+            slotOfAccount.put(member.getAccount(), ANCHOR_SLOT);
+          }
+          continue;
+        }
+        if (slotCount >= seats.length) {
+          break;
+        }
+        int slot = slotCount++;
+        seats[slot] = seat;
+        volumes[slot] = 0;
+        speaking[slot] = false;
+        silentTicks[slot] = 0;
+        if (member != null && seat.getStatus() == RoomSeat.Status.ON) {
+          Integer oldSlot = oldSlots.get(member.getAccount());
+          if (oldSlot != null && oldSlot != ANCHOR_SLOT) {
+            speaking[slot] = oldSpeaking[oldSlot];
+            silentTicks[slot] = oldSilentTicks[oldSlot];
+          }
+          slotOfAccount.put(member.getAccount(), slot);
+        }
+        seat.setSpeaking(speaking[slot]);
+      }
+    }
+    for (int i = slotCount; i < seats.length; i++) {
+      seats[i] = null;
+    }
+    if (anchor == null
+        || oldAnchor == null
+        || !TextUtils.equals(anchor.getAccount(), oldAnchor.getAccount())) {
+      setAnchorSpeaking(false);
+    }
+  }
+
+  /** 本端音量 */
+  public void onLocalVolume(int volume) {
+    Integer slot = slotOfAccount.get(localAccount);
+    if (slot == null) {
+      return;
+    }
+    if (slot == ANCHOR_SLOT) {
+      updateAnchor(volume);
+    } else {
+      updateSlot(slot, volume);
+    }
+  }
+
+  /** 远端音量，只包含正在出声的成员 */
+  public void onRemoteVolumes(List<NEVoiceRoomMemberVolumeInfo> volumeInfos) {
+    boolean anchorHeard = false;
+    int anchorVolume = 0;
+    for (int i = 0, size = volumeInfos.size(); i < size; i++) {
+      NEVoiceRoomMemberVolumeInfo info = volumeInfos.get(i);
+      Integer slot = slotOfAccount.get(info.getUserUuid());
+      if (slot == null) {
+        continue;
+      }
+      if (slot == ANCHOR_SLOT) {
+        anchorHeard = true;
+        anchorVolume = info.getVolume();
+      } else {
+        volumes[slot] = info.getVolume();
+      }
+    }
+    for (int slot = 0; slot < slotCount; slot++) {
+      RoomSeat seat = seats[slot];
+      if (seat.getMember() == null || seat.isSameAccount(localAccount)) {
+        continue;
+      }
+      updateSlot(slot, volumes[slot]);
+      volumes[slot] = 0;
+    }
+    if (anchor != null && !TextUtils.equals(anchor.getAccount(), localAccount)) {
+      updateAnchor(anchorHeard ? anchorVolume : 0);
+    }
+  }
+
+  private void updateSlot(int slot, int volume) {
+    if (isLoud(volume, speaking[slot])) {
+      silentTicks[slot] = 0;
+      if (!speaking[slot]) {
+        setSlotSpeaking(slot, true);
+      }
+    } else if (speaking[slot] && ++silentTicks[slot] >= holdTicks) {
+      setSlotSpeaking(slot, false);
+    }
+  }
+
+  private void updateAnchor(int volume) {
+    boolean loud = anchor != null && anchor.isAudioOn() && isLoud(volume, anchorSpeaking);
+    if (loud) {
+      anchorSilentTicks = 0;
+      if (!anchorSpeaking) {
+        setAnchorSpeaking(true);
+      }
+    } else if (anchorSpeaking && ++anchorSilentTicks >= holdTicks) {
+      setAnchorSpeaking(false);
+    }
+  }
+
+  private boolean isLoud(int volume, boolean speaking) {
+    return volume >= (speaking ? KEEP_VOLUME : START_VOLUME);
+  }
+
+  private void setSlotSpeaking(int slot, boolean isSpeaking) {
+    speaking[slot] = isSpeaking;
+    silentTicks[slot] = 0;
+    seats[slot].setSpeaking(isSpeaking);
+    listener.onSeatSpeakingChanged(slot, isSpeaking);
+  }
+
+  private void setAnchorSpeaking(boolean isSpeaking) {
+    anchorSilentTicks = 0;
+    if (anchorSpeaking == isSpeaking) {
+      return;
+    }
+    anchorSpeaking = isSpeaking;
+    listener.onAnchorSpeakingChanged(isSpeaking);
+  }
+}
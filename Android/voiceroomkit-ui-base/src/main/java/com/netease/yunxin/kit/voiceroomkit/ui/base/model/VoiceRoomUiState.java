@@ -0,0 +1,117 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.model;
+
+import androidx.annotation.NonNull;
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 语聊房界面状态快照，不可变。修改通过 with 方法生成新快照，没变化的麦位沿用原对象，没变化时返回自身。
+ */
+public final class VoiceRoomUiState {
+  private final List<RoomSeat> seats;
+  private final int currentSeatState;
+  private final int anchorReward;
+
+  public VoiceRoomUiState(List<RoomSeat> seats, int currentSeatState, int anchorReward) {
+    this.seats = Collections.unmodifiableList(new ArrayList<>(seats));
+    this.currentSeatState = currentSeatState;
+    this.anchorReward = anchorReward;
+  }
+
+  private VoiceRoomUiState(VoiceRoomUiState other, List<RoomSeat> seats) {
+    this.seats = seats;
+    this.currentSeatState = other.currentSeatState;
+    this.anchorReward = other.anchorReward;
+  }
+
+  private VoiceRoomUiState(VoiceRoomUiState other, int currentSeatState, int anchorReward) {
+    this.seats = other.seats;
+    this.currentSeatState = currentSeatState;
+    this.anchorReward = anchorReward;
+  }
+
+  @NonNull
+  public List<RoomSeat> getSeats() {
+    return seats;
+  }
+
+  public int getCurrentSeatState() {
+    return currentSeatState;
+  }
+
+  public int getAnchorReward() {
+    return anchorReward;
+  }
+
+  /** 新麦位列表，内容没变化的麦位沿用旧对象 */
+  public VoiceRoomUiState withSeats(List<RoomSeat> newSeats) {
+    if (newSeats == null) {
+      return this;
+    }
+    List<RoomSeat> merged = new ArrayList<>(newSeats.size());
+    boolean changed = newSeats.size() != seats.size();
+    for (int i = 0; i < newSeats.size(); i++) {
+      RoomSeat newSeat = newSeats.get(i);
+      RoomSeat oldSeat = i < seats.size() ? seats.get(i) : null;
+      if (oldSeat != null && isSameSeat(oldSeat, newSeat)) {
+        merged.add(oldSeat);
+      } else {
+        merged.add(newSeat);
+        changed = true;
+      }
+    }
+    return changed ? new VoiceRoomUiState(this, Collections.unmodifiableList(merged)) : this;
+  }
+
+  /** 整体替换麦位列表，不沿用旧对象，用于替换快照等临时数据 */
+  public VoiceRoomUiState withSeatsReplaced(List<RoomSeat> newSeats) {
+    if (newSeats == null) {
+      return this;
+    }
+    return new VoiceRoomUiState(this, Collections.unmodifiableList(new ArrayList<>(newSeats)));
+  }
+
+  /** 麦位对象不变，但成员属性（如 mute）已变化，需要重新下发 */
+  public VoiceRoomUiState withSeatsInvalidated() {
+    return new VoiceRoomUiState(this, Collections.unmodifiableList(new ArrayList<>(seats)));
+  }
+
+  public VoiceRoomUiState withCurrentSeatState(int currentSeatState) {
+    return this.currentSeatState == currentSeatState
+        ? this
+        : new VoiceRoomUiState(this, currentSeatState, anchorReward);
+  }
+
+  public VoiceRoomUiState withAnchorReward(int anchorReward) {
+    return this.anchorReward == anchorReward
+        ? this
+        : new VoiceRoomUiState(this, currentSeatState, anchorReward);
+  }
+
+  private static boolean isSameSeat(RoomSeat oldSeat, RoomSeat newSeat) {
+    return oldSeat == newSeat
+        || (oldSeat.getSeatIndex() == newSeat.getSeatIndex()
+            && oldSeat.getStatus() == newSeat.getStatus()
+            && oldSeat.getReason() == newSeat.getReason()
+            && oldSeat.getRewardTotal() == newSeat.getRewardTotal()
+            && isSameMember(oldSeat.getMember(), newSeat.getMember()));
+  }
+
+  // 换人或成员信息对象被替换时都视为变化，麦位上显示的是成员的昵称、头像
+  private static boolean isSameMember(NEVoiceRoomMember oldMember, NEVoiceRoomMember newMember) {
+    return oldMember == newMember
+        || (oldMember != null
+            && newMember != null
+            && Objects.equals(oldMember.getAccount(), newMember.getAccount())
+            && Objects.equals(oldMember.getName(), newMember.getName())
+            && Objects.equals(oldMember.getAvatar(), newMember.getAvatar()));
+  }
+}
@@ -50,7 +50,7 @@ public class FloatPlayManager {
             release();
           } else {
             stopFloatPlay();
-            VoiceRoomBaseActivity.charSequenceList.clear();
+            VoiceRoomBaseActivity.chatMsgHistory.clear();
           }
         }
       };
@@ -139,7 +139,7 @@ public class FloatPlayManager {
 
     stopFloatPlay();
     SongPlayManager.getInstance().stop();
-    VoiceRoomBaseActivity.charSequenceList.clear();
+    VoiceRoomBaseActivity.chatMsgHistory.clear();
   }
 
   public boolean isShowFloatView() {
@@ -129,8 +129,7 @@ public class NESeatGridView extends LinearLayout {
     }
 
     if (seatAdapter != null) {
-      seatAdapter.setItems(audienceSeats);
-      seatAdapter.notifyDataSetChanged();
+      seatAdapter.submitSeats(audienceSeats);
     }
   }
 
@@ -140,6 +139,17 @@ public class NESeatGridView extends LinearLayout {
     }
   }
 
+  /**
+   * 局部刷新
+   *
+   * @param payload {@link SeatGridAdapter#PAYLOAD_SPEAKING} 等
+   */
+  public void refreshItem(int index, int payload) {
+    if (seatAdapter != null && index >= 0) {
+      seatAdapter.notifyItemChanged(index, payload);
+    }
+  }
+
   public List<RoomSeat> getItems() {
     return seatAdapter == null ? null : seatAdapter.getDataList();
   }
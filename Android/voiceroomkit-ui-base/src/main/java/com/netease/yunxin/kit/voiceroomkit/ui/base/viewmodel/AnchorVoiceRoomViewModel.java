@@ -8,8 +8,8 @@ import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import com.netease.yunxin.kit.alog.ALog;
 import com.netease.yunxin.kit.common.network.NetRequestCallback;
-import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia;
 import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback;
+import com.netease.yunxin.kit.ordersong.core.NEOrderSongService;
 import com.netease.yunxin.kit.ordersong.core.constant.OrderSongConstant;
 import com.netease.yunxin.kit.ordersong.core.model.OrderSong;
 import com.netease.yunxin.kit.ordersong.core.model.Song;
@@ -28,53 +28,28 @@ public class AnchorVoiceRoomViewModel extends VoiceRoomViewModel {
                 ALog.i(TAG, "onSongOrdered queryCurrentPlayingSong success info:" + info);
                 if (info == null) {
                   // 当前无播放歌曲
-                  if (NECopyrightedMedia.getInstance()
-                      .isSongPreloaded(song.getSongId(), song.getChannel())) {
-                    reportReady(song);
-                  } else {
-                    NECopyrightedMedia.getInstance()
-                        .preloadSong(
-                            song.getSongId(),
-                            song.getChannel(),
-                            new NESongPreloadCallback() {
-                              @Override
-                              public void onPreloadStart(String songId, int channel) {}
-
-                              @Override
-                              public void onPreloadProgress(
-                                  String songId, int channel, float progress) {}
-
-                              @Override
-                              public void onPreloadComplete(
-                                  String songId, int channel, int errorCode, String msg) {
-                                reportReady(song);
-                              }
-                            });
-                  }
+                  downloadSongThenReport(song);
                   return;
                 }
-                if (NECopyrightedMedia.getInstance().isSongPreloaded(info.songId, info.channel)) {
-                  ALog.i(TAG, "onSongOrdered isSongPreloaded");
-                } else {
-                  NECopyrightedMedia.getInstance()
-                      .preloadSong(
-                          info.songId,
-                          info.channel,
-                          new NESongPreloadCallback() {
-                            @Override
-                            public void onPreloadStart(String songId, int channel) {}
-
-                            @Override
-                            public void onPreloadProgress(
-                                String songId, int channel, float progress) {}
-
-                            @Override
-                            public void onPreloadComplete(
-                                String songId, int channel, int errorCode, String msg) {
-                              ALog.i(TAG, "onSongOrdered onPreloadComplete");
-                            }
-                          });
-                }
+                // 与预下载共用同一次下载
+                NEOrderSongService.INSTANCE.getPreloadScheduler()
+                    .preloadNow(
+                        info.songId,
+                        info.channel,
+                        new NESongPreloadCallback() {
+                          @Override
+                          public void onPreloadStart(String songId, int channel) {}
+
+                          @Override
+                          public void onPreloadProgress(
+                              String songId, int channel, float progress) {}
+
+                          @Override
+                          public void onPreloadComplete(
+                              String songId, int channel, int errorCode, String msg) {
+                            ALog.i(TAG, "onSongOrdered onPreloadComplete");
+                          }
+                        });
               }
 
               @Override
@@ -123,28 +98,25 @@ public class AnchorVoiceRoomViewModel extends VoiceRoomViewModel {
     }
   }
 
+  /** 已经预下载好时立即上报，正在预下载时等同一次下载完成 */
   private void downloadSongThenReport(Song song) {
-    if (NECopyrightedMedia.getInstance().isSongPreloaded(song.getSongId(), song.getChannel())) {
-      reportReady(song);
-    } else {
-      NECopyrightedMedia.getInstance()
-          .preloadSong(
-              song.getSongId(),
-              song.getChannel(),
-              new NESongPreloadCallback() {
-                @Override
-                public void onPreloadStart(String songId, int channel) {}
-
-                @Override
-                public void onPreloadProgress(String songId, int channel, float progress) {}
-
-                @Override
-                public void onPreloadComplete(
-                    String songId, int channel, int errorCode, String msg) {
-                  reportReady(song);
-                }
-              });
-    }
+    NEOrderSongService.INSTANCE.getPreloadScheduler()
+        .preloadNow(
+            song.getSongId(),
+            song.getChannel(),
+            new NESongPreloadCallback() {
+              @Override
+              public void onPreloadStart(String songId, int channel) {}
+
+              @Override
+              public void onPreloadProgress(String songId, int channel, float progress) {}
+
+              @Override
+              public void onPreloadComplete(
+                  String songId, int channel, int errorCode, String msg) {
+                reportReady(song);
+              }
+            });
   }
 
   private void reportReady(Song song) {
@@ -0,0 +1,167 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import com.netease.yunxin.kit.entertainment.common.utils.SeatUtils;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomBatchSeatUserReward;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomInfo;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 麦位投影：把 kit 的麦位列表和房间里的打赏信息合成界面用的 {@link RoomSeat} 列表
+ *
+ * <p>在单独的线程里一次完成成员查找、状态转换和金币合并，金币按账号建表查找。与上次结果相同的麦位沿用原对象，
+ * 结果为不可变列表，回调在主线程。回调前已有更新的投影提交时，旧结果直接丢弃，只回调最后一次提交的结果。
+ */
+class SeatProjector {
+
+  interface Callback {
+    @MainThread
+    void onProjected(@NonNull List<RoomSeat> seats);
+  }
+
+  /** 按账号查找房间成员 */
+  interface MemberLookup {
+    @Nullable
+    NEVoiceRoomMember getMember(@Nullable String account);
+  }
+
+  private final ExecutorService executor;
+  private final Executor mainExecutor;
+  private final MemberLookup memberLookup;
+
+  // 只在投影线程访问，key 为麦位序号
+  private final Map<Integer, RoomSeat> lastSeats = new HashMap<>(RoomSeat.SEAT_COUNT * 2);
+  private List<NEVoiceRoomBatchSeatUserReward> lastRewardList;
+  private Map<String, Integer> lastRewards = Collections.emptyMap();
+
+  // 最近一次提交的序号，只在主线程访问
+  private int generation;
+
+  SeatProjector() {
+    this(
+        Executors.newSingleThreadExecutor(r -> new Thread(r, "SeatProjector")),
+        new Handler(Looper.getMainLooper())::post,
+        SeatUtils::getMember);
+  }
+
+  SeatProjector(
+      @NonNull ExecutorService executor,
+      @NonNull Executor mainExecutor,
+      @NonNull MemberLookup memberLookup) {
+    this.executor = executor;
+    this.mainExecutor = mainExecutor;
+    this.memberLookup = memberLookup;
+  }
+
+  @MainThread
+  void project(
+      @NonNull List<NEVoiceRoomSeatItem> items,
+      @Nullable NEVoiceRoomInfo roomInfo,
+      @NonNull Callback callback) {
+    // 打赏列表只会整体替换，在主线程取引用即可
+    List<NEVoiceRoomBatchSeatUserReward> rewardList =
+        roomInfo != null ? roomInfo.getLiveModel().getSeatUserReward() : null;
+    int submitted = ++generation;
+    executor.execute(
+        () -> {
+          List<RoomSeat> seats = projectInternal(items, rewardList);
+          mainExecutor.execute(
+              () -> {
+                if (submitted == generation) {
+                  callback.onProjected(seats);
+                }
+              });
+        });
+  }
+
+  @MainThread
+  void release() {
+    executor.shutdownNow();
+    // 已经投递到主线程的结果不再回调
+    generation++;
+  }
+
+  /** 账号 -> 金币 */
+  @NonNull
+  static Map<String, Integer> buildRewardMap(
+      @Nullable List<NEVoiceRoomBatchSeatUserReward> rewardList) {
+    if (rewardList == null || rewardList.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Integer> rewards = new HashMap<>(rewardList.size() * 2);
+    for (NEVoiceRoomBatchSeatUserReward reward : rewardList) {
+      // 与逐个查找一致，同一账号取第一条
+      if (reward != null && !rewards.containsKey(reward.getUserUuid())) {
+        rewards.put(reward.getUserUuid(), reward.getRewardTotal());
+      }
+    }
+    return rewards;
+  }
+
+  static int getReward(@NonNull Map<String, Integer> rewards, @Nullable String account) {
+    if (account == null || account.isEmpty()) {
+      return 0;
+    }
+    Integer reward = rewards.get(account);
+    return reward != null ? reward : 0;
+  }
+
+  private List<RoomSeat> projectInternal(
+      List<NEVoiceRoomSeatItem> items, List<NEVoiceRoomBatchSeatUserReward> rewardList) {
+    if (rewardList != lastRewardList) {
+      lastRewardList = rewardList;
+      lastRewards = buildRewardMap(rewardList);
+    }
+    List<RoomSeat> result = new ArrayList<>(items.size());
+    for (NEVoiceRoomSeatItem item : items) {
+      int index = item.getIndex();
+      int status = SeatUtils.transSeatStatus(item.getStatus());
+      int reason = SeatUtils.transSeatReason(item.getOnSeatType());
+      NEVoiceRoomMember member = memberLookup.getMember(item.getUser());
+      int reward = getReward(lastRewards, member != null ? member.getAccount() : null);
+      RoomSeat old = lastSeats.get(index);
+      if (old != null && isSame(old, status, reason, member, reward)) {
+        result.add(old);
+        continue;
+      }
+      RoomSeat projected = new RoomSeat(index, status, reason, member, reward);
+      lastSeats.put(index, projected);
+      result.add(projected);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  // 麦位上展示成员的昵称和头像，这些变化时也要生成新对象
+  private static boolean isSame(
+      RoomSeat old, int status, int reason, NEVoiceRoomMember member, int reward) {
+    NEVoiceRoomMember oldMember = old.getMember();
+    return old.getStatus() == status
+        && old.getReason() == reason
+        && old.getRewardTotal() == reward
+        && (oldMember == member
+            || (oldMember != null
+                && member != null
+                && Objects.equals(oldMember.getAccount(), member.getAccount())
+                && Objects.equals(oldMember.getName(), member.getName())
+                && Objects.equals(oldMember.getAvatar(), member.getAvatar())));
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomUiState;
+
+/**
+ * 界面状态仓库。所有修改都经过 {@link Reducer} 在主线程串行执行，同一帧内的多次修改合并成一次下发。
+ *
+ * <p>每次下发（包括 LiveData 观察者的处理）的主线程耗时记入 {@link NEVoiceRoomMetrics}；修改、下发次数
+ * 计入 {@code uiState.reduce}、{@code uiState.emit}，与 {@link NEVoiceRoomMetrics#SEAT_EVENT} 对比
+ * 即每个麦位事件的下发次数。
+ */
+public class VoiceRoomUiStateStore {
+
+  public interface Reducer {
+    @NonNull
+    VoiceRoomUiState reduce(@NonNull VoiceRoomUiState state);
+  }
+
+  public interface OnStateChangedListener {
+    void onStateChanged(@NonNull VoiceRoomUiState oldState, @NonNull VoiceRoomUiState newState);
+  }
+
+  /** 在主线程的下一帧执行下发，单元测试中替换 */
+  interface FrameScheduler {
+    @MainThread
+    void postFrame(@NonNull Runnable frame);
+  }
+
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final FrameScheduler frameScheduler;
+  private final OnStateChangedListener listener;
+  private VoiceRoomUiState state;
+  private VoiceRoomUiState emittedState;
+  private boolean frameScheduled = false;
+
+  private static final String METRIC_EMIT = NEVoiceRoomMetrics.MAIN_OBSERVER_PREFIX + "uiState";
+  private static final String METRIC_REDUCE_COUNT = "uiState.reduce";
+  private static final String METRIC_EMIT_COUNT = "uiState.emit";
+
+  // 统计信息
+  private long reduceCount;
+  private long emitCount;
+
+  private final Runnable emitTask = this::emit;
+
+  public VoiceRoomUiStateStore(
+      @NonNull VoiceRoomUiState initialState, @NonNull OnStateChangedListener listener) {
+    this(
+        initialState,
+        listener,
+        frame -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> frame.run()));
+  }
+
+  VoiceRoomUiStateStore(
+      @NonNull VoiceRoomUiState initialState,
+      @NonNull OnStateChangedListener listener,
+      @NonNull FrameScheduler frameScheduler) {
+    this.state = initialState;
+    this.emittedState = initialState;
+    this.listener = listener;
+    this.frameScheduler = frameScheduler;
+  }
+
+  /** 最新状态，可能还没有下发 */
+  @MainThread
+  @NonNull
+  public VoiceRoomUiState getState() {
+    return state;
+  }
+
+  @AnyThread
+  public void dispatch(@NonNull Reducer reducer) {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      reduce(reducer);
+    } else {
+      mainHandler.post(() -> reduce(reducer));
+    }
+  }
+
+  @MainThread
+  public long getReduceCount() {
+    return reduceCount;
+  }
+
+  /** 实际下发次数，与 {@link #getReduceCount()} 对比可以看出合并效果 */
+  @MainThread
+  public long getEmitCount() {
+    return emitCount;
+  }
+
+  @MainThread
+  private void reduce(Reducer reducer) {
+    reduceCount++;
+    NEVoiceRoomMetrics.increment(METRIC_REDUCE_COUNT);
+    state = reducer.reduce(state);
+    if (state != emittedState && !frameScheduled) {
+      frameScheduled = true;
+      frameScheduler.postFrame(emitTask);
+    }
+  }
+
+  @MainThread
+  private void emit() {
+    frameScheduled = false;
+    if (state == emittedState) {
+      return;
+    }
+    VoiceRoomUiState oldState = emittedState;
+    emittedState = state;
+    emitCount++;
+    NEVoiceRoomMetrics.increment(METRIC_EMIT_COUNT);
+    long start = NEVoiceRoomMetrics.startTimer();
+    listener.onStateChanged(oldState, state);
+    NEVoiceRoomMetrics.stopTimer(METRIC_EMIT, start);
+  }
+}
@@ -4,6 +4,8 @@
 package com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel;
 
 import android.annotation.SuppressLint;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -14,6 +16,7 @@ import com.netease.yunxin.kit.alog.ALog;
 import com.netease.yunxin.kit.common.network.NetRequestCallback;
 import com.netease.yunxin.kit.common.utils.NetworkUtils;
 import com.netease.yunxin.kit.copyrightedmedia.api.SongScene;
+import com.netease.yunxin.kit.entertainment.common.livedata.FrameBatchLiveData;
 import com.netease.yunxin.kit.entertainment.common.livedata.SingleLiveEvent;
 import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
 import com.netease.yunxin.kit.entertainment.common.utils.NetUtils;
@@ -39,34 +42,50 @@ import com.netease.yunxin.kit.voiceroomkit.ui.base.chatroom.ChatRoomMsgCreator;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.helper.SeatHelper;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.model.MemberAudioBannedModel;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.model.MemberAudioMuteChangedModel;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomUiState;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomSeatEvent;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.service.VoiceRoomService;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.utils.VoiceRoomUILog;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import kotlin.*;
 import org.jetbrains.annotations.NotNull;
 
 public class VoiceRoomViewModel extends ViewModel {
   public static final String TAG = "VoiceRoomViewModel";
 
-  public static final int VOLUME_INDICATION_INTERVAL = 1000;
+  public static final int VOLUME_INDICATION_INTERVAL = 200; // 说话状态由 SpeakingStateTracker 去抖
 
   public static final int ANCHOR_SEAT_INDEX = 1;
   public static final int CURRENT_SEAT_STATE_IDLE = 0;
   public static final int CURRENT_SEAT_STATE_APPLYING = 1;
   public static final int CURRENT_SEAT_STATE_ON_SEAT = 2;
 
+  private static final long SEAT_REQUEST_REFRESH_DELAY = 300; // 申请列表刷新去抖
+  private static final long RECONNECT_REFRESH_DELAY = 1000; // 网络抖动时等连接稳定再刷新
+  private static final String METRIC_CHAT_OBSERVER = "chat";
+
   public MutableLiveData<String> toastData = new MutableLiveData<>(); // toast
-  public MutableLiveData<CharSequence> chatRoomMsgData = new MutableLiveData<>(); // 聊天列表数据
+  public FrameBatchLiveData<CharSequence> chatRoomMsgData =
+      new FrameBatchLiveData<>(); // 聊天列表数据，按帧批量派发，只派发一次
   public MutableLiveData<Integer> memberCountData = new MutableLiveData<>(); // 房间人数
 
+  // 麦位、麦位状态、主播金币统一由 uiStateStore 合并后下发
+  private final VoiceRoomUiStateStore uiStateStore =
+      new VoiceRoomUiStateStore(
+          new VoiceRoomUiState(VoiceRoomUtils.createSeats(), CURRENT_SEAT_STATE_IDLE, 0),
+          this::onUiStateChanged);
+  // 麦位转换和金币合并在后台线程完成
+  private final SeatProjector seatProjector = new SeatProjector();
+
   public MutableLiveData<Integer> anchorReward = new MutableLiveData<>(); // 主播金币数量
   public MutableLiveData<NEVoiceRoomEndReason> roomEndData = new MutableLiveData<>();
   public MutableLiveData<Integer> roomRtcErrorData = new MutableLiveData<>();
   public MutableLiveData<Integer> currentSeatState = new MutableLiveData<>(CURRENT_SEAT_STATE_IDLE);
   public MutableLiveData<List<RoomSeat>> onSeatListData =
-      new MutableLiveData<>(VoiceRoomUtils.createSeats());
+      new MutableLiveData<>(uiStateStore.getState().getSeats());
   public MutableLiveData<List<RoomSeat>> applySeatListData = new MutableLiveData<>(); // 申请麦位列表
   public MutableLiveData<VoiceRoomSeatEvent> currentSeatEvent = new SingleLiveEvent<>(); // 当前操作的麦位
   public MutableLiveData<Integer> netData = new MutableLiveData<>();
@@ -99,7 +118,19 @@ public class VoiceRoomViewModel extends ViewModel {
   private Long liveRecordId;
   private NEVoiceRoomInfo roomInfo;
 
-  private List<RoomSeat> roomSeats;
+  // 加入房间时提前查询的当前歌曲，加入成功后才下发
+  private boolean roomJoined = false;
+  private boolean playingSongPrefetching = false;
+  private boolean playingSongPrefetched = false;
+  private OrderSong prefetchedPlayingSong;
+  // 已收到服务端麦位，之后回来的快照不再使用
+  private boolean seatInfoReceived = false;
+  // 当前展示的是快照里的麦位
+  private boolean snapshotSeatsShown = false;
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable seatRequestRefreshTask = this::getSeatRequestList;
+  private final Runnable reconnectRefreshTask = this::refreshOnReconnect;
   private final NEVoiceRoomListenerAdapter listener =
       new NEVoiceRoomListenerAdapter() {
         @Override
@@ -113,7 +144,7 @@ public class VoiceRoomViewModel extends ViewModel {
         public void onReceiveTextMessage(@NonNull NEVoiceRoomChatTextMessage message) {
           String content = message.getText();
           ALog.i(TAG, "onReceiveTextMessage :${message.fromNick}");
-          chatRoomMsgData.postValue(
+          chatRoomMsgData.post(
               ChatRoomMsgCreator.createText(
                   NEVoiceRoomUI.getInstance().getApplication(),
                   VoiceRoomUtils.isHost(message.getFromUserUuid()),
@@ -127,7 +158,7 @@ public class VoiceRoomViewModel extends ViewModel {
             boolean mute,
             @org.jetbrains.annotations.Nullable NEVoiceRoomMember operateBy) {
           memberAudioMuteChangedData.postValue(new MemberAudioMuteChangedModel(member, mute));
-          onSeatListData.postValue(roomSeats);
+          uiStateStore.dispatch(VoiceRoomUiState::withSeatsInvalidated);
         }
 
         @Override
@@ -135,7 +166,7 @@ public class VoiceRoomViewModel extends ViewModel {
           for (NEVoiceRoomMember member : members) {
             ALog.d(TAG, "onMemberJoinRoom :${member.name}");
             if (!VoiceRoomUtils.isLocal(member.getAccount())) {
-              chatRoomMsgData.postValue(ChatRoomMsgCreator.createRoomEnter(member.getName()));
+              chatRoomMsgData.post(ChatRoomMsgCreator.createRoomEnter(member.getName()));
             }
           }
           updateRoomMemberCount();
@@ -145,7 +176,7 @@ public class VoiceRoomViewModel extends ViewModel {
         public void onMemberLeaveRoom(@NonNull List<NEVoiceRoomMember> members) {
           for (NEVoiceRoomMember member : members) {
             ALog.d(TAG, "onMemberLeaveRoom :$member.name");
-            chatRoomMsgData.postValue(ChatRoomMsgCreator.createRoomExit(member.getName()));
+            chatRoomMsgData.post(ChatRoomMsgCreator.createRoomExit(member.getName()));
           }
           updateRoomMemberCount();
         }
@@ -174,7 +205,7 @@ public class VoiceRoomViewModel extends ViewModel {
                 account,
                 String.format(getString(R.string.voiceroom_apply_micro_has_arrow), seatIndex - 1));
           }
-          getSeatRequestList();
+          refreshSeatRequestListLater();
         }
 
         @Override
@@ -219,7 +250,7 @@ public class VoiceRoomViewModel extends ViewModel {
         @Override
         public void onSeatLeave(int seatIndex, @NonNull String account) {
           if (TextUtils.equals(account, SeatUtils.getCurrentUuid())) {
-            currentSeatState.postValue(CURRENT_SEAT_STATE_IDLE);
+            uiStateStore.dispatch(state -> state.withCurrentSeatState(CURRENT_SEAT_STATE_IDLE));
             currentSeatEvent.postValue(
                 new VoiceRoomSeatEvent(account, seatIndex, RoomSeat.Reason.LEAVE));
           }
@@ -231,11 +262,12 @@ public class VoiceRoomViewModel extends ViewModel {
 
         @Override
         public void onSeatListChanged(@NonNull List<NEVoiceRoomSeatItem> seatItems) {
-          ALog.i(TAG, "onSeatListChanged seatItems =" + seatItems);
-          roomSeats = SeatUtils.transNESeatItem2VoiceRoomSeat(seatItems);
-          handleSeatItemListChanged();
+          // 麦位明细 kit 已在 debug 级别记录，这里只记数量
+          ALog.i(TAG, "onSeatListChanged size = " + seatItems.size());
+          seatInfoReceived = true;
+          projectSeats(seatItems);
           if (VoiceRoomUtils.isLocalAnchor()) {
-            getSeatRequestList();
+            refreshSeatRequestListLater();
           }
         }
 
@@ -243,7 +275,7 @@ public class VoiceRoomViewModel extends ViewModel {
         public void onSeatKicked(
             int seatIndex, @NonNull String account, @NonNull String operateBy) {
           if (isCurrentUserOnSeat() && TextUtils.equals(account, SeatUtils.getCurrentUuid())) {
-            currentSeatState.postValue(CURRENT_SEAT_STATE_IDLE);
+            uiStateStore.dispatch(state -> state.withCurrentSeatState(CURRENT_SEAT_STATE_IDLE));
             currentSeatEvent.postValue(
                 new VoiceRoomSeatEvent(account, seatIndex, RoomSeat.Reason.ANCHOR_KICK));
           }
@@ -275,7 +307,7 @@ public class VoiceRoomViewModel extends ViewModel {
         @Override
         public void onMemberAudioBanned(@NonNull NEVoiceRoomMember member, boolean banned) {
           memberAudioBannedData.postValue(new MemberAudioBannedModel(member, banned));
-          onSeatListData.postValue(roomSeats);
+          uiStateStore.dispatch(VoiceRoomUiState::withSeatsInvalidated);
         }
 
         @Override
@@ -345,7 +377,8 @@ public class VoiceRoomViewModel extends ViewModel {
         public void onConnected(NetworkUtils.NetworkType networkType) {
           if (!isFirst) {
             ALog.i(TAG, "onNetworkAvailable");
-            updateAllInfo();
+            handler.removeCallbacks(reconnectRefreshTask);
+            handler.postDelayed(reconnectRefreshTask, RECONNECT_REFRESH_DELAY);
           }
           isFirst = false;
           netData.postValue(NEVoiceRoomUIConstants.NET_AVAILABLE);
@@ -355,6 +388,7 @@ public class VoiceRoomViewModel extends ViewModel {
         public void onDisconnected() {
           ALog.i(TAG, "onNetworkUnavailable");
           isFirst = false;
+          handler.removeCallbacks(reconnectRefreshTask);
           netData.postValue(NEVoiceRoomUIConstants.NET_LOST);
         }
 
@@ -364,9 +398,18 @@ public class VoiceRoomViewModel extends ViewModel {
   public void initDataOnJoinRoom() {
     initListeners();
     updateRoomMemberCount();
-    queryPlayingSongInfo();
+    roomJoined = true;
+    if (playingSongPrefetched) {
+      playingSongPrefetched = false;
+      postPlayingSong(prefetchedPlayingSong);
+      prefetchedPlayingSong = null;
+    } else if (!playingSongPrefetching) {
+      queryPlayingSongInfo();
+    }
     getSeatRequestList();
     NEVoiceRoomKit.getInstance().enableAudioVolumeIndication(true, VOLUME_INDICATION_INTERVAL);
+    // 连续送礼合并成一次请求
+    NEVoiceRoomKit.getInstance().enableGiftAggregation(true);
 
     if (VoiceRoomUtils.isLocalAnchor()) {
       NEVoiceRoomKit.getInstance().submitSeatRequest(ANCHOR_SEAT_INDEX, true, null);
@@ -377,6 +420,10 @@ public class VoiceRoomViewModel extends ViewModel {
 
   private void initListeners() {
     NEOrderSongService.INSTANCE.addListener(orderSongListener);
+    if (VoiceRoomUtils.isLocalAnchor()) {
+      // 主播负责播放，提前下载已点列表里接下来的歌
+      NEOrderSongService.INSTANCE.getPreloadScheduler().start();
+    }
     NEVoiceRoomKit.getInstance().addVoiceRoomListener(listener);
     NetUtils.registerStateListener(networkStateListener);
   }
@@ -384,12 +431,23 @@ public class VoiceRoomViewModel extends ViewModel {
   @Override
   protected void onCleared() {
     NEOrderSongService.INSTANCE.removeListener(orderSongListener);
+    NEOrderSongService.INSTANCE.getPreloadScheduler().stop();
     NetUtils.unregisterStateListener(networkStateListener);
     NEVoiceRoomKit.getInstance().removeVoiceRoomListener(listener);
     NEVoiceRoomKit.getInstance().enableAudioVolumeIndication(false, VOLUME_INDICATION_INTERVAL);
+    NEVoiceRoomKit.getInstance().enableGiftAggregation(false);
+    handler.removeCallbacks(seatRequestRefreshTask);
+    handler.removeCallbacks(reconnectRefreshTask);
+    seatProjector.release();
     super.onCleared();
   }
 
+  // 麦位事件往往成串到达，合并成一次申请列表请求
+  private void refreshSeatRequestListLater() {
+    handler.removeCallbacks(seatRequestRefreshTask);
+    handler.postDelayed(seatRequestRefreshTask, SEAT_REQUEST_REFRESH_DELAY);
+  }
+
   public void getSeatRequestList() {
     NEVoiceRoomKit.getInstance()
         .getSeatRequestList(
@@ -425,6 +483,7 @@ public class VoiceRoomViewModel extends ViewModel {
   public void init(long liveRecordId, String roomUuid) {
     this.liveRecordId = liveRecordId;
     this.roomUuid = roomUuid;
+    chatRoomMsgData.setMetricName(METRIC_CHAT_OBSERVER);
     updateRoomInfo(null);
   }
 
@@ -438,6 +497,9 @@ public class VoiceRoomViewModel extends ViewModel {
         new NEJoinVoiceRoomParams(
             roomUuid, nick, avatar, NEVoiceRoomRole.Companion.fromValue(role), liveRecordId, null);
     NEJoinVoiceRoomOptions options = new NEJoinVoiceRoomOptions();
+    options.setJoinTraceListener(trace -> ALog.i(TAG, "joinRoom trace = " + trace));
+    loadRoomSnapshot();
+    prefetchPlayingSong();
     NEVoiceRoomKit.getInstance()
         .joinRoom(
             params,
@@ -465,7 +527,7 @@ public class VoiceRoomViewModel extends ViewModel {
             });
   }
 
-  /** 更新场景：1、断网重连；2、上麦的时候（礼物值的信息需要在房间信息中获取） */
+  /** 更新场景：1、加入房间；2、上麦的时候（礼物值的信息需要在房间信息中获取） */
   private void updateAllInfo() {
     updateRoomInfo(
         new NEVoiceRoomCallback<NEVoiceRoomInfo>() {
@@ -475,7 +537,25 @@ public class VoiceRoomViewModel extends ViewModel {
             VoiceRoomViewModel.this.roomInfo = roomInfo;
             updateAnchorRewardInfo();
             getSeatInfo();
-            getSeatRequestList();
+            refreshSeatRequestListLater();
+          }
+
+          @Override
+          public void onFailure(int code, @Nullable String msg) {}
+        });
+  }
+
+  /** 断网重连：麦位由 kit 对比后只在有变化时通知，这里只刷新房间信息和申请列表 */
+  private void refreshOnReconnect() {
+    updateRoomInfo(
+        new NEVoiceRoomCallback<NEVoiceRoomInfo>() {
+
+          @Override
+          public void onSuccess(@Nullable NEVoiceRoomInfo roomInfo) {
+            VoiceRoomViewModel.this.roomInfo = roomInfo;
+            updateAnchorRewardInfo();
+            updateSeatWithRewardInfo();
+            refreshSeatRequestListLater();
           }
 
           @Override
@@ -516,8 +596,8 @@ public class VoiceRoomViewModel extends ViewModel {
               @Override
               public void onSuccess(@Nullable NEVoiceRoomSeatInfo seatInfo) {
                 if (seatInfo != null) {
-                  roomSeats = SeatUtils.transNESeatItem2VoiceRoomSeat(seatInfo.getSeatItems());
-                  handleSeatItemListChanged();
+                  seatInfoReceived = true;
+                  projectSeats(seatInfo.getSeatItems());
                 }
               }
 
@@ -536,14 +616,7 @@ public class VoiceRoomViewModel extends ViewModel {
               @Override
               public void success(@Nullable OrderSong info) {
                 ALog.i(TAG, "queryPlayingSongInfo info = " + info);
-                if (info != null) {
-                  Song song = new Song();
-                  song.setOrderId(info.orderId);
-                  song.setSongId(info.songId);
-                  song.setSongName(info.songName);
-                  song.setChannel(info.channel);
-                  currentSongChange.postValue(song);
-                }
+                postPlayingSong(info);
               }
 
               @Override
@@ -553,42 +626,181 @@ public class VoiceRoomViewModel extends ViewModel {
             });
   }
 
+  /** 先展示上次离开时的房间快照，服务端的房间信息和麦位回来后覆盖 */
+  private void loadRoomSnapshot() {
+    if (liveRecordId == null) {
+      return;
+    }
+    NEVoiceRoomKit.getInstance()
+        .loadRoomSnapshot(
+            liveRecordId,
+            new NEVoiceRoomCallback<NEVoiceRoomSnapshot>() {
+
+              @Override
+              public void onSuccess(@Nullable NEVoiceRoomSnapshot snapshot) {
+                if (snapshot == null) {
+                  return;
+                }
+                ALog.i(TAG, "loadRoomSnapshot savedTime = " + snapshot.getSavedTime());
+                // 快照的房间信息只用于占位展示，不作为当前房间信息，加入成功后以服务端返回的为准
+                if (roomInfo == null) {
+                  int reward = VoiceRoomUtils.getAnchorReward(snapshot.getRoomInfo());
+                  uiStateStore.dispatch(state -> state.withAnchorReward(reward));
+                }
+                if (roomInfoLiveData.getValue() == null) {
+                  roomInfoLiveData.setValue(snapshot.getRoomInfo());
+                }
+                if (!seatInfoReceived) {
+                  handleSeatItemListChanged(
+                      SeatUtils.transSnapshotSeatItem2VoiceRoomSeat(snapshot.getSeatItems()));
+                  snapshotSeatsShown = true;
+                }
+                // 加入成功后才接收新消息，之前展示历史消息不会与新消息乱序
+                if (!roomJoined) {
+                  for (NEVoiceRoomChatTextMessage message : snapshot.getMessages()) {
+                    chatRoomMsgData.post(
+                        ChatRoomMsgCreator.createText(
+                            NEVoiceRoomUI.getInstance().getApplication(),
+                            VoiceRoomUtils.isHost(message.getFromUserUuid()),
+                            message.getFromNick(),
+                            message.getText()));
+                  }
+                }
+              }
+
+              @Override
+              public void onFailure(int code, @Nullable String msg) {}
+            });
+  }
+
+  /** 与加入房间并行查询当前歌曲，播放要等加入成功，结果先暂存 */
+  private void prefetchPlayingSong() {
+    playingSongPrefetching = true;
+    VoiceRoomService.getInstance()
+        .queryPlayingSongInfo(
+            new NetRequestCallback<OrderSong>() {
+
+              @Override
+              public void success(@Nullable OrderSong info) {
+                ALog.i(TAG, "prefetchPlayingSong info = " + info);
+                playingSongPrefetching = false;
+                if (roomJoined) {
+                  postPlayingSong(info);
+                } else {
+                  playingSongPrefetched = true;
+                  prefetchedPlayingSong = info;
+                }
+              }
+
+              @Override
+              public void error(int code, @Nullable String msg) {
+                ALog.e(TAG, "prefetchPlayingSong failed code = " + code + " msg = " + msg);
+                playingSongPrefetching = false;
+                if (roomJoined) {
+                  queryPlayingSongInfo();
+                }
+              }
+            });
+  }
+
+  private void postPlayingSong(@Nullable OrderSong info) {
+    if (info != null) {
+      Song song = new Song();
+      song.setOrderId(info.orderId);
+      song.setSongId(info.songId);
+      song.setSongName(info.songName);
+      song.setChannel(info.channel);
+      currentSongChange.postValue(song);
+    }
+  }
+
   private String getString(@StringRes int resId) {
     return NEVoiceRoomUI.getInstance().getApplication().getString(resId);
   }
 
   public boolean isCurrentUserOnSeat() {
-    return (currentSeatState.getValue() != null
-        && currentSeatState.getValue() == CURRENT_SEAT_STATE_ON_SEAT);
+    return uiStateStore.getState().getCurrentSeatState() == CURRENT_SEAT_STATE_ON_SEAT;
   }
 
   public boolean isUserOnSeat(String account) {
-    RoomSeat seat = findSeatByAccount(onSeatListData.getValue(), account);
+    RoomSeat seat = findSeatByAccount(uiStateStore.getState().getSeats(), account);
     return seat != null && seat.isOn();
   }
 
-  private void handleSeatItemListChanged() {
+  private void onUiStateChanged(VoiceRoomUiState oldState, VoiceRoomUiState newState) {
+    if (oldState.getSeats() != newState.getSeats()) {
+      onSeatListData.setValue(newState.getSeats());
+    }
+    setValueIfChanged(currentSeatState, newState.getCurrentSeatState());
+    setValueIfChanged(anchorReward, newState.getAnchorReward());
+  }
+
+  private static <T> void setValueIfChanged(MutableLiveData<T> liveData, T value) {
+    if (!Objects.equals(liveData.getValue(), value)) {
+      liveData.setValue(value);
+    }
+  }
+
+  private void projectSeats(List<NEVoiceRoomSeatItem> seatItems) {
+    // 投影期间金币可能已经更新，回调时按当前金币再合并一次，没变化的麦位不会生成新对象
+    seatProjector.project(seatItems, roomInfo, seats -> applySeats(withRewardInfo(seats)));
+  }
+
+  private void handleSeatItemListChanged(List<RoomSeat> seats) {
+    applySeats(withRewardInfo(seats));
+  }
+
+  /** @param rewardSeats 已带上金币信息的麦位 */
+  private void applySeats(List<RoomSeat> rewardSeats) {
     String currentUuid = SeatUtils.getCurrentUuid();
-    RoomSeat myAfterSeat = findSeatByAccount(roomSeats, currentUuid);
+    RoomSeat myAfterSeat = findSeatByAccount(rewardSeats, currentUuid);
+    final int seatState;
     if (myAfterSeat != null && myAfterSeat.isOn()) {
-      currentSeatState.postValue(CURRENT_SEAT_STATE_ON_SEAT);
+      seatState = CURRENT_SEAT_STATE_ON_SEAT;
     } else if (myAfterSeat != null && myAfterSeat.getStatus() == RoomSeat.Status.APPLY) {
-      currentSeatState.postValue(CURRENT_SEAT_STATE_APPLYING);
+      seatState = CURRENT_SEAT_STATE_APPLYING;
     } else {
-      currentSeatState.postValue(CURRENT_SEAT_STATE_IDLE);
+      seatState = CURRENT_SEAT_STATE_IDLE;
     }
-    updateSeatWithRewardInfo();
+    if (snapshotSeatsShown) {
+      // 快照麦位上的成员是临时对象，整体替换
+      snapshotSeatsShown = false;
+      uiStateStore.dispatch(
+          state -> state.withSeatsReplaced(rewardSeats).withCurrentSeatState(seatState));
+      return;
+    }
+    uiStateStore.dispatch(state -> state.withSeats(rewardSeats).withCurrentSeatState(seatState));
   }
 
   private void updateAnchorRewardInfo() {
-    anchorReward.postValue(VoiceRoomUtils.getAnchorReward(roomInfo));
+    int reward = VoiceRoomUtils.getAnchorReward(roomInfo);
+    uiStateStore.dispatch(state -> state.withAnchorReward(reward));
   }
 
   private void updateSeatWithRewardInfo() {
-    for (RoomSeat seat : roomSeats) {
-      seat.setRewardTotal(VoiceRoomUtils.getRewardFromRoomInfo(seat.getAccount(), roomInfo));
+    uiStateStore.dispatch(state -> state.withSeats(withRewardInfo(state.getSeats())));
+  }
+
+  // 金币有变化的麦位生成新对象，不修改已经下发出去的麦位
+  private List<RoomSeat> withRewardInfo(List<RoomSeat> seats) {
+    Map<String, Integer> rewards =
+        SeatProjector.buildRewardMap(
+            roomInfo != null ? roomInfo.getLiveModel().getSeatUserReward() : null);
+    List<RoomSeat> result = new ArrayList<>(seats.size());
+    for (RoomSeat seat : seats) {
+      int reward = SeatProjector.getReward(rewards, seat.getAccount());
+      if (reward == seat.getRewardTotal()) {
+        result.add(seat);
+      } else {
+        RoomSeat rewardSeat =
+            new RoomSeat(
+                seat.getSeatIndex(), seat.getStatus(), seat.getReason(), seat.getMember(), reward);
+        rewardSeat.setSpeaking(seat.isSpeaking());
+        rewardSeat.setExt(seat.getExt());
+        result.add(rewardSeat);
+      }
     }
-    onSeatListData.postValue(roomSeats);
+    return result;
   }
 
   private RoomSeat findSeatByAccount(List<RoomSeat> seats, String account) {
@@ -604,7 +816,7 @@ public class VoiceRoomViewModel extends ViewModel {
   private void buildSeatEventMessage(String account, String content) {
     String nick = SeatUtils.getMemberNick(account);
     if (!TextUtils.isEmpty(nick)) {
-      chatRoomMsgData.postValue(ChatRoomMsgCreator.createSeatMessage(nick, content));
+      chatRoomMsgData.post(ChatRoomMsgCreator.createSeatMessage(nick, content));
     }
   }
 
@@ -15,9 +15,11 @@ import androidx.lifecycle.ViewModelProvider;
 import com.netease.yunxin.kit.alog.ALog;
 import com.netease.yunxin.kit.common.network.NetRequestCallback;
 import com.netease.yunxin.kit.common.ui.utils.ToastUtils;
-import com.netease.yunxin.kit.copyrightedmedia.api.NECopyrightedMedia;
+import com.netease.yunxin.kit.copyrightedmedia.api.NEErrorCode;
+import com.netease.yunxin.kit.copyrightedmedia.api.NESongPreloadCallback;
 import com.netease.yunxin.kit.copyrightedmedia.api.SongResType;
 import com.netease.yunxin.kit.ordersong.core.NEOrderSongService;
+import com.netease.yunxin.kit.ordersong.core.SongCacheManager;
 import com.netease.yunxin.kit.ordersong.core.constant.OrderSongConstant;
 import com.netease.yunxin.kit.ordersong.core.model.Song;
 import com.netease.yunxin.kit.ordersong.core.util.GsonUtils;
@@ -36,6 +38,8 @@ public class BackgroundMusicPanel extends AppCompatTextView {
   private String roomUuid;
   /** 当前播放位置 */
   private Song currentSong;
+  /** 文件已被淘汰、正在重新下载的歌 */
+  private Song loadingSong;
 
   private OrderSongViewModel orderSongViewModel;
 
@@ -142,18 +146,16 @@ public class BackgroundMusicPanel extends AppCompatTextView {
       stopPlay();
     }
 
+    loadingSong = null;
     if (isLocalPlay) {
       String songURI =
-          NECopyrightedMedia.getInstance()
-              .getSongURI(song.getSongId(), song.getChannel(), SongResType.TYPE_ORIGIN);
+          SongCacheManager.getSongUri(song.getSongId(), song.getChannel(), SongResType.TYPE_ORIGIN);
       if (!TextUtils.isEmpty(songURI)) {
-        currentSong = song;
-        setText(song.getSongName());
-        setVisibility(View.VISIBLE);
-        songPlayManager.start(songURI, 0);
+        playLocal(song, songURI);
       } else {
-        ALog.i(TAG, "startPlay but songURI is empty");
-        switchSong(null, true);
+        // 文件可能已被缓存淘汰，重新下载后再播
+        ALog.i(TAG, "startPlay but song file missing, preload again");
+        preloadAndPlay(song);
       }
     } else {
       currentSong = song;
@@ -162,8 +164,53 @@ public class BackgroundMusicPanel extends AppCompatTextView {
     }
   }
 
+  private void playLocal(Song song, String songURI) {
+    currentSong = song;
+    setText(song.getSongName());
+    setVisibility(View.VISIBLE);
+    songPlayManager.start(songURI, 0);
+  }
+
+  private void preloadAndPlay(Song song) {
+    loadingSong = song;
+    NEOrderSongService.INSTANCE
+        .getPreloadScheduler()
+        .preloadNow(
+            song.getSongId(),
+            song.getChannel(),
+            new NESongPreloadCallback() {
+              @Override
+              public void onPreloadStart(String songId, int channel) {}
+
+              @Override
+              public void onPreloadProgress(String songId, int channel, float progress) {}
+
+              @Override
+              public void onPreloadComplete(
+                  String songId, int channel, int errorCode, String msg) {
+                if (loadingSong != song) {
+                  return;
+                }
+                loadingSong = null;
+                String songURI =
+                    errorCode == NEErrorCode.OK
+                        ? SongCacheManager.getSongUri(songId, channel, SongResType.TYPE_ORIGIN)
+                        : null;
+                if (!TextUtils.isEmpty(songURI)) {
+                  playLocal(song, songURI);
+                } else {
+                  ALog.i(TAG, "startPlay but songURI is empty,code:" + errorCode + ",msg:" + msg);
+                  switchSong(null, true);
+                }
+              }
+            });
+  }
+
   public void deleteSong(Song song) {
     ALog.i(TAG, "deleteSong,song:" + song.toString());
+    if (loadingSong != null && loadingSong.getOrderId() == song.getOrderId()) {
+      loadingSong = null;
+    }
     if (currentSong != null && currentSong.getOrderId() == song.getOrderId()) {
       stopPlay();
       setVisibility(View.GONE);
@@ -228,6 +275,7 @@ public class BackgroundMusicPanel extends AppCompatTextView {
   protected void onDetachedFromWindow() {
     super.onDetachedFromWindow();
     NEVoiceRoomKit.getInstance().removeVoiceRoomListener(roomListener);
+    loadingSong = null;
     if (!FloatPlayManager.getInstance().isShowFloatView()) {
       stopPlay();
     }
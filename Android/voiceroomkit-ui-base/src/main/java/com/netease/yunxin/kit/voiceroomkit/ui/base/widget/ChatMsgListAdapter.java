@@ -4,17 +4,42 @@
 
 package com.netease.yunxin.kit.voiceroomkit.ui.base.widget;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.View;
 import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.R;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.adapter.LiveBaseAdapter;
+import java.util.Collections;
 import java.util.List;
 
 public class ChatMsgListAdapter extends LiveBaseAdapter<CharSequence> {
+  private ChatMsgRingBuffer buffer;
+  private boolean attached;
 
-  public ChatMsgListAdapter(Context context, List<CharSequence> dataSource) {
-    super(context, dataSource);
+  @SuppressLint("NotifyDataSetChanged")
+  private final Runnable onBufferCleared = this::notifyDataSetChanged;
+
+  public ChatMsgListAdapter(Context context, ChatMsgRingBuffer buffer) {
+    super(context);
+    this.buffer = buffer;
+  }
+
+  // 缓冲区可能是静态共享的，只在挂到列表期间注册清空回调，避免缓冲区持有已销毁的页面
+  @Override
+  public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+    super.onAttachedToRecyclerView(recyclerView);
+    attached = true;
+    buffer.setOnClearListener(onBufferCleared);
+  }
+
+  @Override
+  public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+    super.onDetachedFromRecyclerView(recyclerView);
+    attached = false;
+    buffer.removeOnClearListener(onBufferCleared);
   }
 
   @Override
@@ -33,25 +58,53 @@ public class ChatMsgListAdapter extends LiveBaseAdapter<CharSequence> {
     tvContent.setText(itemData);
   }
 
+  @Override
+  public int getItemCount() {
+    return buffer.size();
+  }
+
+  @Override
+  protected CharSequence getItem(int position) {
+    if (position < 0 || position >= getItemCount()) {
+      return null;
+    }
+    return buffer.get(position);
+  }
+
+  @SuppressLint("NotifyDataSetChanged")
+  void setBuffer(ChatMsgRingBuffer buffer) {
+    this.buffer.removeOnClearListener(onBufferCleared);
+    this.buffer = buffer;
+    if (attached) {
+      buffer.setOnClearListener(onBufferCleared);
+    }
+    notifyDataSetChanged();
+  }
+
   void appendItem(CharSequence sequence) {
     if (sequence == null) {
       return;
     }
-    dataSource.add(sequence);
-    notifyItemInserted(dataSource.size() - 1);
+    appendItems(Collections.singletonList(sequence));
   }
 
   void appendItems(List<CharSequence> sequenceList) {
     if (sequenceList == null || sequenceList.isEmpty()) {
       return;
     }
-    int start = getItemCount();
-    dataSource.addAll(sequenceList);
-    notifyItemRangeInserted(start, sequenceList.size());
+    int oldSize = buffer.size();
+    buffer.addAll(sequenceList);
+    int newSize = buffer.size();
+    // 超出容量时最旧的消息被挤出，先通知移除再通知插入
+    int keptOld = Math.max(0, Math.min(oldSize, buffer.capacity() - sequenceList.size()));
+    if (oldSize > keptOld) {
+      notifyItemRangeRemoved(0, oldSize - keptOld);
+    }
+    notifyItemRangeInserted(keptOld, newSize - keptOld);
   }
 
   void clearAll() {
-    dataSource.clear();
-    notifyDataSetChanged();
+    // 由 onBufferCleared 刷新
+    buffer.clear();
   }
 }
@@ -0,0 +1,90 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.widget;
+
+import java.util.List;
+
+/**
+ * Fixed-capacity chat history. Appending past the capacity overwrites the oldest entries, so
+ * both insertion and trimming are O(1) and retained memory stays flat however long the room is
+ * open. Not thread-safe, only touch it on the main thread.
+ */
+public class ChatMsgRingBuffer {
+  private final CharSequence[] items;
+  private int head = 0; // 最旧一条的下标
+  private int size = 0;
+  private Runnable onClearListener;
+
+  public ChatMsgRingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    items = new CharSequence[capacity];
+  }
+
+  public int capacity() {
+    return items.length;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** @return item at {@code position}, 0 is the oldest retained message */
+  public CharSequence get(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+    }
+    return items[(head + position) % items.length];
+  }
+
+  /** @return number of old entries evicted to make room */
+  public int add(CharSequence item) {
+    int tail = (head + size) % items.length;
+    items[tail] = item;
+    if (size < items.length) {
+      size++;
+      return 0;
+    }
+    head = (head + 1) % items.length;
+    return 1;
+  }
+
+  /** @return number of entries evicted, counting both old entries and overflowed new ones */
+  public int addAll(List<? extends CharSequence> list) {
+    int evicted = 0;
+    for (CharSequence item : list) {
+      evicted += add(item);
+    }
+    return evicted;
+  }
+
+  /** 清空时回调，绑定的列表据此刷新，避免继续使用已失效的位置 */
+  void setOnClearListener(Runnable listener) {
+    onClearListener = listener;
+  }
+
+  /** 仅当 {@code listener} 仍是当前回调时移除，新页面先注册、旧页面后解绑时不会误删 */
+  void removeOnClearListener(Runnable listener) {
+    if (onClearListener == listener) {
+      onClearListener = null;
+    }
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      items[(head + i) % items.length] = null;
+    }
+    head = 0;
+    size = 0;
+    if (onClearListener != null) {
+      onClearListener.run();
+    }
+  }
+}
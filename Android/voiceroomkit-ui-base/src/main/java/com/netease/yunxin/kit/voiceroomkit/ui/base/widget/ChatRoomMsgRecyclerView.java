@@ -12,7 +12,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import java.util.ArrayList;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.NEVoiceRoomUIConstants;
 import java.util.List;
 
 public class ChatRoomMsgRecyclerView extends RecyclerView {
@@ -44,7 +44,9 @@ public class ChatRoomMsgRecyclerView extends RecyclerView {
   }
 
   private void init() {
-    chatMsgListAdapter = new ChatMsgListAdapter(context, new ArrayList());
+    chatMsgListAdapter =
+        new ChatMsgListAdapter(
+            context, new ChatMsgRingBuffer(NEVoiceRoomUIConstants.CHAT_MSG_MAX_COUNT));
     touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
     layoutManager = new LinearLayoutManager(context, LinearLayoutManager.VERTICAL, false);
   }
@@ -63,6 +65,12 @@ public class ChatRoomMsgRecyclerView extends RecyclerView {
     setAdapter(null);
   }
 
+  /** 绑定外部持有的聊天记录，用于小窗恢复等场景共享同一份数据 */
+  public void setMsgBuffer(ChatMsgRingBuffer buffer) {
+    chatMsgListAdapter.setBuffer(buffer);
+    toLatestMsg();
+  }
+
   public void appendItem(CharSequence sequence) {
     chatMsgListAdapter.appendItem(sequence);
     toLatestMsg();
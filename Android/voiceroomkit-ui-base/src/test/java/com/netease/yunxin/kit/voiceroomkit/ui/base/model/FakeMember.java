@@ -0,0 +1,63 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
+import java.util.Map;
+
+/** 测试用成员，只有麦位展示用到的字段 */
+public final class FakeMember implements NEVoiceRoomMember {
+  private final String account;
+  private final String name;
+  private final String avatar;
+
+  public FakeMember(String account, String name, String avatar) {
+    this.account = account;
+    this.name = name;
+    this.avatar = avatar;
+  }
+
+  @NonNull
+  @Override
+  public String getAccount() {
+    return account;
+  }
+
+  @NonNull
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @NonNull
+  @Override
+  public String getRole() {
+    return "audience";
+  }
+
+  @Override
+  public boolean isAudioOn() {
+    return true;
+  }
+
+  @Override
+  public boolean isAudioBanned() {
+    return false;
+  }
+
+  @Nullable
+  @Override
+  public String getAvatar() {
+    return avatar;
+  }
+
+  @Nullable
+  @Override
+  public Map<String, String> getInitialProperties() {
+    return null;
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class VoiceRoomUiStateTest {
+
+  private static List<RoomSeat> emptySeats() {
+    List<RoomSeat> seats = new ArrayList<>();
+    for (int i = 1; i <= RoomSeat.SEAT_COUNT; i++) {
+      seats.add(new RoomSeat(i));
+    }
+    return seats;
+  }
+
+  private static RoomSeat onSeat(int index, FakeMember member) {
+    return new RoomSeat(index, RoomSeat.Status.ON, RoomSeat.Reason.ANCHOR_APPROVE_APPLY, member);
+  }
+
+  private final VoiceRoomUiState initial = new VoiceRoomUiState(emptySeats(), 0, 0);
+
+  @Test
+  public void withSeatsReturnsSelfWhenNothingChanged() {
+    assertSame(initial, initial.withSeats(emptySeats()));
+    assertSame(initial, initial.withSeats(null));
+  }
+
+  @Test
+  public void withSeatsSharesUnchangedSeats() {
+    List<RoomSeat> next = emptySeats();
+    RoomSeat changed = onSeat(3, new FakeMember("a", "Alice", "a.png"));
+    next.set(2, changed);
+
+    VoiceRoomUiState state = initial.withSeats(next);
+
+    assertNotSame(initial, state);
+    for (int i = 0; i < RoomSeat.SEAT_COUNT; i++) {
+      if (i == 2) {
+        assertSame(changed, state.getSeats().get(i));
+      } else {
+        assertSame(initial.getSeats().get(i), state.getSeats().get(i));
+      }
+    }
+  }
+
+  @Test
+  public void withSeatsComparesMemberContent() {
+    List<RoomSeat> seats = emptySeats();
+    seats.set(0, onSeat(1, new FakeMember("a", "Alice", "a.png")));
+    VoiceRoomUiState state = initial.withSeats(seats);
+    RoomSeat original = state.getSeats().get(0);
+
+    // 成员对象换了但内容相同，沿用旧麦位
+    List<RoomSeat> sameMember = emptySeats();
+    sameMember.set(0, onSeat(1, new FakeMember("a", "Alice", "a.png")));
+    assertSame(state, state.withSeats(sameMember));
+
+    // 昵称变化需要重新下发
+    List<RoomSeat> renamed = emptySeats();
+    renamed.set(0, onSeat(1, new FakeMember("a", "Alice2", "a.png")));
+    VoiceRoomUiState next = state.withSeats(renamed);
+    assertNotSame(state, next);
+    assertNotSame(original, next.getSeats().get(0));
+    assertSame(state.getSeats().get(1), next.getSeats().get(1));
+
+    // 头像变化
+    List<RoomSeat> newAvatar = emptySeats();
+    newAvatar.set(0, onSeat(1, new FakeMember("a", "Alice", "b.png")));
+    assertNotSame(state, state.withSeats(newAvatar));
+  }
+
+  @Test
+  public void withSeatsDetectsRewardAndSizeChange() {
+    List<RoomSeat> rewarded = emptySeats();
+    rewarded.set(0, new RoomSeat(1, RoomSeat.Status.INIT, RoomSeat.Reason.NONE, null, 10));
+    assertNotSame(initial, initial.withSeats(rewarded));
+
+    List<RoomSeat> fewer = emptySeats().subList(0, 5);
+    VoiceRoomUiState state = initial.withSeats(fewer);
+    assertEquals(5, state.getSeats().size());
+    assertSame(initial.getSeats().get(0), state.getSeats().get(0));
+  }
+
+  @Test
+  public void withSeatsInvalidatedKeepsSeatObjects() {
+    VoiceRoomUiState state = initial.withSeatsInvalidated();
+
+    assertNotSame(initial, state);
+    assertNotSame(initial.getSeats(), state.getSeats());
+    for (int i = 0; i < RoomSeat.SEAT_COUNT; i++) {
+      assertSame(initial.getSeats().get(i), state.getSeats().get(i));
+    }
+    assertEquals(initial.getAnchorReward(), state.getAnchorReward());
+    assertEquals(initial.getCurrentSeatState(), state.getCurrentSeatState());
+  }
+
+  @Test
+  public void withAnchorRewardSharesSeats() {
+    assertSame(initial, initial.withAnchorReward(0));
+
+    VoiceRoomUiState state = initial.withCurrentSeatState(2).withAnchorReward(100);
+
+    assertEquals(100, state.getAnchorReward());
+    assertEquals(2, state.getCurrentSeatState());
+    assertSame(initial.getSeats(), state.getSeats());
+    assertSame(state, state.withAnchorReward(100));
+  }
+
+  @Test
+  public void withCurrentSeatStateSharesSeats() {
+    assertSame(initial, initial.withCurrentSeatState(0));
+
+    VoiceRoomUiState state = initial.withAnchorReward(5).withCurrentSeatState(1);
+
+    assertEquals(1, state.getCurrentSeatState());
+    assertEquals(5, state.getAnchorReward());
+    assertSame(initial.getSeats(), state.getSeats());
+  }
+}
@@ -0,0 +1,290 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomAnchor;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomBatchSeatUserReward;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomInfo;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomLiveModel;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomOnSeatType;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItem;
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItemStatus;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.model.FakeMember;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeatProjectorTest {
+  private static final int WARMUP = 2_000;
+  private static final int ITERATIONS = 10_000;
+
+  /** 在调用线程直接执行的投影线程 */
+  private static class DirectExecutorService extends AbstractExecutorService {
+    private boolean shutdown;
+
+    @Override
+    public void execute(Runnable command) {
+      if (!shutdown) {
+        command.run();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      shutdown = true;
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return true;
+    }
+  }
+
+  private final Map<String, NEVoiceRoomMember> members = new HashMap<>();
+  // 投递到主线程的任务，runMain 时执行
+  private final Queue<Runnable> mainTasks = new ArrayDeque<>();
+  private final List<List<RoomSeat>> results = new ArrayList<>();
+  private SeatProjector projector;
+
+  @Before
+  public void setUp() {
+    projector = new SeatProjector(new DirectExecutorService(), mainTasks::add, members::get);
+  }
+
+  private void runMain() {
+    Runnable task;
+    while ((task = mainTasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private List<RoomSeat> project(List<NEVoiceRoomSeatItem> items, NEVoiceRoomInfo roomInfo) {
+    projector.project(items, roomInfo, results::add);
+    runMain();
+    return results.get(results.size() - 1);
+  }
+
+  private static NEVoiceRoomSeatItem seat(int index, String user) {
+    return new NEVoiceRoomSeatItem(
+        index,
+        user != null ? NEVoiceRoomSeatItemStatus.TAKEN : NEVoiceRoomSeatItemStatus.INITIAL,
+        user,
+        user,
+        null,
+        user != null ? NEVoiceRoomOnSeatType.REQUEST : NEVoiceRoomOnSeatType.INVALID,
+        0L);
+  }
+
+  private static String account(int index) {
+    return "user" + index;
+  }
+
+  // 偶数麦位有人
+  private List<NEVoiceRoomSeatItem> seats(int count) {
+    List<NEVoiceRoomSeatItem> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String user = i % 2 == 0 ? account(i) : null;
+      if (user != null && !members.containsKey(user)) {
+        members.put(user, new FakeMember(user, "nick" + i, "avatar" + i));
+      }
+      items.add(seat(i, user));
+    }
+    return items;
+  }
+
+  private static NEVoiceRoomInfo roomInfo(List<NEVoiceRoomBatchSeatUserReward> rewards) {
+    return new NEVoiceRoomInfo(
+        new NEVoiceRoomAnchor("host", "host", null),
+        new NEVoiceRoomLiveModel(
+            "room", "room", 1L, "host", 1, 2, 1, "topic", null, 0L, 0, 0, null, rewards, null));
+  }
+
+  // 每个有人的麦位打赏 index * 10，另有一条不在麦上的账号
+  private static List<NEVoiceRoomBatchSeatUserReward> rewards(int count) {
+    List<NEVoiceRoomBatchSeatUserReward> rewards = new ArrayList<>();
+    for (int i = 0; i < count; i += 2) {
+      rewards.add(new NEVoiceRoomBatchSeatUserReward(account(i), null, null, i, i * 10));
+    }
+    rewards.add(new NEVoiceRoomBatchSeatUserReward("left", null, null, 0, 999));
+    return rewards;
+  }
+
+  private void assertProjected(int count, List<RoomSeat> seats) {
+    assertEquals(count, seats.size());
+    for (int i = 0; i < count; i++) {
+      RoomSeat seat = seats.get(i);
+      assertEquals(i, seat.getSeatIndex());
+      if (i % 2 == 0) {
+        assertEquals(RoomSeat.Status.ON, seat.getStatus());
+        assertEquals(RoomSeat.Reason.ANCHOR_APPROVE_APPLY, seat.getReason());
+        assertSame(members.get(account(i)), seat.getMember());
+        assertEquals(i * 10, seat.getRewardTotal());
+      } else {
+        assertEquals(RoomSeat.Status.INIT, seat.getStatus());
+        assertEquals(RoomSeat.Reason.NONE, seat.getReason());
+        assertNull(seat.getMember());
+        assertEquals(0, seat.getRewardTotal());
+      }
+    }
+  }
+
+  @Test
+  public void projectsNineSeats() {
+    assertProjected(9, project(seats(9), roomInfo(rewards(9))));
+  }
+
+  @Test
+  public void projectsTwentySeats() {
+    assertProjected(20, project(seats(20), roomInfo(rewards(20))));
+  }
+
+  @Test
+  public void projectsWithoutRoomInfo() {
+    List<RoomSeat> seats = project(seats(9), null);
+    for (RoomSeat seat : seats) {
+      assertEquals(0, seat.getRewardTotal());
+    }
+  }
+
+  @Test
+  public void resultIsImmutable() {
+    List<RoomSeat> seats = project(seats(9), null);
+    try {
+      seats.remove(0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      // 结果会在多个观察者之间共享
+    }
+  }
+
+  @Test
+  public void unchangedSeatsReuseInstances() {
+    for (int count : new int[] {9, 20}) {
+      setUp();
+      NEVoiceRoomInfo info = roomInfo(rewards(count));
+      List<RoomSeat> first = project(seats(count), info);
+
+      List<NEVoiceRoomSeatItem> items = seats(count);
+      // 1 号麦有人上麦，其余不变
+      String user = account(1);
+      members.put(user, new FakeMember(user, "nick1", "avatar1"));
+      items.set(1, seat(1, user));
+      List<RoomSeat> second = project(items, info);
+
+      for (int i = 0; i < count; i++) {
+        if (i == 1) {
+          assertNotSame(first.get(i), second.get(i));
+          assertEquals(RoomSeat.Status.ON, second.get(i).getStatus());
+        } else {
+          assertSame("seat " + i + " of " + count, first.get(i), second.get(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void rewardOrProfileChangeCreatesNewSeat() {
+    List<RoomSeat> first = project(seats(9), roomInfo(rewards(9)));
+
+    List<NEVoiceRoomBatchSeatUserReward> rewards = rewards(9);
+    rewards.set(0, new NEVoiceRoomBatchSeatUserReward(account(0), null, null, 0, 500));
+    // 成员信息更新为新对象，昵称变化
+    members.put(account(2), new FakeMember(account(2), "renamed", "avatar2"));
+    // 4 号麦成员对象换了，但内容一样
+    members.put(account(4), new FakeMember(account(4), "nick4", "avatar4"));
+    List<RoomSeat> second = project(seats(9), roomInfo(rewards));
+
+    assertNotSame(first.get(0), second.get(0));
+    assertEquals(500, second.get(0).getRewardTotal());
+    assertNotSame(first.get(2), second.get(2));
+    assertEquals("renamed", second.get(2).getMember().getName());
+    assertSame(first.get(4), second.get(4));
+  }
+
+  @Test
+  public void duplicateRewardUsesFirstEntry() {
+    List<NEVoiceRoomBatchSeatUserReward> rewards = rewards(9);
+    rewards.add(new NEVoiceRoomBatchSeatUserReward(account(0), null, null, 0, 12345));
+    assertEquals(0, project(seats(9), roomInfo(rewards)).get(0).getRewardTotal());
+    assertEquals(20, project(seats(9), roomInfo(rewards)).get(2).getRewardTotal());
+  }
+
+  @Test
+  public void onlyLatestSubmissionIsDelivered() {
+    projector.project(seats(9), null, results::add);
+    List<NEVoiceRoomSeatItem> latest = seats(20);
+    projector.project(latest, null, results::add);
+    runMain();
+
+    assertEquals(1, results.size());
+    assertEquals(20, results.get(0).size());
+  }
+
+  @Test
+  public void releaseDropsPendingResults() {
+    projector.project(seats(9), null, results::add);
+    projector.release();
+    runMain();
+    projector.project(seats(9), null, results::add);
+    runMain();
+
+    assertTrue(results.isEmpty());
+  }
+
+  @Test
+  public void projectionCost() {
+    for (int count : new int[] {9, 20}) {
+      setUp();
+      List<NEVoiceRoomSeatItem> items = seats(count);
+      NEVoiceRoomInfo info = roomInfo(rewards(count));
+      for (int i = 0; i < WARMUP; i++) {
+        projector.project(items, info, results::add);
+        runMain();
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        // 每次替换打赏列表，模拟打赏消息触发的完整投影
+        projector.project(items, roomInfo(rewards(count)), results::add);
+        runMain();
+      }
+      long avgNs = (System.nanoTime() - start) / ITERATIONS;
+      System.out.println(count + " seats: " + avgNs + "ns per projection");
+      results.clear();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.viewmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.netease.yunxin.kit.entertainment.common.model.RoomSeat;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.model.FakeMember;
+import com.netease.yunxin.kit.voiceroomkit.ui.base.model.VoiceRoomUiState;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+// 单元测试中 Looper 均为 null，dispatch 在调用线程直接执行；帧回调放进队列，由测试逐帧执行
+public class VoiceRoomUiStateStoreTest {
+
+  private final List<Runnable> frames = new ArrayList<>();
+  private final List<VoiceRoomUiState> emitted = new ArrayList<>();
+  private VoiceRoomUiState initial;
+  private VoiceRoomUiStateStore store;
+
+  private static List<RoomSeat> seatsWith(int onSeatCount) {
+    List<RoomSeat> seats = new ArrayList<>();
+    for (int i = 1; i <= RoomSeat.SEAT_COUNT; i++) {
+      seats.add(
+          i <= onSeatCount
+              ? new RoomSeat(
+                  i,
+                  RoomSeat.Status.ON,
+                  RoomSeat.Reason.ANCHOR_INVITE,
+                  new FakeMember("user" + i, "name" + i, null))
+              : new RoomSeat(i));
+    }
+    return seats;
+  }
+
+  @Before
+  public void setUp() {
+    initial = new VoiceRoomUiState(seatsWith(0), 0, 0);
+    store =
+        new VoiceRoomUiStateStore(
+            initial, (oldState, newState) -> emitted.add(newState), frames::add);
+  }
+
+  private void runFrames() {
+    while (!frames.isEmpty()) {
+      frames.remove(0).run();
+    }
+  }
+
+  @Test
+  public void updatesInOneFrameAreEmittedOnce() {
+    store.dispatch(state -> state.withSeats(seatsWith(1)));
+    store.dispatch(state -> state.withCurrentSeatState(2));
+    store.dispatch(state -> state.withAnchorReward(10));
+    assertEquals(1, frames.size());
+
+    runFrames();
+
+    assertEquals(3, store.getReduceCount());
+    assertEquals(1, store.getEmitCount());
+    assertEquals(1, emitted.size());
+    assertSame(store.getState(), emitted.get(0));
+    assertEquals(10, emitted.get(0).getAnchorReward());
+  }
+
+  @Test
+  public void noOpReductionIsNotEmitted() {
+    store.dispatch(state -> state.withSeats(seatsWith(0)));
+    store.dispatch(state -> state.withAnchorReward(0));
+
+    assertTrue(frames.isEmpty());
+    assertEquals(2, store.getReduceCount());
+    assertEquals(0, store.getEmitCount());
+  }
+
+  @Test
+  public void oneEmissionPerSeatEvent() {
+    // 每个麦位事件同时更新麦位列表、当前麦位状态和金币，每帧一个事件
+    for (int event = 1; event <= RoomSeat.SEAT_COUNT; event++) {
+      int onSeatCount = event;
+      store.dispatch(state -> state.withSeats(seatsWith(onSeatCount)));
+      store.dispatch(state -> state.withCurrentSeatState(onSeatCount % 3));
+      store.dispatch(state -> state.withAnchorReward(onSeatCount * 10));
+      runFrames();
+    }
+
+    assertEquals(3L * RoomSeat.SEAT_COUNT, store.getReduceCount());
+    assertEquals(RoomSeat.SEAT_COUNT, store.getEmitCount());
+    System.out.println(
+        "emissions per seat event: " + (float) store.getEmitCount() / RoomSeat.SEAT_COUNT);
+  }
+
+  @Test
+  public void emittedStatesShareUnchangedSeats() {
+    store.dispatch(state -> state.withSeats(seatsWith(1)));
+    runFrames();
+    store.dispatch(state -> state.withSeats(seatsWith(2)));
+    runFrames();
+
+    VoiceRoomUiState first = emitted.get(0);
+    VoiceRoomUiState second = emitted.get(1);
+    assertSame(first.getSeats().get(0), second.getSeats().get(0));
+    for (int i = 2; i < RoomSeat.SEAT_COUNT; i++) {
+      assertSame(initial.getSeats().get(i), second.getSeats().get(i));
+    }
+  }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) 2022 NetEase, Inc. All rights reserved.
+// Use of this source code is governed by a MIT license that can be
+// found in the LICENSE file.
+
+package com.netease.yunxin.kit.voiceroomkit.ui.base.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ChatMsgRingBufferTest {
+
+  private static final int CAPACITY = 500;
+  private static final int MESSAGES = 100_000;
+  private static final long MAX_HEAP_GROWTH = 1024 * 1024;
+
+  private static CharSequence message(int i) {
+    return new StringBuilder("user_" + i + ": message body #" + i);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static boolean collected(WeakReference<?> ref) {
+    for (int i = 0; i < 20 && ref.get() != null; i++) {
+      System.gc();
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ref.get() == null;
+  }
+
+  @Test
+  public void retainedHeapStaysFlat() {
+    ChatMsgRingBuffer buffer = new ChatMsgRingBuffer(CAPACITY);
+    List<WeakReference<CharSequence>> early = new ArrayList<>();
+    for (int i = 0; i < MESSAGES / 10; i++) {
+      CharSequence msg = message(i);
+      if (i < CAPACITY) {
+        early.add(new WeakReference<>(msg));
+      }
+      buffer.add(msg);
+    }
+    long baseline = usedHeap();
+
+    for (int i = MESSAGES / 10; i < MESSAGES; i++) {
+      buffer.add(message(i));
+    }
+    long after = usedHeap();
+
+    System.out.println("retained heap: " + baseline + "B -> " + after + "B after " + MESSAGES);
+    assertTrue("heap grew by " + (after - baseline) + "B", after - baseline < MAX_HEAP_GROWTH);
+    assertEquals(CAPACITY, buffer.size());
+    assertEquals(message(MESSAGES - CAPACITY).toString(), buffer.get(0).toString());
+    assertEquals(message(MESSAGES - 1).toString(), buffer.get(CAPACITY - 1).toString());
+    for (WeakReference<CharSequence> ref : early) {
+      assertTrue(collected(ref));
+    }
+  }
+
+  @Test
+  public void addAllReportsEvictions() {
+    ChatMsgRingBuffer buffer = new ChatMsgRingBuffer(3);
+    List<CharSequence> batch = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      batch.add(message(i));
+    }
+
+    assertEquals(2, buffer.addAll(batch));
+    assertEquals(3, buffer.size());
+    assertEquals(message(2).toString(), buffer.get(0).toString());
+  }
+
+  @Test
+  public void clearDropsReferences() {
+    ChatMsgRingBuffer buffer = new ChatMsgRingBuffer(CAPACITY);
+    CharSequence msg = message(0);
+    WeakReference<CharSequence> ref = new WeakReference<>(msg);
+    buffer.add(msg);
+    msg = null;
+
+    buffer.clear();
+
+    assertTrue(buffer.isEmpty());
+    assertTrue(collected(ref));
+  }
+
+  @Test
+  public void staleListenerRemovalKeepsNewerListener() {
+    ChatMsgRingBuffer buffer = new ChatMsgRingBuffer(CAPACITY);
+    int[] cleared = new int[2];
+    Runnable oldPage = () -> cleared[0]++;
+    Runnable newPage = () -> cleared[1]++;
+    buffer.setOnClearListener(oldPage);
+    // 新页面先绑定，旧页面随后解绑
+    buffer.setOnClearListener(newPage);
+    buffer.removeOnClearListener(oldPage);
+
+    buffer.clear();
+
+    assertEquals(0, cleared[0]);
+    assertEquals(1, cleared[1]);
+  }
+
+  @Test
+  public void detachedAdapterIsNotRetainedByBuffer() {
+    // 模拟 VoiceRoomBaseActivity 中静态共享的聊天记录
+    ChatMsgRingBuffer shared = new ChatMsgRingBuffer(CAPACITY);
+    ChatMsgListAdapter adapter = new ChatMsgListAdapter(null, shared);
+    WeakReference<ChatMsgListAdapter> ref = new WeakReference<>(adapter);
+    // 回调基类实现为空，测试中不需要真实的 RecyclerView
+    adapter.onAttachedToRecyclerView(null);
+    for (int i = 0; i < MESSAGES; i++) {
+      shared.add(message(i));
+    }
+    adapter.onDetachedFromRecyclerView(null);
+    adapter = null;
+
+    assertTrue(collected(ref));
+    assertNull(ref.get());
+    assertEquals(CAPACITY, shared.size());
+  }
+}
@@ -6,7 +6,7 @@ package com.netease.yunxin.kit.voiceroomkit.ui.activity;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.view.View;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import com.netease.yunxin.kit.common.ui.utils.ToastUtils;
@@ -14,6 +14,7 @@ import com.netease.yunxin.kit.common.utils.NetworkUtils;
 import com.netease.yunxin.kit.entertainment.common.RoomConstants;
 import com.netease.yunxin.kit.entertainment.common.activity.RoomListActivity;
 import com.netease.yunxin.kit.entertainment.common.adapter.RoomListAdapter;
+import com.netease.yunxin.kit.entertainment.common.adapter.RoomListPager;
 import com.netease.yunxin.kit.entertainment.common.model.RoomModel;
 import com.netease.yunxin.kit.entertainment.common.utils.ClickUtils;
 import com.netease.yunxin.kit.entertainment.common.utils.ReportUtils;
@@ -27,6 +28,7 @@ import com.netease.yunxin.kit.voiceroomkit.ui.base.adapter.VoiceRoomListAdapter;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.utils.FloatPlayManager;
 import com.netease.yunxin.kit.voiceroomkit.ui.base.utils.VoiceRoomUtils;
 import com.netease.yunxin.kit.voiceroomkit.ui.utils.NavUtils;
+import java.util.Collections;
 import kotlin.Unit;
 
 public class VoiceRoomListActivity extends RoomListActivity {
@@ -76,66 +78,30 @@ public class VoiceRoomListActivity extends RoomListActivity {
   }
 
   @Override
-  protected void refresh() {
-    super.refresh();
+  protected void loadRoomPage(
+      int pageNum, int pageSize, @NonNull RoomListPager.PageCallback callback) {
     NEVoiceRoomKit.getInstance()
         .getRoomList(
             NEVoiceRoomLiveState.Live,
             NELiveType.LIVE_TYPE_VOICE,
-            tempPageNum,
-            PAGE_SIZE,
+            pageNum,
+            pageSize,
+            true,
             new NEVoiceRoomCallback<NEVoiceRoomList>() {
               @Override
               public void onSuccess(@Nullable NEVoiceRoomList neVoiceRoomList) {
-                pageNum = tempPageNum;
-                if (neVoiceRoomList == null
-                    || neVoiceRoomList.getList() == null
-                    || neVoiceRoomList.getList().isEmpty()) {
-                  binding.emptyView.setVisibility(View.VISIBLE);
-                  binding.rvRoomList.setVisibility(View.GONE);
+                if (neVoiceRoomList == null || neVoiceRoomList.getList() == null) {
+                  callback.onPageLoaded(Collections.emptyList(), false);
                 } else {
-                  binding.emptyView.setVisibility(View.GONE);
-                  binding.rvRoomList.setVisibility(View.VISIBLE);
-                  adapter.refreshList(
-                      VoiceRoomUtils.neVoiceRoomInfos2RoomInfos(neVoiceRoomList.getList()));
+                  callback.onPageLoaded(
+                      VoiceRoomUtils.neVoiceRoomInfos2RoomInfos(neVoiceRoomList.getList()),
+                      neVoiceRoomList.getHasNextPage());
                 }
-                binding.refreshLayout.finishRefresh(true);
               }
 
               @Override
               public void onFailure(int code, @Nullable String msg) {
-                tempPageNum = pageNum;
-                binding.refreshLayout.finishRefresh(false);
-                ToastUtils.INSTANCE.showShortToast(
-                    VoiceRoomListActivity.this, getString(R.string.network_error));
-              }
-            });
-  }
-
-  @Override
-  protected void loadMore() {
-    super.loadMore();
-    NEVoiceRoomKit.getInstance()
-        .getRoomList(
-            NEVoiceRoomLiveState.Live,
-            NELiveType.LIVE_TYPE_VOICE,
-            tempPageNum,
-            PAGE_SIZE,
-            new NEVoiceRoomCallback<NEVoiceRoomList>() {
-              @Override
-              public void onSuccess(@Nullable NEVoiceRoomList neVoiceRoomList) {
-                pageNum = tempPageNum;
-                if (neVoiceRoomList != null && neVoiceRoomList.getList() != null) {
-                  adapter.loadMore(
-                      VoiceRoomUtils.neVoiceRoomInfos2RoomInfos(neVoiceRoomList.getList()));
-                }
-                binding.refreshLayout.finishLoadMore(true);
-              }
-
-              @Override
-              public void onFailure(int code, @Nullable String msg) {
-                tempPageNum = pageNum;
-                binding.refreshLayout.finishLoadMore(false);
+                callback.onPageFailed(code, msg);
               }
             });
   }
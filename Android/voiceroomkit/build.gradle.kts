@@ -14,6 +14,20 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+        unitTests.all {
+            // 压测规模，例如 ./gradlew :voiceroomkit:test -Pvoiceroom.stressEvents=1000000
+            it.systemProperty(
+                "voiceroom.stressEvents",
+                project.findProperty("voiceroom.stressEvents") ?: "100000"
+            )
+            // 基准测试耗时长且结果依赖机器，加 -Pvoiceroom.benchmark 时才运行
+            if (!project.hasProperty("voiceroom.benchmark")) {
+                it.exclude("**/*Benchmark.class")
+            }
+        }
+    }
 }
 
 dependencies {
@@ -21,7 +35,9 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.6.4")
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:1.6.4")
     implementation("com.squareup.retrofit2:retrofit:2.9.0")
+    implementation("com.squareup.retrofit2:converter-gson:2.9.0")
     implementation("com.squareup.okhttp3:okhttp:4.9.3")
+    implementation("com.squareup.okhttp3:logging-interceptor:4.9.3")
     implementation("androidx.core:core-ktx:1.7.0")
 
     // xkit
@@ -31,4 +47,7 @@ dependencies {
     implementation("com.netease.yunxin.kit.room:roomkit:1.21.0")
 
     implementation("com.google.code.gson:gson:2.9.0")
+
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.9.3")
 }
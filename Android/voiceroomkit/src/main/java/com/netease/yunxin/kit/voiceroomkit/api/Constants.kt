@@ -300,3 +300,23 @@ object NEVoiceRoomSeatApplyMode {
      */
     const val managerApproval = 1
 }
+
+/**
+ * 房间事件回调线程
+ */
+enum class NEVoiceRoomDispatchMode {
+    /**
+     * 主线程回调
+     */
+    MAIN,
+
+    /**
+     * 后台线程回调，所有后台监听共用一个串行线程
+     */
+    BACKGROUND,
+
+    /**
+     * 在事件分发线程直接回调，不做线程切换，回调内不能做耗时操作
+     */
+    POSTING
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api
+
+import android.os.Handler
+import android.os.Looper
+import com.google.gson.Gson
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.io.StringReader
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * 聊天室自定义消息解码器，语聊房和点歌台共用同一份解析结果。
+ * 先流式读取顶层 type 字段，只有注册过该 type 的消息才会被完整解析一次。
+ * 语聊房在房间事件队列中调用 [decode]，回调与文本消息等房间事件按到达顺序切回主线程。
+ */
+object NECustomMessageDecoder {
+    private const val TAG = "NECustomMessageDecoder"
+    private const val KEY_TYPE = "type"
+
+    /**
+     * 自定义消息回调
+     */
+    fun interface MessageHandler<T> {
+        /**
+         * @param message 按注册类型解析出的消息体，未指定类型时为 null
+         */
+        fun onMessage(message: T?)
+    }
+
+    private class Registration<T>(
+        val clazz: Class<T>?,
+        val handler: MessageHandler<T>,
+        // 在调用 decode 的线程直接回调，不切主线程
+        val inline: Boolean
+    ) {
+        @Suppress("UNCHECKED_CAST")
+        fun deliver(message: Any?) {
+            handler.onMessage(message as T?)
+        }
+    }
+
+    private val registry = ConcurrentHashMap<Int, CopyOnWriteArrayList<Registration<*>>>()
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val gson = Gson()
+
+    /**
+     * 注册某个 type 的消息回调
+     * @param type 消息 type
+     * @param clazz 消息体解析类型，只关心消息到达时传 null，不做完整解析
+     * @param handler 主线程回调
+     */
+    fun <T> register(type: Int, clazz: Class<T>?, handler: MessageHandler<T>) {
+        registry.getOrPut(type) { CopyOnWriteArrayList() }.add(Registration(clazz, handler, false))
+    }
+
+    /**
+     * 注册在解码线程直接回调的处理，供 kit 在房间事件队列中继续分发
+     */
+    internal fun <T> registerInline(type: Int, clazz: Class<T>?, handler: MessageHandler<T>) {
+        registry.getOrPut(type) { CopyOnWriteArrayList() }.add(Registration(clazz, handler, true))
+    }
+
+    /**
+     * 取消注册
+     */
+    fun unregister(type: Int, handler: MessageHandler<*>) {
+        registry[type]?.removeAll { it.handler === handler }
+    }
+
+    /**
+     * 在调用线程解码一条自定义消息并分发给对应 type 的回调，主线程回调按调用顺序投递
+     */
+    fun decode(attachStr: String?) {
+        if (attachStr.isNullOrEmpty() || registry.isEmpty()) {
+            return
+        }
+        decodeInner(attachStr)
+    }
+
+    private fun decodeInner(json: String) {
+        val type = readType(json) ?: return
+        val registrations = registry[type]
+        if (registrations.isNullOrEmpty()) {
+            return
+        }
+        // 同一 type 下相同解析类型只解析一次
+        val parsed = HashMap<Class<*>, Any?>(2)
+        val results = ArrayList<Pair<Registration<*>, Any?>>(registrations.size)
+        for (registration in registrations) {
+            val clazz = registration.clazz
+            val message = if (clazz == null) {
+                null
+            } else {
+                try {
+                    parsed.getOrPut(clazz) { gson.fromJson(json, clazz) }
+                } catch (e: Exception) {
+                    VoiceRoomLog.e(TAG, "decode type:$type error:${e.message}")
+                    continue
+                }
+            }
+            if (registration.inline) {
+                registration.deliver(message)
+            } else {
+                results.add(registration to message)
+            }
+        }
+        if (results.isEmpty()) {
+            return
+        }
+        mainHandler.post {
+            results.forEach { (registration, message) -> registration.deliver(message) }
+        }
+    }
+
+    /**
+     * 只扫描顶层字段读出 type，其它字段直接跳过，不构建 Json 树
+     */
+    internal fun readType(json: String): Int? {
+        try {
+            JsonReader(StringReader(json)).use { reader ->
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    return null
+                }
+                reader.beginObject()
+                while (reader.hasNext()) {
+                    if (reader.nextName() != KEY_TYPE) {
+                        reader.skipValue()
+                        continue
+                    }
+                    return when (reader.peek()) {
+                        JsonToken.NUMBER -> reader.nextInt()
+                        JsonToken.STRING -> reader.nextString().toIntOrNull()
+                        else -> null
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            VoiceRoomLog.e(TAG, "readType error:${e.message}")
+        }
+        return null
+    }
+}
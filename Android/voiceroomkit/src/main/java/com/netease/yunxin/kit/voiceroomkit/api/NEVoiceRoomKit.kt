@@ -12,12 +12,14 @@ import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceCreateRoomDefaultInf
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioEffectOption
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioMixingOption
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomInfo
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomJoinTraceListener
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomLanguage
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomList
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomRtcLastmileProbeConfig
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatInfo
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatRequestItem
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSnapshot
 import com.netease.yunxin.kit.voiceroomkit.impl.VoiceRoomKitImpl
 
 /**
@@ -57,6 +59,21 @@ interface NEVoiceRoomKit {
      */
     val allMemberList: List<NEVoiceRoomMember>
 
+    /**
+     * 根据用户id查询成员，O(1)
+     * 加入房间后获取
+     * @param account 用户id
+     * @return 成员信息，不在房间内返回 null
+     */
+    fun getMember(account: String): NEVoiceRoomMember?
+
+    /**
+     * 房主成员信息
+     * 加入房间后获取，房主不在房间内时为 null
+     * @return 房主成员信息
+     */
+    fun getHostMember(): NEVoiceRoomMember?
+
     /**
      * NEVoiceRoomKit 初始化
      *
@@ -103,6 +120,15 @@ interface NEVoiceRoomKit {
      */
     fun addVoiceRoomListener(listener: NEVoiceRoomListener)
 
+    /**
+     * 注册房间监听，并指定回调线程
+     * <br>使用前提：该方法仅在调用[login]方法登录成功后调用有效
+     * @param listener 监听器
+     * @param mode 回调线程，[addVoiceRoomListener] 默认为 [NEVoiceRoomDispatchMode.MAIN]
+     *
+     */
+    fun addVoiceRoomListener(listener: NEVoiceRoomListener, mode: NEVoiceRoomDispatchMode)
+
     /**
      * 移除房间监听
      * <br>使用前提：该方法仅在调用[login]方法登录成功后调用有效
@@ -136,6 +162,7 @@ interface NEVoiceRoomKit {
      * @param pageNum 页码
      * @param pageSize 页大小,一页包含多少条
      * @param callback 回调
+     * <br>注意事项：第一页有本地缓存，缓存过期时先回调缓存结果，只回调一次
      *
      */
     fun getRoomList(
@@ -144,6 +171,26 @@ interface NEVoiceRoomKit {
         pageNum: Int,
         pageSize: Int,
         callback: NEVoiceRoomCallback<NEVoiceRoomList>? = null
+    ) {
+        getRoomList(liveState, type, pageNum, pageSize, false, callback)
+    }
+
+    /**
+     * 获取房间列表
+     * <br>使用前提：该方法仅在调用[login]方法登录成功后调用有效
+     * @param liveState 直播状态 (直播状态) [NEVoiceRoomLiveState]
+     * @param pageNum 页码
+     * @param pageSize 页大小,一页包含多少条
+     * @param deliverRevalidated 第一页命中过期缓存时，刷新成功后是否再回调一次最新结果
+     * @param callback 回调，[deliverRevalidated] 为 true 时同一次调用可能成功回调两次
+     */
+    fun getRoomList(
+        liveState: NEVoiceRoomLiveState,
+        type: Int,
+        pageNum: Int,
+        pageSize: Int,
+        deliverRevalidated: Boolean,
+        callback: NEVoiceRoomCallback<NEVoiceRoomList>?
     )
 
     /**
@@ -196,6 +243,14 @@ interface NEVoiceRoomKit {
      */
     fun getRoomInfo(liveRecordId: Long, callback: NEVoiceRoomCallback<NEVoiceRoomInfo>)
 
+    /**
+     * 读取上次离开该房间时保存的快照，包括房间信息、麦位和最近的聊天消息
+     * <br>重新进入同一房间时可先展示快照，再用最新数据覆盖；在后台线程读取，回调在主线程
+     * @param liveRecordId 直播Id
+     * @param callback 回调，没有该房间的快照或快照已过期时返回 null
+     */
+    fun loadRoomSnapshot(liveRecordId: Long, callback: NEVoiceRoomCallback<NEVoiceRoomSnapshot>)
+
     /**
      * 获取当前房间信息
      * @return 当前房间信息
@@ -538,6 +593,14 @@ interface NEVoiceRoomKit {
      */
     fun sendBatchGift(giftId: Int, giftCount: Int, userUuids: List<String>, callback: NEVoiceRoomCallback<Unit>?)
 
+    /**
+     * 开启或关闭礼物合并发送，默认关闭
+     * <br>开启后 300 毫秒内发给同一批对象的同一礼物合并成一次 [sendBatchGift] 请求，数量累加，
+     * 每次调用的回调都会在合并请求完成后回调一次；离开或结束房间时未发送的礼物会立即发出
+     * @param enable 是否开启
+     */
+    fun enableGiftAggregation(enable: Boolean)
+
     /**
      * 实名认证
      * @param name 用户真实姓名，以身份证上姓名为准，最大长度32
@@ -659,8 +722,11 @@ data class NEJoinVoiceRoomParams(
 
 /**
  * 加入房间选项
+ * @property joinTraceListener 加入房间各阶段耗时回调，可为空
  */
-class NEJoinVoiceRoomOptions
+class NEJoinVoiceRoomOptions {
+    var joinTraceListener: NEVoiceRoomJoinTraceListener? = null
+}
 
 /**
  * 通用回调
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api
+
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMetricsExporter
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMetricsSnapshot
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.LatencyHistogram
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 语聊房运行指标：计数、当前值和耗时分布
+ * - 记录全部无锁，可以在主线程和事件回调的热路径上调用
+ * - kit 内部记录加入房间各阶段、每个接口、每种回调的耗时，以及消息、打赏、麦位事件的计数，
+ *   指标名见 [JOIN_PREFIX] 等常量；业务层也可以记录自己的指标，例如界面观察者的主线程耗时
+ * - 通过 [setExporter] 定时导出快照，也可以随时调用 [snapshot]
+ * - 耗时统一以微秒记录
+ */
+object NEVoiceRoomMetrics {
+    private const val TAG = "NEVoiceRoomMetrics"
+    private const val THREAD_NAME = "VoiceRoomMetrics"
+
+    /** 加入房间各阶段耗时，后接阶段名，见 NEVoiceRoomJoinTrace 的 PHASE_ 常量；total 为总耗时 */
+    const val JOIN_PREFIX = "join."
+
+    /** 加入房间成功、失败次数 */
+    const val JOIN_SUCCESS = "join.success"
+    const val JOIN_FAILURE = "join.failure"
+
+    /** 接口耗时（含重试），后接接口名；网络异常和 HTTP 错误次数为 http.<接口名>.error */
+    const val HTTP_PREFIX = "http."
+
+    /** 单个监听处理一次回调的耗时，后接回调名，如 dispatch.onSeatListChanged */
+    const val DISPATCH_PREFIX = "dispatch."
+
+    /** 事件次数，后接回调名，如 event.onReceiveTextMessage */
+    const val EVENT_PREFIX = "event."
+
+    /** 聊天、打赏、点歌消息条数 */
+    const val MESSAGE_CHAT = "message.chat"
+    const val MESSAGE_GIFT = "message.gift"
+    const val MESSAGE_SONG = "message.song"
+
+    /** 麦位事件次数，包括麦位列表变化和申请、邀请、踢麦等 */
+    const val SEAT_EVENT = "seat.event"
+
+    /** 界面观察者主线程耗时，后接业务自定义的名称 */
+    const val MAIN_OBSERVER_PREFIX = "main.observer."
+
+    /** 当前房间监听数 */
+    const val GAUGE_LISTENERS = "gauge.listeners"
+
+    /** 默认定时导出间隔 */
+    const val DEFAULT_EXPORT_INTERVAL_MS = 60_000L
+
+    private val counters = ConcurrentHashMap<String, AtomicLong>()
+    private val gauges = ConcurrentHashMap<String, AtomicLong>()
+    private val gaugeSuppliers = ConcurrentHashMap<String, () -> Long>()
+    private val histograms = ConcurrentHashMap<String, LatencyHistogram>()
+
+    @JvmStatic
+    @Volatile
+    var enabled = true
+
+    private var scheduler: ScheduledExecutorService? = null
+    private var exportTask: ScheduledFuture<*>? = null
+    private var lastExportTime = 0L
+
+    @JvmStatic
+    @JvmOverloads
+    fun increment(name: String, delta: Long = 1) {
+        if (!enabled) {
+            return
+        }
+        (counters[name] ?: counters.getOrPut(name) { AtomicLong() }).addAndGet(delta)
+    }
+
+    @JvmStatic
+    fun setGauge(name: String, value: Long) {
+        if (!enabled) {
+            return
+        }
+        (gauges[name] ?: gauges.getOrPut(name) { AtomicLong() }).set(value)
+    }
+
+    /**
+     * 快照时才取值的指标，适合本来就有的状态，如连接数、队列长度
+     */
+    @JvmStatic
+    fun registerGauge(name: String, supplier: () -> Long) {
+        gaugeSuppliers[name] = supplier
+    }
+
+    @JvmStatic
+    fun unregisterGauge(name: String) {
+        gaugeSuppliers.remove(name)
+    }
+
+    @JvmStatic
+    fun recordMicros(name: String, micros: Long) {
+        if (!enabled) {
+            return
+        }
+        (histograms[name] ?: histograms.getOrPut(name) { LatencyHistogram() }).record(micros)
+    }
+
+    @JvmStatic
+    fun recordMillis(name: String, millis: Long) {
+        recordMicros(name, TimeUnit.MILLISECONDS.toMicros(millis))
+    }
+
+    /**
+     * 计时开始，与 [stopTimer] 配对使用
+     */
+    @JvmStatic
+    fun startTimer(): Long {
+        return if (enabled) System.nanoTime() else 0L
+    }
+
+    @JvmStatic
+    fun stopTimer(name: String, startNanos: Long) {
+        if (startNanos != 0L) {
+            recordMicros(name, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos))
+        }
+    }
+
+    @JvmStatic
+    fun snapshot(): NEVoiceRoomMetricsSnapshot {
+        return snapshot(0L)
+    }
+
+    /**
+     * 清空所有计数和耗时分布，当前值和注册的取值函数保留
+     */
+    @JvmStatic
+    fun reset() {
+        counters.values.forEach { it.set(0) }
+        histograms.values.forEach { it.reset() }
+    }
+
+    /**
+     * 设置导出，每隔 [intervalMs] 在后台线程导出一次快照；传 null 停止导出
+     */
+    @JvmStatic
+    @JvmOverloads
+    @Synchronized
+    fun setExporter(
+        exporter: NEVoiceRoomMetricsExporter?,
+        intervalMs: Long = DEFAULT_EXPORT_INTERVAL_MS
+    ) {
+        exportTask?.cancel(false)
+        exportTask = null
+        if (exporter == null) {
+            return
+        }
+        require(intervalMs > 0) { "intervalMs must be positive" }
+        val executor = scheduler ?: Executors.newSingleThreadScheduledExecutor {
+            Thread(it, THREAD_NAME).apply { isDaemon = true }
+        }.also { scheduler = it }
+        lastExportTime = System.currentTimeMillis()
+        exportTask = executor.scheduleAtFixedRate(
+            { export(exporter) },
+            intervalMs,
+            intervalMs,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    private fun export(exporter: NEVoiceRoomMetricsExporter) {
+        val now = System.currentTimeMillis()
+        val snapshot = snapshot(now - lastExportTime)
+        lastExportTime = now
+        try {
+            exporter.export(snapshot)
+        } catch (e: Exception) {
+            // 导出异常不能让定时任务停止
+            VoiceRoomLog.e(TAG, "export error:${e.message}")
+        }
+    }
+
+    private fun snapshot(intervalMs: Long): NEVoiceRoomMetricsSnapshot {
+        val gaugeValues = HashMap<String, Long>(gauges.size + gaugeSuppliers.size)
+        gauges.forEach { (name, value) -> gaugeValues[name] = value.get() }
+        gaugeSuppliers.forEach { (name, supplier) ->
+            try {
+                gaugeValues[name] = supplier()
+            } catch (e: Exception) {
+                VoiceRoomLog.e(TAG, "read gauge $name error:${e.message}")
+            }
+        }
+        return NEVoiceRoomMetricsSnapshot(
+            System.currentTimeMillis(),
+            intervalMs,
+            counters.mapValues { it.value.get() },
+            gaugeValues,
+            histograms.mapValues { it.value.snapshot() }
+        )
+    }
+}
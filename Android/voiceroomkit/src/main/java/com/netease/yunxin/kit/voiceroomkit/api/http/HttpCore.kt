@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api.http
+
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.logging.HttpLoggingInterceptor
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+
+/**
+ * 进程内共享的 HTTP 内核，语聊房、公共模块、点歌的 Retrofit 都从这里创建
+ * - 所有 client 由同一个 [OkHttpClient] 派生，共用连接池、调度器和 TLS 会话缓存，
+ *   同一域名只保持一条连接（服务端支持时走 HTTP/2 多路复用）
+ * - 各模块的公共头通过各自的 [HeaderInterceptor] 添加，互不影响
+ */
+object HttpCore {
+    private const val TAG = "HttpCore"
+
+    /** 与 iOS 端访问同一服务时使用的公共头一致 */
+    const val CLIENT_TYPE_KEY = "clientType"
+    const val CLIENT_TYPE = "aos"
+    const val DEVICE_ID_KEY = "deviceId"
+
+    const val DEFAULT_MAX_REQUESTS = 64
+
+    /**
+     * OkHttp 默认每个 client 对同一域名最多 5 个并发，之前各模块各用一个 client，合计最多 15 个；
+     * 合并为一个调度器后取 8，进房、点歌、公共接口同时发起时不会互相排队太久，又不超过之前的总并发。
+     * 可通过 [setMaxRequests] 调整
+     */
+    const val DEFAULT_MAX_REQUESTS_PER_HOST = 8
+    private const val KEEP_ALIVE_MINUTES = 5L
+    private const val MAX_IDLE_CONNECTIONS = 5
+
+    private val dispatcher = Dispatcher().apply {
+        maxRequests = DEFAULT_MAX_REQUESTS
+        maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST
+    }
+
+    private val connectionPool =
+        ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES)
+
+    private val baseClient: OkHttpClient by lazy {
+        OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(connectionPool)
+            .build()
+    }
+
+    /**
+     * 调整并发数，对已创建的 client 同样生效
+     */
+    @JvmStatic
+    fun setMaxRequests(maxRequests: Int, maxRequestsPerHost: Int) {
+        dispatcher.maxRequests = maxRequests
+        dispatcher.maxRequestsPerHost = maxRequestsPerHost
+    }
+
+    /**
+     * 当前空闲+使用中的连接数，用于排查连接复用
+     */
+    @JvmStatic
+    fun connectionCount(): Int = connectionPool.connectionCount()
+
+    /**
+     * @param headers 模块自己的公共头
+     * @param logBody 是否打印请求体和响应体，否则只打印请求行
+     */
+    @JvmStatic
+    fun createRetrofit(baseUrl: String, headers: HeaderInterceptor, logBody: Boolean): Retrofit {
+        val logging = LoggingInterceptor(
+            if (logBody) HttpLoggingInterceptor.Level.BODY else HttpLoggingInterceptor.Level.BASIC
+        )
+        // newBuilder 只复制配置，连接池、调度器、SSLSocketFactory 都是同一个实例
+        val client = baseClient.newBuilder()
+            .addInterceptor(headers)
+            .addInterceptor(logging)
+            .build()
+        return Retrofit.Builder()
+            .baseUrl(baseUrl)
+            .client(client)
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+    }
+
+    /**
+     * 每个请求按当时的 [VoiceRoomLog.level] 决定打印多少：
+     * 可打 debug 时按 [createRetrofit] 的 logBody，只可打 info 时只打请求行，否则不打
+     */
+    internal fun requestLogLevel(
+        defaultLevel: HttpLoggingInterceptor.Level
+    ): HttpLoggingInterceptor.Level = when {
+        VoiceRoomLog.isLoggable(VoiceRoomLog.LEVEL_DEBUG) -> defaultLevel
+        VoiceRoomLog.isLoggable(VoiceRoomLog.LEVEL_INFO) -> HttpLoggingInterceptor.Level.BASIC
+        else -> HttpLoggingInterceptor.Level.NONE
+    }
+
+    /**
+     * 按 [requestLogLevel] 选择日志拦截器，各级别的拦截器预先创建，不在请求之间修改共享状态
+     */
+    private class LoggingInterceptor(
+        private val defaultLevel: HttpLoggingInterceptor.Level
+    ) : Interceptor {
+        private val loggers = HttpLoggingInterceptor.Level.values().map { level ->
+            HttpLoggingInterceptor { message ->
+                if (level == HttpLoggingInterceptor.Level.BODY) {
+                    VoiceRoomLog.d(TAG, message)
+                } else {
+                    VoiceRoomLog.i(TAG, message)
+                }
+            }.apply { this.level = level }
+        }
+
+        override fun intercept(chain: Interceptor.Chain): okhttp3.Response {
+            val level = requestLogLevel(defaultLevel)
+            if (level == HttpLoggingInterceptor.Level.NONE) {
+                return chain.proceed(chain.request())
+            }
+            return loggers[level.ordinal].intercept(chain)
+        }
+    }
+
+    /**
+     * 给请求加上公共头，可随时增改
+     */
+    class HeaderInterceptor : Interceptor {
+        private val headers = ConcurrentHashMap<String, String>()
+
+        fun addHeader(key: String, value: String) {
+            headers[key] = value
+        }
+
+        /**
+         * 设备相关的公共头，需要带设备 id 的模块在初始化时调用
+         */
+        fun addDeviceHeaders(deviceId: String) {
+            addHeader(CLIENT_TYPE_KEY, CLIENT_TYPE)
+            addHeader(DEVICE_ID_KEY, deviceId)
+        }
+
+        override fun intercept(chain: Interceptor.Chain): okhttp3.Response {
+            if (headers.isEmpty()) {
+                return chain.proceed(chain.request())
+            }
+            val builder = chain.request().newBuilder()
+            headers.forEach { (key, value) -> builder.header(key, value) }
+            return chain.proceed(builder.build())
+        }
+    }
+}
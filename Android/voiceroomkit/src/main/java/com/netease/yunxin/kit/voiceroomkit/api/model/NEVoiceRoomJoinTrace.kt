@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api.model
+
+/**
+ * 加入房间各阶段耗时
+ * @property phaseCosts 阶段名 -> 耗时（毫秒），阶段名见 [PHASE_JOIN_ROOM] 等常量，未完成的阶段不包含在内
+ * @property totalCost 从调用 joinRoom 到回调结果的总耗时（毫秒）
+ * @property success 是否加入成功
+ */
+data class NEVoiceRoomJoinTrace(
+    val phaseCosts: Map<String, Long>,
+    val totalCost: Long,
+    val success: Boolean
+) {
+    companion object {
+        /** 加入 roomkit 房间 */
+        const val PHASE_JOIN_ROOM = "joinRoom"
+
+        /** 加入 RTC 频道 */
+        const val PHASE_JOIN_RTC = "joinRtcChannel"
+
+        /** 加入聊天室 */
+        const val PHASE_JOIN_CHATROOM = "joinChatroom"
+
+        /** 获取房间信息 */
+        const val PHASE_GET_ROOM_INFO = "getRoomInfo"
+
+        /** 预取麦位信息 */
+        const val PHASE_GET_SEAT_INFO = "getSeatInfo"
+    }
+}
+
+/**
+ * 加入房间耗时回调
+ */
+fun interface NEVoiceRoomJoinTraceListener {
+    fun onJoinTrace(trace: NEVoiceRoomJoinTrace)
+}
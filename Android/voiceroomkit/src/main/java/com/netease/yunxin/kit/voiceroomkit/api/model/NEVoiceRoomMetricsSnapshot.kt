@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api.model
+
+/**
+ * 某一时刻的运行指标
+ * @property time 采集时间戳，单位ms
+ * @property intervalMs 距上一次定时导出的时长，单位ms；非定时导出时为 0
+ * @property counters 计数，自启动或上次重置以来的累计值；两次快照的差值除以间隔即为速率
+ * @property gauges 当前值
+ * @property histograms 耗时分布，单位微秒
+ */
+data class NEVoiceRoomMetricsSnapshot(
+    val time: Long,
+    val intervalMs: Long,
+    val counters: Map<String, Long>,
+    val gauges: Map<String, Long>,
+    val histograms: Map<String, NEVoiceRoomHistogramSnapshot>
+)
+
+/**
+ * 耗时分布，单位微秒，分位值相对误差约 3%
+ * @property count 记录次数
+ * @property min 最小值
+ * @property max 最大值
+ * @property mean 平均值
+ * @property p50 中位数
+ * @property p90 90 分位
+ * @property p99 99 分位
+ * @property p999 99.9 分位
+ */
+data class NEVoiceRoomHistogramSnapshot(
+    val count: Long,
+    val min: Long,
+    val max: Long,
+    val mean: Long,
+    val p50: Long,
+    val p90: Long,
+    val p99: Long,
+    val p999: Long
+)
+
+/**
+ * 指标导出，在后台线程回调
+ */
+fun interface NEVoiceRoomMetricsExporter {
+    fun export(snapshot: NEVoiceRoomMetricsSnapshot)
+}
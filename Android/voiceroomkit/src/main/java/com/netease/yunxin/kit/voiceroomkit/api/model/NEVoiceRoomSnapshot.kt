@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api.model
+
+/**
+ * 上次离开房间时保存的房间快照，重新进入同一房间时可先展示，再用服务端最新数据覆盖
+ * @property roomInfo 房间信息
+ * @property seatItems 麦位列表
+ * @property messages 最近的聊天消息，按时间从旧到新
+ * @property savedTime 保存时间戳，单位ms
+ */
+data class NEVoiceRoomSnapshot(
+    val roomInfo: NEVoiceRoomInfo,
+    val seatItems: List<NEVoiceRoomSeatItem>,
+    val messages: List<NEVoiceRoomChatTextMessage>,
+    val savedTime: Long
+)
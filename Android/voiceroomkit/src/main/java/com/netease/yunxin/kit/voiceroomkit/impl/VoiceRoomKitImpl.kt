@@ -35,40 +35,44 @@ import com.netease.yunxin.kit.voiceroomkit.api.NECreateVoiceRoomOptions
 import com.netease.yunxin.kit.voiceroomkit.api.NECreateVoiceRoomParams
 import com.netease.yunxin.kit.voiceroomkit.api.NEJoinVoiceRoomOptions
 import com.netease.yunxin.kit.voiceroomkit.api.NEJoinVoiceRoomParams
-import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomAudioOutputDevice
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomAuthEvent
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomAuthListener
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomCallback
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomDispatchMode
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomEndReason
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomErrorCode
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomKit
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomKitConfig
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomListener
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomListenerAdapter
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomLiveState
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomPreviewListener
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceCreateRoomDefaultInfo
-import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomBatchGiftModel
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomChatTextMessage
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioEffectOption
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioMixingOption
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomInfo
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomJoinTrace
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomLanguage
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomList
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember
-import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMemberVolumeInfo
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomRtcLastmileProbeConfig
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomRtcLastmileProbeOneWayResult
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomRtcLastmileProbeResult
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatInfo
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItem
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatRequestItem
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSnapshot
 import com.netease.yunxin.kit.voiceroomkit.impl.model.StartVoiceRoomParam
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomDefaultConfig
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomInfo
 import com.netease.yunxin.kit.voiceroomkit.impl.model.response.VoiceRoomList
 import com.netease.yunxin.kit.voiceroomkit.impl.repository.VoiceRoomRepository
+import com.netease.yunxin.kit.voiceroomkit.impl.repository.VoiceRoomSnapshotStore
+import com.netease.yunxin.kit.voiceroomkit.impl.service.GiftBatchAggregator
 import com.netease.yunxin.kit.voiceroomkit.impl.service.VoiceRoomHttpService
 import com.netease.yunxin.kit.voiceroomkit.impl.service.VoiceRoomHttpServiceImpl
+import com.netease.yunxin.kit.voiceroomkit.impl.service.VoiceRoomJoinTracer
 import com.netease.yunxin.kit.voiceroomkit.impl.service.VoiceRoomService
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.ScreenUtil
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
@@ -81,6 +85,8 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
     private var createVoiceRoomInfo: VoiceRoomInfo? = null
     private var joinedVoiceRoomInfo: VoiceRoomInfo? = null
     private val myRoomService = VoiceRoomService()
+    private var giftAggregator: GiftBatchAggregator? = null
+    private val snapshotStore = VoiceRoomSnapshotStore()
     private val authListeners: CopyOnWriteArrayList<NEVoiceRoomAuthListener> by lazy {
         CopyOnWriteArrayList()
     }
@@ -126,6 +132,14 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             } ?: emptyList()
         }
 
+    override fun getMember(account: String): NEVoiceRoomMember? {
+        return myRoomService.getMember(account)
+    }
+
+    override fun getHostMember(): NEVoiceRoomMember? {
+        return myRoomService.getHostMember()
+    }
+
     private var config: NEVoiceRoomKitConfig? = null
     private var baseUrl: String = ""
     override fun initialize(
@@ -166,6 +180,7 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             ServerConfig.selectServer(config.appKey, realRoomServerUrl)
         VoiceRoomRepository.serverConfig = serverConfig
         voiceRoomHttpService.initialize(context, baseUrl)
+        snapshotStore.init(context)
         voiceRoomHttpService.addHeader("appkey", config.appKey)
         NERoomKit.getInstance()
             .initialize(
@@ -282,155 +297,29 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
     }
 
     private fun initRoomServiceListener() {
-        myRoomService.addListener(object : NEVoiceRoomListener {
-            override fun onMemberJoinRoom(members: List<NEVoiceRoomMember>) {
-                listeners.forEach {
-                    it.onMemberJoinRoom(members)
-                }
-            }
-
-            override fun onMemberLeaveRoom(members: List<NEVoiceRoomMember>) {
-                listeners.forEach {
-                    it.onMemberLeaveRoom(members)
-                }
-            }
-
-            override fun onMemberJoinChatroom(members: List<NEVoiceRoomMember>) {
-                listeners.forEach {
-                    it.onMemberJoinChatroom(members)
-                }
-            }
-
-            override fun onMemberLeaveChatroom(members: List<NEVoiceRoomMember>) {
-                listeners.forEach {
-                    it.onMemberLeaveChatroom(members)
-                }
-            }
-
+        // 先于业务监听注册，房间结束时先清理房间信息
+        myRoomService.addListener(object : NEVoiceRoomListenerAdapter() {
             override fun onRoomEnded(reason: NEVoiceRoomEndReason) {
                 joinedVoiceRoomInfo = null
                 createVoiceRoomInfo = null
-                listeners.forEach {
-                    it.onRoomEnded(reason)
-                }
-            }
-
-            override fun onRtcChannelError(code: Int) {
-                listeners.forEach {
-                    it.onRtcChannelError(code)
-                }
-            }
-
-            override fun onMemberAudioMuteChanged(member: NEVoiceRoomMember, mute: Boolean, operateBy: NEVoiceRoomMember?) {
-                listeners.forEach {
-                    it.onMemberAudioMuteChanged(member, mute, operateBy)
-                }
-            }
-
-            override fun onMemberAudioBanned(member: NEVoiceRoomMember, banned: Boolean) {
-                listeners.forEach {
-                    it.onMemberAudioBanned(member, banned)
-                }
-            }
-
-            override fun onReceiveTextMessage(message: NEVoiceRoomChatTextMessage) {
-                listeners.forEach {
-                    it.onReceiveTextMessage(message)
-                }
-            }
-
-            override fun onSeatRequestSubmitted(seatIndex: Int, account: String) {
-                listeners.forEach {
-                    it.onSeatRequestSubmitted(seatIndex, account)
-                }
-            }
-
-            override fun onSeatRequestCancelled(seatIndex: Int, account: String) {
-                listeners.forEach {
-                    it.onSeatRequestCancelled(seatIndex, account)
-                }
-            }
-
-            override fun onSeatRequestApproved(seatIndex: Int, account: String, operateBy: String, isAutoAgree: Boolean) {
-                listeners.forEach {
-                    it.onSeatRequestApproved(seatIndex, account, operateBy, isAutoAgree)
-                }
-            }
-
-            override fun onSeatRequestRejected(seatIndex: Int, account: String, operateBy: String) {
-                listeners.forEach {
-                    it.onSeatRequestRejected(seatIndex, account, operateBy)
-                }
-            }
-
-            override fun onSeatLeave(seatIndex: Int, account: String) {
-                listeners.forEach {
-                    it.onSeatLeave(seatIndex, account)
-                }
-            }
-
-            override fun onSeatKicked(seatIndex: Int, account: String, operateBy: String) {
-                listeners.forEach {
-                    it.onSeatKicked(seatIndex, account, operateBy)
-                }
-            }
-
-            override fun onSeatInvitationAccepted(seatIndex: Int, account: String, isAutoAgree: Boolean) {
-                listeners.forEach {
-                    it.onSeatInvitationAccepted(seatIndex, account, isAutoAgree)
-                }
+                snapshotStore.clear()
             }
 
             override fun onSeatListChanged(seatItems: List<NEVoiceRoomSeatItem>) {
-                listeners.forEach {
-                    it.onSeatListChanged(seatItems)
-                }
+                snapshotStore.onSeatItemsChanged(seatItems)
             }
 
-            override fun onAudioMixingStateChanged(reason: Int) {
-                listeners.forEach {
-                    it.onAudioMixingStateChanged(reason)
-                }
-            }
-
-            override fun onAudioOutputDeviceChanged(device: NEVoiceRoomAudioOutputDevice) {
-                listeners.forEach {
-                    it.onAudioOutputDeviceChanged(device)
-                }
-            }
-
-            override fun onReceiveBatchGift(giftModel: NEVoiceRoomBatchGiftModel) {
-                listeners.forEach {
-                    it.onReceiveBatchGift(giftModel)
-                }
-            }
-
-            override fun onAudioEffectTimestampUpdate(effectId: Long, timeStampMS: Long) {
-                listeners.forEach {
-                    it.onAudioEffectTimestampUpdate(effectId, timeStampMS)
-                }
-            }
-
-            override fun onRtcLocalAudioVolumeIndication(volume: Int, vadFlag: Boolean) {
-                listeners.forEach {
-                    it.onRtcLocalAudioVolumeIndication(volume, vadFlag)
-                }
-            }
-
-            override fun onRtcRemoteAudioVolumeIndication(volumes: List<NEVoiceRoomMemberVolumeInfo>, totalVolume: Int) {
-                listeners.forEach {
-                    it.onRtcRemoteAudioVolumeIndication(volumes, totalVolume)
-                }
-            }
-
-            override fun onAudioEffectFinished(effectId: Int) {
-                listeners.forEach {
-                    it.onAudioEffectFinished(effectId)
-                }
+            override fun onReceiveTextMessage(message: NEVoiceRoomChatTextMessage) {
+                snapshotStore.onTextMessage(message)
             }
         })
     }
 
+    private fun clearVoiceRoomListeners() {
+        listeners.forEach { myRoomService.removeListener(it) }
+        listeners.clear()
+    }
+
     override val isInitialized: Boolean
         get() = NERoomKit.getInstance().isInitialized
 
@@ -492,6 +381,7 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
      * @param liveState 直播状态 (直播状态) [NEVoiceRoomLiveState]
      * @param pageNum 页码
      * @param pageSize 页大小,一页包含多少条
+     * @param deliverRevalidated 命中过期缓存时，刷新成功后是否再回调一次
      * @param callback 房间列表回调
      *
      */
@@ -500,6 +390,7 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
         type: Int,
         pageNum: Int,
         pageSize: Int,
+        deliverRevalidated: Boolean,
         callback: NEVoiceRoomCallback<NEVoiceRoomList>?
     ) {
         VoiceRoomLog.logApi(
@@ -510,6 +401,7 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             liveState.value,
             pageNum,
             pageSize,
+            deliverRevalidated,
             object :
                 NetRequestCallback<VoiceRoomList> {
                 override fun error(code: Int, msg: String?) {
@@ -608,48 +500,83 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
         callback: NEVoiceRoomCallback<NEVoiceRoomInfo>?
     ) {
         VoiceRoomLog.logApi("joinRoom: params=$params")
+        val tracer = VoiceRoomJoinTracer(options.joinTraceListener)
+        // 房间信息与加入房间互不依赖，同时进行，都完成后再回调
+        var roomJoined = false
+        var roomInfoResult: VoiceRoomInfo? = null
+        var roomInfoReady = false
+        var failed = false
+
+        fun fail(code: Int, msg: String?) {
+            if (failed) {
+                return
+            }
+            failed = true
+            if (roomJoined) {
+                // 房间已加入但房间信息失败，退出房间，避免停留在半加入状态
+                myRoomService.leaveRoom(object : NECallback2<Unit>() {})
+            }
+            tracer.finish(false)
+            callback?.onFailure(code, msg)
+        }
+
+        fun tryComplete() {
+            if (failed || !roomJoined || !roomInfoReady) {
+                return
+            }
+            joinedVoiceRoomInfo = roomInfoResult
+            roomInfoResult?.let { snapshotStore.onRoomJoined(it) }
+            tracer.finish(true)
+            callback?.onSuccess(
+                roomInfoResult?.let {
+                    VoiceRoomUtils.voiceRoomInfo2NEVoiceRoomInfo(it)
+                }
+            )
+        }
+
+        tracer.begin(NEVoiceRoomJoinTrace.PHASE_GET_ROOM_INFO)
+        voiceRoomHttpService.getRoomInfo(
+            params.liveRecordId,
+            object : NetRequestCallback<VoiceRoomInfo> {
+                override fun success(info: VoiceRoomInfo?) {
+                    tracer.end(NEVoiceRoomJoinTrace.PHASE_GET_ROOM_INFO)
+                    VoiceRoomLog.i(tag, "joinRoom  getRoomInfo success")
+                    roomInfoResult = info
+                    roomInfoReady = true
+                    tryComplete()
+                }
+
+                override fun error(code: Int, msg: String?) {
+                    VoiceRoomLog.e(
+                        tag,
+                        "get room info when join room error: code = $code message = $msg"
+                    )
+                    fail(code, msg)
+                }
+            }
+        )
         myRoomService.joinRoom(
             params.roomUuid,
             params.role.value,
             params.nick,
             params.avatar,
             params.extraData,
+            tracer,
             object : NECallback2<Unit>() {
                 override fun onSuccess(data: Unit?) {
                     VoiceRoomLog.i(tag, "joinRoom success")
-
-                    voiceRoomHttpService.getRoomInfo(
-                        params.liveRecordId,
-                        object : NetRequestCallback<VoiceRoomInfo> {
-                            override fun success(info: VoiceRoomInfo?) {
-                                VoiceRoomLog.i(
-                                    tag,
-                                    "joinRoom  getRoomInfo success"
-                                )
-                                joinedVoiceRoomInfo = info
-                                callback?.onSuccess(
-                                    info?.let {
-                                        VoiceRoomUtils.voiceRoomInfo2NEVoiceRoomInfo(
-                                            it
-                                        )
-                                    }
-                                )
-                            }
-
-                            override fun error(code: Int, msg: String?) {
-                                VoiceRoomLog.e(
-                                    tag,
-                                    "get room info after join room error: code = $code message = $msg"
-                                )
-                                callback?.onFailure(code, msg)
-                            }
-                        }
-                    )
+                    roomJoined = true
+                    if (failed) {
+                        // 房间信息已失败，回滚刚加入的房间
+                        myRoomService.leaveRoom(object : NECallback2<Unit>() {})
+                        return
+                    }
+                    tryComplete()
                 }
 
                 override fun onError(code: Int, message: String?) {
                     VoiceRoomLog.e(tag, "joinRoom error: code=$code message=$message")
-                    callback?.onFailure(code, message)
+                    fail(code, message)
                 }
             }
         )
@@ -657,6 +584,8 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
 
     override fun endRoom(callback: NEVoiceRoomCallback<Unit>?) {
         VoiceRoomLog.logApi("endRoom")
+        // 还没发出的礼物先发出去
+        giftAggregator?.flushAll()
 
         val liveRecordId = createVoiceRoomInfo?.liveModel?.liveRecordId
             ?: joinedVoiceRoomInfo?.liveModel?.liveRecordId
@@ -689,11 +618,14 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
         })
         joinedVoiceRoomInfo = null
         createVoiceRoomInfo = null
-        listeners.clear()
+        snapshotStore.clear()
+        clearVoiceRoomListeners()
     }
 
     override fun leaveRoom(callback: NEVoiceRoomCallback<Unit>?) {
         VoiceRoomLog.logApi("leaveRoom")
+        // 还没发出的礼物先发出去
+        giftAggregator?.flushAll()
         myRoomService.leaveRoom(object : NECallback2<Unit>() {
             override fun onError(code: Int, message: String?) {
                 VoiceRoomLog.e(tag, "leaveRoom: error code = $code message = $message")
@@ -706,7 +638,8 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             }
         })
         joinedVoiceRoomInfo = null
-        listeners.clear()
+        snapshotStore.saveAndReset()
+        clearVoiceRoomListeners()
     }
 
     override fun getRoomInfo(liveRecordId: Long, callback: NEVoiceRoomCallback<NEVoiceRoomInfo>) {
@@ -714,6 +647,7 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             liveRecordId,
             object : NetRequestCallback<VoiceRoomInfo> {
                 override fun success(info: VoiceRoomInfo?) {
+                    info?.let { snapshotStore.onRoomInfoUpdated(it) }
                     callback.onSuccess(
                         info?.let {
                             VoiceRoomUtils.voiceRoomInfo2NEVoiceRoomInfo(
@@ -730,6 +664,14 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
         )
     }
 
+    override fun loadRoomSnapshot(
+        liveRecordId: Long,
+        callback: NEVoiceRoomCallback<NEVoiceRoomSnapshot>
+    ) {
+        VoiceRoomLog.logApi("loadRoomSnapshot liveRecordId:$liveRecordId")
+        snapshotStore.load(liveRecordId) { callback.onSuccess(it) }
+    }
+
     override fun getCurrentRoomInfo(): NEVoiceRoomInfo? {
         return joinedVoiceRoomInfo?.let { VoiceRoomUtils.voiceRoomInfo2NEVoiceRoomInfo(it) }
     }
@@ -739,13 +681,13 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
         myRoomService.getSeatInfo(object : NECallback2<NESeatInfo>() {
             override fun onSuccess(data: NESeatInfo?) {
                 VoiceRoomLog.i(tag, "getSeatInfo success")
-                callback?.onSuccess(
-                    data?.let {
-                        VoiceRoomUtils.voiceRoomSeatInfo2NEVoiceRoomSeatInfo(
-                            it
-                        )
-                    }
-                )
+                val seatInfo = data?.let {
+                    VoiceRoomUtils.voiceRoomSeatInfo2NEVoiceRoomSeatInfo(
+                        it
+                    )
+                }
+                seatInfo?.let { snapshotStore.onSeatItemsChanged(it.seatItems) }
+                callback?.onSuccess(seatInfo)
             }
 
             override fun onError(code: Int, message: String?) {
@@ -1194,13 +1136,22 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
     }
 
     override fun addVoiceRoomListener(listener: NEVoiceRoomListener) {
-        VoiceRoomLog.logApi("addVoiceRoomListener: listener=$listener")
-        listeners.add(listener)
+        addVoiceRoomListener(listener, NEVoiceRoomDispatchMode.MAIN)
+    }
+
+    override fun addVoiceRoomListener(
+        listener: NEVoiceRoomListener,
+        mode: NEVoiceRoomDispatchMode
+    ) {
+        VoiceRoomLog.logApi("addVoiceRoomListener: listener=$listener, mode=$mode")
+        listeners.addIfAbsent(listener)
+        myRoomService.addListener(listener, mode)
     }
 
     override fun removeVoiceRoomListener(listener: NEVoiceRoomListener) {
         VoiceRoomLog.logApi("removeVoiceRoomListener: listener=$listener")
         listeners.remove(listener)
+        myRoomService.removeListener(listener)
     }
 
     override fun sendBatchGift(
@@ -1217,23 +1168,42 @@ internal class VoiceRoomKitImpl : NEVoiceRoomKit, CoroutineRunner() {
             return
         }
 
-        voiceRoomHttpService.batchReward(
-            joinedVoiceRoomInfo?.liveModel?.liveRecordId!!,
-            giftId,
-            giftCount,
-            userUuids,
-            object : NetRequestCallback<Unit> {
-                override fun success(info: Unit?) {
-                    VoiceRoomLog.i(tag, "batchReward success")
-                    callback?.onSuccess(info)
-                }
+        val liveRecordId = joinedVoiceRoomInfo?.liveModel?.liveRecordId!!
+        val requestCallback = object : NetRequestCallback<Unit> {
+            override fun success(info: Unit?) {
+                VoiceRoomLog.i(tag, "batchReward success")
+                callback?.onSuccess(info)
+            }
 
-                override fun error(code: Int, msg: String?) {
-                    VoiceRoomLog.e(tag, "batchReward error: code = $code message = $msg")
-                    callback?.onFailure(code, msg)
-                }
+            override fun error(code: Int, msg: String?) {
+                VoiceRoomLog.e(tag, "batchReward error: code = $code message = $msg")
+                callback?.onFailure(code, msg)
             }
-        )
+        }
+        val aggregator = giftAggregator
+        if (aggregator != null) {
+            aggregator.add(liveRecordId, giftId, giftCount, userUuids, requestCallback)
+        } else {
+            voiceRoomHttpService.batchReward(
+                liveRecordId,
+                giftId,
+                giftCount,
+                userUuids,
+                requestCallback
+            )
+        }
+    }
+
+    override fun enableGiftAggregation(enable: Boolean) {
+        VoiceRoomLog.logApi("enableGiftAggregation enable:$enable")
+        if (enable) {
+            if (giftAggregator == null) {
+                giftAggregator = GiftBatchAggregator(voiceRoomHttpService)
+            }
+        } else {
+            giftAggregator?.flushAll()
+            giftAggregator = null
+        }
     }
 
     override fun authenticate(name: String, cardNo: String, callback: NEVoiceRoomCallback<Unit>?) {
@@ -11,7 +11,7 @@ import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember
 import com.netease.yunxin.kit.voiceroomkit.impl.service.MemberPropertyConstants
 
 internal class VoiceRoomMember(
-    private val roomMember: NERoomMember
+    val roomMember: NERoomMember
 ) : NEVoiceRoomMember {
     override val account: String
         get() = roomMember.uuid
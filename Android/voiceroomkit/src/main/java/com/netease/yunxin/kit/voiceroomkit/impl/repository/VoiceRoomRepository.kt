@@ -12,6 +12,7 @@ import com.netease.yunxin.kit.common.network.ServiceCreator
 import com.netease.yunxin.kit.roomkit.api.NERoomKit
 import com.netease.yunxin.kit.roomkit.impl.repository.ServerConfig
 import com.netease.yunxin.kit.voiceroomkit.BuildConfig
+import com.netease.yunxin.kit.voiceroomkit.api.http.HttpCore
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomDefaultConfig
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomInfo
 import com.netease.yunxin.kit.voiceroomkit.impl.model.response.VoiceRoomList
@@ -23,24 +24,26 @@ class VoiceRoomRepository {
     companion object {
         lateinit var serverConfig: ServerConfig
     }
-    private val serviceCreator: ServiceCreator = ServiceCreator()
+    private val headers = HttpCore.HeaderInterceptor()
+
+    internal val responseCache = VoiceRoomResponseCache()
 
     private lateinit var voiceRoomApi: VoiceRoomApi
 
     fun initialize(context: Context, url: String) {
-        serviceCreator.init(
-            context,
-            url,
-            if (BuildConfig.DEBUG) ServiceCreator.LOG_LEVEL_BODY else ServiceCreator.LOG_LEVEL_BASIC,
-            NERoomKit.getInstance().deviceId
-        )
+        responseCache.init(context)
+        headers.addDeviceHeaders(NERoomKit.getInstance().deviceId)
         val localLanguage = Locale.getDefault().language
-        serviceCreator.addHeader(ServiceCreator.ACCEPT_LANGUAGE_KEY, localLanguage)
-        voiceRoomApi = serviceCreator.create(VoiceRoomApi::class.java)
+        headers.addHeader(ServiceCreator.ACCEPT_LANGUAGE_KEY, localLanguage)
+        // 服务端按语言返回内容，缓存也按语言区分
+        responseCache.scope = localLanguage
+        // 与公共模块、点歌共用连接池和调度器
+        voiceRoomApi = HttpCore.createRetrofit(url, headers, BuildConfig.DEBUG)
+            .create(VoiceRoomApi::class.java)
     }
 
     fun addHeader(key: String, value: String) {
-        serviceCreator.addHeader(key, value)
+        headers.addHeader(key, value)
     }
 
     suspend fun getVoiceRoomList(
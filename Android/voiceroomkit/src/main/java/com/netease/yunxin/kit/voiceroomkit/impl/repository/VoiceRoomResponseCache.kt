@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.repository
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.annotation.WorkerThread
+import com.google.gson.Gson
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.lang.reflect.Type
+
+/**
+ * 接口结果缓存，内存 LRU + 可选的 SharedPreferences 持久化
+ * - 在 [Policy.ttlMs] 内视为新鲜，直接使用
+ * - 超过 ttl 但在 [Policy.maxStaleMs] 内视为过期可用，先返回再后台刷新
+ * - 持久化的条目冷启动后仍可用，按写入时间计算是否过期
+ * - 只保存序列化后的 json，每次读取都解析出新对象，调用方修改返回的对象不会影响缓存，
+ *   解析和读盘都在调用线程完成，不要在主线程调用 [get]
+ */
+internal class VoiceRoomResponseCache(
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    class Policy(
+        val ttlMs: Long,
+        val maxStaleMs: Long,
+        val persistent: Boolean
+    )
+
+    class Hit<T>(val data: T, val fresh: Boolean)
+
+    private class Entry(val json: String, val time: Long)
+
+    // 按访问顺序淘汰的 LRU，读写都加锁
+    private val memory = object : LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>?) =
+            size > MAX_MEMORY_ENTRIES
+    }
+    private val gson = Gson()
+    private var prefs: SharedPreferences? = null
+
+    /**
+     * 缓存分区，如语言，切换后之前的缓存不再命中
+     */
+    @Volatile
+    var scope: String = ""
+
+    fun init(context: Context) {
+        init(context.applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE))
+    }
+
+    fun init(prefs: SharedPreferences) {
+        this.prefs = prefs
+    }
+
+    @WorkerThread
+    fun <T> get(key: String, policy: Policy, type: Type): Hit<T>? {
+        val fullKey = fullKey(key)
+        val entry = synchronized(memory) { memory[fullKey] }
+            ?: if (policy.persistent) readDisk(fullKey) else null
+        entry ?: return null
+        val age = clock() - entry.time
+        if (age < 0 || age >= policy.maxStaleMs.coerceAtLeast(policy.ttlMs)) {
+            return null
+        }
+        return try {
+            val data: T = gson.fromJson(entry.json, type) ?: return null
+            Hit(data, age < policy.ttlMs)
+        } catch (e: Exception) {
+            VoiceRoomLog.e(TAG, "parse cache $fullKey error:${e.message}")
+            remove(fullKey)
+            null
+        }
+    }
+
+    @WorkerThread
+    fun put(key: String, policy: Policy, data: Any) {
+        val fullKey = fullKey(key)
+        val entry = Entry(gson.toJson(data), clock())
+        synchronized(memory) { memory[fullKey] = entry }
+        if (policy.persistent) {
+            writeDisk(fullKey, entry)
+        }
+    }
+
+    /**
+     * 复制一份，用于同一结果回调给多个调用方
+     */
+    @WorkerThread
+    fun <T> copy(data: T, type: Type): T = gson.fromJson(gson.toJson(data), type)
+
+    /**
+     * 清除 [key] 及以 "[key]:" 开头的缓存，内存和磁盘都清。
+     * 按完整的段匹配，清除 roomInfo:1 不会清掉 roomInfo:10
+     */
+    fun invalidate(key: String) {
+        val fullKey = fullKey(key)
+        val childPrefix = fullKey + KEY_DELIMITER
+        val matches = { k: String -> k == fullKey || k.startsWith(childPrefix) }
+        synchronized(memory) { memory.keys.removeAll(matches) }
+        prefs?.let { sp ->
+            val keys = sp.all.keys.filter(matches)
+            if (keys.isNotEmpty()) {
+                sp.edit().apply { keys.forEach { remove(it) } }.apply()
+            }
+        }
+    }
+
+    private fun remove(fullKey: String) {
+        synchronized(memory) { memory.remove(fullKey) }
+        prefs?.edit()?.remove(fullKey)?.apply()
+    }
+
+    private fun fullKey(key: String) = "$scope|$key"
+
+    private fun readDisk(fullKey: String): Entry? {
+        val json = prefs?.getString(fullKey, null) ?: return null
+        return try {
+            val obj = JsonParser.parseString(json).asJsonObject
+            val data = obj.get(FIELD_DATA) ?: return null
+            Entry(data.toString(), obj.get(FIELD_TIME).asLong).also {
+                synchronized(memory) { memory[fullKey] = it }
+            }
+        } catch (e: Exception) {
+            VoiceRoomLog.e(TAG, "read cache $fullKey error:${e.message}")
+            prefs?.edit()?.remove(fullKey)?.apply()
+            null
+        }
+    }
+
+    private fun writeDisk(fullKey: String, entry: Entry) {
+        val sp = prefs ?: return
+        val obj = JsonObject().apply {
+            addProperty(FIELD_TIME, entry.time)
+            add(FIELD_DATA, JsonParser.parseString(entry.json))
+        }
+        sp.edit().putString(fullKey, obj.toString()).apply()
+    }
+
+    companion object {
+        private const val TAG = "VoiceRoomResponseCache"
+        private const val PREFS_NAME = "voiceroom_response_cache"
+        private const val FIELD_TIME = "time"
+        private const val FIELD_DATA = "data"
+        private const val MAX_MEMORY_ENTRIES = 32
+        private const val MINUTE = 60_000L
+        const val KEY_DELIMITER = ":"
+
+        /** 房间列表首页，持久化用于冷启动秒开，过期数据先展示再刷新 */
+        val ROOM_LIST_FIRST_PAGE = Policy(5_000L, 24 * 60 * MINUTE, true)
+
+        /** 房间列表后续页，只做短时间复用和请求合并 */
+        val ROOM_LIST = Policy(5_000L, 0L, false)
+
+        /** 房间信息，只合并短时间内的重复请求 */
+        val ROOM_INFO = Policy(1_000L, 0L, false)
+
+        /** 创建房间的默认话题和封面，基本不变 */
+        val DEFAULT_LIVE_INFO = Policy(10 * MINUTE, 7 * 24 * 60 * MINUTE, true)
+    }
+}
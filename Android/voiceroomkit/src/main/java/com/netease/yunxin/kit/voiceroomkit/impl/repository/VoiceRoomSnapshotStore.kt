@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.repository
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.res.Configuration
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import com.google.gson.Gson
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomChatTextMessage
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItem
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSnapshot
+import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomInfo
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomUtils
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * 最近一次所在房间的快照，重新进入同一房间时先展示，不必等房间信息、麦位和聊天消息都回来
+ * - 记录房间信息、麦位列表和最近 [MAX_MESSAGES] 条聊天消息，离开房间或切到后台时写入文件
+ * - 二进制格式，房间信息字段多且会变，用 json 存在其中；其余按字段顺序写
+ * - 读写都在单独的线程，读取结果回调到主线程
+ * - 房间结束后删除快照，超过 [MAX_AGE_MS] 的快照不再使用
+ * - 记录状态只在主线程读写
+ */
+internal class VoiceRoomSnapshotStore(
+    private val mainExecutor: Executor = mainThreadExecutor(),
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Snapshot(
+        val roomInfo: VoiceRoomInfo,
+        val seatItems: List<NEVoiceRoomSeatItem>,
+        val messages: List<NEVoiceRoomChatTextMessage>,
+        val savedTime: Long
+    )
+
+    private val executor = Executors.newSingleThreadExecutor { Thread(it, THREAD_NAME) }
+    private val gson = Gson()
+    private var file: File? = null
+
+    private var roomInfo: VoiceRoomInfo? = null
+    private var seatItems: List<NEVoiceRoomSeatItem> = emptyList()
+    private val messages = ArrayDeque<NEVoiceRoomChatTextMessage>()
+
+    fun init(context: Context) {
+        val appContext = context.applicationContext
+        init(File(appContext.filesDir, FILE_NAME))
+        appContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                // 切到后台时进程随时可能被杀，先保存
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                    save()
+                }
+            }
+
+            override fun onConfigurationChanged(newConfig: Configuration) {}
+
+            override fun onLowMemory() {}
+        })
+    }
+
+    fun init(file: File) {
+        this.file = file
+    }
+
+    /**
+     * 加入房间成功，开始记录
+     */
+    fun onRoomJoined(info: VoiceRoomInfo) {
+        if (roomInfo?.liveModel?.liveRecordId != info.liveModel.liveRecordId) {
+            seatItems = emptyList()
+            messages.clear()
+        }
+        roomInfo = info
+    }
+
+    /**
+     * 房间信息有更新，只记录当前房间的
+     */
+    fun onRoomInfoUpdated(info: VoiceRoomInfo) {
+        if (roomInfo?.liveModel?.liveRecordId == info.liveModel.liveRecordId) {
+            roomInfo = info
+        }
+    }
+
+    fun onSeatItemsChanged(items: List<NEVoiceRoomSeatItem>) {
+        if (roomInfo != null) {
+            seatItems = items
+        }
+    }
+
+    fun onTextMessage(message: NEVoiceRoomChatTextMessage) {
+        if (roomInfo == null) {
+            return
+        }
+        messages.addLast(message)
+        if (messages.size > MAX_MESSAGES) {
+            messages.removeFirst()
+        }
+    }
+
+    /**
+     * 保存当前房间，不在房间内时忽略
+     */
+    fun save() {
+        val info = roomInfo ?: return
+        val snapshot =
+            Snapshot(info, seatItems, ArrayList(messages), clock())
+        executor.execute { write(snapshot) }
+    }
+
+    /**
+     * 离开房间：保存后停止记录
+     */
+    fun saveAndReset() {
+        save()
+        reset()
+    }
+
+    /**
+     * 房间已结束，快照没有用了
+     */
+    fun clear() {
+        reset()
+        executor.execute { file?.delete() }
+    }
+
+    /**
+     * 读取指定房间的快照，没有或已过期时回调 null
+     */
+    fun load(liveRecordId: Long, callback: (NEVoiceRoomSnapshot?) -> Unit) {
+        executor.execute {
+            val start = SystemClock.elapsedRealtime()
+            val snapshot = read(liveRecordId)
+            VoiceRoomLog.i(TAG) {
+                "load liveRecordId:$liveRecordId,hit:${snapshot != null}," +
+                    "cost:${SystemClock.elapsedRealtime() - start}ms"
+            }
+            val result = snapshot?.let {
+                NEVoiceRoomSnapshot(
+                    VoiceRoomUtils.voiceRoomInfo2NEVoiceRoomInfo(it.roomInfo),
+                    it.seatItems,
+                    it.messages,
+                    it.savedTime
+                )
+            }
+            mainExecutor.execute { callback(result) }
+        }
+    }
+
+    private fun reset() {
+        roomInfo = null
+        seatItems = emptyList()
+        messages.clear()
+    }
+
+    private fun write(snapshot: Snapshot) {
+        val target = file ?: return
+        // 先写临时文件再改名，写到一半被杀也不会留下损坏的快照
+        val temp = File(target.path + TEMP_SUFFIX)
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use {
+                writeSnapshot(it, snapshot)
+            }
+            if (!temp.renameTo(target)) {
+                throw IOException("rename failed")
+            }
+        } catch (e: Exception) {
+            VoiceRoomLog.e(TAG, "write snapshot error:${e.message}")
+            temp.delete()
+        }
+    }
+
+    private fun read(liveRecordId: Long): Snapshot? {
+        val source = file ?: return null
+        if (!source.exists()) {
+            return null
+        }
+        return try {
+            val snapshot = DataInputStream(BufferedInputStream(FileInputStream(source))).use {
+                readSnapshot(it)
+            }
+            when {
+                snapshot == null -> {
+                    source.delete()
+                    null
+                }
+                snapshot.roomInfo.liveModel.liveRecordId != liveRecordId -> null
+                clock() - snapshot.savedTime > MAX_AGE_MS -> null
+                else -> snapshot
+            }
+        } catch (e: Exception) {
+            VoiceRoomLog.e(TAG, "read snapshot error:${e.message}")
+            source.delete()
+            null
+        }
+    }
+
+    private fun writeSnapshot(out: DataOutputStream, snapshot: Snapshot) {
+        out.writeInt(MAGIC)
+        out.writeInt(VERSION)
+        out.writeLong(snapshot.savedTime)
+        writeString(out, gson.toJson(snapshot.roomInfo))
+        val seatItems = snapshot.seatItems.take(MAX_SEAT_ITEMS)
+        out.writeInt(seatItems.size)
+        seatItems.forEach {
+            out.writeInt(it.index)
+            out.writeInt(it.status)
+            writeString(out, it.user)
+            writeString(out, it.userName)
+            writeString(out, it.icon)
+            out.writeInt(it.onSeatType)
+            out.writeLong(it.updated)
+        }
+        out.writeInt(snapshot.messages.size)
+        snapshot.messages.forEach {
+            writeString(out, it.fromUserUuid)
+            writeString(out, it.fromNick)
+            out.writeLong(it.time)
+            writeString(out, it.text)
+        }
+    }
+
+    private fun readSnapshot(input: DataInputStream): Snapshot? {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            return null
+        }
+        val savedTime = input.readLong()
+        val roomInfo = gson.fromJson(readString(input), VoiceRoomInfo::class.java) ?: return null
+        val seatItems = List(readCount(input, MAX_SEAT_ITEMS)) {
+            NEVoiceRoomSeatItem(
+                input.readInt(),
+                input.readInt(),
+                readString(input),
+                readString(input),
+                readString(input),
+                input.readInt(),
+                input.readLong()
+            )
+        }
+        val messages = List(readCount(input, MAX_MESSAGES)) {
+            NEVoiceRoomChatTextMessage(
+                readString(input) ?: "",
+                readString(input) ?: "",
+                null,
+                input.readLong(),
+                readString(input) ?: ""
+            )
+        }
+        return Snapshot(roomInfo, seatItems, messages, savedTime)
+    }
+
+    // 数量来自文件，超出范围说明文件已损坏，不能按它分配内存
+    private fun readCount(input: DataInputStream, max: Int): Int {
+        val count = input.readInt()
+        if (count < 0 || count > max) {
+            throw IOException("invalid count:$count")
+        }
+        return count
+    }
+
+    // 长度 + UTF-8 字节，-1 表示 null；不用 writeUTF，它限制 64KB
+    private fun writeString(out: DataOutputStream, value: String?) {
+        if (value == null) {
+            out.writeInt(-1)
+            return
+        }
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        out.writeInt(bytes.size)
+        out.write(bytes)
+    }
+
+    private fun readString(input: DataInputStream): String? {
+        val length = input.readInt()
+        if (length < 0) {
+            return null
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw IOException("string too long:$length")
+        }
+        val bytes = ByteArray(length)
+        input.readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    companion object {
+        private const val TAG = "VoiceRoomSnapshotStore"
+        private const val THREAD_NAME = "VoiceRoomSnapshot"
+        private const val FILE_NAME = "voiceroom_snapshot.bin"
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val MAGIC = 0x56525331 // "VRS1"
+        private const val VERSION = 1
+        const val MAX_AGE_MS = 24 * 60 * 60 * 1000L
+        private const val MAX_STRING_BYTES = 1024 * 1024
+        private const val MAX_SEAT_ITEMS = 64
+        const val MAX_MESSAGES = 20
+
+        private fun mainThreadExecutor(): Executor {
+            val handler = Handler(Looper.getMainLooper())
+            return Executor { handler.post(it) }
+        }
+    }
+}
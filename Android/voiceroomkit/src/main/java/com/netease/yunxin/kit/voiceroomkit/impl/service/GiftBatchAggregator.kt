@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import android.os.Handler
+import android.os.Looper
+import com.netease.yunxin.kit.common.network.NetRequestCallback
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+
+/**
+ * 礼物打赏合并
+ * - 同一房间、同一礼物、同一批接收者的打赏在 [windowMs] 内累加，窗口结束或累计数量达到 [maxGiftCount] 时发一次请求
+ * - 每个批次只会发送一次：发送前先从待发表中摘除，发送中再点的礼物进入新批次；
+ *   batchReward 接口没有幂等键，所以失败不自动重发，由调用方决定，避免重复扣费
+ * - 所有状态只在主线程读写
+ */
+internal class GiftBatchAggregator(
+    private val sender: BatchRewardSender,
+    private val windowMs: Long = DEFAULT_WINDOW_MS,
+    private val maxGiftCount: Int = DEFAULT_MAX_GIFT_COUNT
+) {
+
+    constructor(httpService: VoiceRoomHttpService) :
+        this(BatchRewardSender(httpService::batchReward))
+
+    fun interface BatchRewardSender {
+        fun batchReward(
+            liveRecordId: Long,
+            giftId: Int,
+            giftCount: Int,
+            userUuids: List<String>,
+            callback: NetRequestCallback<Unit>
+        )
+    }
+
+    private data class Key(
+        val liveRecordId: Long,
+        val giftId: Int,
+        val userUuids: List<String>
+    )
+
+    private class Batch(val key: Key) {
+        var giftCount = 0
+        val callbacks = ArrayList<NetRequestCallback<Unit>>()
+    }
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val pending = LinkedHashMap<Key, Batch>()
+    private val flushRunnables = HashMap<Key, Runnable>()
+
+    fun add(
+        liveRecordId: Long,
+        giftId: Int,
+        giftCount: Int,
+        userUuids: List<String>,
+        callback: NetRequestCallback<Unit>
+    ) {
+        runOnMain {
+            // 按调用方传入的接收者列表原样合并和发送，顺序或重复项不同的视为不同批次
+            val key = Key(liveRecordId, giftId, userUuids.toList())
+            val batch = pending.getOrPut(key) {
+                Batch(key).also { scheduleFlush(it) }
+            }
+            batch.giftCount += giftCount
+            batch.callbacks.add(callback)
+            if (batch.giftCount >= maxGiftCount) {
+                flush(key)
+            }
+        }
+    }
+
+    /**
+     * 立即发送所有待发批次，离开房间前调用
+     */
+    fun flushAll() {
+        runOnMain {
+            pending.keys.toList().forEach { flush(it) }
+        }
+    }
+
+    private fun scheduleFlush(batch: Batch) {
+        val runnable = Runnable { flush(batch.key) }
+        flushRunnables[batch.key] = runnable
+        mainHandler.postDelayed(runnable, windowMs)
+    }
+
+    private fun flush(key: Key) {
+        flushRunnables.remove(key)?.let { mainHandler.removeCallbacks(it) }
+        val batch = pending.remove(key) ?: return
+        VoiceRoomLog.i(TAG) {
+            "flush giftId:${key.giftId},giftCount:${batch.giftCount},taps:${batch.callbacks.size}"
+        }
+        sender.batchReward(
+            key.liveRecordId,
+            key.giftId,
+            batch.giftCount,
+            key.userUuids,
+            object : NetRequestCallback<Unit> {
+                override fun success(info: Unit?) {
+                    batch.callbacks.forEach { it.success(info) }
+                }
+
+                override fun error(code: Int, msg: String?) {
+                    batch.callbacks.forEach { it.error(code, msg) }
+                }
+            }
+        )
+    }
+
+    private fun runOnMain(action: () -> Unit) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action()
+        } else {
+            mainHandler.post(action)
+        }
+    }
+
+    companion object {
+        private const val TAG = "GiftBatchAggregator"
+        const val DEFAULT_WINDOW_MS = 300L
+        const val DEFAULT_MAX_GIFT_COUNT = 99
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.io.IOException
+import java.net.SocketTimeoutException
+import kotlin.random.Random
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.withTimeout
+import retrofit2.HttpException
+
+/**
+ * 接口重试策略
+ * - 只有幂等的查询接口（房间列表、房间信息、默认配置）才重试；创建、结束房间、打赏等写接口
+ *   重试可能导致重复执行，使用 [NONE]
+ * - 只重试网络异常、超时和 5xx/429，业务错误码直接返回
+ * - 退避时间指数增长并加随机抖动，避免大量客户端同时重试
+ * - [deadlineMs] 为包含所有重试在内的总耗时上限，0 表示不限制
+ */
+internal class HttpRetryPolicy(
+    val maxAttempts: Int,
+    val baseDelayMs: Long,
+    val maxDelayMs: Long,
+    val deadlineMs: Long,
+    private val random: Random = Random.Default
+) {
+
+    suspend fun <T> execute(name: String, block: suspend () -> T): T {
+        if (deadlineMs <= 0) {
+            return executeWithRetry(name, block)
+        }
+        return try {
+            withTimeout(deadlineMs) { executeWithRetry(name, block) }
+        } catch (e: TimeoutCancellationException) {
+            // 转成普通的网络超时，按请求失败回调，而不是当作协程取消
+            throw SocketTimeoutException("$name exceeded deadline ${deadlineMs}ms")
+        }
+    }
+
+    private suspend fun <T> executeWithRetry(name: String, block: suspend () -> T): T {
+        var attempt = 1
+        while (true) {
+            try {
+                return block()
+            } catch (e: Exception) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e
+                }
+                val delayMs = backoff(attempt)
+                VoiceRoomLog.w(TAG, "$name attempt $attempt failed:$e, retry after ${delayMs}ms")
+                attempt++
+                delay(delayMs)
+            }
+        }
+    }
+
+    internal fun backoff(attempt: Int): Long {
+        val exp = (baseDelayMs shl (attempt - 1).coerceAtMost(MAX_SHIFT)).coerceAtMost(maxDelayMs)
+        // 一半固定，一半随机
+        return exp / 2 + random.nextLong(exp / 2 + 1)
+    }
+
+    private fun isRetryable(e: Exception): Boolean {
+        return when (e) {
+            is IOException -> true
+            is HttpException -> e.code() >= 500 || e.code() == HTTP_TOO_MANY_REQUESTS
+            else -> false
+        }
+    }
+
+    companion object {
+        private const val TAG = "HttpRetryPolicy"
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val MAX_SHIFT = 10
+
+        /** 幂等查询接口：最多 3 次，总耗时不超过 10s */
+        val IDEMPOTENT = HttpRetryPolicy(3, 300L, 2_000L, 10_000L)
+
+        /** 非幂等写接口：不重试，超时交给 OkHttp */
+        val NONE = HttpRetryPolicy(1, 0L, 0L, 0L)
+    }
+}
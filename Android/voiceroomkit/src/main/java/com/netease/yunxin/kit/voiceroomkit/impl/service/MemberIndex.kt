@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * account -> 成员包装对象的索引，随成员进出房间增量维护，避免每次查询都重新映射全部成员
+ * - 包装对象直接代理 roomkit 的成员对象，属性变化无需更新索引；roomkit 换了成员对象时重新包装，避免代理旧对象
+ * - 同时记录主播，角色变化时通过 [index] 更新
+ */
+internal class MemberIndex<S : Any, T : Any>(
+    private val accountOf: (S) -> String,
+    private val isHost: (S) -> Boolean,
+    private val wrap: (S) -> T,
+    private val sourceOf: (T) -> S
+) {
+
+    private val members = ConcurrentHashMap<String, T>()
+
+    @Volatile
+    var host: T? = null
+        private set
+
+    val size: Int
+        get() = members.size
+
+    operator fun get(account: String): T? = members[account]
+
+    fun index(source: S): T {
+        val account = accountOf(source)
+        val existing = members[account]
+        val member = if (existing != null && sourceOf(existing) === source) {
+            existing
+        } else {
+            wrap(source).also { members[account] = it }
+        }
+        if (isHost(source)) {
+            host = member
+        } else if (host?.let { accountOf(sourceOf(it)) } == account) {
+            host = null
+        }
+        return member
+    }
+
+    fun remove(source: S): T {
+        val account = accountOf(source)
+        val removed = members.remove(account) ?: wrap(source)
+        if (host?.let { accountOf(sourceOf(it)) } == account) {
+            host = null
+        }
+        return removed
+    }
+
+    fun rebuild(sources: Iterable<S>) {
+        clear()
+        sources.forEach { index(it) }
+    }
+
+    fun clear() {
+        members.clear()
+        host = null
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.roomkit.api.NECallback2
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * 同时执行互不依赖的加入步骤（RTC、聊天室），总耗时取最慢的一步
+ * - 全部成功才回调成功
+ * - 任一失败时等其余步骤都结束后执行一次 [rollback]，回调第一个错误
+ * - 各步骤的回调可以来自不同线程
+ */
+internal class ParallelJoin(
+    private val steps: List<Step>,
+    private val rollback: () -> Unit
+) {
+
+    class Step(val phase: String, val join: (NECallback2<Unit>) -> Unit)
+
+    private class Failure(val code: Int, val message: String?)
+
+    fun start(roomUuid: String, tracer: VoiceRoomJoinTracer?, callback: NECallback2<Unit>) {
+        val pending = AtomicInteger(steps.size)
+        val failure = AtomicReference<Failure?>()
+        steps.forEach { tracer?.begin(it.phase) }
+        steps.forEach { step ->
+            step.join(object : NECallback2<Unit>() {
+                override fun onSuccess(data: Unit?) {
+                    tracer?.end(step.phase)
+                    VoiceRoomLog.d(TAG) { "${step.phase} roomUuid = $roomUuid success" }
+                    onStepFinished()
+                }
+
+                override fun onError(code: Int, message: String?) {
+                    VoiceRoomLog.e(
+                        TAG,
+                        "${step.phase} roomUuid = $roomUuid error code = $code message = $message"
+                    )
+                    failure.compareAndSet(null, Failure(code, message))
+                    onStepFinished()
+                }
+
+                private fun onStepFinished() {
+                    if (pending.decrementAndGet() > 0) {
+                        return
+                    }
+                    val error = failure.get()
+                    if (error == null) {
+                        callback.onSuccess(Unit)
+                    } else {
+                        rollback()
+                        callback.onError(error.code, error.message)
+                    }
+                }
+            })
+        }
+    }
+
+    companion object {
+        private const val TAG = "ParallelJoin"
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import android.os.Handler
+import android.os.Looper
+import com.netease.yunxin.kit.roomkit.api.NECallback2
+import com.netease.yunxin.kit.roomkit.api.service.NESeatInfo
+import com.netease.yunxin.kit.roomkit.api.service.NESeatItem
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+
+/**
+ * 断网重连后的麦位同步
+ * - 网络抖动时连接状态会反复变化，恢复连接后等 [debounceMs] 内不再断开才拉取一次麦位
+ * - 同时只有一次拉取，拉取期间又断开重连的，结束后再拉一次
+ * - 拉取失败按 [debounceMs] 的 2、4、8 倍退避重试，最多 [MAX_RETRIES] 次
+ * - 每次应用麦位列表版本号加一；拉取期间如果已经通过麦位事件收到更新的列表，丢弃本次结果
+ * - 与当前麦位逐个比较，没有变化时不应用也不通知
+ * - 所有方法只在主线程调用
+ */
+internal class SeatReconnectManager(
+    private val fetchSeatInfo: (NECallback2<NESeatInfo>) -> Unit,
+    private val currentSeatItems: () -> List<NESeatItem>?,
+    private val seatVersion: () -> Long,
+    private val applySeatItems: (List<NESeatItem>) -> Unit,
+    private val debounceMs: Long = DEFAULT_DEBOUNCE_MS,
+    private val scheduler: Scheduler = HandlerScheduler()
+) {
+
+    /**
+     * 主线程延迟任务，测试中用虚拟时间代替
+     */
+    interface Scheduler {
+        fun postDelayed(task: Runnable, delayMs: Long)
+
+        fun remove(task: Runnable)
+    }
+
+    private class HandlerScheduler : Scheduler {
+        private val handler = Handler(Looper.getMainLooper())
+
+        override fun postDelayed(task: Runnable, delayMs: Long) {
+            handler.postDelayed(task, delayMs)
+        }
+
+        override fun remove(task: Runnable) {
+            handler.removeCallbacks(task)
+        }
+    }
+
+    private val reconcileTask = Runnable { reconcile() }
+    private var started = false
+    private var firstCallback = true
+    private var fetching = false
+    private var fetchAgain = false
+    private var retries = 0
+
+    /**
+     * 加入房间后开始，注册网络监听时的第一次回调不算重连
+     */
+    fun start() {
+        started = true
+        firstCallback = true
+    }
+
+    fun stop() {
+        started = false
+        fetching = false
+        fetchAgain = false
+        retries = 0
+        scheduler.remove(reconcileTask)
+    }
+
+    fun onConnected() {
+        if (!started) {
+            return
+        }
+        if (firstCallback) {
+            firstCallback = false
+            return
+        }
+        retries = 0
+        scheduler.remove(reconcileTask)
+        scheduler.postDelayed(reconcileTask, debounceMs)
+    }
+
+    fun onDisconnected() {
+        firstCallback = false
+        scheduler.remove(reconcileTask)
+    }
+
+    private fun reconcile() {
+        if (!started) {
+            return
+        }
+        if (fetching) {
+            fetchAgain = true
+            return
+        }
+        fetching = true
+        val version = seatVersion()
+        fetchSeatInfo(object : NECallback2<NESeatInfo>() {
+            override fun onSuccess(data: NESeatInfo?) {
+                if (!started) {
+                    return
+                }
+                fetching = false
+                retries = 0
+                when {
+                    data == null -> Unit
+                    version != seatVersion() ->
+                        VoiceRoomLog.i(TAG, "seat list updated during reconcile, skip")
+                    else -> {
+                        val changed = changedIndices(currentSeatItems(), data.seatItems)
+                        VoiceRoomLog.i(TAG) { "reconcile changed seats:$changed" }
+                        if (changed.isNotEmpty()) {
+                            applySeatItems(data.seatItems)
+                        }
+                    }
+                }
+                fetchAgainIfNeeded()
+            }
+
+            override fun onError(code: Int, message: String?) {
+                VoiceRoomLog.e(TAG, "reconcile error: code = $code message = $message")
+                if (!started) {
+                    return
+                }
+                fetching = false
+                if (fetchAgain) {
+                    fetchAgainIfNeeded()
+                } else if (retries < MAX_RETRIES) {
+                    retries++
+                    scheduler.postDelayed(reconcileTask, debounceMs shl retries)
+                }
+            }
+        })
+    }
+
+    private fun fetchAgainIfNeeded() {
+        if (fetchAgain) {
+            fetchAgain = false
+            scheduler.remove(reconcileTask)
+            scheduler.postDelayed(reconcileTask, debounceMs)
+        }
+    }
+
+    companion object {
+        private const val TAG = "SeatReconnectManager"
+        const val DEFAULT_DEBOUNCE_MS = 1_000L
+        const val MAX_RETRIES = 3
+
+        /**
+         * 状态、用户或上麦方式有变化的麦位序号
+         */
+        fun changedIndices(old: List<NESeatItem>?, new: List<NESeatItem>): List<Int> {
+            val oldByIndex = old?.associateBy { it.index } ?: emptyMap()
+            val changed = ArrayList<Int>()
+            new.forEach { item ->
+                val oldItem = oldByIndex[item.index]
+                if (oldItem == null ||
+                    oldItem.status != item.status ||
+                    oldItem.user != item.user ||
+                    oldItem.onSeatType != item.onSeatType
+                ) {
+                    changed.add(item.index)
+                }
+            }
+            val newIndices = new.mapTo(HashSet()) { it.index }
+            oldByIndex.keys.filterTo(changed) { it !in newIndices }
+            return changed
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import android.os.Handler
+import android.os.Looper
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomDispatchMode
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomListener
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * 房间事件分发器
+ * - 监听列表为不可变数组快照，增删走 CAS，分发时无锁遍历
+ * - 所有事件进入同一个串行队列，事件数据的映射在队列线程完成，不占用主线程
+ * - 每个监听按自己的 [NEVoiceRoomDispatchMode] 回调，同一监听收到的事件顺序与发生顺序一致
+ * - 按回调名记录事件次数和每个监听的处理耗时，见 [NEVoiceRoomMetrics]；指标名按回调名缓存，
+ *   指标关闭时不记录
+ */
+internal class VoiceRoomEventDispatcher {
+
+    private class MetricNames(event: String) {
+        val event = NEVoiceRoomMetrics.EVENT_PREFIX + event
+        val dispatch = NEVoiceRoomMetrics.DISPATCH_PREFIX + event
+    }
+
+    private class Subscriber(
+        val listener: NEVoiceRoomListener,
+        val mode: NEVoiceRoomDispatchMode
+    ) {
+        // 移除后已经排队的事件不再回调
+        @Volatile
+        var active = true
+    }
+
+    private val subscribers = AtomicReference<Array<Subscriber>>(emptyArray())
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val eventExecutor: ExecutorService = newSerialExecutor("VoiceRoomEvent")
+    private val backgroundExecutor: ExecutorService = newSerialExecutor("VoiceRoomEventBg")
+
+    val size: Int
+        get() = subscribers.get().size
+
+    /**
+     * 同一个监听重复添加时只更新回调线程
+     */
+    fun add(listener: NEVoiceRoomListener, mode: NEVoiceRoomDispatchMode) {
+        val subscriber = Subscriber(listener, mode)
+        while (true) {
+            val old = subscribers.get()
+            val index = old.indexOfFirst { it.listener === listener }
+            val new = if (index >= 0) {
+                old.copyOf().also { it[index] = subscriber }
+            } else {
+                old + subscriber
+            }
+            if (subscribers.compareAndSet(old, new)) {
+                if (index >= 0) {
+                    old[index].active = false
+                }
+                return
+            }
+        }
+    }
+
+    fun remove(listener: NEVoiceRoomListener) {
+        while (true) {
+            val old = subscribers.get()
+            val removed = old.firstOrNull { it.listener === listener } ?: return
+            val new = old.filter { it !== removed }.toTypedArray()
+            if (subscribers.compareAndSet(old, new)) {
+                removed.active = false
+                return
+            }
+        }
+    }
+
+    fun clear() {
+        subscribers.getAndSet(emptyArray()).forEach { it.active = false }
+    }
+
+    /**
+     * 事件入队
+     * @param event 回调名，用于统计
+     * @param map 在队列线程执行，用于把 roomkit 数据映射为回调参数
+     * @param deliver 对每个监听的回调
+     */
+    fun <T> dispatch(event: String, map: () -> T, deliver: (NEVoiceRoomListener, T) -> Unit) {
+        val metricName = recordEvent(event)
+        if (subscribers.get().isEmpty()) {
+            return
+        }
+        eventExecutor.execute {
+            if (subscribers.get().isEmpty()) {
+                return@execute
+            }
+            val value = try {
+                map()
+            } catch (e: Exception) {
+                VoiceRoomLog.e(TAG, "map event error:${e.message}")
+                return@execute
+            }
+            fanOut(value, metricName, deliver)
+        }
+    }
+
+    fun dispatch(event: String, deliver: (NEVoiceRoomListener) -> Unit) {
+        dispatch(event, { Unit }) { listener, _ -> deliver(listener) }
+    }
+
+    /**
+     * 在事件队列中执行，与其它事件保持先后顺序，用于自定义消息解码
+     */
+    fun runInQueue(task: () -> Unit) {
+        eventExecutor.execute {
+            try {
+                task()
+            } catch (e: Exception) {
+                VoiceRoomLog.e(TAG, "run in queue error:${e.message}")
+            }
+        }
+    }
+
+    /**
+     * 只能在 [runInQueue] 的任务中调用，立即分发，不再重新排队
+     */
+    fun <T> dispatchInQueue(event: String, value: T, deliver: (NEVoiceRoomListener, T) -> Unit) {
+        fanOut(value, recordEvent(event), deliver)
+    }
+
+    /**
+     * 记录事件次数，返回监听耗时的指标名；指标关闭时返回 null
+     */
+    private fun recordEvent(event: String): String? {
+        if (!NEVoiceRoomMetrics.enabled) {
+            return null
+        }
+        val names = metricNames[event] ?: metricNames.getOrPut(event) { MetricNames(event) }
+        NEVoiceRoomMetrics.increment(names.event)
+        return names.dispatch
+    }
+
+    private fun <T> fanOut(
+        value: T,
+        metricName: String?,
+        deliver: (NEVoiceRoomListener, T) -> Unit
+    ) {
+        val snapshot = subscribers.get()
+        if (snapshot.isEmpty()) {
+            return
+        }
+        var mainSubscribers: ArrayList<Subscriber>? = null
+        var backgroundSubscribers: ArrayList<Subscriber>? = null
+        for (subscriber in snapshot) {
+            when (subscriber.mode) {
+                NEVoiceRoomDispatchMode.POSTING ->
+                    deliverTo(subscriber, value, metricName, deliver)
+                NEVoiceRoomDispatchMode.MAIN -> {
+                    val list = mainSubscribers ?: ArrayList<Subscriber>(snapshot.size)
+                    list.add(subscriber)
+                    mainSubscribers = list
+                }
+                NEVoiceRoomDispatchMode.BACKGROUND -> {
+                    val list = backgroundSubscribers ?: ArrayList<Subscriber>(snapshot.size)
+                    list.add(subscriber)
+                    backgroundSubscribers = list
+                }
+            }
+        }
+        // 同一线程的监听合并成一个任务，保证顺序也减少切换
+        mainSubscribers?.let { list ->
+            mainHandler.post { list.forEach { deliverTo(it, value, metricName, deliver) } }
+        }
+        backgroundSubscribers?.let { list ->
+            backgroundExecutor.execute {
+                list.forEach { deliverTo(it, value, metricName, deliver) }
+            }
+        }
+    }
+
+    private fun <T> deliverTo(
+        subscriber: Subscriber,
+        value: T,
+        metricName: String?,
+        deliver: (NEVoiceRoomListener, T) -> Unit
+    ) {
+        if (!subscriber.active) {
+            return
+        }
+        val start = if (metricName != null) NEVoiceRoomMetrics.startTimer() else 0L
+        try {
+            deliver(subscriber.listener, value)
+        } catch (e: Exception) {
+            // 单个监听异常不影响其它监听
+            VoiceRoomLog.e(TAG, "deliver event to ${subscriber.listener} error", e)
+        }
+        if (metricName != null) {
+            NEVoiceRoomMetrics.stopTimer(metricName, start)
+        }
+    }
+
+    companion object {
+        private const val TAG = "VoiceRoomEventDispatcher"
+
+        // 回调名是固定的几十个，缓存后每次分发不再拼接字符串
+        private val metricNames = ConcurrentHashMap<String, MetricNames>()
+
+        private fun newSerialExecutor(name: String): ExecutorService {
+            return Executors.newSingleThreadExecutor { runnable ->
+                Thread(runnable, name).apply { isDaemon = true }
+            }
+        }
+    }
+}
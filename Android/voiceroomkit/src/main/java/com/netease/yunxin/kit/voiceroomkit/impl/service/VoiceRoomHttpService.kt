@@ -31,7 +31,15 @@ interface HttpErrorReporter {
 
     fun reportHttpErrorEvent(error: ErrorEvent)
 
+    /**
+     * 每个错误事件都会投递，没有收集方时不保留
+     */
     val httpErrorEvents: Flow<ErrorEvent>
+
+    /**
+     * 各错误码累计出现次数
+     */
+    fun httpErrorCounts(): Map<Int, Int>
 }
 
 /**
@@ -43,11 +51,15 @@ interface VoiceRoomHttpService : HttpErrorReporter {
 
     fun addHeader(key: String, value: String)
 
+    /**
+     * @param deliverRevalidated 命中过期缓存时，刷新成功后是否再回调一次
+     */
     fun getVoiceRoomList(
         type: Int,
         live: Int,
         pageNum: Int,
         pageSize: Int,
+        deliverRevalidated: Boolean,
         callback:
         NetRequestCallback<VoiceRoomList>
     )
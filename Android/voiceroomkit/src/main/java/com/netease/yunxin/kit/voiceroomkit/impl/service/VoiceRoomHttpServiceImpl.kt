@@ -9,20 +9,27 @@ package com.netease.yunxin.kit.voiceroomkit.impl.service
 import android.content.Context
 import com.netease.yunxin.kit.common.network.NetRequestCallback
 import com.netease.yunxin.kit.common.network.Request
+import com.netease.yunxin.kit.common.network.Response
+import com.netease.yunxin.kit.common.network.ServiceCreator
 import com.netease.yunxin.kit.roomkit.api.NEErrorCode
-import com.netease.yunxin.kit.roomkit.api.NEErrorMsg
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics
 import com.netease.yunxin.kit.voiceroomkit.impl.model.StartVoiceRoomParam
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomDefaultConfig
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomInfo
 import com.netease.yunxin.kit.voiceroomkit.impl.model.response.VoiceRoomList
 import com.netease.yunxin.kit.voiceroomkit.impl.repository.VoiceRoomRepository
+import com.netease.yunxin.kit.voiceroomkit.impl.repository.VoiceRoomResponseCache
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.lang.reflect.Type
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.coroutines.cancellation.CancellationException
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.cancel
-import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 
 object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
 
@@ -32,6 +39,21 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
 
     private var voiceRoomScope: CoroutineScope? = null
 
+    private val responseCache
+        get() = voiceRoomRepository.responseCache
+
+    // 进行中的请求，只在主线程访问
+    private val inFlight = HashMap<String, MutableList<NetRequestCallback<Any>>>()
+
+    // 错误码 -> 次数
+    private val errorCounts = ConcurrentHashMap<Int, Int>()
+
+    private const val CACHE_KEY_ROOM_LIST = "roomList"
+    private const val CACHE_KEY_ROOM_INFO = "roomInfo"
+    private const val CACHE_KEY_DEFAULT_LIVE_INFO = "defaultLiveInfo"
+    private const val ERROR_EVENT_BUFFER = 64
+    private const val METRIC_ERROR_SUFFIX = ".error"
+
     init {
         voiceRoomScope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
     }
@@ -42,31 +64,160 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
 
     override fun addHeader(key: String, value: String) {
         voiceRoomRepository.addHeader(key, value)
+        if (key == ServiceCreator.ACCEPT_LANGUAGE_KEY) {
+            // 服务端按语言返回内容，缓存也按语言区分
+            responseCache.scope = value
+        }
     }
 
-    override fun getVoiceRoomList(
-        type: Int,
-        live: Int,
-        pageNum: Int,
-        pageSize: Int,
-        callback: NetRequestCallback<VoiceRoomList>
+    /**
+     * 带缓存的请求，读缓存在 IO 线程，回调在主线程
+     * - 缓存新鲜时直接回调
+     * - 缓存过期但可用时先回调缓存，同时刷新；默认只回调一次，
+     *   [deliverRevalidated] 为 true 时刷新成功再回调一次，刷新失败不再回调
+     * - 同一个 key 同时只有一个请求，后来的调用等待同一结果
+     * - 每次回调的都是新解析的对象，调用方可以随意修改
+     * - 走缓存的都是幂等查询，失败按 [HttpRetryPolicy.IDEMPOTENT] 重试
+     */
+    private fun <T : Any> requestCached(
+        key: String,
+        policy: VoiceRoomResponseCache.Policy,
+        type: Type,
+        deliverRevalidated: Boolean,
+        callback: NetRequestCallback<T>,
+        block: suspend () -> Response<T>
     ) {
-        voiceRoomScope?.launch {
+        val scope = voiceRoomScope ?: return
+        scope.launch {
+            val hit = withContext(Dispatchers.IO) { responseCache.get<T>(key, policy, type) }
+            if (hit == null) {
+                fetch(key, policy, type, callback, block)
+                return@launch
+            }
+            callback.success(hit.data)
+            if (hit.fresh) {
+                return@launch
+            }
+            val revalidated = if (deliverRevalidated) {
+                object : NetRequestCallback<T> {
+                    override fun success(info: T?) {
+                        callback.success(info)
+                    }
+
+                    override fun error(code: Int, msg: String?) {
+                        VoiceRoomLog.w(TAG, "revalidate $key error: code = $code message = $msg")
+                    }
+                }
+            } else {
+                null
+            }
+            fetch(key, policy, type, revalidated, block)
+        }
+    }
+
+    private fun <T : Any> fetch(
+        key: String,
+        policy: VoiceRoomResponseCache.Policy,
+        type: Type,
+        callback: NetRequestCallback<T>?,
+        block: suspend () -> Response<T>
+    ) {
+        val waiting = inFlight[key]
+        if (waiting != null) {
+            callback?.let {
+                @Suppress("UNCHECKED_CAST")
+                waiting.add(it as NetRequestCallback<Any>)
+            }
+            return
+        }
+        val callbacks = ArrayList<NetRequestCallback<Any>>()
+        callback?.let {
+            @Suppress("UNCHECKED_CAST")
+            callbacks.add(it as NetRequestCallback<Any>)
+        }
+        inFlight[key] = callbacks
+        val scope = voiceRoomScope
+        if (scope == null) {
+            inFlight.remove(key)
+            return
+        }
+        scope.launch {
             Request.request(
                 {
-                    voiceRoomRepository.getVoiceRoomList(type, live, pageNum, pageSize)
+                    call(key.substringBefore(':'), HttpRetryPolicy.IDEMPOTENT, block)
                 },
-                success = {
-                    callback.success(it)
+                success = { data ->
+                    val waiters = inFlight.remove(key).orEmpty()
+                    scope.launch {
+                        // 先写入缓存，等待方除第一个外各拿一份副本，不共享同一个对象
+                        val copies = withContext(Dispatchers.IO) {
+                            data?.let { responseCache.put(key, policy, it) }
+                            List(waiters.size) { index ->
+                                if (index == 0 || data == null) {
+                                    data
+                                } else {
+                                    responseCache.copy(data, type)
+                                }
+                            }
+                        }
+                        waiters.forEachIndexed { index, waiter -> waiter.success(copies[index]) }
+                    }
                 },
-                error = { code, msg ->
+                error = { code: Int, msg: String ->
                     reportHttpErrorEvent(HttpErrorReporter.ErrorEvent(code, msg, ""))
-                    callback.error(code, msg)
+                    inFlight.remove(key)?.forEach { waiter -> waiter.error(code, msg) }
                 }
             )
         }
     }
 
+    /**
+     * 按 [policy] 发起请求，记录接口耗时（含重试），网络异常和 HTTP 错误另外计数。
+     * 写接口使用 [HttpRetryPolicy.NONE]，不重试
+     */
+    private suspend fun <T> call(
+        endpoint: String,
+        policy: HttpRetryPolicy,
+        block: suspend () -> T
+    ): T {
+        val name = NEVoiceRoomMetrics.HTTP_PREFIX + endpoint
+        val start = NEVoiceRoomMetrics.startTimer()
+        try {
+            return policy.execute(endpoint, block)
+        } catch (e: CancellationException) {
+            // 页面关闭等主动取消不算接口错误
+            throw e
+        } catch (e: Exception) {
+            NEVoiceRoomMetrics.increment(name + METRIC_ERROR_SUFFIX)
+            throw e
+        } finally {
+            NEVoiceRoomMetrics.stopTimer(name, start)
+        }
+    }
+
+    override fun getVoiceRoomList(
+        type: Int,
+        live: Int,
+        pageNum: Int,
+        pageSize: Int,
+        deliverRevalidated: Boolean,
+        callback: NetRequestCallback<VoiceRoomList>
+    ) {
+        requestCached(
+            "$CACHE_KEY_ROOM_LIST:$type:$live:$pageNum:$pageSize",
+            if (pageNum == 1) {
+                VoiceRoomResponseCache.ROOM_LIST_FIRST_PAGE
+            } else {
+                VoiceRoomResponseCache.ROOM_LIST
+            },
+            VoiceRoomList::class.java,
+            deliverRevalidated,
+            callback
+        ) {
+            voiceRoomRepository.getVoiceRoomList(type, live, pageNum, pageSize)
+        }
+    }
+
     /**
      *  创建房间
      *
@@ -78,18 +229,21 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
         voiceRoomScope?.launch {
             Request.request(
                 {
-                    voiceRoomRepository.startVoiceRoom(
-                        param.roomTopic,
-                        param.cover,
-                        param.liveType,
-                        param.configId,
-                        param.roomName,
-                        param.seatCount,
-                        param.seatApplyMode,
-                        param.seatInviteMode
-                    )
+                    call("startVoiceRoom", HttpRetryPolicy.NONE) {
+                        voiceRoomRepository.startVoiceRoom(
+                            param.roomTopic,
+                            param.cover,
+                            param.liveType,
+                            param.configId,
+                            param.roomName,
+                            param.seatCount,
+                            param.seatApplyMode,
+                            param.seatInviteMode
+                        )
+                    }
                 },
                 success = {
+                    responseCache.invalidate(CACHE_KEY_ROOM_LIST)
                     it?.let {
                         callback.success(it)
                     }
@@ -106,17 +260,14 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
      * 获取房间 信息
      */
     override fun getRoomInfo(liveRecordId: Long, callback: NetRequestCallback<VoiceRoomInfo>) {
-        voiceRoomScope?.launch {
-            Request.request(
-                { voiceRoomRepository.getRoomInfo(liveRecordId) },
-                success = {
-                    callback.success(it)
-                },
-                error = { code: Int, msg: String ->
-                    reportHttpErrorEvent(HttpErrorReporter.ErrorEvent(code, msg, ""))
-                    callback.error(code, msg)
-                }
-            )
+        requestCached(
+            "$CACHE_KEY_ROOM_INFO:$liveRecordId",
+            VoiceRoomResponseCache.ROOM_INFO,
+            VoiceRoomInfo::class.java,
+            false,
+            callback
+        ) {
+            voiceRoomRepository.getRoomInfo(liveRecordId)
         }
     }
 
@@ -126,8 +277,14 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
     override fun stopVoiceRoom(liveRecodeId: Long, callback: NetRequestCallback<Unit>) {
         voiceRoomScope?.launch {
             Request.request(
-                { voiceRoomRepository.stopVoiceRoom(liveRecodeId) },
+                {
+                    call("stopVoiceRoom", HttpRetryPolicy.NONE) {
+                        voiceRoomRepository.stopVoiceRoom(liveRecodeId)
+                    }
+                },
                 success = {
+                    responseCache.invalidate(CACHE_KEY_ROOM_LIST)
+                    responseCache.invalidate("$CACHE_KEY_ROOM_INFO:$liveRecodeId")
                     callback.success(it)
                 },
                 error = { code: Int, msg: String ->
@@ -139,17 +296,14 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
     }
 
     override fun getDefaultLiveInfo(callback: NetRequestCallback<VoiceRoomDefaultConfig>) {
-        voiceRoomScope?.launch {
-            Request.request(
-                { voiceRoomRepository.getDefaultLiveInfo() },
-                success = {
-                    callback.success(it)
-                },
-                error = { code: Int, msg: String ->
-                    reportHttpErrorEvent(HttpErrorReporter.ErrorEvent(code, msg, ""))
-                    callback.error(code, msg)
-                }
-            )
+        requestCached(
+            CACHE_KEY_DEFAULT_LIVE_INFO,
+            VoiceRoomResponseCache.DEFAULT_LIVE_INFO,
+            VoiceRoomDefaultConfig::class.java,
+            false,
+            callback
+        ) {
+            voiceRoomRepository.getDefaultLiveInfo()
         }
     }
 
@@ -162,8 +316,14 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
     ) {
         voiceRoomScope?.launch {
             Request.request(
-                { voiceRoomRepository.batchReward(liveRecodeId, giftId, giftCount, userUuids) },
+                {
+                    call("batchReward", HttpRetryPolicy.NONE) {
+                        voiceRoomRepository.batchReward(liveRecodeId, giftId, giftCount, userUuids)
+                    }
+                },
                 success = {
+                    // 打赏后麦位礼物值会变
+                    responseCache.invalidate("$CACHE_KEY_ROOM_INFO:$liveRecodeId")
                     callback.success(it)
                 },
                 error = { code: Int, msg: String ->
@@ -177,7 +337,11 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
     override fun realNameAuthentication(name: String, cardNo: String, callback: NetRequestCallback<Unit>) {
         voiceRoomScope?.launch {
             Request.request(
-                { voiceRoomRepository.realNameAuthentication(name, cardNo) },
+                {
+                    call("realNameAuthentication", HttpRetryPolicy.NONE) {
+                        voiceRoomRepository.realNameAuthentication(name, cardNo)
+                    }
+                },
                 success = {
                     callback.success(it)
                 },
@@ -192,12 +356,19 @@ object VoiceRoomHttpServiceImpl : VoiceRoomHttpService {
     override fun reportHttpErrorEvent(error: HttpErrorReporter.ErrorEvent) {
         if (error.code != NEErrorCode.SUCCESS) {
             VoiceRoomLog.e(TAG, "report http error: $error")
+            errorCounts.merge(error.code, 1) { old, one -> old + one }
+        }
+        // 缓冲区满说明收集方长时间阻塞，记录下来便于排查
+        if (!httpErrorEvents.tryEmit(error)) {
+            VoiceRoomLog.e(TAG, "http error event buffer full, drop: $error")
         }
-        httpErrorEvents.value = error
     }
 
+    override fun httpErrorCounts(): Map<Int, Int> = HashMap(errorCounts)
+
+    // 每个错误都会投递，不像 StateFlow 只保留最后一个
     override val httpErrorEvents =
-        MutableStateFlow(HttpErrorReporter.ErrorEvent(NEErrorCode.SUCCESS, NEErrorMsg.SUCCESS, "0"))
+        MutableSharedFlow<HttpErrorReporter.ErrorEvent>(extraBufferCapacity = ERROR_EVENT_BUFFER)
 
     fun destroy() {
         voiceRoomScope?.cancel()
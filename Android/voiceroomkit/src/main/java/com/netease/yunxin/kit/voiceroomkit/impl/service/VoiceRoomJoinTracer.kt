@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import android.os.SystemClock
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomJoinTrace
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomJoinTraceListener
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+
+/**
+ * 记录加入房间各阶段耗时，阶段之间可以并行；结束时同时计入 [NEVoiceRoomMetrics]
+ */
+internal class VoiceRoomJoinTracer(private val listener: NEVoiceRoomJoinTraceListener?) {
+    private val startTime = SystemClock.elapsedRealtime()
+    private val beginTimes = HashMap<String, Long>()
+    private val costs = LinkedHashMap<String, Long>()
+    private var finished = false
+
+    @Synchronized
+    fun begin(phase: String) {
+        beginTimes[phase] = SystemClock.elapsedRealtime()
+    }
+
+    @Synchronized
+    fun end(phase: String) {
+        val begin = beginTimes.remove(phase) ?: return
+        costs[phase] = SystemClock.elapsedRealtime() - begin
+    }
+
+    fun finish(success: Boolean) {
+        val trace = synchronized(this) {
+            if (finished) {
+                return
+            }
+            finished = true
+            NEVoiceRoomJoinTrace(
+                LinkedHashMap(costs),
+                SystemClock.elapsedRealtime() - startTime,
+                success
+            )
+        }
+        VoiceRoomLog.i(TAG) { "join trace:$trace" }
+        recordMetrics(trace)
+        listener?.onJoinTrace(trace)
+    }
+
+    private fun recordMetrics(trace: NEVoiceRoomJoinTrace) {
+        NEVoiceRoomMetrics.increment(
+            if (trace.success) NEVoiceRoomMetrics.JOIN_SUCCESS else NEVoiceRoomMetrics.JOIN_FAILURE
+        )
+        if (!trace.success) {
+            return
+        }
+        trace.phaseCosts.forEach { (phase, cost) ->
+            NEVoiceRoomMetrics.recordMillis(NEVoiceRoomMetrics.JOIN_PREFIX + phase, cost)
+        }
+        NEVoiceRoomMetrics.recordMillis(NEVoiceRoomMetrics.JOIN_PREFIX + PHASE_TOTAL, trace.totalCost)
+    }
+
+    companion object {
+        private const val TAG = "VoiceRoomJoinTracer"
+        private const val PHASE_TOTAL = "total"
+    }
+}
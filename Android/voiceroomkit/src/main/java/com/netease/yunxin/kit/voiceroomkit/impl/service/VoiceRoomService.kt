@@ -8,7 +8,6 @@ package com.netease.yunxin.kit.voiceroomkit.impl.service
 
 import android.net.Uri
 import android.text.TextUtils
-import com.google.gson.JsonObject
 import com.netease.yunxin.kit.common.utils.NetworkUtils
 import com.netease.yunxin.kit.roomkit.api.NECallback
 import com.netease.yunxin.kit.roomkit.api.NECallback2
@@ -43,20 +42,24 @@ import com.netease.yunxin.kit.roomkit.api.service.NESeatItem
 import com.netease.yunxin.kit.roomkit.api.service.NESeatItemStatus
 import com.netease.yunxin.kit.roomkit.api.service.NESeatRequestItem
 import com.netease.yunxin.kit.roomkit.impl.model.RoomCustomMessages
+import com.netease.yunxin.kit.voiceroomkit.api.NECustomMessageDecoder
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomAudioOutputDevice
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomDispatchMode
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomEndReason
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomErrorCode
 import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomListener
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomMetrics
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomRole
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomChatTextMessage
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioEffectOption
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomCreateAudioMixingOption
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomJoinTrace
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMember
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomMemberVolumeInfo
 import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomRtcAudioStreamType
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomBatchGiftModel
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomMember
 import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomMemberVolumeInfo
-import com.netease.yunxin.kit.voiceroomkit.impl.utils.GsonUtils
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
 import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomUtils
 import java.util.Locale
@@ -64,44 +67,57 @@ import java.util.Locale
 internal class VoiceRoomService {
 
     private var currentRoomContext: NERoomContext? = null
-    private val listeners = ArrayList<NEVoiceRoomListener>()
+    private val dispatcher = VoiceRoomEventDispatcher()
     private var roomListener: NERoomListener? = null
     private var seatListener: NESeatEventListener? = null
     private var isEarBackEnable: Boolean = false
     private var currentSeatItems: List<NESeatItem>? = null
+
+    // 每应用一次麦位列表加一，用于判断重连拉取的结果是否已过时
+    private var seatVersion = 0L
+
+    // 加入房间时预取的麦位信息，只用一次，麦位变化后作废
+    private var prefetchedSeatInfo: NESeatInfo? = null
+    private var seatInfoPrefetching = false
+    private val pendingSeatInfoCallbacks = ArrayList<NECallback2<NESeatInfo>>()
+
+    // 只随 RTC 房间的成员进出增量维护，聊天室成员变化时整体重建
+    private val memberIndex = MemberIndex<NERoomMember, VoiceRoomMember>(
+        accountOf = { it.uuid },
+        isHost = { isHostRole(it) },
+        wrap = { mapMember(it) },
+        sourceOf = { it.roomMember }
+    )
+
     private var recordingSignalVolume: Int = 100
     private var audioMixingVolume: Int = 100
     private var effectVolume: Int = 100
+    private val seatReconnectManager = SeatReconnectManager(
+        // 直接向服务端拉取，不用加入房间时预取的结果
+        fetchSeatInfo = { callback ->
+            currentRoomContext?.seatController?.getSeatInfo(callback) ?: callback.onError(
+                NEErrorCode.FAILURE,
+                "roomContext is null"
+            )
+        },
+        currentSeatItems = { currentSeatItems },
+        seatVersion = { seatVersion },
+        applySeatItems = { seatItems ->
+            prefetchedSeatInfo = null
+            handleSeatListItemChanged(seatItems)
+            dispatchSeatListChanged(seatItems)
+        }
+    )
     private val networkStateListener: NetworkUtils.NetworkStateListener =
         object : NetworkUtils.NetworkStateListener {
-            private var isFirst = true
             override fun onConnected(networkType: NetworkUtils.NetworkType?) {
-                VoiceRoomLog.d(TAG, "onNetwork available isFirst = $isFirst")
-                if (!isFirst) {
-                    getSeatInfo(object : NECallback2<NESeatInfo>() {
-                        override fun onSuccess(data: NESeatInfo?) {
-                            super.onSuccess(data)
-                            data?.let {
-                                handleSeatListItemChanged(data.seatItems)
-                                listeners.forEach {
-                                    it.onSeatListChanged(
-                                        data.seatItems.map { neSeatItem ->
-                                            VoiceRoomUtils.voiceRoomSeatItem2NEVoiceRoomSeatItem(
-                                                neSeatItem
-                                            )
-                                        }
-                                    )
-                                }
-                            }
-                        }
-                    })
-                }
-                isFirst = false
+                VoiceRoomLog.d(TAG, "onNetwork available")
+                seatReconnectManager.onConnected()
             }
 
             override fun onDisconnected() {
                 VoiceRoomLog.d(TAG, "onNetwork unavailable")
-                isFirst = false
+                seatReconnectManager.onDisconnected()
             }
         }
 
@@ -113,20 +129,43 @@ internal class VoiceRoomService {
         const val TYPE_BATCH_GIFT = 1005 // 批量礼物
     }
 
+    // 在事件队列中解码后直接分发，与文本消息保持到达顺序
+    private val batchGiftHandler =
+        NECustomMessageDecoder.MessageHandler<VoiceRoomBatchGiftModel> { result ->
+            result ?: return@MessageHandler
+            VoiceRoomLog.i(TAG) { "onReceiveBatchGift gift:${result.data}" }
+            NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.MESSAGE_GIFT)
+            dispatcher.dispatchInQueue("onReceiveBatchGift", result.data) { listener, gift ->
+                listener.onReceiveBatchGift(gift)
+            }
+        }
+
+    init {
+        NECustomMessageDecoder.registerInline(
+            TYPE_BATCH_GIFT,
+            VoiceRoomBatchGiftModel::class.java,
+            batchGiftHandler
+        )
+    }
+
     fun getLocalMember(): NEVoiceRoomMember? {
-        return currentRoomContext?.let { mapMember(it.localMember) }
+        return currentRoomContext?.let { indexMember(it.localMember) }
     }
 
     fun getRemoteMembers(): List<NEVoiceRoomMember> {
         return currentRoomContext?.remoteMembers?.map {
-            mapMember(it)
+            indexMember(it)
         } ?: emptyList()
     }
 
-    fun getMember(account: String) = currentRoomContext?.getMember(account)?.let {
-        mapMember(it)
+    fun getMember(account: String): NEVoiceRoomMember? {
+        return memberIndex[account] ?: currentRoomContext?.getMember(account)?.let {
+            indexMember(it)
+        }
     }
 
+    fun getHostMember(): NEVoiceRoomMember? = memberIndex.host
+
     fun isEarBackEnable() = isEarBackEnable
 
     fun joinRoom(
@@ -135,6 +174,7 @@ internal class VoiceRoomService {
         userName: String,
         avatar: String?,
         extraData: Map<String, String>?,
+        tracer: VoiceRoomJoinTracer?,
         callback: NECallback2<Unit>
     ) {
         val neJoinRoomParams: NEJoinRoomParams?
@@ -154,16 +194,20 @@ internal class VoiceRoomService {
                 role = role
             )
         }
+        tracer?.begin(NEVoiceRoomJoinTrace.PHASE_JOIN_ROOM)
         NERoomKit.getInstance().getService(NERoomService::class.java).joinRoom(
             neJoinRoomParams,
             NEJoinRoomOptions(),
             object : NECallback2<NERoomContext>() {
                 override fun onSuccess(data: NERoomContext?) {
+                    tracer?.end(NEVoiceRoomJoinTrace.PHASE_JOIN_ROOM)
                     currentRoomContext = data!!
+                    rebuildMemberIndex()
                     addRoomListener()
                     addSeatListener()
+                    seatReconnectManager.start()
                     NetworkUtils.registerNetworkStatusChangedListener(networkStateListener)
-                    VoiceRoomLog.d(TAG, "joinRoom roomUuid = $roomUuid success")
+                    VoiceRoomLog.d(TAG) { "joinRoom roomUuid = $roomUuid success" }
                     currentRoomContext?.rtcController?.setClientRole(NERoomRtcClientRole.AUDIENCE)
                     currentRoomContext?.rtcController?.setParameters(
                         NERoomRtcParameters.kNERoomRtcKeyRecordAudioEnabled,
@@ -173,39 +217,8 @@ internal class VoiceRoomService {
                         NERoomRtcParameters.kNERoomRtcKeyRecordVideoEnabled,
                         true
                     )
-                    joinRtcChannel(object : NECallback2<Unit>() {
-                        override fun onSuccess(data: Unit?) {
-                            VoiceRoomLog.d(TAG, "joinRtcChannel roomUuid = $roomUuid success")
-                            joinChatroomChannel(object : NECallback2<Unit>() {
-                                override fun onSuccess(data: Unit?) {
-                                    VoiceRoomLog.d(
-                                        TAG,
-                                        "joinChatroomChannel roomUuid = $roomUuid success"
-                                    )
-                                    callback.onSuccess(data)
-                                }
-
-                                override fun onError(code: Int, message: String?) {
-                                    VoiceRoomLog.e(
-                                        TAG,
-                                        "joinChatroomChannel roomUuid = $roomUuid error code = $code message = $message"
-                                    )
-
-                                    leaveRtcChannel(null)
-                                    callback.onError(code, message)
-                                }
-                            })
-                        }
-
-                        override fun onError(code: Int, message: String?) {
-                            VoiceRoomLog.e(
-                                TAG,
-                                "joinRtcChannel failed roomUuid = $roomUuid error code = $code message = $message"
-                            )
-                            currentRoomContext?.leaveRoom(object : NECallback2<Unit?>() {})
-                            callback.onError(code, message)
-                        }
-                    })
+                    prefetchSeatInfo(tracer)
+                    joinChannels(roomUuid, tracer, callback)
                 }
 
                 override fun onError(code: Int, message: String?) {
@@ -219,6 +232,67 @@ internal class VoiceRoomService {
         )
     }
 
+    /**
+     * RTC 和聊天室互不依赖，同时加入；任一失败则整体离开房间
+     */
+    private fun joinChannels(
+        roomUuid: String,
+        tracer: VoiceRoomJoinTracer?,
+        callback: NECallback2<Unit>
+    ) {
+        ParallelJoin(
+            listOf(
+                ParallelJoin.Step(NEVoiceRoomJoinTrace.PHASE_JOIN_RTC, ::joinRtcChannel),
+                ParallelJoin.Step(NEVoiceRoomJoinTrace.PHASE_JOIN_CHATROOM, ::joinChatroomChannel)
+            ),
+            rollback = { leaveRoom(object : NECallback2<Unit>() {}) }
+        ).start(roomUuid, tracer, callback)
+    }
+
+    /**
+     * 加入房间时顺带取麦位，界面随后的 [getSeatInfo] 直接用这次的结果
+     */
+    private fun prefetchSeatInfo(tracer: VoiceRoomJoinTracer?) {
+        val roomContext = currentRoomContext
+        val seatController = roomContext?.seatController ?: return
+        seatInfoPrefetching = true
+        tracer?.begin(NEVoiceRoomJoinTrace.PHASE_GET_SEAT_INFO)
+        seatController.getSeatInfo(object : NECallback2<NESeatInfo>() {
+            override fun onSuccess(data: NESeatInfo?) {
+                tracer?.end(NEVoiceRoomJoinTrace.PHASE_GET_SEAT_INFO)
+                if (!seatInfoPrefetching || roomContext !== currentRoomContext) {
+                    return
+                }
+                seatInfoPrefetching = false
+                val callbacks = pendingSeatInfoCallbacks.toList()
+                pendingSeatInfoCallbacks.clear()
+                if (callbacks.isEmpty()) {
+                    prefetchedSeatInfo = data
+                } else {
+                    callbacks.forEach { it.onSuccess(data) }
+                }
+            }
+
+            override fun onError(code: Int, message: String?) {
+                if (!seatInfoPrefetching || roomContext !== currentRoomContext) {
+                    return
+                }
+                seatInfoPrefetching = false
+                val callbacks = pendingSeatInfoCallbacks.toList()
+                pendingSeatInfoCallbacks.clear()
+                callbacks.forEach { it.onError(code, message) }
+            }
+        })
+    }
+
+    private fun clearSeatInfoPrefetch() {
+        seatInfoPrefetching = false
+        prefetchedSeatInfo = null
+        val callbacks = pendingSeatInfoCallbacks.toList()
+        pendingSeatInfoCallbacks.clear()
+        callbacks.forEach { it.onError(NEErrorCode.FAILURE, ERROR_MSG_ROOM_NOT_EXISTS) }
+    }
+
     fun joinRtcChannel(callback: NECallback2<Unit>) {
         currentRoomContext?.rtcController?.joinRtcChannel(object : NECallback2<Unit>() {
             override fun onSuccess(data: Unit?) {
@@ -265,13 +339,14 @@ internal class VoiceRoomService {
      * 移除监听 --- 离开房间，结束房间
      */
     private fun removeListener() {
-        VoiceRoomLog.d(TAG, "removeRoomListener,roomListener:$roomListener")
-        VoiceRoomLog.d(TAG, "removeSeatListener,seatListener:$seatListener")
+        VoiceRoomLog.d(TAG) { "removeRoomListener,roomListener:$roomListener" }
+        VoiceRoomLog.d(TAG) { "removeSeatListener,seatListener:$seatListener" }
         roomListener?.apply { currentRoomContext?.removeRoomListener(roomListener!!) }
         seatListener?.apply {
             currentRoomContext?.seatController?.removeSeatListener(seatListener!!)
         }
         NetworkUtils.unregisterNetworkStatusChangedListener(networkStateListener)
+        seatReconnectManager.stop()
     }
 
     fun leaveRoom(callback: NECallback2<Unit>) {
@@ -288,6 +363,8 @@ internal class VoiceRoomService {
         isEarBackEnable = false
         currentRoomContext = null
         currentSeatItems = null
+        clearSeatInfoPrefetch()
+        clearMemberIndex()
     }
 
     fun endRoom(callback: NECallback<Unit>) {
@@ -296,6 +373,8 @@ internal class VoiceRoomService {
         isEarBackEnable = false
         currentRoomContext = null
         currentSeatItems = null
+        clearSeatInfoPrefetch()
+        clearMemberIndex()
     }
 
     fun sendTextMessage(content: String, callback: NECallback2<Unit>) {
@@ -441,6 +520,15 @@ internal class VoiceRoomService {
     }
 
     fun getSeatInfo(callback: NECallback2<NESeatInfo>) {
+        prefetchedSeatInfo?.let {
+            prefetchedSeatInfo = null
+            callback.onSuccess(it)
+            return
+        }
+        if (seatInfoPrefetching) {
+            pendingSeatInfoCallbacks.add(callback)
+            return
+        }
         currentRoomContext?.seatController?.getSeatInfo(callback) ?: callback.onError(
             NEErrorCode.FAILURE,
             "roomContext is null"
@@ -607,19 +695,60 @@ internal class VoiceRoomService {
     }
 
     fun removeListener(listener: NEVoiceRoomListener) {
-        listeners.remove(listener)
-        VoiceRoomLog.d(TAG, "removeListener,listeners.size:" + listeners.size)
+        dispatcher.remove(listener)
+        NEVoiceRoomMetrics.setGauge(NEVoiceRoomMetrics.GAUGE_LISTENERS, dispatcher.size.toLong())
+        VoiceRoomLog.d(TAG) { "removeListener,listeners.size:" + dispatcher.size }
+    }
+
+    fun addListener(
+        listener: NEVoiceRoomListener,
+        mode: NEVoiceRoomDispatchMode = NEVoiceRoomDispatchMode.MAIN
+    ) {
+        dispatcher.add(listener, mode)
+        NEVoiceRoomMetrics.setGauge(NEVoiceRoomMetrics.GAUGE_LISTENERS, dispatcher.size.toLong())
+        VoiceRoomLog.d(TAG) { "addListener,listeners.size:" + dispatcher.size + ",mode:" + mode }
     }
 
-    fun addListener(listener: NEVoiceRoomListener) {
-        listeners.add(listener)
-        VoiceRoomLog.d(TAG, "addListener,listeners.size:" + listeners.size)
+    private fun dispatchSeatEvent(event: String, deliver: (NEVoiceRoomListener) -> Unit) {
+        NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.SEAT_EVENT)
+        dispatcher.dispatch(event, deliver)
     }
 
-    private fun mapMember(member: NERoomMember): NEVoiceRoomMember {
+    // 麦位映射放到分发线程做
+    private fun dispatchSeatListChanged(seatItems: List<NESeatItem>) {
+        NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.SEAT_EVENT)
+        dispatcher.dispatch("onSeatListChanged", {
+            seatItems.map { VoiceRoomUtils.voiceRoomSeatItem2NEVoiceRoomSeatItem(it) }
+        }) { listener, voiceRoomSeatItems ->
+            listener.onSeatListChanged(voiceRoomSeatItems)
+        }
+    }
+
+    private fun mapMember(member: NERoomMember): VoiceRoomMember {
         return VoiceRoomMember(member)
     }
 
+    private fun indexMember(member: NERoomMember): NEVoiceRoomMember = memberIndex.index(member)
+
+    private fun removeIndexedMember(member: NERoomMember): NEVoiceRoomMember =
+        memberIndex.remove(member)
+
+    private fun rebuildMemberIndex() {
+        val context = currentRoomContext
+        if (context == null) {
+            memberIndex.clear()
+            return
+        }
+        memberIndex.rebuild(listOf(context.localMember) + context.remoteMembers)
+    }
+
+    private fun clearMemberIndex() {
+        memberIndex.clear()
+    }
+
+    private fun isHostRole(member: NERoomMember) =
+        member.role.name == NEVoiceRoomRole.HOST.value
+
     private fun mapMemberVolumeInfo(memberVolumeInfo: NEMemberVolumeInfo): NEVoiceRoomMemberVolumeInfo {
         return VoiceRoomMemberVolumeInfo(memberVolumeInfo)
     }
@@ -629,7 +758,7 @@ internal class VoiceRoomService {
 
             override fun onRtcChannelError(code: Int) {
                 VoiceRoomLog.e(TAG, "onRtcChannelError code = $code")
-                listeners.forEach {
+                dispatcher.dispatch("onRtcChannelError") {
                     it.onRtcChannelError(code)
                 }
             }
@@ -646,23 +775,22 @@ internal class VoiceRoomService {
                         if (member.uuid == uuid) {
                             syncLocalAudioState(mute)
                         }
-                        val voiceRoomMember = mapMember(member)
-                        VoiceRoomLog.d(
-                            TAG,
-                            "onMemberAudioMuteChanged voiceRoomMember:$voiceRoomMember,mute:$mute,operateBy:" + getLocalMember()
-                        )
-                        listeners.forEach {
-                            it.onMemberAudioMuteChanged(voiceRoomMember, mute, getLocalMember())
+                        val voiceRoomMember = indexMember(member)
+                        val operateBy = getLocalMember()
+                        VoiceRoomLog.d(TAG) {
+                            "onMemberAudioMuteChanged voiceRoomMember:$voiceRoomMember,mute:$mute,operateBy:$operateBy"
+                        }
+                        dispatcher.dispatch("onMemberAudioMuteChanged") {
+                            it.onMemberAudioMuteChanged(voiceRoomMember, mute, operateBy)
                         }
                     }
                 } else if (properties.containsKey(MemberPropertyConstants.CAN_OPEN_MIC_KEY)) {
                     val banned = properties[MemberPropertyConstants.CAN_OPEN_MIC_KEY] == MemberPropertyConstants.CAN_OPEN_MIC_VALUE_NO
-                    val voiceRoomMember = mapMember(member)
-                    VoiceRoomLog.d(
-                        TAG,
+                    val voiceRoomMember = indexMember(member)
+                    VoiceRoomLog.d(TAG) {
                         "onMemberAudioBanned voiceRoomMember:$voiceRoomMember,banned:$banned"
-                    )
-                    listeners.forEach {
+                    }
+                    dispatcher.dispatch("onMemberAudioBanned") {
                         it.onMemberAudioBanned(voiceRoomMember, banned)
                     }
                 }
@@ -674,38 +802,50 @@ internal class VoiceRoomService {
             ) {
             }
 
+            override fun onMemberRoleChanged(
+                member: NERoomMember,
+                oldRole: NERoomRole,
+                newRole: NERoomRole
+            ) {
+                // 同时更新主播
+                indexMember(member)
+            }
+
             override fun onMemberJoinRoom(members: List<NERoomMember>) {
                 val memberList = members.map {
-                    mapMember(it)
+                    indexMember(it)
                 }
-                listeners.forEach {
+                dispatcher.dispatch("onMemberJoinRoom") {
                     it.onMemberJoinRoom(memberList)
                 }
             }
 
             override fun onMemberLeaveRoom(members: List<NERoomMember>) {
                 val memberList = members.map {
-                    mapMember(it)
+                    removeIndexedMember(it)
                 }
-                listeners.forEach {
+                dispatcher.dispatch("onMemberLeaveRoom") {
                     it.onMemberLeaveRoom(memberList)
                 }
             }
 
+            // 聊天室成员不一定在 RTC 房间内，不直接增减索引，按房间当前成员重建
             override fun onMemberJoinChatroom(members: List<NERoomMember>) {
+                rebuildMemberIndex()
                 val memberList = members.map {
-                    mapMember(it)
+                    memberIndex[it.uuid] ?: mapMember(it)
                 }
-                listeners.forEach {
+                dispatcher.dispatch("onMemberJoinChatroom") {
                     it.onMemberJoinChatroom(memberList)
                 }
             }
 
             override fun onMemberLeaveChatroom(members: List<NERoomMember>) {
+                rebuildMemberIndex()
                 val memberList = members.map {
-                    mapMember(it)
+                    memberIndex[it.uuid] ?: mapMember(it)
                 }
-                listeners.forEach {
+                dispatcher.dispatch("onMemberLeaveChatroom") {
                     it.onMemberLeaveChatroom(memberList)
                 }
             }
@@ -713,25 +853,25 @@ internal class VoiceRoomService {
             override fun onRoomEnded(reason: NERoomEndReason) {
                 val endReason =
                     NEVoiceRoomEndReason.fromValue(reason.name.uppercase(Locale.getDefault()))
-                listeners.forEach {
+                dispatcher.dispatch("onRoomEnded") {
                     it.onRoomEnded(endReason)
                 }
             }
 
             override fun onAudioEffectFinished(effectId: Int) {
-                listeners.forEach {
+                dispatcher.dispatch("onAudioEffectFinished") {
                     it.onAudioEffectFinished(effectId)
                 }
             }
 
             override fun onAudioEffectTimestampUpdate(effectId: Long, timeStampMS: Long) {
-                listeners.forEach {
+                dispatcher.dispatch("onAudioEffectTimestampUpdate") {
                     it.onAudioEffectTimestampUpdate(effectId, timeStampMS)
                 }
             }
 
             override fun onRtcLocalAudioVolumeIndication(volume: Int, vadFlag: Boolean) {
-                listeners.forEach {
+                dispatcher.dispatch("onRtcLocalAudioVolumeIndication") {
                     it.onRtcLocalAudioVolumeIndication(volume, vadFlag)
                 }
             }
@@ -739,12 +879,13 @@ internal class VoiceRoomService {
                 volumes: List<NEMemberVolumeInfo>,
                 totalVolume: Int
             ) {
-                val voiceRoomMemberVolumeInfoList = volumes.map {
-                    mapMemberVolumeInfo(it)
-                }
-
-                listeners.forEach {
-                    it.onRtcRemoteAudioVolumeIndication(voiceRoomMemberVolumeInfoList, totalVolume)
+                dispatcher.dispatch("onRtcRemoteAudioVolumeIndication", {
+                    volumes.map { mapMemberVolumeInfo(it) }
+                }) { listener, voiceRoomMemberVolumeInfoList ->
+                    listener.onRtcRemoteAudioVolumeIndication(
+                        voiceRoomMemberVolumeInfoList,
+                        totalVolume
+                    )
                 }
             }
 
@@ -753,8 +894,8 @@ internal class VoiceRoomService {
                     NEVoiceRoomAudioOutputDevice.fromValue(
                         device.name.uppercase(Locale.getDefault())
                     )
-                VoiceRoomLog.d(TAG, "onRtcAudioOutputDeviceChanged,outputDevice:$outputDevice")
-                listeners.forEach {
+                VoiceRoomLog.d(TAG) { "onRtcAudioOutputDeviceChanged,outputDevice:$outputDevice" }
+                dispatcher.dispatch("onAudioOutputDeviceChanged") {
                     it.onAudioOutputDeviceChanged(outputDevice)
                 }
             }
@@ -776,25 +917,13 @@ internal class VoiceRoomService {
                             it.time,
                             it.text
                         )
-                        listeners.forEach { listener ->
-                            listener.onReceiveTextMessage(textMessage)
+                        NEVoiceRoomMetrics.increment(NEVoiceRoomMetrics.MESSAGE_CHAT)
+                        dispatcher.dispatch("onReceiveTextMessage") {
+                            it.onReceiveTextMessage(textMessage)
                         }
                     } else if (it is RoomCustomMessages) {
-                        when (getType(it.attachStr)) {
-                            TYPE_BATCH_GIFT -> {
-                                val result = GsonUtils.fromJson(
-                                    it.attachStr,
-                                    VoiceRoomBatchGiftModel::class.java
-                                )
-                                listeners.forEach { listener ->
-                                    VoiceRoomLog.i(
-                                        TAG,
-                                        "onReceiveBatchGift customAttachment:${it.attachStr}"
-                                    )
-                                    listener.onReceiveBatchGift(result.data)
-                                }
-                            }
-                        }
+                        val attachStr = it.attachStr
+                        dispatcher.runInQueue { NECustomMessageDecoder.decode(attachStr) }
                     }
                 }
             }
@@ -810,23 +939,22 @@ internal class VoiceRoomService {
             }
 
             override fun onAudioMixingStateChanged(reason: Int) {
-                VoiceRoomLog.d(TAG, "onAudioMixingStateChanged,reason:$reason")
-                listeners.forEach {
+                VoiceRoomLog.d(TAG) { "onAudioMixingStateChanged,reason:$reason" }
+                dispatcher.dispatch("onAudioMixingStateChanged") {
                     it.onAudioMixingStateChanged(reason)
                 }
             }
         }
         currentRoomContext?.addRoomListener(roomListener!!)
-        VoiceRoomLog.d(TAG, "addRoomListener,roomListener:$roomListener")
+        VoiceRoomLog.d(TAG) { "addRoomListener,roomListener:$roomListener" }
     }
 
     private fun addSeatListener() {
         seatListener = object : NESeatEventListener() {
             override fun onSeatInvitationReceived(seatIndex: Int, user: String, operateBy: String) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatInvitationReceived seatIndex = $seatIndex user = $user operateBy = $operateBy"
-                )
+                }
             }
 
             override fun onSeatInvitationAccepted(
@@ -834,11 +962,10 @@ internal class VoiceRoomService {
                 user: String,
                 isAutoAgree: Boolean
             ) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatInvitationAccepted seatIndex = $seatIndex user = $user isAutoAgree = $isAutoAgree"
-                )
-                listeners.forEach {
+                }
+                dispatchSeatEvent("onSeatInvitationAccepted") {
                     it.onSeatInvitationAccepted(seatIndex, user, isAutoAgree)
                 }
             }
@@ -849,18 +976,17 @@ internal class VoiceRoomService {
                 operateBy: String,
                 isAutoAgree: Boolean
             ) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatRequestApproved seatIndex = $seatIndex user = $user operateBy = $operateBy isAutoAgree = $isAutoAgree"
-                )
-                listeners.forEach {
+                }
+                dispatchSeatEvent("onSeatRequestApproved") {
                     it.onSeatRequestApproved(seatIndex, user, operateBy, isAutoAgree)
                 }
             }
 
             override fun onSeatRequestCancelled(seatIndex: Int, user: String) {
-                VoiceRoomLog.d(TAG, "onSeatRequestCancelled seatIndex = $seatIndex user = $user")
-                listeners.forEach {
+                VoiceRoomLog.d(TAG) { "onSeatRequestCancelled seatIndex = $seatIndex user = $user" }
+                dispatchSeatEvent("onSeatRequestCancelled") {
                     it.onSeatRequestCancelled(seatIndex, user)
                 }
             }
@@ -870,82 +996,73 @@ internal class VoiceRoomService {
                 user: String,
                 operateBy: String
             ) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatInvitationCancelled seatIndex = $seatIndex user = $user operateBy = $operateBy"
-                )
+                }
             }
 
             override fun onSeatInvitationRejected(seatIndex: Int, user: String) {
-                VoiceRoomLog.d(TAG, "onSeatInvitationRejected seatIndex = $seatIndex user = $user")
+                VoiceRoomLog.d(TAG) {
+                    "onSeatInvitationRejected seatIndex = $seatIndex user = $user"
+                }
             }
 
             override fun onSeatKicked(seatIndex: Int, user: String, operateBy: String) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatKicked seatIndex = $seatIndex user = $user operateBy = $operateBy"
-                )
-                listeners.forEach {
+                }
+                dispatchSeatEvent("onSeatKicked") {
                     it.onSeatKicked(seatIndex, user, operateBy)
                 }
             }
 
             override fun onSeatLeave(seatIndex: Int, user: String) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatLeave seatIndex = $seatIndex user = $user,member:${currentRoomContext?.getMember(
                         user
                     )}"
-                )
+                }
 
-                listeners.forEach {
+                dispatchSeatEvent("onSeatLeave") {
                     it.onSeatLeave(seatIndex, user)
                 }
             }
 
             override fun onSeatListChanged(seatItems: List<NESeatItem>) {
-                VoiceRoomLog.d(TAG, "onSeatListChanged seatItems = $seatItems")
+                VoiceRoomLog.d(TAG) { "onSeatListChanged seatItems = $seatItems" }
+                prefetchedSeatInfo = null
                 handleSeatListItemChanged(seatItems)
-                listeners.forEach {
-                    it.onSeatListChanged(
-                        seatItems.map { neSeatItem ->
-                            VoiceRoomUtils.voiceRoomSeatItem2NEVoiceRoomSeatItem(
-                                neSeatItem
-                            )
-                        }
-                    )
-                }
+                dispatchSeatListChanged(seatItems)
             }
 
             override fun onSeatManagerAdded(managers: List<String>) {
-                VoiceRoomLog.d(TAG, "onSeatManagerAdded managers = $managers")
+                VoiceRoomLog.d(TAG) { "onSeatManagerAdded managers = $managers" }
             }
 
             override fun onSeatManagerRemoved(managers: List<String>) {
-                VoiceRoomLog.d(TAG, "onSeatManagerRemoved managers = $managers")
+                VoiceRoomLog.d(TAG) { "onSeatManagerRemoved managers = $managers" }
             }
 
             override fun onSeatRequestRejected(seatIndex: Int, user: String, operateBy: String) {
-                VoiceRoomLog.d(
-                    TAG,
+                VoiceRoomLog.d(TAG) {
                     "onSeatRequestRejected seatIndex = $seatIndex user = $user operateBy = $operateBy"
-                )
-                listeners.forEach {
+                }
+                dispatchSeatEvent("onSeatRequestRejected") {
                     it.onSeatRequestRejected(seatIndex, user, operateBy)
                 }
             }
 
             override fun onSeatRequestSubmitted(seatIndex: Int, user: String) {
-                VoiceRoomLog.d(TAG, "onSeatRequestSubmitted seatIndex = $seatIndex user = $user")
+                VoiceRoomLog.d(TAG) { "onSeatRequestSubmitted seatIndex = $seatIndex user = $user" }
 
-                listeners.forEach {
+                dispatchSeatEvent("onSeatRequestSubmitted") {
                     it.onSeatRequestSubmitted(seatIndex, user)
                 }
             }
         }
 
         currentRoomContext?.seatController?.addSeatListener(seatListener!!)
-        VoiceRoomLog.d(TAG, "addSeatListener,seatListener:$seatListener")
+        VoiceRoomLog.d(TAG) { "addSeatListener,seatListener:$seatListener" }
     }
 
     private fun handleSeatListItemChanged(seatItems: List<NESeatItem>) {
@@ -971,6 +1088,7 @@ internal class VoiceRoomService {
             }
         }
         currentSeatItems = seatItems
+        seatVersion++
     }
 
     private fun isCurrentOnSeat(seatItems: List<NESeatItem>): Boolean {
@@ -989,14 +1107,6 @@ internal class VoiceRoomService {
         currentRoomContext?.rtcController?.setRecordDeviceMute(mute)
     }
 
-    private fun getType(json: String): Int? {
-        val jsonObject: JsonObject = GsonUtils.fromJson(
-            json,
-            JsonObject::class.java
-        )
-        return jsonObject["type"]?.asInt
-    }
-
     fun setPlayingPosition(effectId: Int, position: Long): Int {
         if (currentRoomContext == null) {
             return NEVoiceRoomErrorCode.FAILURE
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 异步写日志，调用线程只把日志放进定长环形队列，由单独的线程按顺序交给 [sink]
+ * - 队列满时丢弃最旧的一条，调用方不会阻塞；丢弃的条数在下一次写入前报告
+ * - 线程名和时间在入队时记录，写入线程只负责输出
+ * - [flush] 等之前的日志都交给 [sink] 并 flush 后才返回，崩溃、退出前调用可以保证落盘
+ */
+internal class AsyncLogWriter(
+    capacity: Int,
+    private val sink: Sink
+) {
+
+    interface Sink {
+        /**
+         * @param thread 调用日志接口的线程名
+         * @param timeMillis 调用日志接口的时间
+         */
+        fun write(level: Int, tag: String, message: String, thread: String, timeMillis: Long)
+
+        fun flush(isFlush: Boolean)
+    }
+
+    private class Record(
+        val level: Int,
+        val tag: String,
+        val message: String,
+        val thread: String,
+        val timeMillis: Long,
+        val flushed: CountDownLatch? = null
+    )
+
+    private val queue = ArrayBlockingQueue<Record>(capacity)
+    private val dropped = AtomicInteger()
+
+    // 队列满时被挤掉的 flush，在写入线程处理完手上这一条后执行
+    private val evictedFlushes = ConcurrentLinkedQueue<Record>()
+
+    private val worker = Thread({ loop() }, THREAD_NAME).apply {
+        isDaemon = true
+        start()
+    }
+
+    fun write(level: Int, tag: String, message: String) {
+        enqueue(
+            Record(level, tag, message, Thread.currentThread().name, System.currentTimeMillis())
+        )
+    }
+
+    /**
+     * 最多等待 [timeoutMs]，写入线程卡住时不会让调用方一直阻塞
+     */
+    @JvmOverloads
+    fun flush(isFlush: Boolean, timeoutMs: Long = FLUSH_TIMEOUT_MS) {
+        if (Thread.currentThread() === worker) {
+            sink.flush(isFlush)
+            return
+        }
+        val flushed = CountDownLatch(1)
+        val message = if (isFlush) FLUSH_SYNC else ""
+        enqueue(Record(LEVEL_FLUSH, "", message, "", 0L, flushed))
+        try {
+            flushed.await(timeoutMs, TimeUnit.MILLISECONDS)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    private fun enqueue(record: Record) {
+        while (!queue.offer(record)) {
+            val evicted = queue.poll() ?: continue
+            if (evicted.flushed != null) {
+                // 比它早的日志都已经出队，不能丢，否则调用方要等到超时
+                evictedFlushes.add(evicted)
+            } else {
+                dropped.incrementAndGet()
+            }
+        }
+    }
+
+    private fun loop() {
+        while (true) {
+            val record = try {
+                queue.take()
+            } catch (e: InterruptedException) {
+                return
+            }
+            val count = dropped.getAndSet(0)
+            if (count > 0) {
+                write(
+                    Record(
+                        VoiceRoomLog.LEVEL_WARN,
+                        TAG,
+                        "log buffer full, dropped $count",
+                        THREAD_NAME,
+                        System.currentTimeMillis()
+                    )
+                )
+            }
+            write(record)
+            while (true) {
+                write(evictedFlushes.poll() ?: break)
+            }
+        }
+    }
+
+    private fun write(record: Record) {
+        try {
+            if (record.level == LEVEL_FLUSH) {
+                sink.flush(record.message == FLUSH_SYNC)
+            } else {
+                sink.write(
+                    record.level,
+                    record.tag,
+                    record.message,
+                    record.thread,
+                    record.timeMillis
+                )
+            }
+        } catch (e: Exception) {
+            // 写日志失败不能让线程退出
+        } finally {
+            record.flushed?.countDown()
+        }
+    }
+
+    companion object {
+        private const val TAG = "AsyncLogWriter"
+        private const val THREAD_NAME = "VoiceRoomLog"
+        private const val LEVEL_FLUSH = -1
+        private const val FLUSH_SYNC = "sync"
+        const val FLUSH_TIMEOUT_MS = 2000L
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomHistogramSnapshot
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 无锁耗时直方图，分桶方式与 HdrHistogram 相同
+ * - 小于 [SUB_BUCKET_COUNT] 的值每个值一个桶；更大的值每个 2 的幂区间再均分为 [SUB_BUCKET_COUNT] 个桶，
+ *   相对误差不超过 1/[SUB_BUCKET_COUNT]（约 3%）
+ * - 记录只有几次原子操作，可以在任意线程、包括主线程的热路径上调用
+ * - 超过 [MAX_VALUE] 的值按 [MAX_VALUE] 计
+ * - 快照时各桶分别读取，与并发写入之间不保证完全一致
+ */
+internal class LatencyHistogram {
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val count = AtomicLong()
+    private val sum = AtomicLong()
+    private val min = AtomicLong(Long.MAX_VALUE)
+    private val max = AtomicLong()
+
+    fun record(value: Long) {
+        val v = value.coerceIn(0L, MAX_VALUE)
+        buckets.incrementAndGet(bucketIndex(v))
+        count.incrementAndGet()
+        sum.addAndGet(v)
+        updateMin(v)
+        updateMax(v)
+    }
+
+    fun snapshot(): NEVoiceRoomHistogramSnapshot {
+        val counts = LongArray(BUCKET_COUNT) { buckets.get(it) }
+        val total = counts.sum()
+        if (total == 0L) {
+            return NEVoiceRoomHistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0)
+        }
+        val minValue = min.get().coerceAtMost(max.get())
+        val maxValue = max.get()
+        return NEVoiceRoomHistogramSnapshot(
+            total,
+            minValue,
+            maxValue,
+            sum.get() / count.get().coerceAtLeast(1),
+            percentile(counts, total, 0.5, minValue, maxValue),
+            percentile(counts, total, 0.9, minValue, maxValue),
+            percentile(counts, total, 0.99, minValue, maxValue),
+            percentile(counts, total, 0.999, minValue, maxValue)
+        )
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) {
+            buckets.set(i, 0)
+        }
+        count.set(0)
+        sum.set(0)
+        min.set(Long.MAX_VALUE)
+        max.set(0)
+    }
+
+    private fun updateMin(v: Long) {
+        while (true) {
+            val current = min.get()
+            if (v >= current || min.compareAndSet(current, v)) {
+                return
+            }
+        }
+    }
+
+    private fun updateMax(v: Long) {
+        while (true) {
+            val current = max.get()
+            if (v <= current || max.compareAndSet(current, v)) {
+                return
+            }
+        }
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 5
+        const val SUB_BUCKET_COUNT = 1 shl SUB_BUCKET_BITS
+
+        /** 记录上限，按微秒计约 19 小时 */
+        const val MAX_VALUE = (1L shl 36) - 1
+        private const val MAX_EXPONENT = 35 // floor(log2(MAX_VALUE))
+        private const val BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+
+        fun bucketIndex(value: Long): Int {
+            if (value < SUB_BUCKET_COUNT) {
+                return value.toInt()
+            }
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val shift = exponent - SUB_BUCKET_BITS
+            val sub = (value ushr shift).toInt() and (SUB_BUCKET_COUNT - 1)
+            return (shift + 1) * SUB_BUCKET_COUNT + sub
+        }
+
+        /**
+         * 桶内的最大值
+         */
+        fun bucketUpperBound(index: Int): Long {
+            if (index < SUB_BUCKET_COUNT * 2) {
+                return index.toLong()
+            }
+            val shift = index / SUB_BUCKET_COUNT - 1
+            val sub = index % SUB_BUCKET_COUNT
+            val lower = (SUB_BUCKET_COUNT + sub).toLong() shl shift
+            return lower + (1L shl shift) - 1
+        }
+
+        private fun percentile(
+            counts: LongArray,
+            total: Long,
+            quantile: Double,
+            minValue: Long,
+            maxValue: Long
+        ): Long {
+            val rank = Math.ceil(total * quantile).toLong().coerceIn(1L, total)
+            var seen = 0L
+            for (i in counts.indices) {
+                seen += counts[i]
+                if (seen >= rank) {
+                    return bucketUpperBound(i).coerceIn(minValue, maxValue)
+                }
+            }
+            return maxValue
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import android.os.SystemClock
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 按 tag 限制日志频率，每个 tag 每秒最多 [maxPerSecond] 条，超出的丢弃并计数
+ * - 计数走原子操作，只有每秒切换窗口时加锁一次
+ */
+internal class LogRateLimiter(private val maxPerSecond: Int) {
+
+    private class Window {
+        @Volatile
+        var start = 0L
+        val count = AtomicInteger()
+        val dropped = AtomicInteger()
+    }
+
+    private val windows = ConcurrentHashMap<String, Window>()
+
+    /**
+     * @return [DROP] 表示本条应丢弃，否则为此前被丢弃、还没有报告的条数
+     */
+    fun acquire(tag: String): Int {
+        val window = windows[tag] ?: windows.getOrPut(tag) { Window() }
+        val now = SystemClock.elapsedRealtime()
+        if (now - window.start >= WINDOW_MS) {
+            synchronized(window) {
+                if (now - window.start >= WINDOW_MS) {
+                    window.start = now
+                    window.count.set(0)
+                }
+            }
+        }
+        if (window.count.incrementAndGet() > maxPerSecond) {
+            window.dropped.incrementAndGet()
+            return DROP
+        }
+        return if (window.dropped.get() > 0) window.dropped.getAndSet(0) else 0
+    }
+
+    companion object {
+        const val DROP = -1
+        private const val WINDOW_MS = 1_000L
+    }
+}
@@ -7,46 +7,199 @@
 package com.netease.yunxin.kit.voiceroomkit.impl.utils
 import android.content.Context
 import android.os.Build
+import android.util.Log
 import com.netease.yunxin.kit.alog.ALog
+import com.netease.yunxin.kit.voiceroomkit.BuildConfig
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
 
+/**
+ * kit 日志
+ * - 低于 [level] 的日志在调用处直接返回；热路径用 lambda 或 {} 占位的重载，关闭时不拼字符串
+ * - debug、info 日志每个 tag 每秒最多 [MAX_LOGS_PER_SECOND] 条，warn、error 和接口日志不限
+ * - 写入由 [AsyncLogWriter] 在单独的线程完成，不阻塞调用线程；每条日志前带上调用线程名和调用时间
+ * - [flush] 等待之前的日志写完才返回
+ */
 internal class VoiceRoomLog {
 
     companion object {
+        const val LEVEL_DEBUG = 1
+        const val LEVEL_INFO = 2
+        const val LEVEL_WARN = 3
+        const val LEVEL_ERROR = 4
+        private const val LEVEL_API = 5
+
+        private const val MAX_LOGS_PER_SECOND = 50
+        private const val BUFFER_CAPACITY = 1024
+        private const val PLACEHOLDER = "{}"
+        private const val TIME_FORMAT = "HH:mm:ss.SSS"
+
         private val prefix = "[VoiceRoomKit]" + "phone:" + Build.BRAND + ":"
 
+        /** release 包默认不输出 debug 日志 */
+        @JvmStatic
+        @Volatile
+        var level = if (BuildConfig.DEBUG) LEVEL_DEBUG else LEVEL_INFO
+
+        private val rateLimiter = LogRateLimiter(MAX_LOGS_PER_SECOND)
+
+        private val writer = AsyncLogWriter(
+            BUFFER_CAPACITY,
+            object : AsyncLogWriter.Sink {
+                // 只在写入线程使用
+                private val timeFormat = SimpleDateFormat(TIME_FORMAT, Locale.US)
+                private val date = Date()
+
+                override fun write(
+                    level: Int,
+                    tag: String,
+                    message: String,
+                    thread: String,
+                    timeMillis: Long
+                ) {
+                    date.time = timeMillis
+                    val log = "[$thread ${timeFormat.format(date)}] $message"
+                    when (level) {
+                        LEVEL_DEBUG -> ALog.d("$prefix $tag", log)
+                        LEVEL_INFO -> ALog.i("$prefix $tag", log)
+                        LEVEL_WARN -> ALog.w("$prefix $tag", log)
+                        LEVEL_ERROR -> ALog.e("$prefix $tag", log)
+                        LEVEL_API -> ALog.iApi(prefix, log)
+                    }
+                }
+
+                override fun flush(isFlush: Boolean) {
+                    ALog.flush(isFlush)
+                }
+            }
+        )
+
         @JvmStatic
         fun init(context: Context, level: Int) {
             ALog.init(context, level)
         }
 
+        @JvmStatic
+        fun isLoggable(level: Int): Boolean {
+            return level >= this.level
+        }
+
         @JvmStatic
         fun i(tag: String, log: String) {
-            ALog.i("$prefix $tag", log)
+            if (isLoggable(LEVEL_INFO)) {
+                writeLimited(LEVEL_INFO, tag, log)
+            }
         }
 
         @JvmStatic
         fun w(tag: String, log: String) {
-            ALog.w("$prefix $tag", log)
+            if (isLoggable(LEVEL_WARN)) {
+                writer.write(LEVEL_WARN, tag, log)
+            }
         }
 
         @JvmStatic
         fun d(tag: String, log: String) {
-            ALog.d("$prefix $tag", log)
+            if (isLoggable(LEVEL_DEBUG)) {
+                writeLimited(LEVEL_DEBUG, tag, log)
+            }
         }
 
         @JvmStatic
         fun e(tag: String, log: String) {
-            ALog.e("$prefix $tag", log)
+            if (isLoggable(LEVEL_ERROR)) {
+                writer.write(LEVEL_ERROR, tag, log)
+            }
+        }
+
+        /** 带上异常堆栈 */
+        @JvmStatic
+        fun e(tag: String, log: String, tr: Throwable) {
+            if (isLoggable(LEVEL_ERROR)) {
+                writer.write(LEVEL_ERROR, tag, log + "\n" + Log.getStackTraceString(tr))
+            }
+        }
+
+        inline fun i(tag: String, log: () -> String) {
+            if (isLoggable(LEVEL_INFO)) {
+                i(tag, log())
+            }
+        }
+
+        inline fun d(tag: String, log: () -> String) {
+            if (isLoggable(LEVEL_DEBUG)) {
+                d(tag, log())
+            }
+        }
+
+        @JvmStatic
+        fun i(tag: String, format: String, arg: Any?) {
+            if (isLoggable(LEVEL_INFO)) {
+                writeLimited(LEVEL_INFO, tag, format(format, 1, arg, null))
+            }
+        }
+
+        @JvmStatic
+        fun i(tag: String, format: String, arg1: Any?, arg2: Any?) {
+            if (isLoggable(LEVEL_INFO)) {
+                writeLimited(LEVEL_INFO, tag, format(format, 2, arg1, arg2))
+            }
+        }
+
+        @JvmStatic
+        fun d(tag: String, format: String, arg: Any?) {
+            if (isLoggable(LEVEL_DEBUG)) {
+                writeLimited(LEVEL_DEBUG, tag, format(format, 1, arg, null))
+            }
+        }
+
+        @JvmStatic
+        fun d(tag: String, format: String, arg1: Any?, arg2: Any?) {
+            if (isLoggable(LEVEL_DEBUG)) {
+                writeLimited(LEVEL_DEBUG, tag, format(format, 2, arg1, arg2))
+            }
         }
 
         @JvmStatic
         fun logApi(log: String) {
-            ALog.iApi(prefix, log)
+            writer.write(LEVEL_API, prefix, log)
         }
 
+        /**
+         * 之前的日志写完并 flush 后返回，最多等待 [AsyncLogWriter.FLUSH_TIMEOUT_MS]
+         */
         @JvmStatic
         fun flush(isFlush: Boolean) {
-            ALog.flush(isFlush)
+            writer.flush(isFlush)
+        }
+
+        private fun writeLimited(level: Int, tag: String, log: String) {
+            val dropped = rateLimiter.acquire(tag)
+            if (dropped == LogRateLimiter.DROP) {
+                return
+            }
+            if (dropped > 0) {
+                writer.write(LEVEL_WARN, tag, "rate limited, dropped $dropped logs")
+            }
+            writer.write(level, tag, log)
+        }
+
+        /**
+         * 依次替换前 [argCount] 个 {}，其余保留原样
+         */
+        private fun format(format: String, argCount: Int, arg1: Any?, arg2: Any?): String {
+            val builder = StringBuilder(format.length + 32)
+            var from = 0
+            for (i in 0 until argCount) {
+                val index = format.indexOf(PLACEHOLDER, from)
+                if (index < 0) {
+                    break
+                }
+                builder.append(format, from, index).append(if (i == 0) arg1 else arg2)
+                from = index + PLACEHOLDER.length
+            }
+            return builder.append(format, from, format.length).toString()
         }
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api
+
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class NECustomMessageDecoderTest {
+
+    private class Payload(val type: Int = 0, val count: Int = 0)
+
+    private var savedLevel = 0
+    private val handlers = ArrayList<Pair<Int, NECustomMessageDecoder.MessageHandler<*>>>()
+
+    @Before
+    fun setUp() {
+        // 解析失败会写错误日志，测试中关闭日志
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+    }
+
+    @After
+    fun tearDown() {
+        handlers.forEach { (type, handler) -> NECustomMessageDecoder.unregister(type, handler) }
+        VoiceRoomLog.level = savedLevel
+    }
+
+    private fun <T> registerInline(
+        type: Int,
+        clazz: Class<T>?,
+        handler: NECustomMessageDecoder.MessageHandler<T>
+    ) {
+        NECustomMessageDecoder.registerInline(type, clazz, handler)
+        handlers.add(type to handler)
+    }
+
+    @Test
+    fun readsTopLevelType() {
+        assertEquals(3, NECustomMessageDecoder.readType("""{"type":3}"""))
+        assertEquals(7, NECustomMessageDecoder.readType("""{"type":"7"}"""))
+        assertEquals(5, NECustomMessageDecoder.readType("""{"data":{"a":1},"type":5}"""))
+    }
+
+    @Test
+    fun ignoresNestedType() {
+        assertEquals(
+            2,
+            NECustomMessageDecoder.readType("""{"data":{"type":9,"list":[{"type":8}]},"type":2}""")
+        )
+        assertNull(NECustomMessageDecoder.readType("""{"data":{"type":9}}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"list":[{"type":9}]}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"data":{"a":1}}"""))
+    }
+
+    @Test
+    fun rejectsNonIntegerType() {
+        assertNull(NECustomMessageDecoder.readType("""{"type":null}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"type":"gift"}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"type":1.5}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"type":{"id":1}}"""))
+        assertNull(NECustomMessageDecoder.readType("""{"type":[1]}"""))
+    }
+
+    @Test
+    fun malformedJsonReturnsNull() {
+        assertNull(NECustomMessageDecoder.readType(""))
+        assertNull(NECustomMessageDecoder.readType("not json"))
+        assertNull(NECustomMessageDecoder.readType("[1,2]"))
+        assertNull(NECustomMessageDecoder.readType("""{"type":"""))
+        assertNull(NECustomMessageDecoder.readType("""{"data":{"a":1"""))
+    }
+
+    @Test
+    fun stopsReadingOnceTypeIsFound() {
+        // type 之后的内容不再扫描，完整解析时才会发现错误
+        assertEquals(4, NECustomMessageDecoder.readType("""{"type":4,"data":{"""))
+    }
+
+    @Test
+    fun decodesRegisteredTypeOnce() {
+        val received = ArrayList<Payload?>()
+        registerInline(TEST_TYPE, Payload::class.java) { received.add(it) }
+        registerInline(TEST_TYPE, Payload::class.java) { received.add(it) }
+
+        NECustomMessageDecoder.decode("""{"type":$TEST_TYPE,"count":3}""")
+        NECustomMessageDecoder.decode("""{"data":{"type":$TEST_TYPE},"type":1}""")
+
+        assertEquals(2, received.size)
+        // 同一解析类型只解析一次，两个回调拿到同一个对象
+        assertTrue(received[0] === received[1])
+        assertEquals(3, received[0]!!.count)
+    }
+
+    @Test
+    fun malformedBodySkipsOnlyTypedHandlers() {
+        val typed = ArrayList<Payload?>()
+        var untyped = 0
+        registerInline(TEST_TYPE, Payload::class.java) { typed.add(it) }
+        registerInline<Any>(TEST_TYPE, null) { untyped++ }
+
+        NECustomMessageDecoder.decode("""{"type":$TEST_TYPE,"count":"many"}""")
+
+        assertTrue(typed.isEmpty())
+        assertEquals(1, untyped)
+    }
+
+    private companion object {
+        const val TEST_TYPE = 10_001
+    }
+}
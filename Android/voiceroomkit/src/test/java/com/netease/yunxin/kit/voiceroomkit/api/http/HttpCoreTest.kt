@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.api.http
+
+import com.netease.yunxin.kit.common.network.Response
+import com.netease.yunxin.kit.voiceroomkit.impl.repository.VoiceRoomApi
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import kotlinx.coroutines.runBlocking
+import okhttp3.logging.HttpLoggingInterceptor
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import retrofit2.http.GET
+import retrofit2.http.Query
+
+class HttpCoreTest {
+
+    // 点歌模块的接口在 ordersong 中，这里按相同路径声明，用另一组公共头创建 client
+    private interface SongApi {
+        @GET("nemo/entertainmentLive/live/song/getOrderSongs")
+        suspend fun orderSongs(@Query("liveRecordId") liveRecordId: Long): Response<Any>
+
+        @GET("nemo/entertainmentLive/music/info")
+        suspend fun queryPlayingSongInfo(@Query("liveRecordId") liveRecordId: Long): Response<Any>
+    }
+
+    private val server = MockWebServer()
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        // 接口日志跟随 VoiceRoomLog 的级别，测试中关闭
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        VoiceRoomLog.level = savedLevel
+    }
+
+    @Test
+    fun requestLogLevelFollowsVoiceRoomLog() {
+        val body = HttpLoggingInterceptor.Level.BODY
+        val basic = HttpLoggingInterceptor.Level.BASIC
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_DEBUG
+        assertEquals(body, HttpCore.requestLogLevel(body))
+        assertEquals(basic, HttpCore.requestLogLevel(basic))
+
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_INFO
+        assertEquals(basic, HttpCore.requestLogLevel(body))
+
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_WARN
+        assertEquals(HttpLoggingInterceptor.Level.NONE, HttpCore.requestLogLevel(body))
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+        assertEquals(HttpLoggingInterceptor.Level.NONE, HttpCore.requestLogLevel(basic))
+    }
+
+    @Test
+    fun coldJoinSequenceSharesOneConnection() {
+        repeat(4) {
+            server.enqueue(MockResponse().setBody("""{"code":200,"msg":"ok"}"""))
+        }
+        val baseUrl = server.url("/").toString()
+        val roomHeaders = HttpCore.HeaderInterceptor().apply {
+            addDeviceHeaders("device-1")
+            addHeader("Accept-Language", "zh")
+        }
+        val songHeaders = HttpCore.HeaderInterceptor().apply {
+            addHeader("Accept-Language", "en")
+        }
+        val roomApi = HttpCore.createRetrofit(baseUrl, roomHeaders, false)
+            .create(VoiceRoomApi::class.java)
+        val songApi = HttpCore.createRetrofit(baseUrl, songHeaders, false)
+            .create(SongApi::class.java)
+        val connectionsBefore = HttpCore.connectionCount()
+
+        // 进房时依次拉房间列表、房间信息、点歌列表、当前播放歌曲
+        runBlocking {
+            roomApi.getVoiceRoomList(mapOf("pageNum" to 1, "pageSize" to 20))
+            roomApi.getRoomInfo(mapOf("liveRecordId" to 1L))
+            songApi.orderSongs(1L)
+            songApi.queryPlayingSongInfo(1L)
+        }
+
+        val requests = List(4) { server.takeRequest() }
+        assertEquals(listOf(0, 1, 2, 3), requests.map { it.sequenceNumber })
+        assertEquals(1, HttpCore.connectionCount() - connectionsBefore)
+        assertPath(requests[0], "/nemo/entertainmentLive/live/list")
+        assertPath(requests[1], "/nemo/entertainmentLive/live/info")
+        assertPath(requests[2], "/nemo/entertainmentLive/live/song/getOrderSongs?liveRecordId=1")
+        assertPath(requests[3], "/nemo/entertainmentLive/music/info?liveRecordId=1")
+
+        // 各模块的公共头互不影响
+        requests.take(2).forEach {
+            assertEquals(HttpCore.CLIENT_TYPE, it.getHeader(HttpCore.CLIENT_TYPE_KEY))
+            assertEquals("device-1", it.getHeader(HttpCore.DEVICE_ID_KEY))
+            assertEquals("zh", it.getHeader("Accept-Language"))
+        }
+        requests.drop(2).forEach {
+            assertNull(it.getHeader(HttpCore.DEVICE_ID_KEY))
+            assertEquals("en", it.getHeader("Accept-Language"))
+        }
+    }
+
+    private fun assertPath(request: RecordedRequest, path: String) {
+        assertEquals(path, request.path)
+    }
+}
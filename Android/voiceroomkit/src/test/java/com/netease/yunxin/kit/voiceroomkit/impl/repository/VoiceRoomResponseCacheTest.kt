@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.repository
+
+import android.content.SharedPreferences
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class VoiceRoomResponseCacheTest {
+
+    private class Room(var roomName: String = "", var onlineCount: Int = 0)
+
+    // 内存实现的 SharedPreferences，apply 立即生效
+    private class FakePrefs : SharedPreferences {
+        val values = HashMap<String, Any?>()
+
+        override fun getAll(): MutableMap<String, *> = HashMap(values)
+        override fun getString(key: String, defValue: String?) =
+            values[key] as String? ?: defValue
+
+        @Suppress("UNCHECKED_CAST")
+        override fun getStringSet(key: String, defValues: MutableSet<String>?) =
+            values[key] as MutableSet<String>? ?: defValues
+
+        override fun getInt(key: String, defValue: Int) = values[key] as Int? ?: defValue
+        override fun getLong(key: String, defValue: Long) = values[key] as Long? ?: defValue
+        override fun getFloat(key: String, defValue: Float) = values[key] as Float? ?: defValue
+        override fun getBoolean(key: String, defValue: Boolean) =
+            values[key] as Boolean? ?: defValue
+
+        override fun contains(key: String) = values.containsKey(key)
+        override fun edit(): SharedPreferences.Editor = Editor()
+        override fun registerOnSharedPreferenceChangeListener(
+            listener: SharedPreferences.OnSharedPreferenceChangeListener?
+        ) = Unit
+
+        override fun unregisterOnSharedPreferenceChangeListener(
+            listener: SharedPreferences.OnSharedPreferenceChangeListener?
+        ) = Unit
+
+        inner class Editor : SharedPreferences.Editor {
+            private val puts = HashMap<String, Any?>()
+            private val removes = HashSet<String>()
+            private var cleared = false
+
+            private fun put(key: String, value: Any?) = apply { puts[key] = value }
+            override fun putString(key: String, value: String?) = put(key, value)
+            override fun putStringSet(key: String, values: MutableSet<String>?) = put(key, values)
+            override fun putInt(key: String, value: Int) = put(key, value)
+            override fun putLong(key: String, value: Long) = put(key, value)
+            override fun putFloat(key: String, value: Float) = put(key, value)
+            override fun putBoolean(key: String, value: Boolean) = put(key, value)
+            override fun remove(key: String) = apply { removes.add(key) }
+            override fun clear() = apply { cleared = true }
+            override fun commit(): Boolean {
+                if (cleared) values.clear()
+                removes.forEach { values.remove(it) }
+                values.putAll(puts)
+                return true
+            }
+
+            override fun apply() {
+                commit()
+            }
+        }
+    }
+
+    private var now = 1_000_000L
+    private val prefs = FakePrefs()
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        // 解析失败会写错误日志，测试中关闭日志
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+    }
+
+    @After
+    fun tearDown() {
+        VoiceRoomLog.level = savedLevel
+    }
+
+    private fun newCache() = VoiceRoomResponseCache { now }.apply { init(prefs) }
+
+    private fun VoiceRoomResponseCache.room(
+        key: String,
+        policy: VoiceRoomResponseCache.Policy = LIST
+    ) = get<Room>(key, policy, Room::class.java)
+
+    @Test
+    fun freshWithinTtlThenStaleThenExpired() {
+        val cache = newCache()
+        cache.put(KEY, LIST, Room("a", 1))
+
+        now += TTL_MS - 1
+        assertTrue(cache.room(KEY)!!.fresh)
+
+        now += 1
+        val stale = cache.room(KEY)!!
+        assertFalse(stale.fresh)
+        assertEquals("a", stale.data.roomName)
+
+        now += MAX_STALE_MS - TTL_MS
+        assertNull(cache.room(KEY))
+    }
+
+    @Test
+    fun noStaleWindowExpiresAtTtl() {
+        val cache = newCache()
+        cache.put(KEY, VoiceRoomResponseCache.ROOM_INFO, Room("a"))
+
+        now += VoiceRoomResponseCache.ROOM_INFO.ttlMs - 1
+        assertTrue(cache.room(KEY, VoiceRoomResponseCache.ROOM_INFO)!!.fresh)
+        now += 1
+        assertNull(cache.room(KEY, VoiceRoomResponseCache.ROOM_INFO))
+    }
+
+    @Test
+    fun clockGoingBackwardsMisses() {
+        val cache = newCache()
+        cache.put(KEY, LIST, Room("a"))
+        now -= 1
+        assertNull(cache.room(KEY))
+    }
+
+    @Test
+    fun scopeSwitchMisses() {
+        val cache = newCache()
+        cache.scope = "zh"
+        cache.put(KEY, LIST, Room("中文"))
+
+        cache.scope = "en"
+        assertNull(cache.room(KEY))
+        cache.put(KEY, LIST, Room("english"))
+
+        cache.scope = "zh"
+        assertEquals("中文", cache.room(KEY)!!.data.roomName)
+    }
+
+    @Test
+    fun invalidateMatchesWholeSegments() {
+        val cache = newCache()
+        cache.put("roomInfo:1", LIST, Room("1"))
+        cache.put("roomInfo:1:seat", LIST, Room("1-seat"))
+        cache.put("roomInfo:10", LIST, Room("10"))
+
+        cache.invalidate("roomInfo:1")
+
+        assertNull(cache.room("roomInfo:1"))
+        assertNull(cache.room("roomInfo:1:seat"))
+        assertEquals("10", cache.room("roomInfo:10")!!.data.roomName)
+        assertEquals(1, prefs.values.size)
+    }
+
+    @Test
+    fun returnsIndependentCopies() {
+        val cache = newCache()
+        cache.put(KEY, LIST, Room("a", 1))
+
+        val first = cache.room(KEY)!!.data
+        first.onlineCount = 99
+        val second = cache.room(KEY)!!.data
+
+        assertNotSame(first, second)
+        assertEquals(1, second.onlineCount)
+    }
+
+    @Test
+    fun persistedEntrySurvivesColdStart() {
+        newCache().put(KEY, LIST, Room("a", 3))
+
+        now += TTL_MS
+        val hit = newCache().room(KEY)
+        assertNotNull(hit)
+        // 按写入时间计算是否过期，冷启动不会让旧数据变新
+        assertFalse(hit!!.fresh)
+        assertEquals(3, hit.data.onlineCount)
+    }
+
+    @Test
+    fun nonPersistentEntryIsNotWritten() {
+        newCache().put(KEY, VoiceRoomResponseCache.ROOM_LIST, Room("a"))
+        assertTrue(prefs.values.isEmpty())
+        assertNull(newCache().room(KEY, VoiceRoomResponseCache.ROOM_LIST))
+    }
+
+    @Test
+    fun corruptPersistedEntryIsRemoved() {
+        newCache().put(KEY, LIST, Room("a"))
+        val fullKey = prefs.values.keys.single()
+        prefs.values[fullKey] = "{\"time\":"
+
+        assertNull(newCache().room(KEY))
+        assertFalse(prefs.values.containsKey(fullKey))
+    }
+
+    @Test
+    fun mismatchedPersistedDataIsRemoved() {
+        newCache().put(KEY, LIST, Room("a"))
+        val fullKey = prefs.values.keys.single()
+        prefs.values[fullKey] = """{"time":$now,"data":[1,2]}"""
+
+        assertNull(newCache().room(KEY))
+        assertFalse(prefs.values.containsKey(fullKey))
+    }
+
+    @Test
+    fun staleHitRevalidatesOncePerTtl() {
+        val cache = newCache()
+        var upstreamCalls = 0
+        // 与 VoiceRoomHttpServiceImpl.requestCached 相同的用法：新鲜直接用，过期先用再刷新，未命中才等待请求
+        fun load(): Room {
+            val hit = cache.room(KEY)
+            if (hit == null || !hit.fresh) {
+                upstreamCalls++
+                cache.put(KEY, LIST, Room("v$upstreamCalls"))
+            }
+            return hit?.data ?: cache.room(KEY)!!.data
+        }
+
+        assertEquals("v1", load().roomName)
+        repeat(10) {
+            now += 100
+            assertEquals("v1", load().roomName)
+        }
+        assertEquals(1, upstreamCalls)
+
+        now += TTL_MS
+        // 过期可用：先返回旧数据，同时刷新一次
+        assertEquals("v1", load().roomName)
+        assertEquals(2, upstreamCalls)
+        assertEquals("v2", load().roomName)
+        assertEquals(2, upstreamCalls)
+
+        now += MAX_STALE_MS
+        assertEquals("v3", load().roomName)
+        assertEquals(3, upstreamCalls)
+    }
+
+    private companion object {
+        const val KEY = "roomList:1"
+        const val TTL_MS = 5_000L
+        const val MAX_STALE_MS = 60_000L
+        val LIST = VoiceRoomResponseCache.Policy(TTL_MS, MAX_STALE_MS, true)
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.repository
+
+import com.google.gson.Gson
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomChatTextMessage
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSeatItem
+import com.netease.yunxin.kit.voiceroomkit.api.model.NEVoiceRoomSnapshot
+import com.netease.yunxin.kit.voiceroomkit.impl.model.VoiceRoomInfo
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class VoiceRoomSnapshotStoreTest {
+
+    private lateinit var dir: File
+    private lateinit var file: File
+    private var now = 1_000_000L
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        // 读写失败会写错误日志，测试中关闭日志
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+        dir = Files.createTempDirectory("snapshot").toFile()
+        file = File(dir, "voiceroom_snapshot.bin")
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+        VoiceRoomLog.level = savedLevel
+    }
+
+    // 回调直接在读写线程执行，测试中不需要主线程
+    private fun newStore() =
+        VoiceRoomSnapshotStore(Executor { it.run() }) { now }.apply { init(file) }
+
+    private fun roomInfo(liveRecordId: Long, roomName: String = "room$liveRecordId") =
+        Gson().fromJson(
+            """{"anchor":{"userUuid":"host","userName":"主播","icon":"icon"},
+               "live":{"roomUuid":"uuid$liveRecordId","roomName":"$roomName",
+               "liveRecordId":$liveRecordId,"userUuid":"host","status":1,"liveType":2,
+               "live":1,"liveTopic":"topic","audienceCount":3,"onSeatCount":2}}""",
+            VoiceRoomInfo::class.java
+        )
+
+    private fun seat(index: Int) =
+        NEVoiceRoomSeatItem(index, 1, "user$index", "用户$index", null, 0, index * 10L)
+
+    private fun message(i: Int) =
+        NEVoiceRoomChatTextMessage("user$i", "昵称$i", null, i.toLong(), "消息 $i 😀")
+
+    private fun VoiceRoomSnapshotStore.loadBlocking(liveRecordId: Long): NEVoiceRoomSnapshot? {
+        val done = CountDownLatch(1)
+        var result: NEVoiceRoomSnapshot? = null
+        load(liveRecordId) {
+            result = it
+            done.countDown()
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        return result
+    }
+
+    private fun saveRoom(liveRecordId: Long, seats: Int = 9, messages: Int = 5) {
+        newStore().apply {
+            onRoomJoined(roomInfo(liveRecordId))
+            onSeatItemsChanged(List(seats) { seat(it) })
+            repeat(messages) { onTextMessage(message(it)) }
+            save()
+            // 等写入完成
+            loadBlocking(liveRecordId)
+        }
+    }
+
+    @Test
+    fun roundTrip() {
+        val store = newStore()
+        val seats = List(9) { seat(it) }
+        store.onRoomJoined(roomInfo(1L, "名字"))
+        store.onSeatItemsChanged(seats)
+        repeat(VoiceRoomSnapshotStore.MAX_MESSAGES + 5) { store.onTextMessage(message(it)) }
+        store.save()
+
+        // 新实例模拟冷启动后重新进房
+        val snapshot = newStore().loadBlocking(1L)
+
+        assertNotNull(snapshot)
+        assertEquals(1L, snapshot!!.roomInfo.liveModel.liveRecordId)
+        assertEquals("名字", snapshot.roomInfo.liveModel.roomName)
+        assertEquals("主播", snapshot.roomInfo.anchor.userName)
+        assertEquals(seats, snapshot.seatItems)
+        // 只保留最近的消息
+        assertEquals(
+            List(VoiceRoomSnapshotStore.MAX_MESSAGES) { message(it + 5) },
+            snapshot.messages
+        )
+        assertEquals(now, snapshot.savedTime)
+    }
+
+    @Test
+    fun otherRoomMisses() {
+        saveRoom(1L)
+        assertNull(newStore().loadBlocking(2L))
+        // 不是当前房间的快照不删除
+        assertTrue(file.exists())
+    }
+
+    @Test
+    fun expiredSnapshotMisses() {
+        saveRoom(1L)
+        now += VoiceRoomSnapshotStore.MAX_AGE_MS + 1
+        assertNull(newStore().loadBlocking(1L))
+    }
+
+    @Test
+    fun notSavedWhenNotInRoom() {
+        newStore().apply {
+            onTextMessage(message(0))
+            save()
+            loadBlocking(1L)
+        }
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun truncatedFileIsDeleted() {
+        saveRoom(1L)
+        val bytes = file.readBytes()
+        file.writeBytes(bytes.copyOf(bytes.size / 2))
+
+        assertNull(newStore().loadBlocking(1L))
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun garbageFileIsDeleted() {
+        file.writeBytes(ByteArray(256) { (it * 31).toByte() })
+
+        assertNull(newStore().loadBlocking(1L))
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun corruptCountIsRejectedWithoutAllocating() {
+        DataOutputStream(FileOutputStream(file)).use {
+            it.writeInt(MAGIC)
+            it.writeInt(VERSION)
+            it.writeLong(now)
+            val json = Gson().toJson(roomInfo(1L)).toByteArray(Charsets.UTF_8)
+            it.writeInt(json.size)
+            it.write(json)
+            it.writeInt(Int.MAX_VALUE)
+        }
+
+        assertNull(newStore().loadBlocking(1L))
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun clearDeletesSnapshot() {
+        saveRoom(1L)
+        newStore().apply {
+            clear()
+            assertNull(loadBlocking(1L))
+        }
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun saveAndResetStopsRecording() {
+        val store = newStore()
+        store.onRoomJoined(roomInfo(1L))
+        store.onTextMessage(message(0))
+        store.saveAndReset()
+        store.onTextMessage(message(1))
+        store.save()
+
+        assertEquals(listOf(message(0)), store.loadBlocking(1L)!!.messages)
+    }
+
+    @Test
+    fun loadTimeBenchmark() {
+        // 最大的快照：满麦位 + 满消息
+        saveRoom(1L, seats = 20, messages = VoiceRoomSnapshotStore.MAX_MESSAGES)
+        val store = newStore()
+        repeat(WARMUP) { store.loadBlocking(1L) }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) { assertNotNull(store.loadBlocking(1L)) }
+        val avgUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ITERATIONS
+
+        println("snapshot ${file.length()} bytes, load avg ${avgUs}us")
+        // 远小于一次房间信息请求的耗时
+        assertTrue("load avg ${avgUs}us", avgUs < 50_000)
+    }
+
+    private companion object {
+        const val MAGIC = 0x56525331
+        const val VERSION = 1
+        const val WARMUP = 50
+        const val ITERATIONS = 200
+    }
+}
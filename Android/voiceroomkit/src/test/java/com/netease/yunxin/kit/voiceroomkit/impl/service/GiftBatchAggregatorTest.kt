@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.common.network.NetRequestCallback
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+// 单元测试中 Looper 均为 null，add 在调用线程同步执行，窗口定时不会触发，用 flushAll 结束窗口
+class GiftBatchAggregatorTest {
+
+    private class Request(
+        val liveRecordId: Long,
+        val giftId: Int,
+        val giftCount: Int,
+        val userUuids: List<String>,
+        val callback: NetRequestCallback<Unit>
+    )
+
+    private class RecordingSender : GiftBatchAggregator.BatchRewardSender {
+        val requests = ArrayList<Request>()
+
+        override fun batchReward(
+            liveRecordId: Long,
+            giftId: Int,
+            giftCount: Int,
+            userUuids: List<String>,
+            callback: NetRequestCallback<Unit>
+        ) {
+            requests.add(Request(liveRecordId, giftId, giftCount, userUuids, callback))
+        }
+    }
+
+    private class CountingCallback : NetRequestCallback<Unit> {
+        var successCount = 0
+        var errorCount = 0
+
+        override fun success(info: Unit?) {
+            successCount++
+        }
+
+        override fun error(code: Int, msg: String?) {
+            errorCount++
+        }
+    }
+
+    @Test
+    fun fiftyTapsInOneWindowSendOneRequest() {
+        val sender = RecordingSender()
+        val aggregator = GiftBatchAggregator(sender)
+        val callback = CountingCallback()
+        repeat(TAPS) {
+            aggregator.add(ROOM, GIFT, 1, TARGETS, callback)
+        }
+        assertEquals(0, sender.requests.size)
+
+        aggregator.flushAll()
+
+        assertEquals(1, sender.requests.size)
+        val request = sender.requests[0]
+        assertEquals(ROOM, request.liveRecordId)
+        assertEquals(GIFT, request.giftId)
+        assertEquals(TAPS, request.giftCount)
+        assertEquals(TARGETS, request.userUuids)
+
+        request.callback.success(Unit)
+        assertEquals(TAPS, callback.successCount)
+        assertEquals(0, callback.errorCount)
+    }
+
+    @Test
+    fun fiftyTapsSplitAtMaxGiftCount() {
+        val sender = RecordingSender()
+        val aggregator = GiftBatchAggregator(sender, maxGiftCount = 20)
+        val callback = CountingCallback()
+        repeat(TAPS) {
+            aggregator.add(ROOM, GIFT, 1, TARGETS, callback)
+        }
+        aggregator.flushAll()
+
+        assertEquals(listOf(20, 20, 10), sender.requests.map { it.giftCount })
+        sender.requests.forEach { it.callback.error(500, "error") }
+        assertEquals(TAPS, callback.errorCount)
+        assertEquals(0, callback.successCount)
+    }
+
+    @Test
+    fun targetListIsSentAsGiven() {
+        val sender = RecordingSender()
+        val aggregator = GiftBatchAggregator(sender)
+        val duplicated = listOf("b", "a", "b")
+        val reordered = listOf("a", "b")
+        repeat(TAPS) {
+            aggregator.add(ROOM, GIFT, 1, duplicated, CountingCallback())
+            aggregator.add(ROOM, GIFT, 1, reordered, CountingCallback())
+        }
+        aggregator.flushAll()
+
+        assertEquals(2, sender.requests.size)
+        assertEquals(duplicated, sender.requests[0].userUuids)
+        assertEquals(TAPS, sender.requests[0].giftCount)
+        assertEquals(reordered, sender.requests[1].userUuids)
+        assertEquals(TAPS, sender.requests[1].giftCount)
+    }
+
+    companion object {
+        private const val TAPS = 50
+        private const val ROOM = 1001L
+        private const val GIFT = 1
+        private val TARGETS = listOf("host", "seat1")
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.io.IOException
+import java.net.SocketTimeoutException
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import retrofit2.HttpException
+import retrofit2.Response
+
+class HttpRetryPolicyTest {
+
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        // 重试时会写警告日志，测试中关闭日志
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+    }
+
+    @After
+    fun tearDown() {
+        VoiceRoomLog.level = savedLevel
+    }
+
+    private fun httpError(code: Int) = HttpException(Response.error<Any>(code, "".toResponseBody()))
+
+    // 前 failures 次抛出 error，之后成功，返回调用次数
+    private fun attempts(policy: HttpRetryPolicy, failures: Int, error: Exception): Int {
+        var calls = 0
+        runBlocking {
+            try {
+                policy.execute("test") {
+                    calls++
+                    if (calls <= failures) throw error
+                }
+            } catch (e: Exception) {
+                if (e !== error) throw e
+            }
+        }
+        return calls
+    }
+
+    @Test
+    fun backoffGrowsExponentiallyWithinJitter() {
+        val policy = HttpRetryPolicy(5, 100L, 10_000L, 0L, Random(1))
+        repeat(100) {
+            for (attempt in 1..4) {
+                val exp = 100L shl (attempt - 1)
+                val delayMs = policy.backoff(attempt)
+                assertTrue("attempt $attempt delay $delayMs", delayMs in exp / 2..exp)
+            }
+        }
+    }
+
+    @Test
+    fun backoffIsCappedAndDoesNotOverflow() {
+        val policy = HttpRetryPolicy(100, 300L, 2_000L, 0L, Random(1))
+        for (attempt in 1..100) {
+            val delayMs = policy.backoff(attempt)
+            assertTrue("attempt $attempt delay $delayMs", delayMs in 0..2_000L)
+        }
+        assertTrue(policy.backoff(64) >= 1_000L)
+    }
+
+    @Test
+    fun jitterSpreadsRetries() {
+        val policy = HttpRetryPolicy(3, 1_000L, 10_000L, 0L, Random(1))
+        val delays = List(50) { policy.backoff(1) }.toSet()
+        assertTrue(delays.size > 10)
+    }
+
+    @Test
+    fun idempotentPolicyRetriesTransientErrors() {
+        val policy = HttpRetryPolicy(3, 1L, 2L, 0L)
+        assertEquals(3, attempts(policy, 2, IOException("reset")))
+        assertEquals(3, attempts(policy, 2, httpError(503)))
+        assertEquals(3, attempts(policy, 2, httpError(429)))
+        // 达到次数上限后抛出最后一次的错误
+        assertEquals(3, attempts(policy, 10, SocketTimeoutException()))
+    }
+
+    @Test
+    fun businessAndClientErrorsAreNotRetried() {
+        val policy = HttpRetryPolicy(3, 1L, 2L, 0L)
+        assertEquals(1, attempts(policy, 2, httpError(400)))
+        assertEquals(1, attempts(policy, 2, httpError(404)))
+        assertEquals(1, attempts(policy, 2, IllegalStateException("code 1001")))
+        assertEquals(1, attempts(policy, 2, CancellationException("cancelled")))
+    }
+
+    @Test
+    fun writePolicyNeverRetries() {
+        // 写接口重试可能重复创建房间或重复打赏
+        assertEquals(1, attempts(HttpRetryPolicy.NONE, 1, IOException("reset")))
+        assertEquals(1, attempts(HttpRetryPolicy.NONE, 1, httpError(503)))
+        assertEquals(1, attempts(HttpRetryPolicy.NONE, 1, SocketTimeoutException()))
+    }
+
+    @Test
+    fun idempotentPolicyRetriesUpToThreeTimes() {
+        assertEquals(3, HttpRetryPolicy.IDEMPOTENT.maxAttempts)
+        assertEquals(1, HttpRetryPolicy.NONE.maxAttempts)
+        assertEquals(0L, HttpRetryPolicy.NONE.deadlineMs)
+    }
+
+    @Test
+    fun deadlineCoversAllAttempts() {
+        val policy = HttpRetryPolicy(10, 50L, 50L, 200L)
+        var calls = 0
+        val start = System.nanoTime()
+        try {
+            runBlocking {
+                policy.execute("slow") {
+                    calls++
+                    delay(60)
+                    throw IOException("reset")
+                }
+            }
+            fail()
+        } catch (e: SocketTimeoutException) {
+            // 超时转成网络错误而不是协程取消
+        }
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        assertTrue("elapsed ${elapsedMs}ms", elapsedMs < 1_000L)
+        assertTrue("calls $calls", calls in 2..4)
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+
+class MemberIndexTest {
+
+    private class FakeMember(val uuid: String, val role: String = "audience")
+
+    private class Wrapper(val source: FakeMember)
+
+    private var wrapCount = 0
+    private lateinit var index: MemberIndex<FakeMember, Wrapper>
+
+    @Before
+    fun setUp() {
+        index = MemberIndex(
+            accountOf = { it.uuid },
+            isHost = { it.role == "host" },
+            wrap = {
+                wrapCount++
+                Wrapper(it)
+            },
+            sourceOf = { it.source }
+        )
+    }
+
+    @Test
+    fun joinIndexesMemberOnce() {
+        val member = FakeMember("a")
+
+        val first = index.index(member)
+        val second = index.index(member)
+
+        assertSame(first, second)
+        assertSame(first, index["a"])
+        assertEquals(1, wrapCount)
+    }
+
+    @Test
+    fun replacedSourceIsWrappedAgain() {
+        val first = index.index(FakeMember("a"))
+        val replacement = FakeMember("a")
+
+        val second = index.index(replacement)
+
+        assertNotSame(first, second)
+        assertSame(replacement, index["a"]!!.source)
+        assertEquals(1, index.size)
+    }
+
+    @Test
+    fun leaveRemovesMemberAndReturnsIndexedWrapper() {
+        val member = FakeMember("a")
+        val indexed = index.index(member)
+
+        assertSame(indexed, index.remove(member))
+        assertNull(index["a"])
+        // 不在索引中的成员离开时仍返回包装对象用于回调
+        assertEquals("b", index.remove(FakeMember("b")).source.uuid)
+    }
+
+    @Test
+    fun hostFollowsJoinRoleChangeAndLeave() {
+        val host = FakeMember("h", "host")
+        index.index(FakeMember("a"))
+        index.index(host)
+        assertSame(index["h"], index.host)
+
+        // 角色变化时 roomkit 传入新的成员对象
+        index.index(FakeMember("h", "audience"))
+        assertNull(index.host)
+
+        val newHost = FakeMember("a", "host")
+        index.index(newHost)
+        assertSame(newHost, index.host!!.source)
+        index.remove(newHost)
+        assertNull(index.host)
+    }
+
+    @Test
+    fun rebuildReplacesContents() {
+        index.index(FakeMember("stale"))
+        index.index(FakeMember("old-host", "host"))
+
+        index.rebuild(listOf(FakeMember("a"), FakeMember("b", "host")))
+
+        assertNull(index["stale"])
+        assertNull(index["old-host"])
+        assertEquals(2, index.size)
+        assertEquals("b", index.host!!.source.uuid)
+    }
+
+    @Test
+    fun lookupsAfterRebuildDoNotWrapAgain() {
+        val members = (0 until MEMBER_COUNT).map { FakeMember("user$it") }
+        index.rebuild(members)
+        assertEquals(MEMBER_COUNT, wrapCount)
+
+        // 9 个麦位反复查询成员，不应再产生新的包装对象
+        repeat(1000) { round ->
+            for (seat in 0 until SEAT_COUNT) {
+                val member = members[(round * SEAT_COUNT + seat) % MEMBER_COUNT]
+                assertSame(member, index.index(member).source)
+            }
+        }
+        assertEquals(MEMBER_COUNT, wrapCount)
+        assertEquals(MEMBER_COUNT, index.size)
+    }
+
+    @Test
+    fun clearDropsHost() {
+        index.index(FakeMember("h", "host"))
+
+        index.clear()
+
+        assertNull(index.host)
+        assertEquals(0, index.size)
+    }
+
+    private companion object {
+        const val MEMBER_COUNT = 5_000
+        const val SEAT_COUNT = 9
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.roomkit.api.NECallback2
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class ParallelJoinTest {
+
+    private inner class ResultCallback : NECallback2<Unit>() {
+        val done = CountDownLatch(1)
+        val results = AtomicInteger()
+
+        @Volatile
+        var errorCode: Int? = null
+
+        // 回调时已执行的回滚次数
+        @Volatile
+        var rollbacksAtResult = -1
+
+        override fun onSuccess(data: Unit?) {
+            finish()
+        }
+
+        override fun onError(code: Int, message: String?) {
+            errorCode = code
+            finish()
+        }
+
+        private fun finish() {
+            rollbacksAtResult = rollbacks.get()
+            results.incrementAndGet()
+            done.countDown()
+        }
+    }
+
+    private val rollbacks = AtomicInteger()
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+    }
+
+    @After
+    fun tearDown() {
+        VoiceRoomLog.level = savedLevel
+    }
+
+    // 在后台线程延迟 latencyMs 后回调，errorCode 为 null 表示成功
+    private fun step(phase: String, latencyMs: Long, errorCode: Int? = null) =
+        ParallelJoin.Step(phase) { callback ->
+            Thread {
+                Thread.sleep(latencyMs)
+                if (errorCode == null) {
+                    callback.onSuccess(Unit)
+                } else {
+                    callback.onError(errorCode, "$phase failed")
+                }
+            }.start()
+        }
+
+    private fun run(vararg steps: ParallelJoin.Step): ResultCallback {
+        val callback = ResultCallback()
+        ParallelJoin(steps.toList()) { rollbacks.incrementAndGet() }
+            .start("room", null, callback)
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS))
+        return callback
+    }
+
+    @Test
+    fun totalTimeIsSlowestStepNotSum() {
+        val start = System.nanoTime()
+        val callback = run(step("rtc", RTC_LATENCY_MS), step("chatroom", CHATROOM_LATENCY_MS))
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        println("join took ${elapsedMs}ms, steps $RTC_LATENCY_MS/${CHATROOM_LATENCY_MS}ms")
+        assertNull(callback.errorCode)
+        assertTrue(elapsedMs >= CHATROOM_LATENCY_MS)
+        assertTrue("join took ${elapsedMs}ms", elapsedMs < RTC_LATENCY_MS + CHATROOM_LATENCY_MS)
+        assertEquals(0, rollbacks.get())
+    }
+
+    @Test
+    fun partialFailureRollsBackAfterAllStepsFinish() {
+        val start = System.nanoTime()
+        val callback = run(step("rtc", 10, ERROR_RTC), step("chatroom", CHATROOM_LATENCY_MS))
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        // 等聊天室也加入完成后再离开，避免离开后聊天室才加入成功
+        assertTrue(elapsedMs >= CHATROOM_LATENCY_MS)
+        assertEquals(ERROR_RTC, callback.errorCode)
+        assertEquals(1, rollbacks.get())
+        assertEquals(1, callback.rollbacksAtResult)
+    }
+
+    @Test
+    fun firstErrorIsReportedWhenAllStepsFail() {
+        val callback = run(step("rtc", 10, ERROR_RTC), step("chatroom", 100, ERROR_CHATROOM))
+
+        assertEquals(ERROR_RTC, callback.errorCode)
+        assertEquals(1, rollbacks.get())
+        assertEquals(1, callback.results.get())
+    }
+
+    @Test
+    fun synchronousCallbacksComplete() {
+        val callback = run(
+            ParallelJoin.Step("rtc") { it.onSuccess(Unit) },
+            ParallelJoin.Step("chatroom") { it.onError(ERROR_CHATROOM, "sync") }
+        )
+
+        assertEquals(ERROR_CHATROOM, callback.errorCode)
+        assertEquals(1, rollbacks.get())
+    }
+
+    private companion object {
+        const val RTC_LATENCY_MS = 200L
+        const val CHATROOM_LATENCY_MS = 300L
+        const val ERROR_RTC = 30001
+        const val ERROR_CHATROOM = 30002
+    }
+}
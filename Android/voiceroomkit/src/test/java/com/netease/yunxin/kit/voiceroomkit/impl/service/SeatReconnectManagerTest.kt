@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.roomkit.api.NECallback2
+import com.netease.yunxin.kit.roomkit.api.service.NESeatInfo
+import com.netease.yunxin.kit.roomkit.api.service.NESeatItem
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.VoiceRoomLog
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class SeatReconnectManagerTest {
+
+    // 虚拟时间的主线程，advance 时按到期顺序执行
+    private class FakeScheduler : SeatReconnectManager.Scheduler {
+        private class Task(val runnable: Runnable, val at: Long)
+
+        var now = 0L
+        private val tasks = ArrayList<Task>()
+
+        override fun postDelayed(task: Runnable, delayMs: Long) {
+            tasks.add(Task(task, now + delayMs))
+        }
+
+        override fun remove(task: Runnable) {
+            tasks.removeAll { it.runnable === task }
+        }
+
+        fun advance(ms: Long) {
+            val end = now + ms
+            while (true) {
+                val next = tasks.filter { it.at <= end }.minByOrNull { it.at } ?: break
+                tasks.remove(next)
+                now = next.at
+                next.runnable.run()
+            }
+            now = end
+        }
+
+        fun pendingAt(): List<Long> = tasks.map { it.at }
+    }
+
+    private val scheduler = FakeScheduler()
+    private val fetches = ArrayList<NECallback2<NESeatInfo>>()
+    private val applied = ArrayList<List<NESeatItem>>()
+    private var current: List<NESeatItem> = List(SEATS) { seat(it) }
+    private var version = 0L
+    private var savedLevel = 0
+
+    private val manager = SeatReconnectManager(
+        fetchSeatInfo = { fetches.add(it) },
+        currentSeatItems = { current },
+        seatVersion = { version },
+        applySeatItems = {
+            applied.add(it)
+            current = it
+            version++
+        },
+        debounceMs = DEBOUNCE_MS,
+        scheduler = scheduler
+    )
+
+    @Before
+    fun setUp() {
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_ERROR + 1
+        manager.start()
+        // 注册监听时的第一次回调
+        manager.onConnected()
+    }
+
+    @After
+    fun tearDown() {
+        manager.stop()
+        VoiceRoomLog.level = savedLevel
+    }
+
+    private fun seat(
+        index: Int,
+        user: String? = null,
+        status: Int = if (user == null) STATUS_EMPTY else STATUS_TAKEN,
+        onSeatType: Int = 0,
+        icon: String? = null,
+        updated: Long = 0L
+    ) = NESeatItem(
+        index = index,
+        status = status,
+        user = user,
+        userName = user,
+        icon = icon,
+        onSeatType = onSeatType,
+        updated = updated
+    )
+
+    private fun seatInfo(items: List<NESeatItem>) =
+        NESeatInfo(creator = "host", managers = emptyList(), seatItems = items)
+
+    private fun respond(items: List<NESeatItem>) {
+        fetches.last().onSuccess(seatInfo(items))
+    }
+
+    private fun flap(times: Int, periodMs: Long) {
+        repeat(times) {
+            manager.onDisconnected()
+            scheduler.advance(periodMs / 2)
+            manager.onConnected()
+            scheduler.advance(periodMs / 2)
+        }
+    }
+
+    @Test
+    fun firstConnectedCallbackDoesNotFetch() {
+        scheduler.advance(DEBOUNCE_MS * 10)
+        assertTrue(fetches.isEmpty())
+    }
+
+    @Test
+    fun twentyFlapsInFiveSecondsFetchOnce() {
+        flap(20, 250L)
+        assertEquals(5_000L, scheduler.now)
+        assertTrue(fetches.isEmpty())
+
+        scheduler.advance(DEBOUNCE_MS)
+        assertEquals(1, fetches.size)
+
+        // 断网期间 2 号麦有人上麦
+        val remote = current.toMutableList().apply { this[2] = seat(2, "user2") }
+        respond(remote)
+
+        assertEquals(1, applied.size)
+        val before = List(SEATS) { seat(it) }
+        assertEquals(listOf(2), SeatReconnectManager.changedIndices(before, remote))
+        scheduler.advance(DEBOUNCE_MS * 10)
+        assertEquals(1, fetches.size)
+    }
+
+    @Test
+    fun unchangedSeatsAreNotApplied() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        respond(List(SEATS) { seat(it) })
+
+        assertTrue(applied.isEmpty())
+    }
+
+    @Test
+    fun resultIsDroppedWhenSeatEventArrivedDuringFetch() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        // 拉取期间通过麦位事件收到了更新的列表
+        version++
+        respond(List(SEATS) { seat(it, "stale") })
+
+        assertTrue(applied.isEmpty())
+    }
+
+    @Test
+    fun reconnectDuringFetchResyncsOnceAfterward() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        assertEquals(1, fetches.size)
+
+        flap(5, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        // 上一次还没返回，不并发拉取
+        assertEquals(1, fetches.size)
+
+        respond(current)
+        scheduler.advance(DEBOUNCE_MS)
+        assertEquals(2, fetches.size)
+        respond(current.toMutableList().apply { this[0] = seat(0, "host") })
+        assertEquals(1, applied.size)
+    }
+
+    @Test
+    fun failedFetchRetriesWithBackoff() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        val retryDelays = ArrayList<Long>()
+        repeat(SeatReconnectManager.MAX_RETRIES) {
+            val failedAt = scheduler.now
+            fetches.last().onError(-1, "timeout")
+            retryDelays.add(scheduler.pendingAt().single() - failedAt)
+            scheduler.advance(retryDelays.last())
+        }
+        assertEquals(listOf(2 * DEBOUNCE_MS, 4 * DEBOUNCE_MS, 8 * DEBOUNCE_MS), retryDelays)
+        assertEquals(1 + SeatReconnectManager.MAX_RETRIES, fetches.size)
+
+        // 重试次数用完后不再拉取，等下一次重连
+        fetches.last().onError(-1, "timeout")
+        scheduler.advance(DEBOUNCE_MS * 100)
+        assertEquals(1 + SeatReconnectManager.MAX_RETRIES, fetches.size)
+    }
+
+    @Test
+    fun retryResyncsAfterFailure() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        fetches.last().onError(-1, "timeout")
+        scheduler.advance(2 * DEBOUNCE_MS)
+        respond(current.toMutableList().apply { this[1] = seat(1, "user1") })
+
+        assertEquals(2, fetches.size)
+        assertEquals(1, applied.size)
+        assertEquals("user1", current[1].user)
+    }
+
+    @Test
+    fun disconnectCancelsPendingRetry() {
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        fetches.last().onError(-1, "timeout")
+        manager.onDisconnected()
+        scheduler.advance(DEBOUNCE_MS * 100)
+
+        assertEquals(1, fetches.size)
+    }
+
+    @Test
+    fun stopCancelsPendingFetchAndIgnoresResult() {
+        flap(1, 100L)
+        manager.stop()
+        scheduler.advance(DEBOUNCE_MS * 10)
+        assertTrue(fetches.isEmpty())
+
+        manager.start()
+        manager.onConnected()
+        flap(1, 100L)
+        scheduler.advance(DEBOUNCE_MS)
+        manager.stop()
+        respond(List(SEATS) { seat(it, "late") })
+        assertTrue(applied.isEmpty())
+    }
+
+    @Test
+    fun changedIndicesComparesStatusUserAndSeatType() {
+        val old = List(SEATS) { seat(it) }
+        val new = old.toMutableList().apply {
+            this[1] = seat(1, "user1")
+            this[3] = seat(3, status = STATUS_CLOSED)
+            this[4] = seat(4, onSeatType = 1)
+            // 只有头像或更新时间变化不算
+            this[5] = seat(5, icon = "icon", updated = 100L)
+        }.take(SEATS - 1)
+
+        assertEquals(listOf(1, 3, 4, SEATS - 1), SeatReconnectManager.changedIndices(old, new))
+        assertEquals((0 until SEATS).toList(), SeatReconnectManager.changedIndices(null, old))
+    }
+
+    private companion object {
+        const val SEATS = 9
+        const val DEBOUNCE_MS = 1_000L
+        const val STATUS_EMPTY = 0
+        const val STATUS_TAKEN = 2
+        const val STATUS_CLOSED = -1
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.service
+
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomDispatchMode
+import com.netease.yunxin.kit.voiceroomkit.api.NEVoiceRoomListenerAdapter
+import com.netease.yunxin.kit.voiceroomkit.impl.utils.LatencyHistogram
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class VoiceRoomEventDispatcherTest {
+
+    private class RecordingListener(
+        total: Int,
+        private val sentAtNanos: LongArray? = null
+    ) : NEVoiceRoomListenerAdapter() {
+        val received: MutableList<Int> = Collections.synchronizedList(ArrayList())
+        val done = CountDownLatch(total)
+
+        // 从 dispatch 到回调的耗时，微秒
+        val latency = LatencyHistogram()
+
+        override fun onRtcChannelError(code: Int) {
+            sentAtNanos?.let { latency.record((System.nanoTime() - it[code]) / 1000) }
+            received.add(code)
+            done.countDown()
+        }
+    }
+
+    private class ThrowingListener : NEVoiceRoomListenerAdapter() {
+        override fun onRtcChannelError(code: Int) {
+            throw IllegalStateException("listener crash")
+        }
+    }
+
+    @Test
+    fun concurrentProducersKeepPerProducerOrder() {
+        val dispatcher = VoiceRoomEventDispatcher()
+        val perProducer = STRESS_EVENTS / PRODUCERS
+        val total = PRODUCERS * perProducer
+        val sentAtNanos = LongArray(total)
+        val posting = RecordingListener(total, sentAtNanos)
+        val background = RecordingListener(total, sentAtNanos)
+        dispatcher.add(posting, NEVoiceRoomDispatchMode.POSTING)
+        dispatcher.add(ThrowingListener(), NEVoiceRoomDispatchMode.POSTING)
+        dispatcher.add(background, NEVoiceRoomDispatchMode.BACKGROUND)
+
+        // 分发过程中反复增删另一个监听，不能影响已有监听
+        val churning = AtomicBoolean(true)
+        val churn = Thread {
+            val transient = NEVoiceRoomListenerAdapter()
+            while (churning.get()) {
+                dispatcher.add(transient, NEVoiceRoomDispatchMode.BACKGROUND)
+                dispatcher.remove(transient)
+            }
+        }
+        churn.start()
+
+        val start = CountDownLatch(1)
+        val producers = (0 until PRODUCERS).map { producer ->
+            Thread {
+                start.await()
+                for (seq in 0 until perProducer) {
+                    val code = producer * perProducer + seq
+                    sentAtNanos[code] = System.nanoTime()
+                    dispatcher.dispatch("onRtcChannelError") { it.onRtcChannelError(code) }
+                }
+            }.apply { start() }
+        }
+        start.countDown()
+        producers.forEach { it.join() }
+
+        assertTrue(posting.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertTrue(background.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        churning.set(false)
+        churn.join()
+
+        assertDelivery(posting.received, perProducer)
+        assertDelivery(background.received, perProducer)
+        assertEquals(3, dispatcher.size)
+        report("POSTING", posting.latency)
+        report("BACKGROUND", background.latency)
+        assertEquals(total.toLong(), posting.latency.snapshot().count)
+        assertEquals(total.toLong(), background.latency.snapshot().count)
+    }
+
+    @Test
+    fun removedListenerStopsReceiving() {
+        val dispatcher = VoiceRoomEventDispatcher()
+        val kept = RecordingListener(EVENTS_PER_PRODUCER)
+        val removed = RecordingListener(EVENTS_PER_PRODUCER)
+        dispatcher.add(kept, NEVoiceRoomDispatchMode.POSTING)
+        dispatcher.add(removed, NEVoiceRoomDispatchMode.POSTING)
+        dispatcher.remove(removed)
+        for (seq in 0 until EVENTS_PER_PRODUCER) {
+            dispatcher.dispatch("onRtcChannelError") { it.onRtcChannelError(seq) }
+        }
+        assertTrue(kept.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(EVENTS_PER_PRODUCER, kept.received.size)
+        assertTrue(removed.received.isEmpty())
+    }
+
+    private fun assertDelivery(received: List<Int>, perProducer: Int) {
+        val total = PRODUCERS * perProducer
+        val snapshot = synchronized(received) { ArrayList(received) }
+        assertEquals(total, snapshot.size)
+        assertEquals(total, snapshot.toSet().size)
+        val last = IntArray(PRODUCERS) { -1 }
+        for (code in snapshot) {
+            val producer = code / perProducer
+            val seq = code % perProducer
+            assertTrue("producer $producer out of order", seq > last[producer])
+            last[producer] = seq
+        }
+    }
+
+    private fun report(mode: String, latency: LatencyHistogram) {
+        val snapshot = latency.snapshot()
+        println(
+            "$mode dispatch latency over ${snapshot.count} events: " +
+                "p50=${snapshot.p50}us p99=${snapshot.p99}us max=${snapshot.max}us"
+        )
+    }
+
+    companion object {
+        private const val PRODUCERS = 8
+        private const val EVENTS_PER_PRODUCER = 5_000
+        private const val TIMEOUT_SECONDS = 60L
+
+        // 压测事件总数，gradle 中用 -Pvoiceroom.stressEvents=N 调整
+        private val STRESS_EVENTS = Integer.getInteger("voiceroom.stressEvents", 100_000)
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileWriter
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * 日志调用线程的开销，默认不随 test 运行：
+ * ./gradlew :voiceroomkit:test -Pvoiceroom.benchmark --tests '*AsyncLogWriterBenchmark'
+ * - 直接同步写文件与经 [AsyncLogWriter] 入队对比，sink 每条日志写入文件并 flush，近似 ALog 的单条写入
+ * - 级别关闭时 debug 日志各种写法的 ns/op 和每次调用分配的字节数
+ * - 结果打印到标准输出，只校验日志全部落盘、关闭的日志不分配内存，不对耗时做断言
+ */
+class AsyncLogWriterBenchmark {
+
+    private var savedLevel = 0
+
+    @Before
+    fun setUp() {
+        savedLevel = VoiceRoomLog.level
+        VoiceRoomLog.level = VoiceRoomLog.LEVEL_INFO
+    }
+
+    @After
+    fun tearDown() {
+        VoiceRoomLog.level = savedLevel
+    }
+
+    private class FileSink(file: File) : AsyncLogWriter.Sink {
+        private val out = BufferedWriter(FileWriter(file))
+        var lines = 0
+
+        override fun write(
+            level: Int,
+            tag: String,
+            message: String,
+            thread: String,
+            timeMillis: Long
+        ) {
+            out.write("$level $tag [$thread $timeMillis] $message\n")
+            out.flush()
+            lines++
+        }
+
+        override fun flush(isFlush: Boolean) {
+            out.flush()
+        }
+
+        fun close() {
+            out.close()
+        }
+    }
+
+    @Test
+    fun callerLatency() {
+        val syncFile = File.createTempFile("sync", ".log")
+        val asyncFile = File.createTempFile("async", ".log")
+        try {
+            val syncSink = FileSink(syncFile)
+            val syncNanos = measure { index ->
+                syncSink.write(
+                    VoiceRoomLog.LEVEL_INFO,
+                    TAG,
+                    "seat changed $index",
+                    Thread.currentThread().name,
+                    System.currentTimeMillis()
+                )
+            }
+            syncSink.close()
+
+            val asyncSink = FileSink(asyncFile)
+            // 容量足够放下一轮，只比较调用线程的耗时，不触发丢弃
+            val writer = AsyncLogWriter(WARMUP + ITERATIONS, asyncSink)
+            val asyncNanos = measure { index ->
+                writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "seat changed $index")
+            }
+            val flushStart = System.nanoTime()
+            writer.flush(true, TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT_SECONDS))
+            val flushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flushStart)
+            asyncSink.close()
+
+            assertEquals(WARMUP + ITERATIONS, asyncSink.lines)
+            println(
+                "AsyncLogWriterBenchmark: sync ${syncNanos / ITERATIONS} ns/op, " +
+                    "async ${asyncNanos / ITERATIONS} ns/op, flush ${flushMillis}ms"
+            )
+        } finally {
+            syncFile.delete()
+            asyncFile.delete()
+        }
+    }
+
+    @Test
+    fun suppressedDebugLog() {
+        val arg = Any()
+        val lambda = measureAllocation { index ->
+            VoiceRoomLog.d(TAG) { "seat changed $index" }
+        }
+        val placeholder = measureAllocation {
+            VoiceRoomLog.d(TAG, "seat changed {}", arg)
+        }
+        // 对比：直接拼接的参数在判断级别之前就生成了
+        val concat = measureAllocation { index ->
+            VoiceRoomLog.d(TAG, "seat changed $index")
+        }
+        report("lambda", lambda)
+        report("placeholder", placeholder)
+        report("concat", concat)
+
+        if (lambda.bytes >= 0) {
+            assertTrue("lambda ${lambda.bytes} bytes", lambda.bytes < ITERATIONS)
+            assertTrue("placeholder ${placeholder.bytes} bytes", placeholder.bytes < ITERATIONS)
+        }
+    }
+
+    private class Result(val nanos: Long, val bytes: Long)
+
+    private fun report(name: String, result: Result) {
+        val bytes = if (result.bytes < 0) "n/a" else "${result.bytes.toDouble() / ITERATIONS}"
+        println(
+            "AsyncLogWriterBenchmark: suppressed debug $name " +
+                "${result.nanos / ITERATIONS} ns/op, $bytes bytes/op"
+        )
+    }
+
+    // 当前线程分配的字节数，JVM 不支持时为 -1
+    private fun allocatedBytes(): Long {
+        val bean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+        if (bean == null || !bean.isThreadAllocatedMemorySupported) {
+            return -1
+        }
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    private inline fun measureAllocation(block: (Int) -> Unit): Result {
+        for (i in 0 until WARMUP) {
+            block(i)
+        }
+        val bytesBefore = allocatedBytes()
+        val start = System.nanoTime()
+        for (i in WARMUP until WARMUP + ITERATIONS) {
+            block(i)
+        }
+        val nanos = System.nanoTime() - start
+        val bytesAfter = allocatedBytes()
+        return Result(nanos, if (bytesBefore < 0) -1 else bytesAfter - bytesBefore)
+    }
+
+    private inline fun measure(block: (Int) -> Unit): Long {
+        for (i in 0 until WARMUP) {
+            block(i)
+        }
+        val start = System.nanoTime()
+        for (i in WARMUP until WARMUP + ITERATIONS) {
+            block(i)
+        }
+        return System.nanoTime() - start
+    }
+
+    companion object {
+        private const val TAG = "AsyncLogWriterBenchmark"
+        private const val WARMUP = 10_000
+        private const val ITERATIONS = 50_000
+        private const val FLUSH_TIMEOUT_SECONDS = 30L
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class AsyncLogWriterTest {
+
+    private class Entry(val message: String, val thread: String, val timeMillis: Long)
+
+    private class RecordingSink(
+        private val delayMs: Long = 0,
+        private val gate: CountDownLatch? = null
+    ) : AsyncLogWriter.Sink {
+        val entries: MutableList<Entry> = Collections.synchronizedList(ArrayList())
+
+        @Volatile
+        var flushCount = 0
+
+        override fun write(
+            level: Int,
+            tag: String,
+            message: String,
+            thread: String,
+            timeMillis: Long
+        ) {
+            gate?.await()
+            if (delayMs > 0) {
+                Thread.sleep(delayMs)
+            }
+            entries.add(Entry(message, thread, timeMillis))
+        }
+
+        override fun flush(isFlush: Boolean) {
+            flushCount++
+        }
+    }
+
+    @Test
+    fun flushWaitsForPendingLogs() {
+        val sink = RecordingSink(delayMs = 1)
+        val writer = AsyncLogWriter(CAPACITY, sink)
+        repeat(LOGS) { writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "log $it") }
+
+        writer.flush(true)
+
+        assertEquals(LOGS, sink.entries.size)
+        assertEquals(1, sink.flushCount)
+        assertEquals((0 until LOGS).map { "log $it" }, sink.entries.map { it.message })
+    }
+
+    @Test
+    fun callerThreadAndTimeAreCaptured() {
+        val sink = RecordingSink(delayMs = 50)
+        val writer = AsyncLogWriter(CAPACITY, sink)
+        // 写入线程处理第一条时第二条已经排队，时间必须是调用时的
+        var before = 0L
+        var after = 0L
+        Thread({
+            writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "first")
+            before = System.currentTimeMillis()
+            writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "second")
+            after = System.currentTimeMillis()
+        }, CALLER).apply {
+            start()
+            join()
+        }
+
+        writer.flush(true)
+
+        val second = sink.entries[1]
+        assertEquals(CALLER, second.thread)
+        assertTrue(second.timeMillis in before..after)
+    }
+
+    @Test
+    fun evictedFlushStillCompletes() {
+        val gate = CountDownLatch(1)
+        val sink = RecordingSink(gate = gate)
+        val writer = AsyncLogWriter(SMALL_CAPACITY, sink)
+        // 写入线程卡在第一条上，队列里的 flush 会被后面的日志挤掉
+        writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "blocked")
+        val flushed = CountDownLatch(1)
+        Thread {
+            writer.flush(true, TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS * 2))
+            flushed.countDown()
+        }.start()
+        Thread.sleep(WAIT_ENQUEUE_MS)
+        repeat(SMALL_CAPACITY * 2) { writer.write(VoiceRoomLog.LEVEL_INFO, TAG, "log $it") }
+        assertFalse(flushed.await(WAIT_ENQUEUE_MS, TimeUnit.MILLISECONDS))
+
+        gate.countDown()
+
+        assertTrue(flushed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(1, sink.flushCount)
+    }
+
+    companion object {
+        private const val TAG = "AsyncLogWriterTest"
+        private const val CALLER = "caller"
+        private const val CAPACITY = 1024
+        private const val SMALL_CAPACITY = 4
+        private const val LOGS = 200
+        private const val WAIT_ENQUEUE_MS = 100L
+        private const val TIMEOUT_SECONDS = 5L
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 NetEase, Inc. All rights reserved.
+ * Use of this source code is governed by a MIT license that can be
+ * found in the LICENSE file.
+ */
+
+package com.netease.yunxin.kit.voiceroomkit.impl.utils
+
+import java.util.Random
+import java.util.concurrent.CountDownLatch
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+    @Test
+    fun smallValuesAreExact() {
+        val histogram = LatencyHistogram()
+        for (value in 1..LatencyHistogram.SUB_BUCKET_COUNT.toLong()) {
+            histogram.record(value)
+        }
+        val snapshot = histogram.snapshot()
+        assertEquals(LatencyHistogram.SUB_BUCKET_COUNT.toLong(), snapshot.count)
+        assertEquals(1L, snapshot.min)
+        assertEquals(32L, snapshot.max)
+        assertEquals(16L, snapshot.p50)
+        assertEquals(29L, snapshot.p90)
+        assertEquals(32L, snapshot.p99)
+    }
+
+    @Test
+    fun bucketUpperBoundWithinRelativeError() {
+        val random = Random(SEED)
+        repeat(SAMPLES) {
+            val value = (random.nextDouble() * LatencyHistogram.MAX_VALUE).toLong()
+            val upper = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value))
+            assertTrue("upper $upper < value $value", upper >= value)
+            assertTrue(
+                "upper $upper too far from value $value",
+                upper - value <= value / LatencyHistogram.SUB_BUCKET_COUNT
+            )
+        }
+    }
+
+    @Test
+    fun percentilesMatchExactWithinRelativeError() {
+        val random = Random(SEED)
+        val histogram = LatencyHistogram()
+        // 对数正态分布，接近真实接口耗时：大部分几毫秒，少量长尾
+        val values = LongArray(SAMPLES) {
+            Math.exp(LOG_MEAN + random.nextGaussian() * LOG_STDDEV).toLong()
+        }
+        values.forEach { histogram.record(it) }
+        values.sort()
+
+        val snapshot = histogram.snapshot()
+        assertEquals(SAMPLES.toLong(), snapshot.count)
+        assertEquals(values.first(), snapshot.min)
+        assertEquals(values.last(), snapshot.max)
+        assertEquals(values.sum() / SAMPLES, snapshot.mean)
+        assertPercentile(values, 0.5, snapshot.p50)
+        assertPercentile(values, 0.9, snapshot.p90)
+        assertPercentile(values, 0.99, snapshot.p99)
+        assertPercentile(values, 0.999, snapshot.p999)
+    }
+
+    @Test
+    fun outOfRangeValuesAreClamped() {
+        val histogram = LatencyHistogram()
+        histogram.record(-1)
+        histogram.record(Long.MAX_VALUE)
+        val snapshot = histogram.snapshot()
+        assertEquals(2L, snapshot.count)
+        assertEquals(0L, snapshot.min)
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.max)
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.p999)
+    }
+
+    @Test
+    fun concurrentRecordsAreAllCounted() {
+        val histogram = LatencyHistogram()
+        val start = CountDownLatch(1)
+        val threads = (0 until THREADS).map { index ->
+            Thread {
+                start.await()
+                val random = Random(SEED + index)
+                repeat(SAMPLES) { histogram.record(random.nextInt(MAX_RANDOM).toLong()) }
+            }.apply { start() }
+        }
+        start.countDown()
+        threads.forEach { it.join() }
+
+        val snapshot = histogram.snapshot()
+        assertEquals(THREADS.toLong() * SAMPLES, snapshot.count)
+        assertTrue(snapshot.max < MAX_RANDOM)
+    }
+
+    @Test
+    fun resetClearsAll() {
+        val histogram = LatencyHistogram()
+        repeat(SAMPLES) { histogram.record(it.toLong()) }
+        histogram.reset()
+        assertEquals(0L, histogram.snapshot().count)
+
+        histogram.record(100)
+        val snapshot = histogram.snapshot()
+        assertEquals(1L, snapshot.count)
+        assertEquals(100L, snapshot.min)
+        assertEquals(100L, snapshot.max)
+    }
+
+    // 与直方图相同的取法：第 ceil(n * q) 个值；直方图取桶上界，只会偏大且不超过 1/32
+    private fun assertPercentile(sorted: LongArray, quantile: Double, actual: Long) {
+        val rank = Math.ceil(sorted.size * quantile).toInt().coerceIn(1, sorted.size)
+        val expected = sorted[rank - 1]
+        assertTrue("p$quantile $actual < $expected", actual >= expected)
+        assertTrue(
+            "p$quantile $actual too far from $expected",
+            actual - expected <= expected / LatencyHistogram.SUB_BUCKET_COUNT
+        )
+    }
+
+    companion object {
+        private const val SEED = 20221017L
+        private const val SAMPLES = 100_000
+        private const val THREADS = 8
+        private const val MAX_RANDOM = 1_000_000
+        private const val LOG_MEAN = 8.5 // 约 5ms
+        private const val LOG_STDDEV = 1.2
+    }
+}